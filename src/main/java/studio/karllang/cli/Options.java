@@ -3,7 +3,11 @@ package studio.karllang.cli;
 public enum Options {
     PATH(new String[]{"--path", "-p"}),
     DEBUG(new String[]{"--debug"}),
-    EXEC_TIME(new String[]{"--exec-time", "-e"});
+    EXEC_TIME(new String[]{"--exec-time", "-e"}),
+    STREAM(new String[]{"--stream", "-s"}),
+    CACHE(new String[]{"--cache", "-c"}),
+    ENGINE(new String[]{"--engine"}),
+    OUTPUT(new String[]{"--output", "-o"});
 
     public final String[] name;
 
@@ -0,0 +1,30 @@
+package studio.karllang.cli.commands;
+
+import studio.karllang.cli.Command;
+import studio.karllang.cli.Option;
+import studio.karllang.cli.Options;
+import studio.karllang.karl.Karl;
+
+import java.util.ArrayList;
+import java.util.Optional;
+
+public class BuildCommand extends Command {
+    public BuildCommand() {
+        super("build", "Compile a Karl file to an executable jar");
+
+        this.getAllowedOptions().add(Options.PATH);
+        this.getAllowedOptions().add(Options.OUTPUT);
+        this.getAllowedOptions().add(Options.DEBUG);
+    }
+
+    @Override
+    public void run(ArrayList<Option> options) throws Exception {
+        Optional<Option> path = options.stream().filter(opt -> opt.getType() == Options.PATH).findFirst();
+
+        if (path.isPresent()) {
+            options.remove(path.get());
+
+            new Karl().build(path.get().getValue(), options);
+        } else throw new Exception("No any path");
+    }
+}
@@ -6,6 +6,7 @@ import studio.karllang.cli.Options;
 import studio.karllang.karl.Karl;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 public class RunCommand extends Command {
@@ -14,12 +15,21 @@ public class RunCommand extends Command {
 
         this.getAllowedOptions().add(Options.PATH);
         this.getAllowedOptions().add(Options.EXEC_TIME);
+        this.getAllowedOptions().add(Options.STREAM);
+        this.getAllowedOptions().add(Options.CACHE);
+        this.getAllowedOptions().add(Options.ENGINE);
+        this.getAllowedOptions().add(Options.DEBUG);
     }
 
     @Override
     public void run(ArrayList<Option> options) throws Exception {
         Optional<Option> path = options.stream().filter(opt -> opt.getType() == Options.PATH).findFirst();
 
+        Optional<Option> engine = options.stream().filter(opt -> opt.getType() == Options.ENGINE).findFirst();
+        if (engine.isPresent() && !List.of("tree", "vm", "jit", "closure").contains(engine.get().getValue())) {
+            throw new Exception("Unknown engine: " + engine.get().getValue() + " (tree, vm, jit or closure)");
+        }
+
         if (path.isPresent()) {
             options.remove(path.get());
 
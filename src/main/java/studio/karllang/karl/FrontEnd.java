@@ -0,0 +1,77 @@
+package studio.karllang.karl;
+
+import studio.karllang.karl.cache.AstCache;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.Lexer;
+import studio.karllang.karl.parser.Parser;
+import studio.karllang.karl.parser.Resolver;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lexes and parses files into compilation units, the files of a project each in their own task of a pool.
+ * The units are linked afterwards, in order, so a project takes about as long as its largest file.
+ */
+public final class FrontEnd {
+    private final ForkJoinPool pool;
+    private final boolean cache;
+    private final String cacheDirectory;
+
+    public FrontEnd(ForkJoinPool pool) {
+        this(pool, false, null);
+    }
+
+    // With the cache on, the trees are loaded from and stored to .karlc files in the directory, next to the scripts when null
+    public FrontEnd(ForkJoinPool pool, boolean cache, String cacheDirectory) {
+        this.pool = pool;
+        this.cache = cache;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public CompilationUnit compile(Source source) {
+        SourceManager.addSource(source);
+        SymbolTable symbols = new SymbolTable();
+        FunctionTable functions = new FunctionTable();
+
+        AstCache astCache = cache ? new AstCache(source, cacheDirectory) : null;
+        ArrayList<Statement> statements = astCache != null ? astCache.load(symbols, functions, source.getPath()) : null;
+        if (statements == null) {
+            statements = new Parser(Lexer.lex(source, symbols), source.getPath(), functions).parse();
+            if (astCache != null) astCache.store(symbols, statements);
+        }
+        Resolver.resolve(statements, functions);
+        return new CompilationUnit(source.getPath(), source, symbols, statements, functions);
+    }
+
+    // Units of the files in the order of the paths
+    public List<CompilationUnit> compile(List<String> paths) {
+        List<ForkJoinTask<CompilationUnit>> tasks = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            tasks.add(pool.submit(() -> compile(map(path))));
+        }
+
+        List<CompilationUnit> units = new ArrayList<>(paths.size());
+        for (ForkJoinTask<CompilationUnit> task : tasks) {
+            units.add(task.join());
+        }
+        return units;
+    }
+
+    private static Source map(String path) {
+        try {
+            return Source.map(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,55 +2,118 @@ package studio.karllang.karl;
 
 import studio.karllang.cli.Option;
 import studio.karllang.cli.Options;
+import studio.karllang.karl.aot.ScriptCompiler;
+import studio.karllang.karl.aot.ScriptJar;
+import studio.karllang.karl.closure.ClosureEngine;
 import studio.karllang.karl.errors.FileError.FileError;
 import studio.karllang.karl.errors.FileError.FileNotFoundError;
-import studio.karllang.karl.parser.Lexer;
-import studio.karllang.karl.parser.Parser;
-import studio.karllang.karl.parser.Token;
+import studio.karllang.karl.ir.IrOptimizer;
+import studio.karllang.karl.jit.Jit;
+import studio.karllang.karl.optimizer.Optimizer;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.StatementStream;
 import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.SymbolTable;
 import studio.karllang.karl.std.VariableManager;
+import studio.karllang.karl.vm.VirtualMachine;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 public class Karl {
 
     public void run(String pathStr, ArrayList<Option> options) {
         if (options == null) options = new ArrayList<>();
         Optional<Option> isEnabled = options.stream().filter(opt -> opt.getType() == Options.EXEC_TIME).findFirst();
+        Optional<Option> stream = options.stream().filter(opt -> opt.getType() == Options.STREAM).findFirst();
+        Optional<Option> cache = options.stream().filter(opt -> opt.getType() == Options.CACHE).findFirst();
+        Optional<Option> engine = options.stream().filter(opt -> opt.getType() == Options.ENGINE).findFirst();
+        Optional<Option> debug = options.stream().filter(opt -> opt.getType() == Options.DEBUG).findFirst();
         final Path path = Path.of(pathStr);
         if (!Files.exists(path)) {
             new FileNotFoundError(pathStr);
         }
-        String fileName = pathStr.substring(pathStr.lastIndexOf("/") + 1);
 
-        if (!fileName.endsWith(".karl")) {
-            new FileError(pathStr);
+        List<String> files;
+        if (Files.isDirectory(path)) {
+            files = projectFiles(pathStr);
+        } else {
+            String fileName = pathStr.substring(pathStr.lastIndexOf("/") + 1);
+            if (!fileName.endsWith(".karl")) {
+                new FileError(pathStr);
+            }
+            files = List.of(pathStr);
         }
 
-        try {
-            VariableManager.addFile(fileName);
-            FunctionManager.addFile(fileName);
+        // --engine jit evaluates the trees, compiling the hot functions to JVM bytecode
+        Jit.setEnabled(engine.isPresent() && "jit".equals(engine.get().getValue()));
 
-            ArrayList<Token> tokens = new Lexer(Files.readString(path), pathStr).tokens;
-            ArrayList<Statement> statements = new Parser(tokens, pathStr).parse();
+        try {
+            Long start;
+            if (stream.isPresent() && (Boolean.parseBoolean(stream.get().getValue()) || stream.get().getValue() == null)) {
+                start = System.currentTimeMillis();
+                for (String file : files) {
+                    stream(file);
+                }
+            } else {
+                // The value of --cache is the directory of the cache files, next to the scripts by default
+                FrontEnd frontEnd = new FrontEnd(ForkJoinPool.commonPool());
+                if (cache.isPresent() && !"false".equals(cache.get().getValue())) {
+                    String directory = cache.get().getValue();
+                    frontEnd = new FrontEnd(ForkJoinPool.commonPool(), true, directory == null || directory.equals("true") ? null : directory);
+                }
+                List<CompilationUnit> units = files.size() == 1 ? List.of(frontEnd.compile(Source.map(files.get(0)))) : frontEnd.compile(files);
+                // --debug prints what each pass of the optimizer changed, and the IR of the functions lowered
+                Optimizer optimizer = new Optimizer();
+                for (CompilationUnit unit : units) {
+                    optimizer.optimize(unit, isEnabled(debug));
+                    if (isEnabled(debug)) IrOptimizer.print(unit);
+                }
 
-            Long start = System.currentTimeMillis();
-            statements.forEach(Statement::eval);
+                // --engine vm runs the units compiled to bytecode instead of evaluating their trees
+                VirtualMachine vm = engine.isPresent() && "vm".equals(engine.get().getValue()) ? new VirtualMachine() : null;
+                // --engine closure runs the units compiled to closures
+                ClosureEngine closures = engine.isPresent() && "closure".equals(engine.get().getValue()) ? new ClosureEngine() : null;
+                start = System.currentTimeMillis();
+                for (CompilationUnit unit : units) {
+                    unit.link();
+                    if (vm != null) {
+                        vm.run(unit.getStatements());
+                        continue;
+                    }
+                    if (closures != null) {
+                        closures.run(unit.getStatements());
+                        continue;
+                    }
+                    Frame frame = new Frame(0);
+                    for (Statement statement : unit.getStatements()) {
+                        statement.eval(frame);
+                    }
+                }
+            }
             Long end = System.currentTimeMillis();
 
             VariableManager.clear();
             FunctionManager.clear();
+            SourceManager.clear();
 
             if (isEnabled.isPresent() && (Boolean.parseBoolean(isEnabled.get().getValue()) || isEnabled.get().getValue() == null)) {
                 long elapsedTime = end - start;
                 System.out.println("Execution time: " + elapsedTime + "ms");
             }
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             new FileError(pathStr);
         }
 
@@ -60,4 +123,72 @@ public class Karl {
             System.out.println("Out of memory uwu baka");
         }*/
     }
-}
\ No newline at end of file
+
+    // Compiles a script to an executable jar, next to the script unless --output gives its path
+    public void build(String pathStr, ArrayList<Option> options) {
+        if (options == null) options = new ArrayList<>();
+        Optional<Option> output = options.stream().filter(opt -> opt.getType() == Options.OUTPUT).findFirst();
+        Optional<Option> debug = options.stream().filter(opt -> opt.getType() == Options.DEBUG).findFirst();
+        if (!Files.exists(Path.of(pathStr))) {
+            new FileNotFoundError(pathStr);
+        }
+        if (Files.isDirectory(Path.of(pathStr)) || !pathStr.endsWith(".karl")) {
+            new FileError(pathStr);
+        }
+
+        try {
+            CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.map(pathStr));
+            new Optimizer().optimize(unit, isEnabled(debug));
+            if (isEnabled(debug)) IrOptimizer.print(unit);
+            unit.link();
+            String className = ScriptCompiler.className(pathStr);
+            byte[] script = ScriptCompiler.compile(unit, className);
+            String jar = output.isPresent() && output.get().getValue() != null ? output.get().getValue() : pathStr.substring(0, pathStr.length() - ".karl".length()) + ".jar";
+            ScriptJar.write(Path.of(jar), className, script);
+
+            VariableManager.clear();
+            FunctionManager.clear();
+            SourceManager.clear();
+        } catch (IOException | UncheckedIOException e) {
+            new FileError(pathStr);
+        }
+    }
+
+    private static boolean isEnabled(Optional<Option> option) {
+        return option.isPresent() && (Boolean.parseBoolean(option.get().getValue()) || option.get().getValue() == null);
+    }
+
+    // Each top-level statement runs as soon as it is parsed, while a lexer thread reads ahead
+    private static void stream(String file) throws IOException {
+        Source source = Source.map(file);
+        SourceManager.addSource(source);
+        SymbolTable symbols = new SymbolTable();
+        StatementStream statements = new StatementStream(source, symbols, file);
+        VariableManager.addFile(file, symbols);
+        FunctionManager.addFile(file, symbols, statements.getFunctions());
+        FunctionManager.getCurrentFile().setParseAhead(statements::parseUntilFunction);
+
+        Frame frame = new Frame(0);
+        for (Statement statement = statements.next(); statement != null; statement = statements.next()) {
+            statement.eval(frame);
+        }
+    }
+
+    // Karl files of a project directory by path, the Main.karl at its root running last
+    private static List<String> projectFiles(String directory) {
+        Path main = Path.of(directory, "Main.karl");
+        try (Stream<Path> walk = Files.walk(Path.of(directory))) {
+            List<String> files = walk.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".karl"))
+                    .sorted(Comparator.comparing((Path file) -> file.equals(main)).thenComparing(Path::toString))
+                    .map(Path::toString)
+                    .toList();
+            if (files.isEmpty()) {
+                new FileError(directory);
+            }
+            return files;
+        } catch (IOException e) {
+            new FileError(directory);
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package studio.karllang.karl.aot;
+
+import studio.karllang.karl.jit.ClassWriter;
+import studio.karllang.karl.jit.FunctionCompiler;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.CharValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.StringValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.ForbiddenNames;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import static studio.karllang.karl.jit.Bytecodes.*;
+
+/**
+ * Compiles a script ahead of time to a JVM class, whose main method runs it without lexing, parsing or evaluating a
+ * tree. Each function is a static method taking and returning boxed values, and the top-level statements are run
+ * from methods of their own, locals being JVM locals and globals those of the {@link VariableManager}. The
+ * operations on the values are those of the {@link ScriptRuntime}, with the results and errors of the interpreter.
+ * <p>
+ * The functions the JIT can compile, computing on ints and bools without effects, also get its methods on
+ * unboxed values. Their boxed method calls these until a value leaves the ints and bools, and runs the function
+ * itself from then on.
+ */
+public final class ScriptCompiler implements AstVisitor<Void> {
+    private static final String RUNTIME = "studio/karllang/karl/aot/ScriptRuntime";
+    private static final String VALUES = "studio/karllang/karl/parser/ast/values/";
+    private static final String VALUE = "L" + VALUES + "Value;";
+    private static final String TOKEN_TYPE = "studio/karllang/karl/parser/TokenType";
+    private static final String DEOPTIMIZATION = "studio/karllang/karl/jit/Deoptimization";
+    private static final String POSITION = "Ljava/lang/String;II";
+    private static final int PUBLIC_STATIC = 0x0009;
+    private static final int PRIVATE_STATIC = 0x000A;
+    // Jumps are written with 16 bits offsets, and locals with 8 bits indexes
+    private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+    private static final int MAX_LOCALS = 255;
+    // The top-level statements are split into methods of about this length
+    private static final int PART_LENGTH = 16 * 1024;
+    // Characters of the source per string constant, whose modified UTF-8 takes at most 65535 bytes
+    private static final int SOURCE_CHUNK = 16 * 1024;
+
+    private final String className;
+    private final String fileName;
+    private final FunctionManager.File file;
+    private final ClassWriter writer;
+    // Functions that also have a method on ints and bools
+    private Set<Function> primitive;
+    // Method being compiled, whether it is the one of a function, and the end of the top-level block a return
+    // statement leaves
+    private ClassWriter.Code code;
+    private boolean inFunction;
+    private ClassWriter.Label blockEnd;
+
+    private ScriptCompiler(String className, String fileName) {
+        this.className = className;
+        this.fileName = fileName;
+        this.file = FunctionManager.getCurrentFile();
+        this.writer = new ClassWriter(className, "java/lang/Object");
+    }
+
+    // Class file of a linked unit, with a main method running its statements
+    public static byte[] compile(CompilationUnit unit, String className) {
+        ScriptCompiler compiler = new ScriptCompiler(className, unit.getFileName());
+        List<Function> functions = new ArrayList<>();
+        FunctionTable table = unit.getFunctions();
+        for (int symbol = 0; symbol < table.capacity(); symbol++) {
+            if (table.get(symbol) != null) functions.add(table.get(symbol));
+        }
+
+        // The locals of the functions compiled on ints cannot be declared over the globals of the script
+        BitSet globals = new BitSet();
+        for (Statement statement : unit.getStatements()) {
+            if (statement instanceof VariableDeclarationStatement declaration && declaration.getDepth() == VariableManager.GLOBAL) {
+                globals.set(declaration.getSymbol());
+            }
+        }
+        compiler.primitive = FunctionCompiler.compileMethods(compiler.writer, className, functions, globals::get);
+
+        for (Function function : functions) {
+            compiler.function(function);
+        }
+        compiler.main(unit.getStatements(), unit.getSource());
+        return compiler.writer.toByteArray();
+    }
+
+    // Name of the class of a script, from the name of its file
+    public static String className(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        if (name.endsWith(".karl")) name = name.substring(0, name.length() - ".karl".length());
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            builder.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (builder.isEmpty() || !Character.isJavaIdentifierStart(builder.charAt(0))) builder.insert(0, '_');
+        builder.setCharAt(0, Character.toUpperCase(builder.charAt(0)));
+        return builder.toString();
+    }
+
+    private static String descriptor(Function function) {
+        return "(" + VALUE.repeat(function.getArgTypes().length) + ")" + VALUE;
+    }
+
+    private static String primitiveDescriptor(TokenType type) {
+        return type == TokenType.INT ? "I" : "Z";
+    }
+
+    private static String primitiveDescriptor(Function function) {
+        StringBuilder builder = new StringBuilder("(");
+        for (TokenType type : function.getArgTypes()) {
+            builder.append(primitiveDescriptor(type));
+        }
+        return builder.append(")").append(primitiveDescriptor(function.getType())).toString();
+    }
+
+    private ClassWriter.Code method(int access, String name, String descriptor, int maxLocals) {
+        if (maxLocals > MAX_LOCALS) throw new IllegalStateException("Too many locals in " + name + " to compile " + fileName);
+        return writer.method(access, name, descriptor, Math.max(1, maxLocals));
+    }
+
+    private void end(String name) {
+        if (code.length() > MAX_CODE_LENGTH) throw new IllegalStateException("Code of " + name + " too large to compile " + fileName);
+        code.end();
+    }
+
+    private void clear(int from, int count) {
+        for (int slot = from; slot < from + count; slot++) {
+            code.op(ACONST_NULL, 1);
+            code.local(ASTORE, slot);
+        }
+    }
+
+    private void runtime(String name, String descriptor) {
+        code.invoke(INVOKESTATIC, RUNTIME, name, descriptor);
+    }
+
+    private void position(int line, int pos) {
+        code.sconst(fileName);
+        code.iconst(line);
+        code.iconst(pos);
+    }
+
+    private void tokenType(TokenType type) {
+        if (type == null) {
+            code.op(ACONST_NULL, 1);
+        } else {
+            code.field(GETSTATIC, TOKEN_TYPE, type.name(), "L" + TOKEN_TYPE + ";");
+        }
+    }
+
+    private void string(String value) {
+        if (value == null) {
+            code.op(ACONST_NULL, 1);
+        } else {
+            code.sconst(value);
+        }
+    }
+
+    // Boxed method of a function, the arguments and locals taking the JVM locals of their slots
+    private void function(Function function) {
+        String name = function.getName();
+        int arguments = function.getArgTypes().length;
+        int frameSize = function.getBody().getFrameSize();
+        code = method(PRIVATE_STATIC, name, descriptor(function), frameSize);
+        if (primitive.contains(function)) primitiveCall(function);
+        clear(arguments, frameSize - arguments);
+
+        inFunction = true;
+        statements(function.getBody());
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+        inFunction = false;
+        end(name);
+    }
+
+    // Calls the method on ints and bools while it does not give up, the arguments being of the types of the
+    // parameters. Once it gave up the function is run boxed for good, as by the JIT.
+    private void primitiveCall(Function function) {
+        String deoptimized = function.getName() + "$deoptimized";
+        writer.field(PRIVATE_STATIC, deoptimized, "Z");
+        ClassWriter.Label boxed = new ClassWriter.Label();
+        ClassWriter.Label start = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        ClassWriter.Label handler = new ClassWriter.Label();
+        code.field(GETSTATIC, className, deoptimized, "Z");
+        code.jump(IFNE, boxed);
+
+        code.bind(start);
+        String box = VALUES + (function.getType() == TokenType.INT ? "IntValue" : "BooleanValue");
+        code.type(NEW, box);
+        code.op(DUP, 1);
+        TokenType[] types = function.getArgTypes();
+        for (int i = 0; i < types.length; i++) {
+            code.local(ALOAD, i);
+            if (types[i] == TokenType.INT) {
+                code.invoke(INVOKEVIRTUAL, VALUES + "Value", "toInt", "()I");
+            } else {
+                code.type(CHECKCAST, VALUES + "BooleanValue");
+                code.invoke(INVOKEVIRTUAL, VALUES + "BooleanValue", "toBoolean", "()Z");
+            }
+        }
+        code.invoke(INVOKESTATIC, className, function.getName(), primitiveDescriptor(function));
+        if (function.getType() == TokenType.INT) {
+            code.invoke(INVOKESPECIAL, box, "<init>", "(I)V");
+        } else {
+            code.invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+            code.invoke(INVOKESPECIAL, box, "<init>", "(Ljava/lang/Boolean;)V");
+        }
+        code.op(ARETURN, -1);
+        code.bind(end);
+
+        code.setDepth(1);
+        code.bind(handler);
+        code.op(POP, -1);
+        code.iconst(1);
+        code.field(PUTSTATIC, className, deoptimized, "Z");
+        code.bind(boxed);
+        code.handler(start, end, handler, DEOPTIMIZATION);
+        code.handler(start, end, handler, "java/lang/ArithmeticException");
+    }
+
+    // Methods running the top-level statements in order, and the main method calling them
+    private void main(List<Statement> statements, Source source) {
+        int frameSize = 0;
+        for (Statement statement : statements) {
+            frameSize = Math.max(frameSize, frameSize(statement));
+        }
+
+        int parts = 0;
+        for (int i = 0; i < statements.size(); ) {
+            String name = "part$" + parts++;
+            code = method(PRIVATE_STATIC, name, "()V", frameSize);
+            do {
+                statements.get(i++).accept(this);
+            } while (i < statements.size() && code.length() < PART_LENGTH);
+            code.op(RETURN, 0);
+            end(name);
+        }
+
+        code = method(PUBLIC_STATIC, "main", "([Ljava/lang/String;)V", 1);
+        code.sconst(fileName);
+        String text = source.slice(0, source.length());
+        code.sconst(text.substring(0, Math.min(SOURCE_CHUNK, text.length())));
+        for (int start = SOURCE_CHUNK; start < text.length(); start += SOURCE_CHUNK) {
+            code.sconst(text.substring(start, Math.min(start + SOURCE_CHUNK, text.length())));
+            code.invoke(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;");
+        }
+        runtime("start", "(Ljava/lang/String;Ljava/lang/String;)V");
+        for (int i = 0; i < parts; i++) {
+            code.invoke(INVOKESTATIC, className, "part$" + i, "()V");
+        }
+        runtime("end", "()V");
+        code.op(RETURN, 0);
+        end("main");
+    }
+
+    // Locals of the top-level blocks a statement runs
+    private static int frameSize(Statement statement) {
+        if (statement instanceof BlockStatement block) {
+            return block.getFrameSize();
+        } else if (statement instanceof IfElseStatement ifElse) {
+            return Math.max(frameSize(ifElse.getIfStatement()), ifElse.getElseStatement() == null ? 0 : frameSize(ifElse.getElseStatement()));
+        }
+        return 0;
+    }
+
+    private void statements(BlockStatement block) {
+        for (Statement statement : block.getStatements()) {
+            statement.accept(this);
+        }
+    }
+
+    @Override
+    public Void visitBinary(BinaryExpression expression) {
+        expression.getLeft().accept(this);
+        expression.getRight().accept(this);
+        tokenType(expression.getOperator());
+        position(expression.getLine(), expression.getPos());
+        runtime("binary", "(" + VALUE + VALUE + "L" + TOKEN_TYPE + ";" + POSITION + ")" + VALUE);
+        return null;
+    }
+
+    // The function called is bound when compiling, the calls to unknown functions failing when run
+    @Override
+    public Void visitFuncCall(FuncCallExpression expression) {
+        Function function = file.getFunction(expression.getSymbol());
+        ArrayList<Expression> args = expression.getArgs();
+        if (function == null || function.getArgTypes().length != args.size()) {
+            string(function == null ? "Unknown function: " + expression.getName()
+                    : "Function " + expression.getName() + " takes " + function.getArgTypes().length + " arguments, " + args.size() + " given");
+            position(expression.getLine(), expression.getPos());
+            runtime("error", "(Ljava/lang/String;" + POSITION + ")V");
+            code.op(ACONST_NULL, 1);
+            return null;
+        }
+
+        for (int i = 0; i < args.size(); i++) {
+            args.get(i).accept(this);
+            tokenType(function.getArgTypes()[i]);
+            string(function.getArgNames()[i]);
+            string(expression.getName());
+            position(expression.getLine(), expression.getPos());
+            runtime("argument", "(" + VALUE + "L" + TOKEN_TYPE + ";Ljava/lang/String;Ljava/lang/String;" + POSITION + ")" + VALUE);
+        }
+        code.invoke(INVOKESTATIC, className, function.getName(), descriptor(function));
+        tokenType(function.getType());
+        string(expression.getName());
+        position(expression.getLine(), expression.getPos());
+        runtime("result", "(" + VALUE + "L" + TOKEN_TYPE + ";Ljava/lang/String;" + POSITION + ")" + VALUE);
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(LogicalExpression expression) {
+        expression.getLeft().accept(this);
+        if (expression.getRight() != null) {
+            expression.getRight().accept(this);
+        } else {
+            code.op(ACONST_NULL, 1);
+        }
+        tokenType(expression.getOperator());
+        position(expression.getLine(), expression.getPos());
+        runtime("logical", "(" + VALUE + VALUE + "L" + TOKEN_TYPE + ";" + POSITION + ")" + VALUE);
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(UnaryExpression expression) {
+        expression.getExpression().accept(this);
+        tokenType(expression.getOperator());
+        position(expression.getLine(), expression.getPos());
+        runtime("unary", "(" + VALUE + "L" + TOKEN_TYPE + ";" + POSITION + ")" + VALUE);
+        return null;
+    }
+
+    // Literals are allocated when evaluated, a script having more of them than a class has fields
+    @Override
+    public Void visitValue(ValueExpression expression) {
+        Value value = expression.getValue();
+        String type = VALUES + value.getClass().getSimpleName();
+        code.type(NEW, type);
+        code.op(DUP, 1);
+        String parameter;
+        if (value instanceof IntValue) {
+            code.iconst(value.toInt());
+            parameter = "I";
+        } else if (value instanceof FloatValue) {
+            code.fconst(value.toFloat());
+            parameter = "F";
+        } else if (value instanceof BooleanValue bool) {
+            code.field(GETSTATIC, "java/lang/Boolean", bool.toBoolean() ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+            parameter = "Ljava/lang/Boolean;";
+        } else if (value instanceof CharValue character) {
+            code.iconst(character.getValue());
+            parameter = "C";
+        } else {
+            string(value.toString());
+            parameter = "Ljava/lang/String;";
+        }
+        code.invoke(INVOKESPECIAL, type, "<init>", "(" + parameter + ")V");
+        return null;
+    }
+
+    @Override
+    public Void visitVariableCall(VariableCallExpression expression) {
+        if (expression.getDepth() == VariableManager.GLOBAL) {
+            code.iconst(expression.getIndex());
+            string(expression.getName());
+            position(expression.getLine(), expression.getPos());
+            runtime("global", "(ILjava/lang/String;" + POSITION + ")" + VALUE);
+        } else {
+            code.local(ALOAD, expression.getIndex());
+            string(expression.getName());
+            position(expression.getLine(), expression.getPos());
+            runtime("local", "(" + VALUE + "Ljava/lang/String;" + POSITION + ")" + VALUE);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(VariableExpression expression) {
+        throw new IllegalStateException("Variable expressions are not produced by the parser");
+    }
+
+    // The locals of a block are cleared once it is left, and those of a top-level block when it is entered
+    @Override
+    public Void visitBlock(BlockStatement statement) {
+        if (statement.ownsFrame()) {
+            clear(0, statement.getFrameSize());
+            ClassWriter.Label enclosing = blockEnd;
+            blockEnd = new ClassWriter.Label();
+            statements(statement);
+            code.bind(blockEnd);
+            blockEnd = enclosing;
+        } else {
+            statements(statement);
+            clear(statement.getFirstSlot(), statement.getSlotCount());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFuncCallStatement(FuncCallStatement statement) {
+        statement.getExpression().accept(this);
+        code.op(POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitIfElse(IfElseStatement statement) {
+        ClassWriter.Label otherwise = new ClassWriter.Label();
+        statement.getCondition().accept(this);
+        runtime("truth", "(" + VALUE + ")Z");
+        code.jump(IFEQ, otherwise);
+        statement.getIfStatement().accept(this);
+        if (statement.getElseStatement() == null) {
+            code.bind(otherwise);
+            return null;
+        }
+
+        ClassWriter.Label end = new ClassWriter.Label();
+        code.jump(GOTO, end);
+        code.bind(otherwise);
+        statement.getElseStatement().accept(this);
+        code.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitIncrementDecrement(IncrementDecrementStatement statement) {
+        int delta = statement.getIncrement() == TokenType.PLUS ? 1 : -1;
+        if (statement.getDepth() == VariableManager.GLOBAL) {
+            code.iconst(statement.getIndex());
+            code.iconst(delta);
+            string(statement.getName());
+            position(statement.getLine(), statement.getPos());
+            runtime("incrementGlobal", "(IILjava/lang/String;" + POSITION + ")V");
+        } else {
+            code.local(ALOAD, statement.getIndex());
+            code.iconst(delta);
+            string(statement.getName());
+            code.iconst(statement.isFinal() ? 1 : 0);
+            position(statement.getLine(), statement.getPos());
+            runtime("increment", "(" + VALUE + "ILjava/lang/String;Z" + POSITION + ")" + VALUE);
+            code.local(ASTORE, statement.getIndex());
+        }
+        return null;
+    }
+
+    // A return statement ends the function, or the top-level block it is in
+    @Override
+    public Void visitReturn(ReturnStatement statement) {
+        statement.getExpression().accept(this);
+        if (inFunction) {
+            code.op(ARETURN, -1);
+        } else {
+            code.op(POP, -1);
+            if (blockEnd != null) code.jump(GOTO, blockEnd);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitShow(ShowStatement statement) {
+        code.field(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        code.type(NEW, "java/lang/StringBuilder");
+        code.op(DUP, 1);
+        code.invoke(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V");
+        for (Expression expression : statement.getExpressions()) {
+            expression.accept(this);
+            code.invoke(INVOKEVIRTUAL, VALUES + "Value", "toString", "()Ljava/lang/String;");
+            code.invoke(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+        }
+        code.invoke(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(Ljava/lang/Object;)V");
+        return null;
+    }
+
+    @Override
+    public Void visitVariableAssignment(VariableAssignmentStatement statement) {
+        statement.getExpression().accept(this);
+        if (statement.getDepth() == VariableManager.GLOBAL) {
+            code.iconst(statement.getIndex());
+            string(statement.getName());
+            position(statement.getLine(), statement.getPos());
+            runtime("assignGlobal", "(" + VALUE + "ILjava/lang/String;" + POSITION + ")V");
+        } else {
+            code.local(ALOAD, statement.getIndex());
+            string(statement.getName());
+            code.iconst(statement.isFinal() ? 1 : 0);
+            position(statement.getLine(), statement.getPos());
+            runtime("assign", "(" + VALUE + VALUE + "Ljava/lang/String;Z" + POSITION + ")" + VALUE);
+            code.local(ASTORE, statement.getIndex());
+        }
+        return null;
+    }
+
+    // The name is checked when compiling, and whether it is declared already before the value is evaluated
+    @Override
+    public Void visitVariableDeclaration(VariableDeclarationStatement statement) {
+        if (ForbiddenNames.isForbiddenName(statement.getName())) {
+            string("Variable " + statement.getName() + " is forbidden");
+            position(statement.getLine(), statement.getPos());
+            runtime("error", "(Ljava/lang/String;" + POSITION + ")V");
+        }
+        boolean global = statement.getDepth() == VariableManager.GLOBAL;
+        if (global) {
+            code.op(ACONST_NULL, 1);
+        } else {
+            code.local(ALOAD, statement.getIndex());
+        }
+        if (statement.getShadowedDepth() == VariableManager.GLOBAL) {
+            code.op(ACONST_NULL, 1);
+        } else {
+            code.local(ALOAD, statement.getShadowedIndex());
+        }
+        code.iconst(statement.getSymbol());
+        string(statement.getName());
+        position(statement.getLine(), statement.getPos());
+        runtime("checkNotDeclared", "(" + VALUE + VALUE + "ILjava/lang/String;" + POSITION + ")V");
+
+        statement.getExpression().accept(this);
+        tokenType(statement.getType());
+        position(statement.getLine(), statement.getPos());
+        runtime("declare", "(" + VALUE + "L" + TOKEN_TYPE + ";" + POSITION + ")" + VALUE);
+        if (global) {
+            code.iconst(statement.getSymbol());
+            code.iconst(statement.isFinal() ? 1 : 0);
+            runtime("declareGlobal", "(" + VALUE + "IZ)V");
+        } else {
+            code.local(ASTORE, statement.getIndex());
+        }
+        return null;
+    }
+}
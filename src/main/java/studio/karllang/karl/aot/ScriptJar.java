@@ -0,0 +1,100 @@
+package studio.karllang.karl.aot;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executable jar of a compiled script. The runtime packaged with it is the classes of Karl the script refers to,
+ * and those they refer to in turn, found in the names of their constant pools, so the front end is left out.
+ */
+public final class ScriptJar {
+    private static final Pattern CLASS_NAME = Pattern.compile("studio/karllang/[\\w/$]+");
+
+    public static void write(Path jar, String className, byte[] script) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, className.replace('/', '.'));
+
+        try (OutputStream file = Files.newOutputStream(jar); JarOutputStream out = new JarOutputStream(file, manifest)) {
+            out.putNextEntry(new JarEntry(className + ".class"));
+            out.write(script);
+            out.closeEntry();
+            for (var entry : runtime(script).entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+    }
+
+    // Class files of the runtime by name, in the order they are found
+    static LinkedHashMap<String, byte[]> runtime(byte[] script) throws IOException {
+        LinkedHashMap<String, byte[]> classes = new LinkedHashMap<>();
+        ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        pending.add(script);
+        while (!pending.isEmpty()) {
+            for (String name : references(pending.poll())) {
+                if (classes.containsKey(name)) continue;
+                byte[] bytes = read(name);
+                if (bytes == null) continue;
+                classes.put(name, bytes);
+                pending.add(bytes);
+            }
+        }
+        return classes;
+    }
+
+    private static byte[] read(String name) throws IOException {
+        try (InputStream in = ScriptJar.class.getClassLoader().getResourceAsStream(name + ".class")) {
+            return in == null ? null : in.readAllBytes();
+        }
+    }
+
+    // Names of the classes of Karl in the strings of the constant pool of a class file, which hold the classes it
+    // refers to and the descriptors of the members it uses
+    private static List<String> references(byte[] bytes) throws IOException {
+        List<String> names = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.skipNBytes(8);
+        int count = in.readUnsignedShort();
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> {
+                    Matcher matcher = CLASS_NAME.matcher(in.readUTF());
+                    while (matcher.find()) {
+                        names.add(matcher.group());
+                    }
+                }
+                case 7, 8, 16, 19, 20 -> in.skipNBytes(2);
+                case 15 -> in.skipNBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipNBytes(4);
+                // Longs and doubles take two entries
+                case 5, 6 -> {
+                    in.skipNBytes(8);
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        return names;
+    }
+
+    private ScriptJar() {
+    }
+}
@@ -0,0 +1,210 @@
+package studio.karllang.karl.aot;
+
+import studio.karllang.karl.errors.RuntimeError.RuntimeError;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.NullValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.LogicalOperators;
+import studio.karllang.karl.std.Operators;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.Types;
+import studio.karllang.karl.std.VariableManager;
+
+/**
+ * Operations the classes compiled from scripts call on boxed values, with the results and the errors of the tree
+ * interpreter. The locals of the compiled code are JVM locals, null until declared, and the globals are those of
+ * the current file of the {@link VariableManager}. Only this class, the values and the managers are packaged with
+ * a compiled script.
+ */
+public final class ScriptRuntime {
+    private static final Value VOID = new NullValue("null_void");
+
+    // The source is kept for the error reports
+    public static void start(String fileName, String source) {
+        SourceManager.addSource(Source.of(source, fileName));
+        VariableManager.addFile(fileName);
+    }
+
+    public static void end() {
+        VariableManager.clear();
+        SourceManager.clear();
+    }
+
+    public static void error(String message, String fileName, int line, int pos) {
+        new RuntimeError(message, fileName, line, pos);
+    }
+
+    public static Value local(Value value, String name, String fileName, int line, int pos) {
+        if (value == null) {
+            new RuntimeError("Variable " + name + " is not defined", fileName, line, pos);
+        }
+        return value;
+    }
+
+    public static Value global(int symbol, String name, String fileName, int line, int pos) {
+        return local(VariableManager.getCurrentFile().get(null, VariableManager.GLOBAL, symbol), name, fileName, line, pos);
+    }
+
+    // Ints take the exact path of the nodes specialized to them
+    public static Value binary(Value left, Value right, TokenType operator, String fileName, int line, int pos) {
+        if (left instanceof IntValue && right instanceof IntValue) {
+            long result = Operators.applyInt(operator, left.toInt(), right.toInt());
+            if (result != Operators.NOT_INT) return new IntValue((int) result);
+        }
+        return Operators.apply(operator, left, right, fileName, line, pos);
+    }
+
+    // Truth, negation, comparison and logical operators, the operator being null for the truth of a value and
+    // right for the unary ones
+    public static Value logical(Value left, Value right, TokenType operator, String fileName, int line, int pos) {
+        if (left instanceof IntValue a && right instanceof IntValue b) {
+            switch (operator) {
+                case LESS -> {
+                    return new BooleanValue(a.toInt() < b.toInt());
+                }
+                case LESS_EQUAL -> {
+                    return new BooleanValue(a.toInt() <= b.toInt());
+                }
+                case GREATER -> {
+                    return new BooleanValue(a.toInt() > b.toInt());
+                }
+                case GREATER_EQUAL -> {
+                    return new BooleanValue(a.toInt() >= b.toInt());
+                }
+                case EQUALEQUAL -> {
+                    return new BooleanValue(a.toInt() == b.toInt());
+                }
+                case NOT_EQUAL -> {
+                    return new BooleanValue(a.toInt() != b.toInt());
+                }
+            }
+        }
+        return LogicalOperators.apply(operator, left, right, fileName, line, pos);
+    }
+
+    public static Value unary(Value value, TokenType operator, String fileName, int line, int pos) {
+        return switch (operator) {
+            case EXCLAMATION -> new BooleanValue(!Boolean.parseBoolean(value.toString()));
+            case MINUS -> new IntValue(-value.toInt());
+            default -> {
+                new RuntimeError("Unknown operator: " + operator, fileName, line, pos);
+                yield null;
+            }
+        };
+    }
+
+    // Condition of an if statement
+    public static boolean truth(Value value) {
+        if (value instanceof BooleanValue booleanValue) return booleanValue.toBoolean();
+        return Boolean.parseBoolean(value.toString());
+    }
+
+    // The local being declared and the one it shadows are null unless declared, the globals are looked up
+    public static void checkNotDeclared(Value local, Value shadowed, int symbol, String name, String fileName, int line, int pos) {
+        if (local != null || shadowed != null || VariableManager.getCurrentFile().isDeclared(null, VariableManager.GLOBAL, symbol)) {
+            new RuntimeError("Variable " + name + " is already declared", fileName, line, pos);
+        }
+    }
+
+    // Value a variable of the type is declared with
+    public static Value declare(Value value, TokenType type, String fileName, int line, int pos) {
+        if (type == TokenType.FLOAT && value.getType() == TokenType.INT_VALUE) {
+            value = new FloatValue(value.toFloat());
+        }
+
+        if (value.toString().equals("null_void")) {
+            new RuntimeError("Cannot assign void function to a variable", fileName, line, pos);
+        }
+
+        if (!Types.checkValueType(type, value.getType()) && value.getType() != TokenType.NULL) {
+            new RuntimeError("Expected type " + Types.getTypeName(type) + " but got " + Types.getTypeName(value.getType()), fileName, line, pos - 1);
+        }
+
+        if (value.getType() == TokenType.NULL && type != TokenType.STRING && type != TokenType.CHAR) {
+            new RuntimeError(Types.getTypeName(type) + " variable cannot be null", fileName, line, pos - 1);
+        }
+        return value;
+    }
+
+    public static void declareGlobal(Value value, int symbol, boolean isFinal) {
+        VariableManager.getCurrentFile().declareGlobal(symbol, value, isFinal);
+    }
+
+    // Value assigned to a local holding current
+    public static Value assign(Value value, Value current, String name, boolean isFinal, String fileName, int line, int pos) {
+        if (current == null) {
+            new RuntimeError("Variable " + name + " is not declared", fileName, line, pos);
+        }
+
+        if (isFinal) {
+            new RuntimeError("Variable " + name + " is final", fileName, line, pos);
+        }
+
+        if (current.getType() != value.getType()) {
+            new RuntimeError("Incorrect type for variable " + name + ": except " + Types.getTypeName(current.getType()) + " but got type " + Types.getTypeName(value.getType()), fileName, line, pos);
+        }
+        return value;
+    }
+
+    public static void assignGlobal(Value value, int symbol, String name, String fileName, int line, int pos) {
+        VariableManager.File file = VariableManager.getCurrentFile();
+        Value current = file.get(null, VariableManager.GLOBAL, symbol);
+        file.set(null, VariableManager.GLOBAL, symbol, assign(value, current, name, current != null && file.isFinalGlobal(symbol), fileName, line, pos));
+    }
+
+    // Value of a local holding current once incremented by delta
+    public static Value increment(Value current, int delta, String name, boolean isFinal, String fileName, int line, int pos) {
+        if (current == null) {
+            new RuntimeError("Variable " + name + " is not defined", fileName, line, pos);
+        }
+
+        if (isFinal) {
+            new RuntimeError("Variable " + name + " is final", fileName, line, pos);
+        }
+
+        if (current.getType() != TokenType.INT_VALUE && current.getType() != TokenType.FLOAT_VALUE) {
+            new RuntimeError("Variable " + name + " is not a number", fileName, line, pos);
+        }
+
+        if (current.getType() == TokenType.FLOAT_VALUE) {
+            return new FloatValue(current.toFloat() + delta);
+        }
+        return new IntValue(current.toInt() + delta);
+    }
+
+    public static void incrementGlobal(int symbol, int delta, String name, String fileName, int line, int pos) {
+        VariableManager.File file = VariableManager.getCurrentFile();
+        Value current = file.get(null, VariableManager.GLOBAL, symbol);
+        file.set(null, VariableManager.GLOBAL, symbol, increment(current, delta, name, current != null && file.isFinalGlobal(symbol), fileName, line, pos));
+    }
+
+    // Argument of a call, of the type of the parameter
+    public static Value argument(Value value, TokenType type, String argName, String function, String fileName, int line, int pos) {
+        if (!Types.checkValueType(type, value.getType())) {
+            new RuntimeError("Type mismatch for argument " + argName + " of function " + function + ": Excepted type " + Types.getTypeName(type) + ", but got type " + Types.getTypeName(value.getType()), fileName, line, pos);
+        }
+        return value;
+    }
+
+    // Result of a call from the value returned by the function, null when it ended without a return statement
+    public static Value result(Value value, TokenType type, String function, String fileName, int line, int pos) {
+        if (value != null) {
+            if (type == TokenType.VOID) {
+                new RuntimeError("Function " + function + " is void, but return a value", fileName, line, pos);
+            }
+            if (!Types.checkValueType(type, value.getType()) && !(type == TokenType.STRING && value.getType() == TokenType.NULL)) {
+                new RuntimeError("Incorrect return type for function " + function + ": except " + type.getName() + " but got type " + value.getType().getName(), fileName, line, pos);
+            }
+        } else if (type != TokenType.VOID) {
+            new RuntimeError("Missing return statement in function: " + function, fileName, line, pos);
+        }
+        return type == TokenType.VOID ? VOID : value;
+    }
+
+    private ScriptRuntime() {
+    }
+}
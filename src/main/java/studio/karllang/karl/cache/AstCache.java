@@ -0,0 +1,145 @@
+package studio.karllang.karl.cache;
+
+import studio.karllang.Constants;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Parsed statements of a file saved to a .karlc file, reused while the SHA-256 of the source, the Karl version
+ * and the format of the file stay the same. Any other file is ignored and replaced on the next store.
+ */
+public final class AstCache {
+    static final int MAGIC = 0x4B41524C;
+    // Bumped whenever the layout of a node changes
+    static final int FORMAT = 2;
+
+    static final byte NONE = 0;
+    static final byte BINARY = 1;
+    static final byte FUNC_CALL = 2;
+    static final byte LOGICAL = 3;
+    static final byte UNARY = 4;
+    static final byte VALUE = 5;
+    static final byte VARIABLE_CALL = 6;
+    static final byte BLOCK = 7;
+    static final byte FUNC_CALL_STATEMENT = 8;
+    static final byte FUNCTION_DECLARATION = 9;
+    static final byte IF_ELSE = 10;
+    static final byte INCREMENT_DECREMENT = 11;
+    static final byte RETURN = 12;
+    static final byte SHOW = 13;
+    static final byte VARIABLE_ASSIGNMENT = 14;
+    static final byte VARIABLE_DECLARATION = 15;
+
+    private final byte[] hash;
+    private final Path file;
+
+    // Stores the cache next to the script, or in a directory named after the hash when one is given
+    public AstCache(Source source, String directory) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source.getBytes().duplicate().clear());
+            hash = digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if (directory != null) {
+            file = Path.of(directory, HexFormat.of().formatHex(hash) + ".karlc");
+        } else {
+            String path = source.getPath();
+            file = Path.of((path.endsWith(".karl") ? path.substring(0, path.length() - 5) : path) + ".karlc");
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Statements of the source with their functions added to the table, null when there is no valid cache
+    public ArrayList<Statement> load(SymbolTable symbols, FunctionTable functions, String fileName) {
+        if (!Files.isRegularFile(file) || symbols.size() != 0) return null;
+
+        try {
+            ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (input.getInt() != MAGIC || input.getInt() != FORMAT) return null;
+
+            AstReader reader = new AstReader(input, symbols, functions, fileName);
+            if (!Constants.KARL_VERSION.equals(reader.readString())) return null;
+            byte[] stored = new byte[hash.length];
+            input.get(stored);
+            if (!Arrays.equals(stored, hash)) return null;
+
+            // Interned in the same order, the symbol ids saved in the nodes stay valid
+            int count = input.getInt();
+            for (int i = 0; i < count; i++) {
+                symbols.intern(reader.readString());
+            }
+
+            int size = input.getInt();
+            ArrayList<Statement> statements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                statements.add(reader.readStatement());
+            }
+            return statements;
+        } catch (IOException | RuntimeException e) {
+            // Truncated or corrupted, parsed again from the source
+            functions.clear();
+            return null;
+        }
+    }
+
+    // Saves the statements, failures only cost the parse of the next run
+    public void store(SymbolTable symbols, ArrayList<Statement> statements) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            // Written next to the file under a name of its own, with the permissions of any file created there,
+            // then moved over it
+            Path temp = directory.resolve(file.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            OutputStream stream = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+                    AstWriter writer = new AstWriter(out);
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT);
+                    writer.writeString(Constants.KARL_VERSION);
+                    out.write(hash);
+
+                    out.writeInt(symbols.size());
+                    for (int i = 0; i < symbols.size(); i++) {
+                        writer.writeString(symbols.getName(i));
+                    }
+
+                    out.writeInt(statements.size());
+                    for (Statement statement : statements) {
+                        writer.writeStatement(statement);
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Not cached
+        }
+    }
+}
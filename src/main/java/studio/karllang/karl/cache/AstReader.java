@@ -0,0 +1,139 @@
+package studio.karllang.karl.cache;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import static studio.karllang.karl.cache.AstCache.*;
+
+// Rebuilds the nodes written by AstWriter, registering the functions as the parser does when it reads their declarations
+final class AstReader {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final ByteBuffer input;
+    private final SymbolTable symbols;
+    private final FunctionTable functions;
+    private final String fileName;
+
+    AstReader(ByteBuffer input, SymbolTable symbols, FunctionTable functions, String fileName) {
+        this.input = input;
+        this.symbols = symbols;
+        this.functions = functions;
+        this.fileName = fileName;
+    }
+
+    Statement readStatement() {
+        final int tag = input.get();
+        int symbol;
+        return switch (tag) {
+            case NONE -> null;
+            case BLOCK -> readBlock();
+            case FUNC_CALL_STATEMENT -> new FuncCallStatement((FuncCallExpression) readExpression());
+            case FUNCTION_DECLARATION -> readFunctionDeclaration();
+            case IF_ELSE -> new IfElseStatement(readExpression(), (BlockStatement) readStatement(), readStatement());
+            case INCREMENT_DECREMENT -> new IncrementDecrementStatement(name(symbol = input.getInt()), symbol, readType(), fileName, input.getInt(), input.getInt());
+            case RETURN -> new ReturnStatement(readExpression(), fileName, input.getInt(), input.getInt());
+            case SHOW -> new ShowStatement(readExpressions());
+            case VARIABLE_ASSIGNMENT -> new VariableAssignmentStatement(name(symbol = input.getInt()), symbol, readExpression(), fileName, input.getInt(), input.getInt());
+            case VARIABLE_DECLARATION -> {
+                symbol = input.getInt();
+                final TokenType type = readType();
+                final Expression expression = readExpression();
+                final boolean isFinal = input.get() != 0;
+                yield new VariableDeclarationStatement(expression, name(symbol), symbol, type, fileName, input.getInt(), input.getInt(), isFinal);
+            }
+            default -> throw new IllegalStateException("Unknown statement tag " + tag);
+        };
+    }
+
+    Expression readExpression() {
+        final int tag = input.get();
+        int symbol;
+        return switch (tag) {
+            case NONE -> null;
+            case BINARY -> {
+                final TokenType operator = readType();
+                yield new BinaryExpression(readExpression(), readExpression(), operator, fileName, input.getInt(), input.getInt());
+            }
+            case FUNC_CALL -> new FuncCallExpression(name(symbol = input.getInt()), symbol, readExpressions(), fileName, input.getInt(), input.getInt());
+            case LOGICAL -> {
+                final int operator = input.get();
+                yield new LogicalExpression(operator == -1 ? null : TYPES[operator], readExpression(), readExpression(), fileName, input.getInt(), input.getInt());
+            }
+            case UNARY -> new UnaryExpression(readType(), readExpression(), fileName, input.getInt(), input.getInt());
+            case VALUE -> readValue();
+            case VARIABLE_CALL -> new VariableCallExpression(name(symbol = input.getInt()), symbol, fileName, input.getInt(), input.getInt());
+            default -> throw new IllegalStateException("Unknown expression tag " + tag);
+        };
+    }
+
+    String readString() {
+        final int length = input.getInt();
+        if (length == -1) return null;
+        final byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String name(int symbol) {
+        return symbols.getName(symbol);
+    }
+
+    private TokenType readType() {
+        return TYPES[input.get()];
+    }
+
+    private ArrayList<Expression> readExpressions() {
+        final int size = input.getInt();
+        final ArrayList<Expression> expressions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    private BlockStatement readBlock() {
+        final int size = input.getInt();
+        final ArrayList<Statement> statements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            statements.add(readStatement());
+        }
+        return new BlockStatement(statements);
+    }
+
+    private ValueExpression readValue() {
+        final TokenType type = readType();
+        return switch (type) {
+            case INT_VALUE -> new ValueExpression(input.getInt(), type);
+            case FLOAT_VALUE -> new ValueExpression(Float.intBitsToFloat(input.getInt()), type);
+            case BOOL_VALUE -> new ValueExpression(input.get() != 0, type);
+            case CHAR_VALUE -> new ValueExpression((char) input.getInt(), type);
+            case STR_VALUE, NULL -> new ValueExpression(readString(), type);
+            default -> throw new IllegalStateException("Value of type " + type + " cannot be cached");
+        };
+    }
+
+    private FunctionDeclarationStatement readFunctionDeclaration() {
+        final int symbol = input.getInt();
+        final int count = input.getInt();
+        final LinkedHashMap<String, TokenType> args = new LinkedHashMap<>();
+        final int[] argSymbols = new int[count];
+        for (int i = 0; i < count; i++) {
+            argSymbols[i] = input.getInt();
+            args.put(name(argSymbols[i]), readType());
+        }
+        final TokenType returnType = readType();
+
+        final Function function = new Function(name(symbol), args, argSymbols, returnType, (BlockStatement) readStatement());
+        functions.add(symbol, function);
+        return new FunctionDeclarationStatement(symbol, function);
+    }
+}
@@ -0,0 +1,244 @@
+package studio.karllang.karl.cache;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.parser.ast.values.CharValue;
+import studio.karllang.karl.parser.ast.values.NullValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Function;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static studio.karllang.karl.cache.AstCache.*;
+
+// Writes each node as its tag followed by its fields, names as their symbol ids and without the file name
+final class AstWriter implements AstVisitor<Void> {
+    private final DataOutputStream out;
+
+    AstWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    void writeStatement(Statement statement) {
+        if (statement == null) {
+            writeByte(NONE);
+        } else {
+            statement.accept(this);
+        }
+    }
+
+    void writeExpression(Expression expression) {
+        if (expression == null) {
+            writeByte(NONE);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    void writeString(String string) {
+        if (string == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeByte(int value) {
+        try {
+            out.writeByte(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeType(TokenType type) {
+        writeByte(type.ordinal());
+    }
+
+    private void writeExpressions(ArrayList<Expression> expressions) {
+        writeInt(expressions.size());
+        for (Expression expression : expressions) {
+            writeExpression(expression);
+        }
+    }
+
+    private void writePosition(int line, int pos) {
+        writeInt(line);
+        writeInt(pos);
+    }
+
+    @Override
+    public Void visitBinary(BinaryExpression expression) {
+        writeByte(BINARY);
+        writeType(expression.getOperator());
+        writeExpression(expression.getLeft());
+        writeExpression(expression.getRight());
+        writePosition(expression.getLine(), expression.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitFuncCall(FuncCallExpression expression) {
+        writeByte(FUNC_CALL);
+        writeInt(expression.getSymbol());
+        writeExpressions(expression.getArgs());
+        writePosition(expression.getLine(), expression.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(LogicalExpression expression) {
+        writeByte(LOGICAL);
+        writeByte(expression.getOperator() == null ? -1 : expression.getOperator().ordinal());
+        writeExpression(expression.getLeft());
+        writeExpression(expression.getRight());
+        writePosition(expression.getLine(), expression.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(UnaryExpression expression) {
+        writeByte(UNARY);
+        writeType(expression.getOperator());
+        writeExpression(expression.getExpression());
+        writePosition(expression.getLine(), expression.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitValue(ValueExpression expression) {
+        writeByte(VALUE);
+        writeType(expression.getType());
+        Value value = expression.getValue();
+        switch (expression.getType()) {
+            case INT_VALUE -> writeInt(value.toInt());
+            case FLOAT_VALUE -> writeInt(Float.floatToRawIntBits(value.toFloat()));
+            case BOOL_VALUE -> writeByte(Boolean.parseBoolean(value.toString()) ? 1 : 0);
+            case STR_VALUE -> writeString(value.toString());
+            case CHAR_VALUE -> writeInt(((CharValue) value).getValue());
+            case NULL -> writeString(((NullValue) value).value);
+            default -> throw new IllegalStateException("Value of type " + expression.getType() + " cannot be cached");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableCall(VariableCallExpression expression) {
+        writeByte(VARIABLE_CALL);
+        writeInt(expression.getSymbol());
+        writePosition(expression.getLine(), expression.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(VariableExpression expression) {
+        throw new IllegalStateException("Variable expressions only exist at runtime");
+    }
+
+    @Override
+    public Void visitBlock(BlockStatement statement) {
+        writeByte(BLOCK);
+        writeInt(statement.getStatements().size());
+        for (Statement child : statement.getStatements()) {
+            writeStatement(child);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFuncCallStatement(FuncCallStatement statement) {
+        writeByte(FUNC_CALL_STATEMENT);
+        writeExpression(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        Function function = statement.getFunction();
+        writeByte(FUNCTION_DECLARATION);
+        writeInt(statement.getSymbol());
+        writeInt(function.getArgs().size());
+        int i = 0;
+        for (Map.Entry<String, TokenType> arg : function.getArgs().entrySet()) {
+            writeInt(function.getArgSymbols()[i++]);
+            writeType(arg.getValue());
+        }
+        writeType(function.getType());
+        writeStatement(function.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitIfElse(IfElseStatement statement) {
+        writeByte(IF_ELSE);
+        writeExpression(statement.getCondition());
+        writeStatement(statement.getIfStatement());
+        writeStatement(statement.getElseStatement());
+        return null;
+    }
+
+    @Override
+    public Void visitIncrementDecrement(IncrementDecrementStatement statement) {
+        writeByte(INCREMENT_DECREMENT);
+        writeInt(statement.getSymbol());
+        writeType(statement.getIncrement());
+        writePosition(statement.getLine(), statement.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(ReturnStatement statement) {
+        writeByte(RETURN);
+        writeExpression(statement.getExpression());
+        writePosition(statement.getLine(), statement.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitShow(ShowStatement statement) {
+        writeByte(SHOW);
+        writeExpressions(statement.getExpressions());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableAssignment(VariableAssignmentStatement statement) {
+        writeByte(VARIABLE_ASSIGNMENT);
+        writeInt(statement.getSymbol());
+        writeExpression(statement.getExpression());
+        writePosition(statement.getLine(), statement.getPos());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableDeclaration(VariableDeclarationStatement statement) {
+        writeByte(VARIABLE_DECLARATION);
+        writeInt(statement.getSymbol());
+        writeType(statement.getType());
+        writeExpression(statement.getExpression());
+        writeByte(statement.isFinal() ? 1 : 0);
+        writePosition(statement.getLine(), statement.getPos());
+        return null;
+    }
+}
@@ -0,0 +1,84 @@
+package studio.karllang.karl.closure;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.parser.ast.expressions.UnexpectedResultException;
+import studio.karllang.karl.parser.ast.values.NullValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionManager;
+
+import static studio.karllang.karl.closure.Closures.ArgumentClosure;
+
+// Call of a function bound when compiling, valid while the functions of its file are unchanged. Once they changed,
+// the call is evaluated by its node, which looks the function up again.
+final class Call {
+    private static final Value VOID = new NullValue("null_void");
+
+    private final FuncCallExpression node;
+    private final Function function;
+    private final FunctionManager.File file;
+    private final int version;
+    private final int frameSize;
+    private final ArgumentClosure[] args;
+    private final ClosureEngine.Body body;
+
+    Call(FuncCallExpression node, Function function, FunctionManager.File file, ArgumentClosure[] args, ClosureEngine.Body body) {
+        this.node = node;
+        this.function = function;
+        this.file = file;
+        this.version = file.getVersion();
+        this.frameSize = function.getBody().getFrameSize();
+        this.args = args;
+        this.body = body;
+    }
+
+    // Frame of the call once run, to release once its result is read, null when the binding is stale
+    private Frame invoke(Frame frame) {
+        if (FunctionManager.getCurrentFile() != file || file.getVersion() != version) return null;
+        Frame callee = frame.push(frameSize);
+        for (ArgumentClosure arg : args) {
+            arg.store(frame, callee);
+        }
+        body.run(callee);
+        function.checkReturn(callee, node.getFileName(), node.getLine(), node.getPos());
+        return callee;
+    }
+
+    Value eval(Frame frame) {
+        Frame callee = invoke(frame);
+        if (callee == null) return node.eval(frame);
+        Value result = callee.getReturnValue();
+        callee.release();
+        return function.getType() == TokenType.VOID ? VOID : result;
+    }
+
+    int evalInt(Frame frame) {
+        Frame callee = invoke(frame);
+        if (callee == null) return node.evalInt(frame);
+        if (callee.getReturnTag() == Frame.INT) {
+            int result = callee.getReturnInt();
+            callee.release();
+            return result;
+        }
+        throw unexpected(callee);
+    }
+
+    boolean evalBoolean(Frame frame) {
+        Frame callee = invoke(frame);
+        if (callee == null) return node.evalBoolean(frame);
+        if (callee.getReturnTag() == Frame.BOOL) {
+            boolean result = callee.getReturnBoolean();
+            callee.release();
+            return result;
+        }
+        throw unexpected(callee);
+    }
+
+    private UnexpectedResultException unexpected(Frame callee) {
+        Value result = function.getType() == TokenType.VOID ? VOID : callee.getReturnValue();
+        callee.release();
+        return new UnexpectedResultException(result);
+    }
+}
@@ -0,0 +1,665 @@
+package studio.karllang.karl.closure;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.ForbiddenNames;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.List;
+import java.util.function.BinaryOperator;
+
+import static studio.karllang.karl.closure.Closures.*;
+
+// Compiles the statements of a function body or of a file to closures. The types of the locals are known from their
+// declarations and those of the expressions from their operands: ints, floats and bools, null when not known. Int
+// and bool expressions are compiled to closures computing them unboxed, which take the generic operation of their
+// node when a value leaves these types. The nodes without operands to compile run themselves.
+final class ClosureCompiler {
+    private final ClosureEngine engine;
+    private final FunctionManager.File file = FunctionManager.getCurrentFile();
+    // Types of the locals declared so far in the frame being compiled
+    private TokenType[] slotTypes;
+
+    private ClosureCompiler(ClosureEngine engine, TokenType[] slotTypes) {
+        this.engine = engine;
+        this.slotTypes = slotTypes;
+    }
+
+    static StatementClosure[] compileFile(ClosureEngine engine, List<Statement> statements) {
+        return new ClosureCompiler(engine, new TokenType[0]).statements(statements);
+    }
+
+    // Body of a function, run in the frame of the call holding the arguments
+    static StatementClosure compileBody(ClosureEngine engine, Function function) {
+        TokenType[] slotTypes = new TokenType[function.getBody().getFrameSize()];
+        TokenType[] argTypes = function.getArgTypes();
+        for (int i = 0; i < argTypes.length; i++) {
+            slotTypes[i] = primitive(argTypes[i]);
+        }
+        return sequence(new ClosureCompiler(engine, slotTypes).statements(function.getBody().getStatements()));
+    }
+
+    private StatementClosure[] statements(List<Statement> statements) {
+        StatementClosure[] closures = new StatementClosure[statements.size()];
+        for (int i = 0; i < closures.length; i++) {
+            closures[i] = statement(statements.get(i));
+        }
+        return closures;
+    }
+
+    // Statements run up to the one returning
+    private static StatementClosure sequence(StatementClosure[] statements) {
+        if (statements.length == 1) return statements[0];
+        return frame -> {
+            for (StatementClosure statement : statements) {
+                statement.run(frame);
+                if (frame.isReturning()) return;
+            }
+        };
+    }
+
+    private static TokenType primitive(TokenType type) {
+        return type == TokenType.INT || type == TokenType.FLOAT || type == TokenType.BOOL ? type : null;
+    }
+
+    // Static type of an expression, null when not known
+    private TokenType typeOf(Expression expression) {
+        if (expression instanceof ValueExpression value) {
+            Value constant = value.getValue();
+            if (constant instanceof IntValue) return TokenType.INT;
+            if (constant instanceof FloatValue) return TokenType.FLOAT;
+            if (constant instanceof BooleanValue) return TokenType.BOOL;
+        } else if (expression instanceof VariableCallExpression variable) {
+            return variable.getDepth() == VariableManager.LOCAL ? slotTypes[variable.getIndex()] : null;
+        } else if (expression instanceof BinaryExpression binary) {
+            // Results out of the range of int or inexact are floats, taken on the generic path
+            if (isArithmetic(binary.getOperator()) && typeOf(binary.getLeft()) == TokenType.INT && typeOf(binary.getRight()) == TokenType.INT) {
+                return TokenType.INT;
+            }
+        } else if (expression instanceof LogicalExpression) {
+            return TokenType.BOOL;
+        } else if (expression instanceof UnaryExpression unary) {
+            return switch (unary.getOperator()) {
+                case MINUS -> TokenType.INT;
+                case EXCLAMATION -> TokenType.BOOL;
+                default -> null;
+            };
+        } else if (expression instanceof FuncCallExpression call) {
+            Function function = target(call);
+            if (function != null && (function.getType() == TokenType.INT || function.getType() == TokenType.BOOL)) {
+                return function.getType();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isArithmetic(TokenType operator) {
+        return switch (operator) {
+            case PLUS, MINUS, MULTIPLY, DIVIDE, MODULO -> true;
+            default -> false;
+        };
+    }
+
+    // Function a call is bound to, null when it is left to the node: unknown when compiling or of another arity
+    private Function target(FuncCallExpression call) {
+        Function function = file.getFunction(call.getSymbol());
+        return function != null && function.getArgTypes().length == call.getArgs().size() ? function : null;
+    }
+
+    private boolean isIntLocal(Expression expression) {
+        return expression instanceof VariableCallExpression && typeOf(expression) == TokenType.INT;
+    }
+
+    private static boolean isIntLiteral(Expression expression) {
+        return expression instanceof ValueExpression value && value.getValue() instanceof IntValue;
+    }
+
+    private static int expectInt(Value value) {
+        if (value instanceof IntValue) return value.toInt();
+        throw new UnexpectedResultException(value);
+    }
+
+    private static boolean expectBoolean(Value value) {
+        if (value instanceof BooleanValue bool) return bool.toBoolean();
+        throw new UnexpectedResultException(value);
+    }
+
+    private static Value boxInt(IntClosure closure, Frame frame) {
+        try {
+            return new IntValue(closure.eval(frame));
+        } catch (UnexpectedResultException e) {
+            return e.getResult();
+        }
+    }
+
+    private static Value boxBool(BoolClosure closure, Frame frame) {
+        try {
+            return new BooleanValue(closure.eval(frame));
+        } catch (UnexpectedResultException e) {
+            return e.getResult();
+        }
+    }
+
+    // Both int operands packed in a long, the left one in the high bits. When one is not an int, throws an
+    // UnexpectedResultException holding the result of the generic operation, which the int operations still
+    // return when it is an int.
+    private static long intOperands(IntClosure left, IntClosure right, BinaryOperator<Value> generic, Frame frame) {
+        int a;
+        try {
+            a = left.eval(frame);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(generic.apply(e.getResult(), boxInt(right, frame)));
+        }
+        try {
+            return (long) a << 32 | (right.eval(frame) & 0xFFFFFFFFL);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(generic.apply(new IntValue(a), e.getResult()));
+        }
+    }
+
+    // Both bool operands as the bits 2 and 1
+    private static int boolOperands(BoolClosure left, BoolClosure right, BinaryOperator<Value> generic, Frame frame) {
+        boolean a;
+        try {
+            a = left.eval(frame);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(generic.apply(e.getResult(), boxBool(right, frame)));
+        }
+        try {
+            return (a ? 2 : 0) | (right.eval(frame) ? 1 : 0);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(generic.apply(new BooleanValue(a), e.getResult()));
+        }
+    }
+
+    // Int result of an operation, the generic one when it is out of the range of int, which may still be an int
+    private static int fit(long result, BinaryExpression node, int a, int b) {
+        if (result != (int) result) return expectInt(node.evalGeneric(new IntValue(a), new IntValue(b)));
+        return (int) result;
+    }
+
+    private static int divide(BinaryExpression node, int a, int b) {
+        if (b == 0 || a % b != 0) return expectInt(node.evalGeneric(new IntValue(a), new IntValue(b)));
+        return fit((long) a / b, node, a, b);
+    }
+
+    private static int modulo(BinaryExpression node, int a, int b) {
+        if (b == 0) return expectInt(node.evalGeneric(new IntValue(a), new IntValue(b)));
+        return a % b;
+    }
+
+    private ValueClosure value(Expression expression) {
+        TokenType type = typeOf(expression);
+        if (expression instanceof ValueExpression constant) {
+            Value value = constant.getValue();
+            return frame -> value;
+        } else if (expression instanceof VariableCallExpression variable && type != null) {
+            int slot = variable.getIndex();
+            return frame -> frame.get(slot);
+        } else if (type == TokenType.INT) {
+            IntClosure closure = intValue(expression);
+            return frame -> boxInt(closure, frame);
+        } else if (type == TokenType.BOOL) {
+            BoolClosure closure = bool(expression);
+            return frame -> boxBool(closure, frame);
+        } else if (expression instanceof BinaryExpression binary) {
+            ValueClosure left = value(binary.getLeft());
+            ValueClosure right = value(binary.getRight());
+            return frame -> binary.evalGeneric(left.eval(frame), right.eval(frame));
+        } else if (expression instanceof FuncCallExpression call && target(call) != null) {
+            Call compiled = call(call);
+            return compiled::eval;
+        }
+        return expression::eval;
+    }
+
+    private IntClosure intValue(Expression expression) {
+        if (isIntLiteral(expression)) {
+            int value = ((ValueExpression) expression).getValue().toInt();
+            return frame -> value;
+        } else if (isIntLocal(expression)) {
+            int slot = ((VariableCallExpression) expression).getIndex();
+            return frame -> frame.getInt(slot);
+        } else if (expression instanceof BinaryExpression binary && typeOf(binary) == TokenType.INT) {
+            return arithmetic(binary);
+        } else if (expression instanceof UnaryExpression unary && unary.getOperator() == TokenType.MINUS) {
+            IntClosure operand = intValue(unary.getExpression());
+            return frame -> {
+                try {
+                    return -operand.eval(frame);
+                } catch (UnexpectedResultException e) {
+                    return -e.getResult().toInt();
+                }
+            };
+        } else if (expression instanceof FuncCallExpression call && typeOf(call) == TokenType.INT) {
+            Call compiled = call(call);
+            return compiled::evalInt;
+        }
+        ValueClosure value = value(expression);
+        return frame -> expectInt(value.eval(frame));
+    }
+
+    private IntClosure arithmetic(BinaryExpression node) {
+        // A local and an int literal, the most common operands, are read in place
+        if (isIntLocal(node.getLeft()) && isIntLiteral(node.getRight())) {
+            int slot = ((VariableCallExpression) node.getLeft()).getIndex();
+            int b = ((ValueExpression) node.getRight()).getValue().toInt();
+            return switch (node.getOperator()) {
+                case PLUS -> frame -> {
+                    int a = frame.getInt(slot);
+                    return fit((long) a + b, node, a, b);
+                };
+                case MINUS -> frame -> {
+                    int a = frame.getInt(slot);
+                    return fit((long) a - b, node, a, b);
+                };
+                case MULTIPLY -> frame -> {
+                    int a = frame.getInt(slot);
+                    return fit((long) a * b, node, a, b);
+                };
+                case DIVIDE -> frame -> divide(node, frame.getInt(slot), b);
+                default -> frame -> modulo(node, frame.getInt(slot), b);
+            };
+        }
+
+        IntClosure left = intValue(node.getLeft());
+        IntClosure right = intValue(node.getRight());
+        BinaryOperator<Value> generic = node::evalGeneric;
+        return switch (node.getOperator()) {
+            case PLUS -> frame -> {
+                long operands;
+                try {
+                    operands = intOperands(left, right, generic, frame);
+                } catch (UnexpectedResultException e) {
+                    return expectInt(e.getResult());
+                }
+                int a = (int) (operands >> 32), b = (int) operands;
+                return fit((long) a + b, node, a, b);
+            };
+            case MINUS -> frame -> {
+                long operands;
+                try {
+                    operands = intOperands(left, right, generic, frame);
+                } catch (UnexpectedResultException e) {
+                    return expectInt(e.getResult());
+                }
+                int a = (int) (operands >> 32), b = (int) operands;
+                return fit((long) a - b, node, a, b);
+            };
+            case MULTIPLY -> frame -> {
+                long operands;
+                try {
+                    operands = intOperands(left, right, generic, frame);
+                } catch (UnexpectedResultException e) {
+                    return expectInt(e.getResult());
+                }
+                int a = (int) (operands >> 32), b = (int) operands;
+                return fit((long) a * b, node, a, b);
+            };
+            case DIVIDE -> frame -> {
+                long operands;
+                try {
+                    operands = intOperands(left, right, generic, frame);
+                } catch (UnexpectedResultException e) {
+                    return expectInt(e.getResult());
+                }
+                return divide(node, (int) (operands >> 32), (int) operands);
+            };
+            default -> frame -> {
+                long operands;
+                try {
+                    operands = intOperands(left, right, generic, frame);
+                } catch (UnexpectedResultException e) {
+                    return expectInt(e.getResult());
+                }
+                return modulo(node, (int) (operands >> 32), (int) operands);
+            };
+        };
+    }
+
+    private BoolClosure bool(Expression expression) {
+        if (expression instanceof ValueExpression constant && constant.getValue() instanceof BooleanValue value) {
+            boolean result = value.toBoolean();
+            return frame -> result;
+        } else if (expression instanceof VariableCallExpression variable && typeOf(variable) == TokenType.BOOL) {
+            int slot = variable.getIndex();
+            return frame -> frame.getBoolean(slot);
+        } else if (expression instanceof LogicalExpression logical) {
+            return logical(logical);
+        } else if (expression instanceof UnaryExpression unary && unary.getOperator() == TokenType.EXCLAMATION) {
+            BoolClosure operand = truth(unary.getExpression());
+            return frame -> !operand.eval(frame);
+        } else if (expression instanceof FuncCallExpression call && typeOf(call) == TokenType.BOOL) {
+            Call compiled = call(call);
+            return compiled::evalBoolean;
+        }
+        ValueClosure value = value(expression);
+        return frame -> expectBoolean(value.eval(frame));
+    }
+
+    // Whether a value is true, the values other than bools being true when they read as true
+    private BoolClosure truth(Expression expression) {
+        if (typeOf(expression) == TokenType.BOOL) {
+            BoolClosure closure = bool(expression);
+            return frame -> {
+                try {
+                    return closure.eval(frame);
+                } catch (UnexpectedResultException e) {
+                    return Boolean.parseBoolean(e.getResult().toString());
+                }
+            };
+        }
+        ValueClosure value = value(expression);
+        return frame -> Boolean.parseBoolean(value.eval(frame).toString());
+    }
+
+    private BoolClosure logical(LogicalExpression node) {
+        TokenType operator = node.getOperator();
+        if (operator == null) {
+            return truth(node.getLeft());
+        } else if (node.getRight() == null && operator == TokenType.EXCLAMATION) {
+            BoolClosure operand = truth(node.getLeft());
+            return frame -> !operand.eval(frame);
+        } else if (node.getRight() == null) {
+            return frame -> expectBoolean(node.eval(frame));
+        }
+
+        TokenType left = typeOf(node.getLeft());
+        TokenType right = typeOf(node.getRight());
+        if (left == TokenType.INT && right == TokenType.INT && operator != TokenType.AND && operator != TokenType.OR) {
+            return comparison(node);
+        } else if (left == TokenType.BOOL && right == TokenType.BOOL && operator != TokenType.LESS && operator != TokenType.LESS_EQUAL
+                && operator != TokenType.GREATER && operator != TokenType.GREATER_EQUAL) {
+            BoolClosure a = bool(node.getLeft());
+            BoolClosure b = bool(node.getRight());
+            BinaryOperator<Value> generic = node::evalGeneric;
+            // Both operands are evaluated, as by the tree
+            return switch (operator) {
+                case AND -> frame -> boolOperands(a, b, generic, frame) == 3;
+                case OR -> frame -> boolOperands(a, b, generic, frame) != 0;
+                case EQUALEQUAL -> frame -> {
+                    int operands = boolOperands(a, b, generic, frame);
+                    return operands == 0 || operands == 3;
+                };
+                default -> frame -> {
+                    int operands = boolOperands(a, b, generic, frame);
+                    return operands == 1 || operands == 2;
+                };
+            };
+        }
+
+        ValueClosure a = value(node.getLeft());
+        ValueClosure b = value(node.getRight());
+        return frame -> expectBoolean(node.evalGeneric(a.eval(frame), b.eval(frame)));
+    }
+
+    private BoolClosure comparison(LogicalExpression node) {
+        if (isIntLocal(node.getLeft()) && isIntLiteral(node.getRight())) {
+            int slot = ((VariableCallExpression) node.getLeft()).getIndex();
+            int b = ((ValueExpression) node.getRight()).getValue().toInt();
+            return switch (node.getOperator()) {
+                case LESS -> frame -> frame.getInt(slot) < b;
+                case LESS_EQUAL -> frame -> frame.getInt(slot) <= b;
+                case GREATER -> frame -> frame.getInt(slot) > b;
+                case GREATER_EQUAL -> frame -> frame.getInt(slot) >= b;
+                case EQUALEQUAL -> frame -> frame.getInt(slot) == b;
+                default -> frame -> frame.getInt(slot) != b;
+            };
+        }
+
+        IntClosure left = intValue(node.getLeft());
+        IntClosure right = intValue(node.getRight());
+        BinaryOperator<Value> generic = node::evalGeneric;
+        return switch (node.getOperator()) {
+            case LESS -> frame -> {
+                long operands = intOperands(left, right, generic, frame);
+                return (int) (operands >> 32) < (int) operands;
+            };
+            case LESS_EQUAL -> frame -> {
+                long operands = intOperands(left, right, generic, frame);
+                return (int) (operands >> 32) <= (int) operands;
+            };
+            case GREATER -> frame -> {
+                long operands = intOperands(left, right, generic, frame);
+                return (int) (operands >> 32) > (int) operands;
+            };
+            case GREATER_EQUAL -> frame -> {
+                long operands = intOperands(left, right, generic, frame);
+                return (int) (operands >> 32) >= (int) operands;
+            };
+            case EQUALEQUAL -> frame -> {
+                long operands = intOperands(left, right, generic, frame);
+                return (int) (operands >> 32) == (int) operands;
+            };
+            default -> frame -> {
+                long operands = intOperands(left, right, generic, frame);
+                return (int) (operands >> 32) != (int) operands;
+            };
+        };
+    }
+
+    // Call bound to the function known when compiling, its arguments stored unboxed for the parameters of
+    // primitive types
+    private Call call(FuncCallExpression node) {
+        Function function = target(node);
+        TokenType[] types = function.getArgTypes();
+        ArgumentClosure[] args = new ArgumentClosure[types.length];
+        for (int i = 0; i < types.length; i++) {
+            int index = i;
+            Expression arg = node.getArgs().get(i);
+            switch (types[i]) {
+                case INT -> {
+                    IntClosure closure = intValue(arg);
+                    args[i] = (frame, callee) -> {
+                        try {
+                            callee.setInt(index, closure.eval(frame));
+                        } catch (UnexpectedResultException e) {
+                            callee.set(index, node.checkArgument(function, index, e.getResult()));
+                        }
+                    };
+                }
+                case BOOL -> {
+                    BoolClosure closure = bool(arg);
+                    args[i] = (frame, callee) -> {
+                        try {
+                            callee.setBoolean(index, closure.eval(frame));
+                        } catch (UnexpectedResultException e) {
+                            callee.set(index, node.checkArgument(function, index, e.getResult()));
+                        }
+                    };
+                }
+                default -> {
+                    ValueClosure closure = value(arg);
+                    args[i] = (frame, callee) -> callee.set(index, node.checkArgument(function, index, closure.eval(frame)));
+                }
+            }
+        }
+        return new Call(node, function, file, args, engine.body(function));
+    }
+
+    private StatementClosure statement(Statement statement) {
+        if (statement instanceof BlockStatement block) {
+            return block(block);
+        } else if (statement instanceof IfElseStatement ifElse) {
+            return ifElse(ifElse);
+        } else if (statement instanceof ReturnStatement returnStatement) {
+            return returnStatement(returnStatement.getExpression());
+        } else if (statement instanceof VariableDeclarationStatement declaration) {
+            return declaration(declaration);
+        } else if (statement instanceof VariableAssignmentStatement assignment) {
+            return assignment(assignment);
+        } else if (statement instanceof IncrementDecrementStatement increment) {
+            return increment(increment);
+        } else if (statement instanceof FuncCallStatement call) {
+            ValueClosure closure = value(call.getExpression());
+            return closure::eval;
+        } else if (statement instanceof ShowStatement show) {
+            ValueClosure[] parts = show.getExpressions().stream().map(this::value).toArray(ValueClosure[]::new);
+            return frame -> {
+                StringBuilder str = new StringBuilder();
+                for (ValueClosure part : parts) {
+                    str.append(part.eval(frame).toString());
+                }
+                System.out.println(str);
+            };
+        } else if (statement instanceof FunctionDeclarationStatement) {
+            return frame -> {
+            };
+        }
+        return statement::eval;
+    }
+
+    // Nested blocks forget their locals when left, top-level blocks run in a frame of their own
+    private StatementClosure block(BlockStatement block) {
+        if (block.ownsFrame()) {
+            TokenType[] enclosing = slotTypes;
+            slotTypes = new TokenType[block.getFrameSize()];
+            StatementClosure body = sequence(statements(block.getStatements()));
+            slotTypes = enclosing;
+            int size = block.getFrameSize();
+            return frame -> {
+                Frame inner = frame.push(size);
+                body.run(inner);
+                inner.release();
+            };
+        }
+
+        StatementClosure body = sequence(statements(block.getStatements()));
+        int first = block.getFirstSlot();
+        int count = block.getSlotCount();
+        if (count == 0) return body;
+        return frame -> {
+            body.run(frame);
+            frame.clear(first, count);
+        };
+    }
+
+    private StatementClosure ifElse(IfElseStatement statement) {
+        BoolClosure condition = truth(statement.getCondition());
+        StatementClosure then = statement(statement.getIfStatement());
+        if (statement.getElseStatement() == null) {
+            return frame -> {
+                if (condition.eval(frame)) then.run(frame);
+            };
+        }
+        StatementClosure otherwise = statement(statement.getElseStatement());
+        return frame -> {
+            if (condition.eval(frame)) {
+                then.run(frame);
+            } else {
+                otherwise.run(frame);
+            }
+        };
+    }
+
+    private StatementClosure returnStatement(Expression expression) {
+        TokenType type = typeOf(expression);
+        if (type == TokenType.INT) {
+            IntClosure closure = intValue(expression);
+            return frame -> {
+                try {
+                    frame.returnInt(closure.eval(frame));
+                } catch (UnexpectedResultException e) {
+                    frame.returnWith(e.getResult());
+                }
+            };
+        } else if (type == TokenType.BOOL) {
+            BoolClosure closure = bool(expression);
+            return frame -> {
+                try {
+                    frame.returnBoolean(closure.eval(frame));
+                } catch (UnexpectedResultException e) {
+                    frame.returnWith(e.getResult());
+                }
+            };
+        }
+        ValueClosure closure = value(expression);
+        return frame -> frame.returnWith(closure.eval(frame));
+    }
+
+    // Locals of ints and bools are stored unboxed, the other declarations and the values of another type taking the
+    // generic path of the node. Whether the name is forbidden is checked once.
+    private StatementClosure declaration(VariableDeclarationStatement node) {
+        Expression expression = node.getExpression();
+        StatementClosure closure;
+        if (ForbiddenNames.isForbiddenName(node.getName())) {
+            closure = node::eval;
+        } else if (node.getDepth() == VariableManager.LOCAL && node.getType() == TokenType.INT) {
+            IntClosure value = intValue(expression);
+            int slot = node.getIndex();
+            closure = frame -> {
+                node.checkNotDeclared(frame);
+                try {
+                    frame.setInt(slot, value.eval(frame));
+                } catch (UnexpectedResultException e) {
+                    node.declare(frame, e.getResult());
+                }
+            };
+        } else if (node.getDepth() == VariableManager.LOCAL && node.getType() == TokenType.BOOL) {
+            BoolClosure value = bool(expression);
+            int slot = node.getIndex();
+            closure = frame -> {
+                node.checkNotDeclared(frame);
+                try {
+                    frame.setBoolean(slot, value.eval(frame));
+                } catch (UnexpectedResultException e) {
+                    node.declare(frame, e.getResult());
+                }
+            };
+        } else {
+            ValueClosure value = value(expression);
+            closure = frame -> {
+                node.checkNotDeclared(frame);
+                node.declare(frame, value.eval(frame));
+            };
+        }
+        if (node.getDepth() == VariableManager.LOCAL) {
+            slotTypes[node.getIndex()] = primitive(node.getType());
+        }
+        return closure;
+    }
+
+    private StatementClosure assignment(VariableAssignmentStatement node) {
+        Expression expression = node.getExpression();
+        TokenType type = node.getDepth() == VariableManager.LOCAL && !node.isFinal() ? slotTypes[node.getIndex()] : null;
+        int slot = node.getIndex();
+        if (type == TokenType.INT) {
+            IntClosure value = intValue(expression);
+            return frame -> {
+                try {
+                    frame.setInt(slot, value.eval(frame));
+                } catch (UnexpectedResultException e) {
+                    node.assign(frame, e.getResult());
+                }
+            };
+        } else if (type == TokenType.BOOL) {
+            BoolClosure value = bool(expression);
+            return frame -> {
+                try {
+                    frame.setBoolean(slot, value.eval(frame));
+                } catch (UnexpectedResultException e) {
+                    node.assign(frame, e.getResult());
+                }
+            };
+        }
+        ValueClosure value = value(expression);
+        return frame -> node.assign(frame, value.eval(frame));
+    }
+
+    private StatementClosure increment(IncrementDecrementStatement node) {
+        if (node.getDepth() == VariableManager.LOCAL && !node.isFinal() && slotTypes[node.getIndex()] == TokenType.INT) {
+            int slot = node.getIndex();
+            int delta = node.getIncrement() == TokenType.PLUS ? 1 : -1;
+            return frame -> frame.setInt(slot, frame.getInt(slot) + delta);
+        }
+        return node::eval;
+    }
+}
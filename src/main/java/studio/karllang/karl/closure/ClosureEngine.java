@@ -0,0 +1,52 @@
+package studio.karllang.karl.closure;
+
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static studio.karllang.karl.closure.Closures.StatementClosure;
+
+/**
+ * Runs the trees of a file compiled to closures, as an alternative to evaluating them. Each node is compiled once to
+ * a lambda specialized to what is known of it then: its operator, the types of its operands and the function it
+ * calls, so that running it takes none of these decisions again. Functions are compiled when first called. An
+ * engine belongs to the thread running it.
+ */
+public final class ClosureEngine {
+    private final IdentityHashMap<Function, Body> bodies = new IdentityHashMap<>();
+
+    // Body of a function, compiled when first run
+    static final class Body {
+        private final ClosureEngine engine;
+        private final Function function;
+        private StatementClosure code;
+
+        private Body(ClosureEngine engine, Function function) {
+            this.engine = engine;
+            this.function = function;
+        }
+
+        void run(Frame frame) {
+            StatementClosure code = this.code;
+            if (code == null) {
+                code = ClosureCompiler.compileBody(engine, function);
+                this.code = code;
+            }
+            code.run(frame);
+        }
+    }
+
+    public void run(List<Statement> statements) {
+        Frame frame = new Frame(0);
+        for (StatementClosure statement : ClosureCompiler.compileFile(this, statements)) {
+            statement.run(frame);
+        }
+    }
+
+    Body body(Function function) {
+        return bodies.computeIfAbsent(function, key -> new Body(this, key));
+    }
+}
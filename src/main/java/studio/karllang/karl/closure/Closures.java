@@ -0,0 +1,32 @@
+package studio.karllang.karl.closure;
+
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
+
+// Shapes of the closures the nodes are compiled to. The closures of the expressions expected to be ints or bools
+// compute them unboxed, and throw an UnexpectedResultException holding the value when it has another type.
+final class Closures {
+    interface StatementClosure {
+        void run(Frame frame);
+    }
+
+    interface ValueClosure {
+        Value eval(Frame frame);
+    }
+
+    interface IntClosure {
+        int eval(Frame frame);
+    }
+
+    interface BoolClosure {
+        boolean eval(Frame frame);
+    }
+
+    // Evaluates an argument in the frame of the caller and stores it in the frame of the call
+    interface ArgumentClosure {
+        void store(Frame frame, Frame callee);
+    }
+
+    private Closures() {
+    }
+}
@@ -1,6 +1,8 @@
 package studio.karllang.karl.errors;
 
 import studio.karllang.karl.std.Colors;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -24,19 +26,27 @@ public class Error {
         print();
     }
 
+    // One report at a time, the files of a project are parsed on several threads and the first error exits
     public void print() {
-        String fileName = path.substring(path.lastIndexOf("/") + 1);
-        System.err.println(Colors.RED + "-- " + errorName.toUpperCase() + " ------------------------------------------------ " + fileName + Colors.RESET + "\n");
-        System.err.println(Colors.WHITE + "Description: " + "\u001B[0m" + Colors.RED + message + Colors.RESET);
-        System.err.println(Colors.WHITE + "File path: " + "\u001B[0m" + Colors.RED + path + Colors.RESET + "\n");
-        System.err.println(Colors.RED + line + " | " + getLine() + Colors.RESET);
-        System.err.println(Colors.RED + "   " + printIndicator() + Colors.RESET);
-        System.err.println(Colors.RED + "--------------------------------------------------------------------------" + Colors.RESET + "\n");
+        synchronized (Error.class) {
+            String fileName = path.substring(path.lastIndexOf("/") + 1);
+            System.err.println(Colors.RED + "-- " + errorName.toUpperCase() + " ------------------------------------------------ " + fileName + Colors.RESET + "\n");
+            System.err.println(Colors.WHITE + "Description: " + "\u001B[0m" + Colors.RED + message + Colors.RESET);
+            System.err.println(Colors.WHITE + "File path: " + "\u001B[0m" + Colors.RED + path + Colors.RESET + "\n");
+            System.err.println(Colors.RED + line + " | " + getLine() + Colors.RESET);
+            System.err.println(Colors.RED + "   " + printIndicator() + Colors.RESET);
+            System.err.println(Colors.RED + "--------------------------------------------------------------------------" + Colors.RESET + "\n");
 
-        System.exit(0);
+            System.exit(0);
+        }
     }
 
     private String getLine() {
+        Source source = SourceManager.getSource(path);
+        if (source != null) {
+            return source.getLine(line);
+        }
+
         try {
             return Files.readAllLines(Path.of(path)).get(line - 1);
         } catch (IOException e) {
@@ -69,6 +79,11 @@ public class Error {
     }
 
     private int getPosition(int givePos) {
+        Source source = SourceManager.getSource(path);
+        if (source != null) {
+            return source.getColumn(line, givePos);
+        }
+
         try {
             String[] lines = Files.readAllLines(Path.of(path)).subList(0, line - 1).toArray(new String[0]);
             int pos = Arrays.stream(lines).mapToInt(String::length).sum();
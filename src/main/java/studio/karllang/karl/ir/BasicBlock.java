@@ -0,0 +1,146 @@
+package studio.karllang.karl.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Basic block of the IR: its phis, then the instructions running in sequence, then the exit leaving it. A block
+ * branching has successors of a single predecessor, so that the phis of a block take their values on edges
+ * leaving their predecessor unconditionally.
+ */
+public final class BasicBlock {
+    public enum Exit {
+        // Goes on to the single successor
+        JUMP,
+        // Goes on to the first successor when the value holds, to the second otherwise
+        BRANCH,
+        // Returns the value
+        RETURN,
+        // Gives up on the call, the end of a function reached without a return statement
+        GIVE_UP
+    }
+
+    private final int id;
+    private final ArrayList<Instruction> instructions = new ArrayList<>();
+    private final ArrayList<BasicBlock> predecessors = new ArrayList<>();
+    private Exit exit;
+    private Instruction value;
+    private BasicBlock[] successors = new BasicBlock[0];
+    // Position in reverse postorder, and immediate dominator, null for the entry
+    private int index;
+    private BasicBlock dominator;
+
+    BasicBlock(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    void add(Instruction instruction) {
+        instruction.setBlock(this);
+        if (instruction.getOpcode() != Opcode.PHI) {
+            instructions.add(instruction);
+            return;
+        }
+        int phis = 0;
+        while (phis < instructions.size() && instructions.get(phis).getOpcode() == Opcode.PHI) {
+            phis++;
+        }
+        instructions.add(phis, instruction);
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    public Exit getExit() {
+        return exit;
+    }
+
+    // Condition of a branch, or value returned
+    public Instruction getValue() {
+        return value;
+    }
+
+    void setValue(Instruction value) {
+        this.value = value;
+    }
+
+    public BasicBlock[] getSuccessors() {
+        return successors;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    public BasicBlock getDominator() {
+        return dominator;
+    }
+
+    void setDominator(BasicBlock dominator) {
+        this.dominator = dominator;
+    }
+
+    // Whether this block runs on every path to the other one
+    public boolean dominates(BasicBlock block) {
+        while (block != null && block != this) {
+            block = block.dominator;
+        }
+        return block == this;
+    }
+
+    void jump(BasicBlock target) {
+        exit(Exit.JUMP, null, target);
+    }
+
+    void branch(Instruction condition, BasicBlock then, BasicBlock otherwise) {
+        exit(Exit.BRANCH, condition, then, otherwise);
+    }
+
+    void ret(Instruction value) {
+        exit(Exit.RETURN, value);
+    }
+
+    void giveUp() {
+        exit(Exit.GIVE_UP, null);
+    }
+
+    private void exit(Exit exit, Instruction value, BasicBlock... successors) {
+        for (BasicBlock successor : this.successors) {
+            successor.removePredecessor(this);
+        }
+        this.exit = exit;
+        this.value = value;
+        this.successors = successors;
+        for (BasicBlock successor : successors) {
+            successor.predecessors.add(this);
+        }
+    }
+
+    // Drops the edge from a predecessor, with the values its phis take on it
+    void removePredecessor(BasicBlock predecessor) {
+        int index = predecessors.indexOf(predecessor);
+        if (index == -1) return;
+        predecessors.remove(index);
+        for (Instruction instruction : instructions) {
+            if (instruction.getOpcode() != Opcode.PHI) break;
+            instruction.removeOperand(index);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "b" + id;
+    }
+}
@@ -0,0 +1,42 @@
+package studio.karllang.karl.ir;
+
+import studio.karllang.karl.optimizer.Statistics;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+/**
+ * Dead code elimination. The value of a local being an instruction of its own once lowered, a local assigned and
+ * not read again leaves an instruction nothing uses: these are removed, unless they may give up on the call.
+ */
+final class DeadCodeElimination {
+    private DeadCodeElimination() {
+    }
+
+    static void run(IrFunction ir, Statistics statistics) {
+        // Values used by the exits of the blocks, by the instructions giving up and by the values used
+        HashSet<Instruction> used = new HashSet<>();
+        ArrayDeque<Instruction> pending = new ArrayDeque<>();
+        for (BasicBlock block : ir.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (instruction.canGiveUp() || instruction.getOpcode() == Opcode.PARAM) pending.add(instruction);
+            }
+            if (block.getValue() != null) pending.add(block.getValue());
+        }
+        while (!pending.isEmpty()) {
+            Instruction instruction = pending.poll();
+            if (!used.add(instruction)) continue;
+            for (Instruction operand : instruction.getOperands()) {
+                pending.add(operand);
+            }
+        }
+
+        for (BasicBlock block : ir.getBlocks()) {
+            block.getInstructions().removeIf(instruction -> {
+                if (used.contains(instruction)) return false;
+                statistics.count("values removed");
+                return true;
+            });
+        }
+    }
+}
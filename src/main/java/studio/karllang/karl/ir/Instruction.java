@@ -0,0 +1,104 @@
+package studio.karllang.karl.ir;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.std.Function;
+
+/**
+ * Instruction of the IR, defining the value it computes once, ints and bools alike. The operands of a phi are the
+ * values it takes coming from each predecessor of its block, in their order.
+ */
+public final class Instruction {
+    private final int id;
+    private final Opcode opcode;
+    private final TokenType type;
+    // Value of a constant, index of a parameter
+    private final int constant;
+    private final Function callee;
+    private Instruction[] operands;
+    private BasicBlock block;
+    // Whether the operation gives up on the values compiled code does not compute as the interpreter does: out of
+    // the range of int for ADD, SUB and MUL, on a zero divisor for MOD, and on an inexact division for DIV
+    private boolean checked;
+
+    Instruction(int id, Opcode opcode, TokenType type, int constant, Function callee, Instruction... operands) {
+        this.id = id;
+        this.opcode = opcode;
+        this.type = type;
+        this.constant = constant;
+        this.callee = callee;
+        this.operands = operands;
+        this.checked = switch (opcode) {
+            case ADD, SUB, MUL, DIV, MOD -> true;
+            default -> false;
+        };
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    public int getConstant() {
+        return constant;
+    }
+
+    public Function getCallee() {
+        return callee;
+    }
+
+    public Instruction[] getOperands() {
+        return operands;
+    }
+
+    public Instruction getOperand(int index) {
+        return operands[index];
+    }
+
+    public void setOperand(int index, Instruction operand) {
+        operands[index] = operand;
+    }
+
+    void removeOperand(int index) {
+        Instruction[] removed = new Instruction[operands.length - 1];
+        System.arraycopy(operands, 0, removed, 0, index);
+        System.arraycopy(operands, index + 1, removed, index, removed.length - index);
+        operands = removed;
+    }
+
+    public BasicBlock getBlock() {
+        return block;
+    }
+
+    void setBlock(BasicBlock block) {
+        this.block = block;
+    }
+
+    public boolean isChecked() {
+        return checked;
+    }
+
+    public void setChecked(boolean checked) {
+        this.checked = checked;
+    }
+
+    public boolean isConstant() {
+        return opcode == Opcode.CONST;
+    }
+
+    // Whether running the instruction may give up on the call, so that it stays even when its value is unused
+    public boolean canGiveUp() {
+        return checked || opcode == Opcode.CALL;
+    }
+
+    @Override
+    public String toString() {
+        return "v" + id;
+    }
+}
@@ -0,0 +1,188 @@
+package studio.karllang.karl.ir;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.std.Function;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Body of a function lowered to SSA form: basic blocks in reverse postorder, the entry first and each block after
+ * its predecessors, Karl having no loops. The parameters are read in the entry.
+ */
+public final class IrFunction {
+    private final Function function;
+    private ArrayList<BasicBlock> blocks = new ArrayList<>();
+    private int instructionCount;
+    private int blockCount;
+
+    IrFunction(Function function) {
+        this.function = function;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    // Bound on the ids of the instructions
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
+    BasicBlock newBlock() {
+        BasicBlock block = new BasicBlock(blockCount++);
+        blocks.add(block);
+        return block;
+    }
+
+    Instruction newInstruction(Opcode opcode, TokenType type, int constant, Function callee, Instruction... operands) {
+        return new Instruction(instructionCount++, opcode, type, constant, callee, operands);
+    }
+
+    // Instruction added at the end of a block, before its exit
+    Instruction add(BasicBlock block, Opcode opcode, TokenType type, Instruction... operands) {
+        Instruction instruction = newInstruction(opcode, type, 0, null, operands);
+        block.add(instruction);
+        return instruction;
+    }
+
+    /**
+     * Orders the blocks in reverse postorder from the entry and computes their dominators. The blocks no longer
+     * reached are dropped, with the values the phis of the blocks they jumped to took from them, and the phis
+     * left with a single value replaced by it.
+     */
+    void order() {
+        BasicBlock entry = blocks.get(0);
+        ArrayList<BasicBlock> postorder = new ArrayList<>(blocks.size());
+        HashSet<BasicBlock> visited = new HashSet<>();
+        visit(entry, visited, postorder);
+        for (BasicBlock block : blocks) {
+            if (visited.contains(block)) continue;
+            for (BasicBlock successor : block.getSuccessors()) {
+                if (visited.contains(successor)) successor.removePredecessor(block);
+            }
+        }
+
+        blocks = new ArrayList<>(postorder.size());
+        for (int i = postorder.size() - 1; i >= 0; i--) {
+            BasicBlock block = postorder.get(i);
+            block.setIndex(blocks.size());
+            blocks.add(block);
+        }
+
+        // The predecessors of a block come before it, so a single pass finds the dominators
+        entry.setDominator(null);
+        for (int i = 1; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            BasicBlock dominator = null;
+            for (BasicBlock predecessor : block.getPredecessors()) {
+                dominator = dominator == null ? predecessor : intersect(dominator, predecessor);
+            }
+            block.setDominator(dominator);
+        }
+
+        HashMap<Instruction, Instruction> single = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            block.getInstructions().removeIf(instruction -> {
+                if (instruction.getOpcode() != Opcode.PHI || instruction.getOperands().length != 1) return false;
+                single.put(instruction, instruction.getOperand(0));
+                return true;
+            });
+        }
+        replace(single);
+    }
+
+    // Successors visited last to first, so that a branch is followed by its first successor
+    private static void visit(BasicBlock block, HashSet<BasicBlock> visited, ArrayList<BasicBlock> postorder) {
+        if (!visited.add(block)) return;
+        BasicBlock[] successors = block.getSuccessors();
+        for (int i = successors.length - 1; i >= 0; i--) {
+            visit(successors[i], visited, postorder);
+        }
+        postorder.add(block);
+    }
+
+    private static BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (a.getIndex() > b.getIndex()) a = a.getDominator();
+            while (b.getIndex() > a.getIndex()) b = b.getDominator();
+        }
+        return a;
+    }
+
+    // Replaces the uses of the values by those they map to, the instructions defining them being already removed
+    void replace(Map<Instruction, Instruction> replacements) {
+        if (replacements.isEmpty()) return;
+        for (BasicBlock block : blocks) {
+            for (Instruction instruction : block.getInstructions()) {
+                Instruction[] operands = instruction.getOperands();
+                for (int i = 0; i < operands.length; i++) {
+                    operands[i] = resolve(replacements, operands[i]);
+                }
+            }
+            if (block.getValue() != null) block.setValue(resolve(replacements, block.getValue()));
+        }
+    }
+
+    private static Instruction resolve(Map<Instruction, Instruction> replacements, Instruction value) {
+        Instruction replacement = replacements.get(value);
+        while (replacement != null) {
+            value = replacement;
+            replacement = replacements.get(value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("func ").append(function.getName()).append('(');
+        for (int i = 0; i < function.getArgTypes().length; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(function.getArgTypes()[i].toString().toLowerCase());
+        }
+        builder.append("): ").append(function.getType().toString().toLowerCase()).append('\n');
+        for (BasicBlock block : blocks) {
+            builder.append(block).append(':');
+            if (!block.getPredecessors().isEmpty()) builder.append(" <- ").append(join(block.getPredecessors()));
+            builder.append('\n');
+            for (Instruction instruction : block.getInstructions()) {
+                builder.append("    ").append(instruction).append(" = ").append(instruction.getOpcode());
+                switch (instruction.getOpcode()) {
+                    case CONST -> builder.append(' ').append(instruction.getType() == TokenType.BOOL ? String.valueOf(instruction.getConstant() == 1) : String.valueOf(instruction.getConstant()));
+                    case PARAM -> builder.append(' ').append(instruction.getConstant());
+                    case CALL -> builder.append(' ').append(instruction.getCallee().getName());
+                    default -> {
+                    }
+                }
+                if (instruction.getOperands().length > 0) builder.append(' ').append(join(List.of(instruction.getOperands())));
+                if (instruction.isChecked()) builder.append(" checked");
+                builder.append(" : ").append(instruction.getType().toString().toLowerCase()).append('\n');
+            }
+            builder.append("    ").append(block.getExit().toString().toLowerCase().replace('_', ' '));
+            if (block.getValue() != null) builder.append(' ').append(block.getValue());
+            if (block.getSuccessors().length > 0) builder.append(' ').append(join(List.of(block.getSuccessors())));
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String join(List<?> values) {
+        StringBuilder builder = new StringBuilder();
+        for (Object value : values) {
+            if (!builder.isEmpty()) builder.append(", ");
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
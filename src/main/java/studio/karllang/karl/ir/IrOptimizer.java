@@ -0,0 +1,47 @@
+package studio.karllang.karl.ir;
+
+import studio.karllang.karl.optimizer.Statistics;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.statements.FunctionDeclarationStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.Function;
+
+import java.util.HashMap;
+
+/**
+ * Passes run on the IR of a function once lowered: value numbering, strength reduction on the ranges of the
+ * values, value numbering again on the instructions it added, then dead code elimination.
+ */
+public final class IrOptimizer {
+    private IrOptimizer() {
+    }
+
+    // Optimizes the IR in place, returning what the passes changed
+    public static Statistics optimize(IrFunction ir) {
+        Statistics statistics = new Statistics();
+        ValueNumbering.run(ir, statistics);
+        StrengthReduction.run(ir, statistics);
+        ValueNumbering.run(ir, statistics);
+        DeadCodeElimination.run(ir, statistics);
+        return statistics;
+    }
+
+    // Prints the optimized IR of the functions of the unit that lower, under --debug
+    public static void print(CompilationUnit unit) {
+        HashMap<Integer, Function> functions = new HashMap<>();
+        for (Statement statement : unit.getStatements()) {
+            if (statement instanceof FunctionDeclarationStatement declaration) {
+                functions.put(declaration.getSymbol(), declaration.getFunction());
+            }
+        }
+        for (Statement statement : unit.getStatements()) {
+            if (!(statement instanceof FunctionDeclarationStatement declaration)) continue;
+            IrFunction ir = Lowering.lower(declaration.getFunction(), functions::get, symbol -> false);
+            if (ir == null) continue;
+            long start = System.nanoTime();
+            Statistics statistics = optimize(ir);
+            long end = System.nanoTime();
+            System.out.printf("[ir] %s: %s: %s (%.2f ms)%n%s", unit.getFileName(), declaration.getFunction().getName(), statistics, (end - start) / 1e6, ir);
+        }
+    }
+}
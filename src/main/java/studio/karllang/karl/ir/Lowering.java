@@ -0,0 +1,328 @@
+package studio.karllang.karl.ir;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.ForbiddenNames;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Lowers the body of a function to SSA form, the value of each local being tracked through its statements and
+ * merged by phis where the branches of a condition join. Only the functions compiled code handles are lowered:
+ * ints and bools, no globals and no effects, the declarations the interpreter reports as errors left to it.
+ */
+public final class Lowering implements AstVisitor<Instruction> {
+    // Thrown on the constructs the IR does not hold, the function not being lowered
+    private static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Unsupported UNSUPPORTED = new Unsupported();
+
+    private final IrFunction ir;
+    private final IntFunction<Function> functions;
+    private final IntPredicate declaredGlobals;
+    // Block the statements are lowered to, null once they returned on every path, and the value of each slot there
+    private BasicBlock current;
+    private Instruction[] slots;
+
+    private Lowering(Function function, IntFunction<Function> functions, IntPredicate declaredGlobals) {
+        this.ir = new IrFunction(function);
+        this.functions = functions;
+        this.declaredGlobals = declaredGlobals;
+    }
+
+    /**
+     * IR of the body of a function, or null when it cannot be lowered. The functions called are found by symbol in
+     * {@code functions}, and the locals cannot have the name of the globals matched by {@code declaredGlobals}.
+     */
+    public static IrFunction lower(Function function, IntFunction<Function> functions, IntPredicate declaredGlobals) {
+        if (!isPrimitive(function)) return null;
+        Lowering lowering = new Lowering(function, functions, declaredGlobals);
+        try {
+            lowering.body();
+        } catch (Unsupported e) {
+            return null;
+        }
+        lowering.ir.order();
+        return lowering.ir;
+    }
+
+    private static boolean isPrimitive(TokenType type) {
+        return type == TokenType.INT || type == TokenType.BOOL;
+    }
+
+    // Whether the function takes and returns ints and bools only
+    private static boolean isPrimitive(Function function) {
+        if (!isPrimitive(function.getType())) return false;
+        for (TokenType type : function.getArgTypes()) {
+            if (!isPrimitive(type)) return false;
+        }
+        return true;
+    }
+
+    private void body() {
+        Function function = ir.getFunction();
+        current = ir.newBlock();
+        slots = new Instruction[Math.max(function.getBody().getFrameSize(), function.getArgTypes().length)];
+        for (int i = 0; i < function.getArgTypes().length; i++) {
+            slots[i] = ir.newInstruction(Opcode.PARAM, function.getArgTypes()[i], i, null);
+            current.add(slots[i]);
+        }
+        statements(function.getBody());
+
+        // The interpreter reports the missing return statement
+        if (current != null) current.giveUp();
+    }
+
+    // Statements of a block up to the first one returning on every path, the following ones never running
+    private void statements(BlockStatement block) {
+        for (Statement statement : block.getStatements()) {
+            statement.accept(this);
+            if (current == null) return;
+        }
+    }
+
+    private Instruction expect(TokenType type, Expression expression) {
+        if (expression == null) throw UNSUPPORTED;
+        Instruction value = expression.accept(this);
+        if (value.getType() != type) throw UNSUPPORTED;
+        return value;
+    }
+
+    private Instruction constant(TokenType type, int value) {
+        Instruction constant = ir.newInstruction(Opcode.CONST, type, value, null);
+        current.add(constant);
+        return constant;
+    }
+
+    private Instruction local(int depth, int index) {
+        if (depth != VariableManager.LOCAL || slots[index] == null) throw UNSUPPORTED;
+        return slots[index];
+    }
+
+    private static Opcode comparison(TokenType operator) {
+        return switch (operator) {
+            case LESS -> Opcode.LT;
+            case LESS_EQUAL -> Opcode.LE;
+            case GREATER -> Opcode.GT;
+            case GREATER_EQUAL -> Opcode.GE;
+            case EQUALEQUAL -> Opcode.EQ;
+            case NOT_EQUAL -> Opcode.NE;
+            default -> null;
+        };
+    }
+
+    @Override
+    public Instruction visitBinary(BinaryExpression expression) {
+        Instruction left = expect(TokenType.INT, expression.getLeft());
+        Instruction right = expect(TokenType.INT, expression.getRight());
+        Opcode opcode = switch (expression.getOperator()) {
+            case PLUS -> Opcode.ADD;
+            case MINUS -> Opcode.SUB;
+            case MULTIPLY -> Opcode.MUL;
+            case DIVIDE -> Opcode.DIV;
+            case MODULO -> Opcode.MOD;
+            default -> throw UNSUPPORTED;
+        };
+        return ir.add(current, opcode, TokenType.INT, left, right);
+    }
+
+    @Override
+    public Instruction visitFuncCall(FuncCallExpression expression) {
+        Function callee = functions.apply(expression.getSymbol());
+        if (callee == null || callee.getArgTypes().length != expression.getArgs().size() || !isPrimitive(callee)) throw UNSUPPORTED;
+        Instruction[] args = new Instruction[expression.getArgs().size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = expect(callee.getArgTypes()[i], expression.getArgs().get(i));
+        }
+        Instruction call = ir.newInstruction(Opcode.CALL, callee.getType(), 0, callee, args);
+        current.add(call);
+        return call;
+    }
+
+    @Override
+    public Instruction visitLogical(LogicalExpression expression) {
+        TokenType operator = expression.getOperator();
+        // Truth of a bool
+        if (operator == null) {
+            return expect(TokenType.BOOL, expression.getLeft());
+        }
+        if (expression.getRight() == null) {
+            if (operator != TokenType.EXCLAMATION) throw UNSUPPORTED;
+            return ir.add(current, Opcode.NOT, TokenType.BOOL, expect(TokenType.BOOL, expression.getLeft()));
+        }
+
+        // Both operands are evaluated, as by the interpreter
+        if (operator == TokenType.AND || operator == TokenType.OR) {
+            Instruction left = expect(TokenType.BOOL, expression.getLeft());
+            Instruction right = expect(TokenType.BOOL, expression.getRight());
+            return ir.add(current, operator == TokenType.AND ? Opcode.AND : Opcode.OR, TokenType.BOOL, left, right);
+        }
+        Opcode opcode = comparison(operator);
+        if (opcode == null) throw UNSUPPORTED;
+
+        // Bools are only compared for equality
+        Instruction left = expression.getLeft().accept(this);
+        Instruction right = expect(left.getType(), expression.getRight());
+        if (left.getType() != TokenType.INT && opcode != Opcode.EQ && opcode != Opcode.NE) throw UNSUPPORTED;
+        return ir.add(current, opcode, TokenType.BOOL, left, right);
+    }
+
+    @Override
+    public Instruction visitUnary(UnaryExpression expression) {
+        return switch (expression.getOperator()) {
+            case MINUS -> ir.add(current, Opcode.NEG, TokenType.INT, expect(TokenType.INT, expression.getExpression()));
+            case EXCLAMATION -> ir.add(current, Opcode.NOT, TokenType.BOOL, expect(TokenType.BOOL, expression.getExpression()));
+            default -> throw UNSUPPORTED;
+        };
+    }
+
+    @Override
+    public Instruction visitValue(ValueExpression expression) {
+        Value value = expression.getValue();
+        if (value instanceof IntValue) {
+            return constant(TokenType.INT, value.toInt());
+        } else if (value instanceof BooleanValue bool) {
+            return constant(TokenType.BOOL, bool.toBoolean() ? 1 : 0);
+        }
+        throw UNSUPPORTED;
+    }
+
+    @Override
+    public Instruction visitVariableCall(VariableCallExpression expression) {
+        return local(expression.getDepth(), expression.getIndex());
+    }
+
+    @Override
+    public Instruction visitVariable(VariableExpression expression) {
+        throw UNSUPPORTED;
+    }
+
+    // The slots of a block are left unset after it
+    @Override
+    public Instruction visitBlock(BlockStatement statement) {
+        if (statement.ownsFrame()) throw UNSUPPORTED;
+        statements(statement);
+        if (current != null) {
+            for (int i = statement.getFirstSlot(); i < statement.getFirstSlot() + statement.getSlotCount(); i++) {
+                slots[i] = null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Instruction visitFuncCallStatement(FuncCallStatement statement) {
+        statement.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Instruction visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        return null;
+    }
+
+    // Each branch lowers to a block of its own, the else one being empty when there is no else statement, and
+    // the slots of the branches still running are merged where they join
+    @Override
+    public Instruction visitIfElse(IfElseStatement statement) {
+        Instruction condition = expect(TokenType.BOOL, statement.getCondition());
+        BasicBlock then = ir.newBlock();
+        BasicBlock otherwise = ir.newBlock();
+        current.branch(condition, then, otherwise);
+        Instruction[] entrySlots = slots.clone();
+
+        current = then;
+        statement.getIfStatement().accept(this);
+        BasicBlock thenEnd = current;
+        Instruction[] thenSlots = slots;
+
+        current = otherwise;
+        slots = entrySlots;
+        if (statement.getElseStatement() != null) {
+            statement.getElseStatement().accept(this);
+        }
+        BasicBlock elseEnd = current;
+        Instruction[] elseSlots = slots;
+
+        if (thenEnd == null || elseEnd == null) {
+            current = thenEnd == null ? elseEnd : thenEnd;
+            slots = thenEnd == null ? elseSlots : thenSlots;
+            return null;
+        }
+        current = ir.newBlock();
+        thenEnd.jump(current);
+        elseEnd.jump(current);
+        slots = new Instruction[thenSlots.length];
+        for (int i = 0; i < slots.length; i++) {
+            if (thenSlots[i] == null || elseSlots[i] == null) continue;
+            if (thenSlots[i] == elseSlots[i]) {
+                slots[i] = thenSlots[i];
+            } else {
+                if (thenSlots[i].getType() != elseSlots[i].getType()) throw UNSUPPORTED;
+                slots[i] = ir.newInstruction(Opcode.PHI, thenSlots[i].getType(), 0, null, thenSlots[i], elseSlots[i]);
+                current.add(slots[i]);
+            }
+        }
+        return null;
+    }
+
+    // Increments wrap around as in the interpreter
+    @Override
+    public Instruction visitIncrementDecrement(IncrementDecrementStatement statement) {
+        Instruction value = local(statement.getDepth(), statement.getIndex());
+        if (statement.isFinal() || value.getType() != TokenType.INT) throw UNSUPPORTED;
+        Instruction one = constant(TokenType.INT, 1);
+        Instruction result = ir.add(current, statement.getIncrement() == TokenType.PLUS ? Opcode.ADD : Opcode.SUB, TokenType.INT, value, one);
+        result.setChecked(false);
+        slots[statement.getIndex()] = result;
+        return null;
+    }
+
+    @Override
+    public Instruction visitReturn(ReturnStatement statement) {
+        current.ret(expect(ir.getFunction().getType(), statement.getExpression()));
+        current = null;
+        return null;
+    }
+
+    @Override
+    public Instruction visitShow(ShowStatement statement) {
+        throw UNSUPPORTED;
+    }
+
+    @Override
+    public Instruction visitVariableAssignment(VariableAssignmentStatement statement) {
+        Instruction value = local(statement.getDepth(), statement.getIndex());
+        if (statement.isFinal()) throw UNSUPPORTED;
+        slots[statement.getIndex()] = expect(value.getType(), statement.getExpression());
+        return null;
+    }
+
+    // Declarations the interpreter reports as errors are left to it: forbidden names, names of the enclosing
+    // locals, and of the globals declared
+    @Override
+    public Instruction visitVariableDeclaration(VariableDeclarationStatement statement) {
+        TokenType type = statement.getType();
+        if (statement.getDepth() != VariableManager.LOCAL || !isPrimitive(type) || ForbiddenNames.isForbiddenName(statement.getName())
+                || statement.getShadowedDepth() != VariableManager.GLOBAL
+                || declaredGlobals.test(statement.getSymbol())) {
+            throw UNSUPPORTED;
+        }
+        slots[statement.getIndex()] = expect(type, statement.getExpression());
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package studio.karllang.karl.ir;
+
+/**
+ * Operations of the instructions of the IR. Bools are held as the ints 0 and 1, so that AND, OR and NOT serve both
+ * the bools and the masks of the ints.
+ */
+public enum Opcode {
+    CONST, PARAM, PHI,
+    ADD, SUB, MUL, DIV, MOD, NEG, SHL,
+    AND, OR, NOT,
+    LT, LE, GT, GE, EQ, NE,
+    CALL;
+
+    public boolean isComparison() {
+        return switch (this) {
+            case LT, LE, GT, GE, EQ, NE -> true;
+            default -> false;
+        };
+    }
+
+    // Comparison holding when this one does not
+    public Opcode negate() {
+        return switch (this) {
+            case LT -> GE;
+            case LE -> GT;
+            case GT -> LE;
+            case GE -> LT;
+            case EQ -> NE;
+            case NE -> EQ;
+            default -> throw new IllegalStateException(this + " is not a comparison");
+        };
+    }
+
+    // Comparison holding with the operands swapped
+    public Opcode swap() {
+        return switch (this) {
+            case LT -> GT;
+            case LE -> GE;
+            case GT -> LT;
+            case GE -> LE;
+            case EQ, NE -> this;
+            default -> throw new IllegalStateException(this + " is not a comparison");
+        };
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,277 @@
+package studio.karllang.karl.ir;
+
+import studio.karllang.karl.optimizer.Statistics;
+import studio.karllang.karl.parser.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Range analysis, and the strength reduction it allows. The range of each value is bounded by the operation
+ * computing it, and narrowed in the blocks a condition on it branched to. The operations whose result stays in
+ * the range of int, and the remainders by a divisor other than zero, no longer check it; a product by a power of
+ * two becomes a shift, and the remainder of a non-negative int by one a mask. The comparisons the ranges decide
+ * become constants, as do the branches on them, the blocks no longer reached being dropped.
+ */
+final class StrengthReduction {
+    private static final long[] INTS = {Integer.MIN_VALUE, Integer.MAX_VALUE};
+    private static final long[] BOOLS = {0, 1};
+
+    private final IrFunction ir;
+    private final Statistics statistics;
+    // Range of each value where it is defined, and the ranges narrowed in each block
+    private final HashMap<Instruction, long[]> ranges = new HashMap<>();
+    private final HashMap<BasicBlock, HashMap<Instruction, long[]>> narrowed = new HashMap<>();
+    private final HashMap<Instruction, Instruction> replacements = new HashMap<>();
+    private boolean folded;
+
+    private StrengthReduction(IrFunction ir, Statistics statistics) {
+        this.ir = ir;
+        this.statistics = statistics;
+    }
+
+    static void run(IrFunction ir, Statistics statistics) {
+        StrengthReduction reduction = new StrengthReduction(ir, statistics);
+        for (BasicBlock block : ir.getBlocks()) {
+            if (block == ir.getEntry() || !block.getPredecessors().isEmpty()) reduction.visit(block);
+        }
+        ir.replace(reduction.replacements);
+        if (reduction.folded) ir.order();
+    }
+
+    private Instruction resolve(Instruction value) {
+        Instruction replacement = replacements.get(value);
+        while (replacement != null) {
+            value = replacement;
+            replacement = replacements.get(value);
+        }
+        return value;
+    }
+
+    private long[] range(Instruction value, HashMap<Instruction, long[]> narrowed) {
+        long[] range = narrowed.get(value);
+        if (range == null) range = ranges.get(value);
+        if (range == null) range = value.getType() == TokenType.BOOL ? BOOLS : INTS;
+        return range;
+    }
+
+    private void visit(BasicBlock block) {
+        // What holds in the dominator holds here, with the condition of the branch leading here
+        HashMap<Instruction, long[]> narrowed = new HashMap<>(this.narrowed.getOrDefault(block.getDominator(), new HashMap<>()));
+        if (block.getPredecessors().size() == 1 && block.getPredecessors().get(0).getExit() == BasicBlock.Exit.BRANCH) {
+            BasicBlock predecessor = block.getPredecessors().get(0);
+            narrow(narrowed, predecessor.getValue(), predecessor.getSuccessors()[0] == block);
+        }
+        this.narrowed.put(block, narrowed);
+
+        ArrayList<Instruction> kept = new ArrayList<>(block.getInstructions().size());
+        for (Instruction instruction : block.getInstructions()) {
+            Instruction[] operands = instruction.getOperands();
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = resolve(operands[i]);
+            }
+            Instruction reduced = reduce(instruction, narrowed, kept);
+            if (reduced != null) {
+                replacements.put(instruction, reduced);
+            } else {
+                kept.add(instruction);
+                ranges.put(instruction, compute(instruction, narrowed));
+            }
+        }
+        block.getInstructions().clear();
+        block.getInstructions().addAll(kept);
+
+        if (block.getValue() != null) block.setValue(resolve(block.getValue()));
+        if (block.getExit() == BasicBlock.Exit.BRANCH && block.getValue().isConstant()) {
+            block.jump(block.getSuccessors()[block.getValue().getConstant() == 1 ? 0 : 1]);
+            statistics.count("branches folded");
+            folded = true;
+        }
+    }
+
+    // Narrows the ranges of the values a condition compares, where it holds or not
+    private void narrow(HashMap<Instruction, long[]> narrowed, Instruction condition, boolean holds) {
+        if (condition.isConstant()) return;
+        narrowed.put(condition, holds ? new long[]{1, 1} : new long[]{0, 0});
+        Opcode opcode = condition.getOpcode();
+        if (opcode == Opcode.NOT) {
+            narrow(narrowed, condition.getOperand(0), !holds);
+        } else if (opcode == Opcode.AND && holds || opcode == Opcode.OR && !holds) {
+            narrow(narrowed, condition.getOperand(0), holds);
+            narrow(narrowed, condition.getOperand(1), holds);
+        } else if (opcode.isComparison() && condition.getOperand(0).getType() == TokenType.INT) {
+            Opcode comparison = holds ? opcode : opcode.negate();
+            Instruction left = condition.getOperand(0);
+            Instruction right = condition.getOperand(1);
+            long[] leftRange = range(left, narrowed);
+            long[] rightRange = range(right, narrowed);
+            long[] narrowedLeft = narrow(comparison, leftRange, rightRange);
+            long[] narrowedRight = narrow(comparison.swap(), rightRange, leftRange);
+            // An empty range is a branch never taken, left as it is
+            if (narrowedLeft[0] <= narrowedLeft[1] && !left.isConstant()) narrowed.put(left, narrowedLeft);
+            if (narrowedRight[0] <= narrowedRight[1] && !right.isConstant()) narrowed.put(right, narrowedRight);
+        }
+    }
+
+    // Range of the values of a compared to b where the comparison holds
+    private static long[] narrow(Opcode comparison, long[] a, long[] b) {
+        return switch (comparison) {
+            case LT -> new long[]{a[0], Math.min(a[1], b[1] - 1)};
+            case LE -> new long[]{a[0], Math.min(a[1], b[1])};
+            case GT -> new long[]{Math.max(a[0], b[0] + 1), a[1]};
+            case GE -> new long[]{Math.max(a[0], b[0]), a[1]};
+            case EQ -> new long[]{Math.max(a[0], b[0]), Math.min(a[1], b[1])};
+            default -> b[0] != b[1] ? a : new long[]{a[0] == b[0] ? a[0] + 1 : a[0], a[1] == b[0] ? a[1] - 1 : a[1]};
+        };
+    }
+
+    // Whether the comparison always or never holds on the ranges, null when it depends on the values
+    private static Boolean decide(Opcode comparison, long[] a, long[] b) {
+        return switch (comparison) {
+            case LT -> a[1] < b[0] ? Boolean.TRUE : a[0] >= b[1] ? Boolean.FALSE : null;
+            case LE -> a[1] <= b[0] ? Boolean.TRUE : a[0] > b[1] ? Boolean.FALSE : null;
+            case GT -> decide(Opcode.LT, b, a);
+            case GE -> decide(Opcode.LE, b, a);
+            case EQ -> a[0] == a[1] && b[0] == b[1] && a[0] == b[0] ? Boolean.TRUE : a[1] < b[0] || b[1] < a[0] ? Boolean.FALSE : null;
+            default -> {
+                Boolean equal = decide(Opcode.EQ, a, b);
+                yield equal == null ? null : !equal;
+            }
+        };
+    }
+
+    private static boolean fits(long[] range) {
+        return range[0] >= Integer.MIN_VALUE && range[1] <= Integer.MAX_VALUE;
+    }
+
+    private static long[] clamp(long[] range) {
+        return new long[]{Math.max(range[0], Integer.MIN_VALUE), Math.min(range[1], Integer.MAX_VALUE)};
+    }
+
+    // Range of the exact result of an addition, subtraction or product
+    private static long[] arithmetic(Opcode opcode, long[] a, long[] b) {
+        return switch (opcode) {
+            case ADD -> new long[]{a[0] + b[0], a[1] + b[1]};
+            case SUB -> new long[]{a[0] - b[1], a[1] - b[0]};
+            default -> {
+                long p1 = a[0] * b[0], p2 = a[0] * b[1], p3 = a[1] * b[0], p4 = a[1] * b[1];
+                yield new long[]{Math.min(Math.min(p1, p2), Math.min(p3, p4)), Math.max(Math.max(p1, p2), Math.max(p3, p4))};
+            }
+        };
+    }
+
+    private static boolean isPowerOfTwo(Instruction value) {
+        return value.isConstant() && value.getConstant() > 1 && Integer.bitCount(value.getConstant()) == 1;
+    }
+
+    // Instruction added to the block reduced, before the one it replaces
+    private Instruction add(Instruction instruction, BasicBlock block, List<Instruction> kept, HashMap<Instruction, long[]> narrowed) {
+        instruction.setBlock(block);
+        kept.add(instruction);
+        ranges.put(instruction, compute(instruction, narrowed));
+        return instruction;
+    }
+
+    // Instruction replacing this one, null when it is kept, the checks it can skip being removed
+    private Instruction reduce(Instruction instruction, HashMap<Instruction, long[]> narrowed, List<Instruction> kept) {
+        Opcode opcode = instruction.getOpcode();
+        Instruction[] operands = instruction.getOperands();
+        if (opcode.isComparison()) {
+            Boolean decided = decide(opcode, range(operands[0], narrowed), range(operands[1], narrowed));
+            if (decided == null) return null;
+            statistics.count("comparisons decided");
+            return add(ir.newInstruction(Opcode.CONST, TokenType.BOOL, decided ? 1 : 0, null), instruction.getBlock(), kept, narrowed);
+        }
+
+        switch (opcode) {
+            case ADD, SUB, MUL -> {
+                if (instruction.isChecked() && fits(arithmetic(opcode, range(operands[0], narrowed), range(operands[1], narrowed)))) {
+                    instruction.setChecked(false);
+                    statistics.count("checks removed");
+                }
+                if (opcode != Opcode.MUL || instruction.isChecked()) return null;
+                Instruction factor = isPowerOfTwo(operands[1]) ? operands[1] : isPowerOfTwo(operands[0]) ? operands[0] : null;
+                if (factor == null) return null;
+                Instruction shift = add(ir.newInstruction(Opcode.CONST, TokenType.INT, Integer.numberOfTrailingZeros(factor.getConstant()), null), instruction.getBlock(), kept, narrowed);
+                statistics.count("operations reduced");
+                return add(ir.newInstruction(Opcode.SHL, TokenType.INT, 0, null, factor == operands[1] ? operands[0] : operands[1], shift), instruction.getBlock(), kept, narrowed);
+            }
+            case MOD -> {
+                long[] divisor = range(operands[1], narrowed);
+                if (instruction.isChecked() && (divisor[0] > 0 || divisor[1] < 0)) {
+                    instruction.setChecked(false);
+                    statistics.count("checks removed");
+                }
+                if (!isPowerOfTwo(operands[1]) || range(operands[0], narrowed)[0] < 0) return null;
+                Instruction mask = add(ir.newInstruction(Opcode.CONST, TokenType.INT, operands[1].getConstant() - 1, null), instruction.getBlock(), kept, narrowed);
+                statistics.count("operations reduced");
+                return add(ir.newInstruction(Opcode.AND, TokenType.INT, 0, null, operands[0], mask), instruction.getBlock(), kept, narrowed);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    // Range of the values the instruction gives when it does not give up
+    private long[] compute(Instruction instruction, HashMap<Instruction, long[]> narrowed) {
+        Instruction[] operands = instruction.getOperands();
+        long[] a = operands.length > 0 ? range(operands[0], narrowed) : null;
+        long[] b = operands.length > 1 ? range(operands[1], narrowed) : null;
+        switch (instruction.getOpcode()) {
+            case CONST -> {
+                return new long[]{instruction.getConstant(), instruction.getConstant()};
+            }
+            case PHI -> {
+                // Each value as it is where its predecessor leaves
+                List<BasicBlock> predecessors = instruction.getBlock().getPredecessors();
+                long[] range = null;
+                for (int i = 0; i < operands.length; i++) {
+                    long[] operand = range(operands[i], this.narrowed.getOrDefault(predecessors.get(i), narrowed));
+                    range = range == null ? operand : new long[]{Math.min(range[0], operand[0]), Math.max(range[1], operand[1])};
+                }
+                return range;
+            }
+            case ADD, SUB, MUL -> {
+                long[] range = arithmetic(instruction.getOpcode(), a, b);
+                return fits(range) ? range : instruction.isChecked() ? clamp(range) : INTS;
+            }
+            case DIV -> {
+                if (!operands[1].isConstant() || operands[1].getConstant() == 0) return INTS;
+                long c = operands[1].getConstant();
+                return clamp(new long[]{Math.min(a[0] / c, a[1] / c), Math.max(a[0] / c, a[1] / c)});
+            }
+            case MOD -> {
+                // The remainder has the sign of the dividend and is smaller than the divisor
+                long m = Math.max(0, Math.max(Math.abs(b[0]), Math.abs(b[1])) - 1);
+                if (a[0] >= 0) return new long[]{0, Math.min(a[1], m)};
+                if (a[1] <= 0) return new long[]{Math.max(a[0], -m), 0};
+                return new long[]{Math.max(a[0], -m), Math.min(a[1], m)};
+            }
+            case NEG -> {
+                return a[0] == Integer.MIN_VALUE ? INTS : new long[]{-a[1], -a[0]};
+            }
+            case SHL -> {
+                long[] range = {a[0] << b[0], a[1] << b[0]};
+                return b[0] == b[1] && b[0] >= 0 && b[0] < 31 && fits(range) ? range : INTS;
+            }
+            case AND -> {
+                if (a[0] >= 0 && b[0] >= 0) return new long[]{0, Math.min(a[1], b[1])};
+                if (a[0] >= 0 || b[0] >= 0) return new long[]{0, a[0] >= 0 ? a[1] : b[1]};
+                return INTS;
+            }
+            case OR -> {
+                if (a[0] < 0 || b[0] < 0) return INTS;
+                long high = Math.max(a[1], b[1]);
+                return new long[]{Math.max(a[0], b[0]), high == 0 ? 0 : Long.highestOneBit(high) * 2 - 1};
+            }
+            case NOT -> {
+                return new long[]{1 - a[1], 1 - a[0]};
+            }
+            default -> {
+                return range(instruction, narrowed);
+            }
+        }
+    }
+}
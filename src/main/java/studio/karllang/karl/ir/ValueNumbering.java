@@ -0,0 +1,206 @@
+package studio.karllang.karl.ir;
+
+import studio.karllang.karl.optimizer.Statistics;
+import studio.karllang.karl.parser.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Global value numbering: an instruction computing the same operation on the same values as one in a block
+ * dominating it is replaced by that one, calls included, the functions lowered giving the same result for the
+ * same arguments. Operations on constants are folded where they cannot give up, as are the identities of the
+ * operations and the phis merging a single value.
+ */
+final class ValueNumbering {
+    private final IrFunction ir;
+    private final Statistics statistics;
+    // Values by operation, for the blocks dominating the one numbered
+    private final HashMap<String, Instruction> values = new HashMap<>();
+    private final HashMap<Instruction, Instruction> replacements = new HashMap<>();
+    private final HashMap<BasicBlock, ArrayList<BasicBlock>> dominated = new HashMap<>();
+
+    private ValueNumbering(IrFunction ir, Statistics statistics) {
+        this.ir = ir;
+        this.statistics = statistics;
+    }
+
+    static void run(IrFunction ir, Statistics statistics) {
+        ValueNumbering numbering = new ValueNumbering(ir, statistics);
+        // Blocks dominated in reverse postorder, so that the predecessors of a block are numbered before it
+        for (BasicBlock block : ir.getBlocks()) {
+            if (block.getDominator() != null) {
+                numbering.dominated.computeIfAbsent(block.getDominator(), b -> new ArrayList<>()).add(block);
+            }
+        }
+        numbering.visit(ir.getEntry());
+        ir.replace(numbering.replacements);
+    }
+
+    private Instruction resolve(Instruction value) {
+        Instruction replacement = replacements.get(value);
+        while (replacement != null) {
+            value = replacement;
+            replacement = replacements.get(value);
+        }
+        return value;
+    }
+
+    private void visit(BasicBlock block) {
+        ArrayList<String> numbered = new ArrayList<>();
+        ArrayList<Instruction> kept = new ArrayList<>(block.getInstructions().size());
+        for (Instruction instruction : block.getInstructions()) {
+            Instruction[] operands = instruction.getOperands();
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = resolve(operands[i]);
+            }
+
+            Instruction value = simplify(instruction, block, kept, numbered);
+            if (value != null) {
+                replacements.put(instruction, value);
+                statistics.count("values folded");
+                continue;
+            }
+            String key = key(instruction);
+            if (key != null) {
+                Instruction existing = values.get(key);
+                if (existing != null) {
+                    replacements.put(instruction, existing);
+                    statistics.count("values numbered");
+                    continue;
+                }
+                values.put(key, instruction);
+                numbered.add(key);
+            }
+            kept.add(instruction);
+        }
+        block.getInstructions().clear();
+        block.getInstructions().addAll(kept);
+        if (block.getValue() != null) block.setValue(resolve(block.getValue()));
+
+        for (BasicBlock child : dominated.getOrDefault(block, new ArrayList<>())) {
+            visit(child);
+        }
+        for (String key : numbered) {
+            values.remove(key);
+        }
+    }
+
+    private static boolean isCommutative(Opcode opcode) {
+        return switch (opcode) {
+            case ADD, MUL, AND, OR, EQ, NE -> true;
+            default -> false;
+        };
+    }
+
+    // Operation computed by the instruction, null for the parameters
+    private static String key(Instruction instruction) {
+        if (instruction.getOpcode() == Opcode.PARAM) return null;
+        StringBuilder key = new StringBuilder().append(instruction.getOpcode()).append(' ').append(instruction.getType());
+        switch (instruction.getOpcode()) {
+            case CONST -> key.append(' ').append(instruction.getConstant());
+            case CALL -> key.append(' ').append(instruction.getCallee().getName());
+            case PHI -> key.append(' ').append(instruction.getBlock());
+            default -> {
+                if (instruction.isChecked()) key.append(" checked");
+            }
+        }
+        Instruction[] operands = instruction.getOperands();
+        if (operands.length == 2 && isCommutative(instruction.getOpcode()) && operands[0].getId() > operands[1].getId()) {
+            return key.append(' ').append(operands[1].getId()).append(' ').append(operands[0].getId()).toString();
+        }
+        for (Instruction operand : operands) {
+            key.append(' ').append(operand.getId());
+        }
+        return key.toString();
+    }
+
+    // Constant of the block numbered, added to it when no block dominating it holds one
+    private Instruction constant(TokenType type, int value, BasicBlock block, List<Instruction> kept, List<String> numbered) {
+        String key = new StringBuilder().append(Opcode.CONST).append(' ').append(type).append(' ').append(value).toString();
+        Instruction existing = values.get(key);
+        if (existing != null) return existing;
+        Instruction constant = ir.newInstruction(Opcode.CONST, type, value, null);
+        constant.setBlock(block);
+        kept.add(constant);
+        values.put(key, constant);
+        numbered.add(key);
+        return constant;
+    }
+
+    // Value the instruction can be replaced by, null when it is kept
+    private Instruction simplify(Instruction instruction, BasicBlock block, List<Instruction> kept, List<String> numbered) {
+        Opcode opcode = instruction.getOpcode();
+        Instruction[] operands = instruction.getOperands();
+        switch (opcode) {
+            case CONST, PARAM, CALL -> {
+                return null;
+            }
+            case PHI -> {
+                for (Instruction operand : operands) {
+                    if (operand != operands[0]) return null;
+                }
+                return operands[0];
+            }
+            default -> {
+            }
+        }
+
+        boolean constants = true;
+        for (Instruction operand : operands) {
+            constants &= operand.isConstant();
+        }
+        if (constants) {
+            Integer value = fold(opcode, instruction.isChecked(), operands[0].getConstant(), operands.length > 1 ? operands[1].getConstant() : 0);
+            return value == null ? null : constant(instruction.getType(), value, block, kept, numbered);
+        }
+
+        Instruction left = operands[0];
+        Instruction right = operands.length > 1 ? operands[1] : null;
+        return switch (opcode) {
+            case ADD -> isConstant(right, 0) ? left : isConstant(left, 0) ? right : null;
+            case SUB -> isConstant(right, 0) ? left : left == right ? constant(TokenType.INT, 0, block, kept, numbered) : null;
+            case MUL -> isConstant(right, 1) ? left : isConstant(left, 1) ? right : null;
+            case DIV -> isConstant(right, 1) ? left : null;
+            case AND, OR -> left == right ? left : null;
+            case NOT -> left.getOpcode() == Opcode.NOT ? left.getOperand(0) : null;
+            case EQ, LE, GE -> left == right ? constant(TokenType.BOOL, 1, block, kept, numbered) : null;
+            case NE, LT, GT -> left == right ? constant(TokenType.BOOL, 0, block, kept, numbered) : null;
+            default -> null;
+        };
+    }
+
+    private static boolean isConstant(Instruction instruction, int value) {
+        return instruction.isConstant() && instruction.getConstant() == value;
+    }
+
+    // Result of an operation on constants, null when it gives up on them
+    static Integer fold(Opcode opcode, boolean checked, int a, int b) {
+        long result = switch (opcode) {
+            case ADD -> (long) a + b;
+            case SUB -> (long) a - b;
+            case MUL -> (long) a * b;
+            case DIV -> {
+                if (b == 0 || a % b != 0 || (a == Integer.MIN_VALUE && b == -1)) yield Long.MAX_VALUE;
+                yield a / b;
+            }
+            case MOD -> b == 0 ? Long.MAX_VALUE : a % b;
+            case NEG -> -a;
+            case SHL -> a << b;
+            case AND -> a & b;
+            case OR -> a | b;
+            case NOT -> a ^ 1;
+            case LT -> a < b ? 1 : 0;
+            case LE -> a <= b ? 1 : 0;
+            case GT -> a > b ? 1 : 0;
+            case GE -> a >= b ? 1 : 0;
+            case EQ -> a == b ? 1 : 0;
+            case NE -> a != b ? 1 : 0;
+            default -> Long.MAX_VALUE;
+        };
+        if (result == Long.MAX_VALUE) return null;
+        if (result != (int) result && checked) return null;
+        return (int) result;
+    }
+}
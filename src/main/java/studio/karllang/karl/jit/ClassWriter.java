@@ -0,0 +1,358 @@
+package studio.karllang.karl.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static studio.karllang.karl.jit.Bytecodes.*;
+
+// Writes a class file with the few constants and instructions the compiled functions and scripts use. The class
+// files are of version 49, whose code is verified by inferring the types, so no stack map frames are written.
+public final class ClassWriter {
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final HashMap<String, Integer> entries = new HashMap<>();
+    private int poolSize = 1;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+    private int fieldCount;
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private int methodCount;
+
+    public ClassWriter(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Index of a constant, written to the pool the first time it is asked for
+    private int entry(String key, EntryWriter writer) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entries.put(key, poolSize);
+        return poolSize++;
+    }
+
+    public int utf8(String value) {
+        return entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    public int integer(int value) {
+        return entry("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    public int floating(float value) {
+        return entry("F" + Float.floatToRawIntBits(value), out -> {
+            out.writeByte(4);
+            out.writeFloat(value);
+        });
+    }
+
+    public int string(String value) {
+        int utf8 = utf8(value);
+        return entry("S" + value, out -> {
+            out.writeByte(8);
+            out.writeShort(utf8);
+        });
+    }
+
+    public int classRef(String name) {
+        int utf8 = utf8(name);
+        return entry("C" + name, out -> {
+            out.writeByte(7);
+            out.writeShort(utf8);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return entry("N" + name + " " + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return entry(tag + owner + "." + name + " " + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    public void field(int access, String name, String descriptor) {
+        DataOutputStream out = new DataOutputStream(fields);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fieldCount++;
+    }
+
+    public Code method(int access, String name, String descriptor, int maxLocals) {
+        return new Code(access, utf8(name), utf8(descriptor), maxLocals);
+    }
+
+    public byte[] toByteArray() {
+        if (poolSize > 0xFFFF) throw new IllegalStateException("Too many constants in a class");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            // public final super
+            out.writeShort(0x0031);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(fieldCount);
+            fields.writeTo(out);
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Slots taken on the stack by the arguments and the result of a method, the receiver not counted
+    public static int stackEffect(String descriptor) {
+        int effect = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            effect -= c == 'J' || c == 'D' ? 2 : 1;
+            while (descriptor.charAt(i) == '[') i++;
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+        }
+        char result = descriptor.charAt(i + 1);
+        return effect + (result == 'V' ? 0 : result == 'J' || result == 'D' ? 2 : 1);
+    }
+
+    // Position in the code of a method, known once bound, the jumps written before that being patched then
+    public static final class Label {
+        private int position = -1;
+        private final ArrayList<Integer> jumps = new ArrayList<>();
+    }
+
+    // Range of code whose exceptions of a type jump to the handler, with the exception on the stack
+    private record Handler(Label start, Label end, Label handler, int type) {
+    }
+
+    // Code of a method, keeping track of the depth of the stack. Instructions are appended in the order they run,
+    // and the depth after a jump that does not fall through is set back by the compiler.
+    public final class Code {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final int maxLocals;
+        private byte[] code = new byte[256];
+        private int length;
+        private int depth;
+        private int maxDepth;
+        private final ArrayList<Handler> handlers = new ArrayList<>();
+
+        private Code(int access, int name, int descriptor, int maxLocals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = maxLocals;
+        }
+
+        private void u1(int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private void stack(int effect) {
+            depth += effect;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        public void op(int opcode, int stackEffect) {
+            u1(opcode);
+            stack(stackEffect);
+        }
+
+        public void iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                u1(LDC_W);
+                u2(integer(value));
+            }
+            stack(1);
+        }
+
+        public void local(int opcode, int slot) {
+            u1(opcode);
+            u1(slot);
+            stack(opcode == ISTORE || opcode == ASTORE ? -1 : 1);
+        }
+
+        public void fconst(float value) {
+            if (value == 0 && Float.floatToRawIntBits(value) == 0 || value == 1 || value == 2) {
+                u1(FCONST_0 + (int) value);
+            } else {
+                u1(LDC_W);
+                u2(floating(value));
+            }
+            stack(1);
+        }
+
+        public void sconst(String value) {
+            u1(LDC_W);
+            u2(string(value));
+            stack(1);
+        }
+
+        // NEW or CHECKCAST of a class
+        public void type(int opcode, String name) {
+            u1(opcode);
+            u2(classRef(name));
+            stack(opcode == NEW ? 1 : 0);
+        }
+
+        public void iinc(int slot, int delta) {
+            u1(IINC);
+            u1(slot);
+            u1(delta);
+        }
+
+        public void field(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(fieldRef(owner, name, descriptor));
+            stack(opcode == GETSTATIC ? 1 : -1);
+        }
+
+        public void invoke(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(methodRef(owner, name, descriptor));
+            stack(stackEffect(descriptor) - (opcode == INVOKESTATIC ? 0 : 1));
+        }
+
+        public void jump(int opcode, Label label) {
+            label.jumps.add(length);
+            u1(opcode);
+            u2(label.position < 0 ? 0 : label.position - (length - 1));
+            stack(opcode == GOTO ? 0 : opcode == IFEQ || opcode == IFNE || opcode == IFNULL || opcode == IFNONNULL ? -1 : -2);
+        }
+
+        public void bind(Label label) {
+            label.position = length;
+            for (int jump : label.jumps) {
+                int offset = length - jump;
+                code[jump + 1] = (byte) (offset >> 8);
+                code[jump + 2] = (byte) offset;
+            }
+        }
+
+        // Exceptions of the type thrown between start and end jump to the handler, bound with the exception alone
+        // on the stack
+        public void handler(Label start, Label end, Label handler, String type) {
+            handlers.add(new Handler(start, end, handler, classRef(type)));
+        }
+
+        public void setDepth(int depth) {
+            this.depth = depth;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        // Adds the method to the class
+        public void end() {
+            DataOutputStream out = new DataOutputStream(methods);
+            try {
+                out.writeShort(access);
+                out.writeShort(name);
+                out.writeShort(descriptor);
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + length + 8 * handlers.size());
+                out.writeShort(maxDepth);
+                out.writeShort(maxLocals);
+                out.writeInt(length);
+                out.write(code, 0, length);
+                out.writeShort(handlers.size());
+                for (Handler handler : handlers) {
+                    out.writeShort(handler.start().position);
+                    out.writeShort(handler.end().position);
+                    out.writeShort(handler.handler().position);
+                    out.writeShort(handler.type());
+                }
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            methodCount++;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package studio.karllang.karl.jit;
+
+import studio.karllang.karl.std.Frame;
+
+// Implemented by the classes generated for the functions, reading the arguments from the frame of a call and
+// leaving the result in it
+interface CompiledCode {
+    void call(Frame frame);
+}
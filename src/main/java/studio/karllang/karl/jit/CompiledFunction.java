@@ -0,0 +1,30 @@
+package studio.karllang.karl.jit;
+
+import studio.karllang.karl.std.FunctionManager;
+
+/**
+ * Code a hot function was compiled to. The functions it calls are bound when compiling, so the code is only run
+ * while the functions of the file it was compiled in are unchanged.
+ */
+public final class CompiledFunction {
+    // Functions left to the interpreter, that cannot be compiled or whose compiled code gave up
+    static final CompiledFunction INTERPRETED = new CompiledFunction(null, 0, null);
+
+    private final FunctionManager.File file;
+    private final int version;
+    private final CompiledCode code;
+
+    CompiledFunction(FunctionManager.File file, int version, CompiledCode code) {
+        this.file = file;
+        this.version = version;
+        this.code = code;
+    }
+
+    boolean isValid(FunctionManager.File file) {
+        return file == this.file && file.getVersion() == version;
+    }
+
+    CompiledCode getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,25 @@
+package studio.karllang.karl.jit;
+
+// Thrown by compiled code reaching a value it cannot hold as an int or a bool: a result out of the range of int,
+// inexact or divided by zero, or the end of a function without a return statement. The call is run again by the
+// interpreter, or by the generic code of a compiled script, compiled code having no effect but its result.
+public final class Deoptimization extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public static final Deoptimization INSTANCE = new Deoptimization();
+
+    private Deoptimization() {
+        super(null, null, false, false);
+    }
+
+    // Int division of the interpreter, the other divisions leaving the ints
+    public static int divide(int a, int b) {
+        if (b == 0 || a % b != 0 || (a == Integer.MIN_VALUE && b == -1)) throw INSTANCE;
+        return a / b;
+    }
+
+    public static int modulo(int a, int b) {
+        if (b == 0) throw INSTANCE;
+        return a % b;
+    }
+}
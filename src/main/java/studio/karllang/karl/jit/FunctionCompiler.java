@@ -0,0 +1,436 @@
+package studio.karllang.karl.jit;
+
+import studio.karllang.karl.ir.BasicBlock;
+import studio.karllang.karl.ir.Instruction;
+import studio.karllang.karl.ir.IrFunction;
+import studio.karllang.karl.ir.IrOptimizer;
+import studio.karllang.karl.ir.Lowering;
+import studio.karllang.karl.ir.Opcode;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+import static studio.karllang.karl.jit.Bytecodes.*;
+
+// Compiles a function and the functions it calls to the static methods of a class, ints and bools being held in
+// JVM ints and the types of the expressions known when compiling. Functions using other types, globals or having
+// effects are not compiled, so that compiled code has no effect but its result and a call it gives up on can be
+// run again by the interpreter from the start. Each function is lowered to the IR and optimized there, its values
+// being held in the locals of the method by linear scan.
+public final class FunctionCompiler {
+    private static final String PACKAGE = "studio/karllang/karl/jit/";
+    private static final String FRAME = "studio/karllang/karl/std/Frame";
+    private static final String DEOPTIMIZATION = PACKAGE + "Deoptimization";
+    private static final int PUBLIC = 0x0001;
+    private static final int PRIVATE_STATIC = 0x000A;
+    // Jumps are written with 16 bits offsets, and locals with 8 bits indexes
+    private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+    private static final int MAX_LOCALS = 255;
+
+    // Thrown on the constructs compiled code does not handle, the function staying interpreted
+    private static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Unsupported UNSUPPORTED = new Unsupported();
+
+    private final String className;
+    private final FunctionManager.File file;
+    private final ClassWriter writer;
+    // Globals a local cannot be declared over, the interpreter reporting them
+    private final IntPredicate declaredGlobals;
+    private final ArrayDeque<Function> pending = new ArrayDeque<>();
+    private final Set<Function> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Method being compiled, the local of each value by id, -1 for the constants and the comparisons compiled with
+    // the branch on them, and the label of each block
+    private ClassWriter.Code code;
+    private int[] locals;
+    private ClassWriter.Label[] labels;
+
+    private FunctionCompiler(String className, FunctionManager.File file, ClassWriter writer, IntPredicate declaredGlobals) {
+        this.className = className;
+        this.file = file;
+        this.writer = writer;
+        this.declaredGlobals = declaredGlobals;
+    }
+
+    // Compiled code of the function, called from the interpreter, or INTERPRETED when it cannot be compiled
+    static CompiledFunction compile(Function root) {
+        FunctionManager.File file = FunctionManager.getCurrentFile();
+        String className = PACKAGE + "Karl$" + root.getName();
+        FunctionCompiler compiler = new FunctionCompiler(className, file, new ClassWriter(className, "java/lang/Object", PACKAGE + "CompiledCode"),
+                symbol -> VariableManager.getCurrentFile().isDeclared(null, VariableManager.GLOBAL, symbol));
+        try {
+            compiler.entry(root);
+            compiler.methods();
+        } catch (Unsupported e) {
+            return CompiledFunction.INTERPRETED;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(compiler.writer.toByteArray(), true);
+            CompiledCode code = (CompiledCode) lookup.lookupClass().getConstructor().newInstance();
+            return new CompiledFunction(file, file.getVersion(), code);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Code compiled for function " + root.getName() + " is invalid", e);
+        }
+    }
+
+    /**
+     * Compiles to private static methods of the class of a script the functions that can be, named after them, and
+     * returns these functions. A function is compiled when the functions it calls are too. The locals of the
+     * compiled functions cannot have the name of the globals matched by {@code declaredGlobals}.
+     */
+    public static Set<Function> compileMethods(ClassWriter writer, String className, List<Function> functions, IntPredicate declaredGlobals) {
+        FunctionManager.File file = FunctionManager.getCurrentFile();
+        List<Function> compiled = new ArrayList<>();
+        for (Function function : functions) {
+            // Compiled once with the functions it calls to a class left unused, to know whether all of them compile
+            FunctionCompiler trial = new FunctionCompiler(className, file, new ClassWriter(className, "java/lang/Object"), declaredGlobals);
+            try {
+                trial.enqueue(function);
+                trial.methods();
+                compiled.add(function);
+            } catch (Unsupported e) {
+                // Left to the generic code of the script
+            }
+        }
+
+        FunctionCompiler compiler = new FunctionCompiler(className, file, writer, declaredGlobals);
+        Set<Function> methods = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Function function : compiled) {
+            compiler.method(function);
+            methods.add(function);
+        }
+        return methods;
+    }
+
+    private void methods() {
+        while (!pending.isEmpty()) {
+            method(pending.poll());
+        }
+    }
+
+    private static boolean isPrimitive(TokenType type) {
+        return type == TokenType.INT || type == TokenType.BOOL;
+    }
+
+    private static String descriptor(TokenType type) {
+        return type == TokenType.INT ? "I" : "Z";
+    }
+
+    private static String descriptor(Function function) {
+        StringBuilder builder = new StringBuilder("(");
+        for (TokenType type : function.getArgTypes()) {
+            builder.append(descriptor(type));
+        }
+        return builder.append(")").append(descriptor(function.getType())).toString();
+    }
+
+    // Queues the method of a function called, which takes and returns ints and bools only
+    private void enqueue(Function callee) {
+        if (!isPrimitive(callee.getType())) throw UNSUPPORTED;
+        for (TokenType type : callee.getArgTypes()) {
+            if (!isPrimitive(type)) throw UNSUPPORTED;
+        }
+        if (queued.add(callee)) {
+            pending.add(callee);
+        }
+    }
+
+    // Constructor and call method of the class, running the method of the root function on the arguments read
+    // from the frame
+    private void entry(Function root) {
+        enqueue(root);
+        ClassWriter.Code init = writer.method(PUBLIC, "<init>", "()V", 1);
+        init.local(ALOAD, 0);
+        init.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.op(RETURN, 0);
+        init.end();
+
+        ClassWriter.Code call = writer.method(PUBLIC, "call", "(L" + FRAME + ";)V", 2);
+        call.local(ALOAD, 1);
+        TokenType[] types = root.getArgTypes();
+        for (int i = 0; i < types.length; i++) {
+            call.local(ALOAD, 1);
+            call.iconst(i);
+            call.invoke(INVOKEVIRTUAL, FRAME, types[i] == TokenType.INT ? "getInt" : "getBoolean", "(I)" + descriptor(types[i]));
+        }
+        call.invoke(INVOKESTATIC, className, root.getName(), descriptor(root));
+        String result = descriptor(root.getType());
+        call.invoke(INVOKEVIRTUAL, FRAME, root.getType() == TokenType.INT ? "returnInt" : "returnBoolean", "(" + result + ")V");
+        call.op(RETURN, 0);
+        call.end();
+    }
+
+    private void method(Function function) {
+        IrFunction ir = Lowering.lower(function, file::getFunction, declaredGlobals);
+        if (ir == null) throw UNSUPPORTED;
+        IrOptimizer.optimize(ir);
+        for (BasicBlock block : ir.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == Opcode.CALL) enqueue(instruction.getCallee());
+            }
+        }
+
+        int maxLocals = allocate(ir);
+        if (maxLocals > MAX_LOCALS) throw UNSUPPORTED;
+        code = writer.method(PRIVATE_STATIC, function.getName(), descriptor(function), Math.max(1, maxLocals));
+        List<BasicBlock> blocks = ir.getBlocks();
+        labels = new ClassWriter.Label[blocks.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new ClassWriter.Label();
+        }
+        for (BasicBlock block : blocks) {
+            code.bind(labels[block.getIndex()]);
+            for (Instruction instruction : block.getInstructions()) {
+                instruction(instruction);
+            }
+            exit(block, block.getIndex() + 1 < blocks.size() ? blocks.get(block.getIndex() + 1) : null);
+        }
+        if (code.length() > MAX_CODE_LENGTH) throw UNSUPPORTED;
+        code.end();
+    }
+
+    // Comparison used only by the branch ending its block, jumping there on its operands
+    private static boolean isFused(Instruction instruction, int uses) {
+        BasicBlock block = instruction.getBlock();
+        return instruction.getOpcode().isComparison() && uses == 1
+                && block.getExit() == BasicBlock.Exit.BRANCH && block.getValue() == instruction;
+    }
+
+    /**
+     * Assigns the locals of the values by linear scan over the blocks in reverse postorder, and returns the number
+     * of locals. A value lives from its definition to its last use, a phi from the end of its first predecessor,
+     * where it is moved to, and the parameters in the locals they are passed in. Two values living at the same time
+     * are held in different locals.
+     */
+    private int allocate(IrFunction ir) {
+        int count = ir.getInstructionCount();
+        int[] uses = new int[count];
+        for (BasicBlock block : ir.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                for (Instruction operand : instruction.getOperands()) {
+                    uses[operand.getId()]++;
+                }
+            }
+            if (block.getValue() != null) uses[block.getValue().getId()]++;
+        }
+
+        // Positions of the instructions, and of the exit of each block
+        int[] position = new int[count];
+        int[] exits = new int[ir.getBlocks().size()];
+        int next = 0;
+        for (BasicBlock block : ir.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                position[instruction.getId()] = next++;
+            }
+            exits[block.getIndex()] = next++;
+        }
+
+        int[] start = new int[count];
+        int[] end = new int[count];
+        Arrays.fill(end, -2);
+        locals = new int[count];
+        Arrays.fill(locals, -1);
+        ArrayList<Instruction> values = new ArrayList<>();
+        for (BasicBlock block : ir.getBlocks()) {
+            int exit = exits[block.getIndex()];
+            for (Instruction instruction : block.getInstructions()) {
+                Opcode opcode = instruction.getOpcode();
+                // The operands of a fused comparison are read by the branch
+                int used = isFused(instruction, uses[instruction.getId()]) ? exit : position[instruction.getId()];
+                for (int i = 0; i < instruction.getOperands().length; i++) {
+                    Instruction operand = instruction.getOperand(i);
+                    int at = opcode == Opcode.PHI ? exits[block.getPredecessors().get(i).getIndex()] : used;
+                    end[operand.getId()] = Math.max(end[operand.getId()], at);
+                }
+                if (opcode == Opcode.PARAM) {
+                    start[instruction.getId()] = -1;
+                    locals[instruction.getId()] = instruction.getConstant();
+                    values.add(instruction);
+                } else if (opcode == Opcode.PHI) {
+                    int first = Integer.MAX_VALUE;
+                    for (BasicBlock predecessor : block.getPredecessors()) {
+                        first = Math.min(first, exits[predecessor.getIndex()]);
+                    }
+                    start[instruction.getId()] = first;
+                    values.add(instruction);
+                } else if (opcode != Opcode.CONST && uses[instruction.getId()] > 0 && !isFused(instruction, uses[instruction.getId()])) {
+                    start[instruction.getId()] = position[instruction.getId()];
+                    values.add(instruction);
+                }
+            }
+            if (block.getValue() != null) {
+                end[block.getValue().getId()] = Math.max(end[block.getValue().getId()], exit);
+            }
+        }
+
+        values.sort((a, b) -> Integer.compare(start[a.getId()], start[b.getId()]));
+        int parameters = ir.getFunction().getArgTypes().length;
+        int maxLocals = parameters;
+        TreeSet<Integer> free = new TreeSet<>();
+        ArrayList<Instruction> active = new ArrayList<>();
+        for (Instruction value : values) {
+            int id = value.getId();
+            active.removeIf(live -> {
+                if (end[live.getId()] >= start[id]) return false;
+                free.add(locals[live.getId()]);
+                return true;
+            });
+            if (locals[id] == -1) {
+                locals[id] = free.isEmpty() ? maxLocals++ : free.pollFirst();
+            }
+            active.add(value);
+        }
+        return maxLocals;
+    }
+
+    private void load(Instruction value) {
+        if (value.isConstant()) {
+            code.iconst(value.getConstant());
+        } else {
+            code.local(ILOAD, locals[value.getId()]);
+        }
+    }
+
+    private static int jump(Opcode comparison) {
+        return switch (comparison) {
+            case LT -> IF_ICMPLT;
+            case LE -> IF_ICMPLE;
+            case GT -> IF_ICMPGT;
+            case GE -> IF_ICMPGE;
+            case EQ -> IF_ICMPEQ;
+            default -> IF_ICMPNE;
+        };
+    }
+
+    // Conditional jumps come in pairs, each one jumping when the other does not
+    private static int negate(int jump) {
+        return (jump & 1) == 1 ? jump + 1 : jump - 1;
+    }
+
+    // The checked operations throw an ArithmeticException or a Deoptimization on the values the interpreter
+    // leaves the ints for
+    private void instruction(Instruction instruction) {
+        Opcode opcode = instruction.getOpcode();
+        if (opcode == Opcode.CONST || opcode == Opcode.PARAM || opcode == Opcode.PHI) return;
+        int local = locals[instruction.getId()];
+        if (opcode.isComparison() && local == -1) return;
+
+        for (Instruction operand : instruction.getOperands()) {
+            load(operand);
+        }
+        boolean checked = instruction.isChecked();
+        switch (opcode) {
+            case ADD -> op(checked, IADD, "addExact");
+            case SUB -> op(checked, ISUB, "subtractExact");
+            case MUL -> op(checked, IMUL, "multiplyExact");
+            case DIV -> code.invoke(INVOKESTATIC, DEOPTIMIZATION, "divide", "(II)I");
+            case MOD -> {
+                if (checked) {
+                    code.invoke(INVOKESTATIC, DEOPTIMIZATION, "modulo", "(II)I");
+                } else {
+                    code.op(IREM, -1);
+                }
+            }
+            case NEG -> code.op(INEG, 0);
+            case SHL -> code.op(ISHL, -1);
+            case AND -> code.op(IAND, -1);
+            case OR -> code.op(IOR, -1);
+            case NOT -> {
+                code.iconst(1);
+                code.op(IXOR, -1);
+            }
+            case CALL -> {
+                Function callee = instruction.getCallee();
+                code.invoke(INVOKESTATIC, className, callee.getName(), descriptor(callee));
+            }
+            default -> {
+                ClassWriter.Label holds = new ClassWriter.Label();
+                ClassWriter.Label end = new ClassWriter.Label();
+                code.jump(jump(opcode), holds);
+                code.iconst(0);
+                code.jump(GOTO, end);
+                code.setDepth(code.getDepth() - 1);
+                code.bind(holds);
+                code.iconst(1);
+                code.bind(end);
+            }
+        }
+        if (local == -1) {
+            code.op(POP, -1);
+        } else {
+            code.local(ISTORE, local);
+        }
+    }
+
+    private void op(boolean checked, int opcode, String exact) {
+        if (checked) {
+            code.invoke(INVOKESTATIC, "java/lang/Math", exact, "(II)I");
+        } else {
+            code.op(opcode, -1);
+        }
+    }
+
+    // Exit of a block, the phis of the block jumped to taking their value on the way
+    private void exit(BasicBlock block, BasicBlock next) {
+        switch (block.getExit()) {
+            case JUMP -> {
+                BasicBlock target = block.getSuccessors()[0];
+                int index = target.getPredecessors().indexOf(block);
+                for (Instruction phi : target.getInstructions()) {
+                    if (phi.getOpcode() != Opcode.PHI) break;
+                    load(phi.getOperand(index));
+                    code.local(ISTORE, locals[phi.getId()]);
+                }
+                if (target != next) code.jump(GOTO, labels[target.getIndex()]);
+            }
+            case BRANCH -> {
+                Instruction condition = block.getValue();
+                BasicBlock then = block.getSuccessors()[0];
+                BasicBlock otherwise = block.getSuccessors()[1];
+                int jump;
+                if (locals[condition.getId()] == -1 && !condition.isConstant()) {
+                    load(condition.getOperand(0));
+                    load(condition.getOperand(1));
+                    jump = jump(condition.getOpcode());
+                } else {
+                    load(condition);
+                    jump = IFNE;
+                }
+                if (otherwise == next) {
+                    code.jump(jump, labels[then.getIndex()]);
+                } else {
+                    code.jump(negate(jump), labels[otherwise.getIndex()]);
+                    if (then != next) code.jump(GOTO, labels[then.getIndex()]);
+                }
+            }
+            case RETURN -> {
+                load(block.getValue());
+                code.op(IRETURN, -1);
+            }
+            // The interpreter reports the missing return statement
+            case GIVE_UP -> {
+                code.field(GETSTATIC, DEOPTIMIZATION, "INSTANCE", "L" + DEOPTIMIZATION + ";");
+                code.op(ATHROW, -1);
+            }
+        }
+    }
+}
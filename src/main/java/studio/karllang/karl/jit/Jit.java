@@ -0,0 +1,60 @@
+package studio.karllang.karl.jit;
+
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionManager;
+
+/**
+ * Tier above the tree interpreter: the functions called often enough are compiled to JVM classes, defined as
+ * hidden classes and optimized by the JVM like any other code. Only the functions computing on ints and bools
+ * without effects are compiled, their code giving up as soon as a value leaves these types, in which case the
+ * call is run again by the interpreter and the function stays interpreted.
+ */
+public final class Jit {
+    // Interpreted calls of a function before it is compiled
+    public static final int THRESHOLD = 1000;
+
+    private static boolean enabled;
+
+    public static void setEnabled(boolean enabled) {
+        Jit.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Runs a call in the compiled code of the function, false when the call has to be run by the interpreter. The
+    // arguments are in the first slots of the frame and the result is left in it.
+    public static boolean call(Function function, Frame frame) {
+        CompiledFunction compiled = function.getCompiled();
+        if (compiled == null) {
+            if (function.countInvocation() < THRESHOLD) return false;
+            compiled = compile(function);
+        }
+        if (compiled == CompiledFunction.INTERPRETED) return false;
+
+        // The functions it calls may have changed since it was compiled
+        if (!compiled.isValid(FunctionManager.getCurrentFile())) {
+            compiled = compile(function);
+            if (compiled == CompiledFunction.INTERPRETED) return false;
+        }
+
+        try {
+            compiled.getCode().call(frame);
+            return true;
+        } catch (Deoptimization | ArithmeticException e) {
+            function.setCompiled(CompiledFunction.INTERPRETED);
+            return false;
+        }
+    }
+
+    private static CompiledFunction compile(Function function) {
+        CompiledFunction compiled = FunctionCompiler.compile(function);
+        function.setCompiled(compiled);
+        return compiled;
+    }
+
+    private Jit() {
+    }
+}
@@ -0,0 +1,41 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.expressions.ValueExpression;
+import studio.karllang.karl.parser.ast.statements.IfElseStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.Value;
+
+/**
+ * Replaces the if statements of a literal condition by the branch they take, the block keeping its scope, and
+ * removes those taking no branch.
+ */
+public class BranchPruning extends TreeRewriter implements Pass {
+    private Statistics statistics;
+
+    @Override
+    public String getName() {
+        return "branch-pruning";
+    }
+
+    @Override
+    public void run(CompilationUnit unit, Statistics statistics) {
+        this.statistics = statistics;
+        rewriteStatements(unit.getStatements());
+    }
+
+    @Override
+    public Object visitIfElse(IfElseStatement statement) {
+        Statement rewritten = (Statement) super.visitIfElse(statement);
+        if (!(rewritten instanceof IfElseStatement ifElse) || !(ifElse.getCondition() instanceof ValueExpression condition)) {
+            return rewritten;
+        }
+
+        statistics.count("branches pruned");
+        // The truth of a value as the if statement takes it
+        Value value = condition.getValue();
+        boolean isTrue = value instanceof BooleanValue booleanValue ? booleanValue.toBoolean() : Boolean.parseBoolean(value.toString());
+        return isTrue ? ifElse.getIfStatement() : ifElse.getElseStatement();
+    }
+}
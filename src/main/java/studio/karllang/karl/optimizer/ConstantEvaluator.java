@@ -0,0 +1,284 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.NullValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.ForbiddenNames;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.Types;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Evaluator of the calls to pure functions at compile time, on the values the tree would compute. Anything the
+ * tree would report an error on, or that reads state outside the call, gives up on the call, as does running out
+ * of the nodes a call may evaluate or of the depth of its recursion. The results of the calls are kept, a pure
+ * function giving the same value for the same arguments, as are the calls given up from a site.
+ */
+final class ConstantEvaluator implements AstVisitor<Value> {
+    private static final int FUEL = 1_000_000;
+    private static final int MAX_DEPTH = 200;
+    private static final Value VOID = new NullValue("null_void");
+
+    // Thrown to give up on the call being evaluated
+    private static final class Unevaluable extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Unevaluable() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Unevaluable UNEVALUABLE = new Unevaluable();
+
+    private final HashMap<Integer, Function> functions;
+    // Results by function symbol and arguments, and the calls given up from the site
+    private final HashMap<String, Value> results = new HashMap<>();
+    private final HashSet<String> givenUp = new HashSet<>();
+    // Slots of the call being evaluated, and the value of its return statement once it ran
+    private Value[] slots;
+    private Value returned;
+    private int fuel;
+    private int depth;
+
+    // The pure functions by symbol
+    ConstantEvaluator(HashMap<Integer, Function> functions) {
+        this.functions = functions;
+    }
+
+    // Result of the call, null when it cannot be evaluated
+    Value evaluate(int symbol, List<Value> args) {
+        String call = key(symbol, args);
+        if (givenUp.contains(call)) return null;
+        slots = null;
+        fuel = FUEL;
+        depth = 0;
+        try {
+            return call(symbol, args);
+        } catch (Unevaluable | StackOverflowError e) {
+            givenUp.add(call);
+            return null;
+        }
+    }
+
+    private static String key(int symbol, List<Value> args) {
+        StringBuilder key = new StringBuilder().append(symbol);
+        for (Value arg : args) {
+            String value = arg.toString();
+            key.append(',').append(arg.getType()).append(':').append(value.length()).append(':').append(value);
+        }
+        return key.toString();
+    }
+
+    private Value call(int symbol, List<Value> args) {
+        Function function = functions.get(symbol);
+        if (function == null || function.getArgTypes().length != args.size()) throw UNEVALUABLE;
+        String call = key(symbol, args);
+        Value result = results.get(call);
+        if (result != null) return result;
+
+        if (++depth > MAX_DEPTH) throw UNEVALUABLE;
+        Value[] enclosingSlots = slots;
+        slots = new Value[function.getBody().getFrameSize()];
+        for (int i = 0; i < args.size(); i++) {
+            if (!Types.checkValueType(function.getArgTypes()[i], args.get(i).getType())) throw UNEVALUABLE;
+            slots[i] = args.get(i);
+        }
+        returned = null;
+        for (Statement statement : function.getBody().getStatements()) {
+            run(statement);
+            if (returned != null) break;
+        }
+        result = returned;
+        returned = null;
+        slots = enclosingSlots;
+        depth--;
+
+        // The checks of Function.checkReturn
+        TokenType type = function.getType();
+        if (result == null) {
+            if (type != TokenType.VOID) throw UNEVALUABLE;
+            result = VOID;
+        } else if (type == TokenType.VOID || !Types.checkValueType(type, result.getType()) && !(type == TokenType.STRING && result.getType() == TokenType.NULL)) {
+            throw UNEVALUABLE;
+        }
+        results.put(call, result);
+        return result;
+    }
+
+    private void run(Statement statement) {
+        if (--fuel < 0) throw UNEVALUABLE;
+        statement.accept(this);
+    }
+
+    private Value eval(Expression expression) {
+        if (--fuel < 0) throw UNEVALUABLE;
+        return expression.accept(this);
+    }
+
+    private Value local(int depth, int index) {
+        if (depth == VariableManager.GLOBAL) throw UNEVALUABLE;
+        return slots[index];
+    }
+
+    @Override
+    public Value visitBinary(BinaryExpression expression) {
+        Value value = ConstantFolding.foldBinary(expression.getOperator(), eval(expression.getLeft()), eval(expression.getRight()));
+        if (value == null) throw UNEVALUABLE;
+        return value;
+    }
+
+    @Override
+    public Value visitFuncCall(FuncCallExpression expression) {
+        ArrayList<Value> args = new ArrayList<>(expression.getArgs().size());
+        for (Expression arg : expression.getArgs()) {
+            args.add(eval(arg));
+        }
+        return call(expression.getSymbol(), args);
+    }
+
+    @Override
+    public Value visitLogical(LogicalExpression expression) {
+        Value left = eval(expression.getLeft());
+        Value right = expression.getRight() != null ? eval(expression.getRight()) : null;
+        Value value = ConstantFolding.foldLogical(expression.getOperator(), left, right);
+        if (value == null) throw UNEVALUABLE;
+        return value;
+    }
+
+    @Override
+    public Value visitUnary(UnaryExpression expression) {
+        Value value = eval(expression.getExpression());
+        return switch (expression.getOperator()) {
+            case EXCLAMATION -> new BooleanValue(!Boolean.parseBoolean(value.toString()));
+            case MINUS -> {
+                if (!(value instanceof IntValue)) throw UNEVALUABLE;
+                yield new IntValue(-value.toInt());
+            }
+            default -> throw UNEVALUABLE;
+        };
+    }
+
+    @Override
+    public Value visitValue(ValueExpression expression) {
+        return expression.getValue();
+    }
+
+    @Override
+    public Value visitVariableCall(VariableCallExpression expression) {
+        Value value = local(expression.getDepth(), expression.getIndex());
+        if (value == null) throw UNEVALUABLE;
+        return value;
+    }
+
+    @Override
+    public Value visitVariable(VariableExpression expression) {
+        throw UNEVALUABLE;
+    }
+
+    // The blocks of a function body leave the frame of the call
+    @Override
+    public Value visitBlock(BlockStatement statement) {
+        if (statement.ownsFrame()) throw UNEVALUABLE;
+        for (Statement nested : statement.getStatements()) {
+            run(nested);
+            if (returned != null) break;
+        }
+        for (int i = statement.getFirstSlot(); i < statement.getFirstSlot() + statement.getSlotCount(); i++) {
+            slots[i] = null;
+        }
+        return null;
+    }
+
+    @Override
+    public Value visitFuncCallStatement(FuncCallStatement statement) {
+        eval(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Value visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        throw UNEVALUABLE;
+    }
+
+    @Override
+    public Value visitIfElse(IfElseStatement statement) {
+        Value condition = eval(statement.getCondition());
+        boolean isTrue = condition instanceof BooleanValue booleanValue ? booleanValue.toBoolean() : Boolean.parseBoolean(condition.toString());
+        if (isTrue) {
+            run(statement.getIfStatement());
+        } else if (statement.getElseStatement() != null) {
+            run(statement.getElseStatement());
+        }
+        return null;
+    }
+
+    // The checks of the statements, giving up where they report an error
+    @Override
+    public Value visitIncrementDecrement(IncrementDecrementStatement statement) {
+        Value value = local(statement.getDepth(), statement.getIndex());
+        if (value == null || statement.isFinal()) throw UNEVALUABLE;
+        int delta = statement.getIncrement() == TokenType.PLUS ? 1 : -1;
+        if (value instanceof IntValue) {
+            slots[statement.getIndex()] = new IntValue(value.toInt() + delta);
+        } else if (value instanceof FloatValue) {
+            slots[statement.getIndex()] = new FloatValue(value.toFloat() + delta);
+        } else {
+            throw UNEVALUABLE;
+        }
+        return null;
+    }
+
+    @Override
+    public Value visitReturn(ReturnStatement statement) {
+        if (statement.getExpression() == null) throw UNEVALUABLE;
+        returned = eval(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Value visitShow(ShowStatement statement) {
+        throw UNEVALUABLE;
+    }
+
+    @Override
+    public Value visitVariableAssignment(VariableAssignmentStatement statement) {
+        Value value = eval(statement.getExpression());
+        Value current = local(statement.getDepth(), statement.getIndex());
+        if (current == null || statement.isFinal()) throw UNEVALUABLE;
+        if (current.getType() != value.getType() && !(current.getType() == TokenType.STRING && value.getType() == TokenType.NULL)) {
+            throw UNEVALUABLE;
+        }
+        slots[statement.getIndex()] = value;
+        return null;
+    }
+
+    @Override
+    public Value visitVariableDeclaration(VariableDeclarationStatement statement) {
+        if (ForbiddenNames.isForbiddenName(statement.getName()) || statement.getDepth() == VariableManager.GLOBAL) throw UNEVALUABLE;
+        if (slots[statement.getIndex()] != null) throw UNEVALUABLE;
+        if (statement.getShadowedDepth() != VariableManager.GLOBAL && slots[statement.getShadowedIndex()] != null) {
+            throw UNEVALUABLE;
+        }
+
+        Value value = eval(statement.getExpression());
+        if (statement.getType() == TokenType.FLOAT && value.getType() == TokenType.INT_VALUE) {
+            value = new FloatValue(value.toFloat());
+        }
+        if (value.toString().equals("null_void") || !Types.checkValueType(statement.getType(), value.getType())) {
+            throw UNEVALUABLE;
+        }
+        slots[statement.getIndex()] = value;
+        return null;
+    }
+}
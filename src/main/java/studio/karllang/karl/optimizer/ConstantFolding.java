@@ -0,0 +1,132 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.BinaryExpression;
+import studio.karllang.karl.parser.ast.expressions.Expression;
+import studio.karllang.karl.parser.ast.expressions.LogicalExpression;
+import studio.karllang.karl.parser.ast.expressions.UnaryExpression;
+import studio.karllang.karl.parser.ast.expressions.ValueExpression;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.LogicalOperators;
+import studio.karllang.karl.std.Operators;
+
+/**
+ * Replaces the operations on literals by their value, computed as the nodes would. The operations the nodes would
+ * stop the program on, like subtracting strings, are left for them to report at runtime.
+ */
+public class ConstantFolding extends TreeRewriter implements Pass {
+    protected Statistics statistics;
+
+    @Override
+    public String getName() {
+        return "constant-folding";
+    }
+
+    @Override
+    public void run(CompilationUnit unit, Statistics statistics) {
+        this.statistics = statistics;
+        rewriteStatements(unit.getStatements());
+    }
+
+    @Override
+    public Object visitBinary(BinaryExpression expression) {
+        Expression rewritten = (Expression) super.visitBinary(expression);
+        if (rewritten instanceof BinaryExpression binary && binary.getLeft() instanceof ValueExpression left && binary.getRight() instanceof ValueExpression right) {
+            return folded(rewritten, foldBinary(binary.getOperator(), left.getValue(), right.getValue()));
+        }
+        return rewritten;
+    }
+
+    @Override
+    public Object visitLogical(LogicalExpression expression) {
+        Expression rewritten = (Expression) super.visitLogical(expression);
+        if (rewritten instanceof LogicalExpression logical && logical.getLeft() instanceof ValueExpression left) {
+            if (logical.getRight() == null) {
+                return folded(rewritten, foldLogical(logical.getOperator(), left.getValue(), null));
+            } else if (logical.getRight() instanceof ValueExpression right) {
+                return folded(rewritten, foldLogical(logical.getOperator(), left.getValue(), right.getValue()));
+            }
+        }
+        return rewritten;
+    }
+
+    @Override
+    public Object visitUnary(UnaryExpression expression) {
+        Expression rewritten = (Expression) super.visitUnary(expression);
+        if (rewritten instanceof UnaryExpression unary && unary.getExpression() instanceof ValueExpression operand) {
+            Value value = operand.getValue();
+            return switch (unary.getOperator()) {
+                case EXCLAMATION -> folded(rewritten, new BooleanValue(!Boolean.parseBoolean(value.toString())));
+                case MINUS -> folded(rewritten, value instanceof IntValue ? new IntValue(-value.toInt()) : null);
+                default -> rewritten;
+            };
+        }
+        return rewritten;
+    }
+
+    // The literal of the value, the expression when it could not be folded
+    private Expression folded(Expression expression, Value value) {
+        if (value == null) return expression;
+        statistics.count("expressions folded");
+        return new ValueExpression(value, value.getType());
+    }
+
+    // Ints take the exact path of the nodes specialized to them, null when the node would report an error
+    static Value foldBinary(TokenType operator, Value left, Value right) {
+        switch (operator) {
+            case PLUS, MINUS, MULTIPLY, DIVIDE, MODULO -> {
+            }
+            default -> {
+                return null;
+            }
+        }
+
+        if (isNumber(left) && isNumber(right)) {
+            if (left instanceof IntValue && right instanceof IntValue) {
+                long result = Operators.applyInt(operator, left.toInt(), right.toInt());
+                if (result != Operators.NOT_INT) return new IntValue((int) result);
+            }
+            return Operators.apply(operator, left, right, null, 0, 0);
+        } else if ((left.getType() == TokenType.STR_VALUE || right.getType() == TokenType.STR_VALUE) && operator == TokenType.PLUS) {
+            return Operators.apply(operator, left, right, null, 0, 0);
+        }
+        return null;
+    }
+
+    // The operator is null for the truth of a value and right for the unary operators
+    static Value foldLogical(TokenType operator, Value left, Value right) {
+        if (operator == null || right == null) {
+            return operator == null || operator == TokenType.EXCLAMATION ? LogicalOperators.apply(operator, left, null, null, 0, 0) : null;
+        }
+
+        boolean logical = operator == TokenType.AND || operator == TokenType.OR;
+        boolean equality = operator == TokenType.EQUALEQUAL || operator == TokenType.NOT_EQUAL;
+        if (isNumber(left) && isNumber(right)) {
+            if (left instanceof IntValue && right instanceof IntValue && !logical) {
+                int a = left.toInt();
+                int b = right.toInt();
+                return new BooleanValue(switch (operator) {
+                    case LESS -> a < b;
+                    case LESS_EQUAL -> a <= b;
+                    case GREATER_EQUAL -> a >= b;
+                    case GREATER -> a > b;
+                    case EQUALEQUAL -> a == b;
+                    default -> a != b;
+                });
+            }
+        } else if (left.getType() == TokenType.NULL || right.getType() == TokenType.NULL) {
+            if (!equality) return null;
+        } else if (!logical && !equality) {
+            return null;
+        }
+        return LogicalOperators.apply(operator, left, right, null, 0, 0);
+    }
+
+    private static boolean isNumber(Value value) {
+        return value instanceof IntValue || value instanceof FloatValue;
+    }
+}
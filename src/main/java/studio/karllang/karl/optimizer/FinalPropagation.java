@@ -0,0 +1,112 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.parser.ast.expressions.ValueExpression;
+import studio.karllang.karl.parser.ast.expressions.VariableCallExpression;
+import studio.karllang.karl.parser.ast.statements.FunctionDeclarationStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.parser.ast.statements.VariableDeclarationStatement;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Types;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Replaces the reads of the final globals declared with a literal by the value they hold, folding the operations
+ * they become constant in. A read is only replaced where the global is sure to be declared: in the top-level
+ * statements that follow the declaration, and in the functions when no function is called before it. The
+ * declaration itself stays, reporting the names declared twice.
+ */
+public class FinalPropagation extends ConstantFolding {
+    // Values of the globals the node being rewritten reads as constants, by symbol
+    private HashMap<Integer, Value> constants = new HashMap<>();
+    private HashMap<Integer, Value> functionConstants = new HashMap<>();
+
+    @Override
+    public String getName() {
+        return "final-propagation";
+    }
+
+    @Override
+    public void run(CompilationUnit unit, Statistics statistics) {
+        this.statistics = statistics;
+        ArrayList<Statement> statements = unit.getStatements();
+
+        // A global declared more than once is left to fail at runtime
+        HashMap<Integer, Integer> declarations = new HashMap<>();
+        for (Statement statement : statements) {
+            if (statement instanceof VariableDeclarationStatement declaration && declaration.getDepth() == VariableManager.GLOBAL) {
+                declarations.merge(declaration.getSymbol(), 1, Integer::sum);
+            }
+        }
+
+        // The top-level statements in order, each seeing the globals declared before it, then the functions
+        constants = new HashMap<>();
+        functionConstants = new HashMap<>();
+        boolean called = false;
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            if (statement instanceof FunctionDeclarationStatement) continue;
+            called = called || calls(statement);
+            if (!called) functionConstants = new HashMap<>(constants);
+
+            statement = rewrite(statement);
+            statements.set(i, statement);
+            if (statement instanceof VariableDeclarationStatement declaration && declaration.getDepth() == VariableManager.GLOBAL
+                    && declaration.isFinal() && declarations.get(declaration.getSymbol()) == 1) {
+                Value value = constant(declaration);
+                if (value != null) constants.put(declaration.getSymbol(), value);
+            }
+        }
+        if (!called) functionConstants = new HashMap<>(constants);
+
+        for (Statement statement : statements) {
+            if (statement instanceof FunctionDeclarationStatement) rewrite(statement);
+        }
+    }
+
+    // Value a declaration gives its variable when it is a literal of the type of the variable, null otherwise
+    private static Value constant(VariableDeclarationStatement declaration) {
+        if (!(declaration.getExpression() instanceof ValueExpression literal)) return null;
+        Value value = literal.getValue();
+        if (declaration.getType() == TokenType.FLOAT && value.getType() == TokenType.INT_VALUE) {
+            value = new FloatValue(value.toFloat());
+        }
+        return Types.checkValueType(declaration.getType(), value.getType()) ? value : null;
+    }
+
+    private static boolean calls(Statement statement) {
+        boolean[] found = new boolean[1];
+        statement.accept(new TreeRewriter() {
+            @Override
+            public Object visitFuncCall(FuncCallExpression expression) {
+                found[0] = true;
+                return expression;
+            }
+        });
+        return found[0];
+    }
+
+    @Override
+    public Object visitVariableCall(VariableCallExpression expression) {
+        if (expression.getDepth() != VariableManager.GLOBAL) return expression;
+        Value value = constants.get(expression.getSymbol());
+        if (value == null) return expression;
+        statistics.count("reads propagated");
+        return new ValueExpression(value, value.getType());
+    }
+
+    @Override
+    public Object visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        HashMap<Integer, Value> enclosing = constants;
+        constants = functionConstants;
+        super.visitFunctionDeclaration(statement);
+        constants = enclosing;
+        return statement;
+    }
+}
@@ -0,0 +1,173 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.BlockStatement;
+import studio.karllang.karl.parser.ast.statements.FuncCallStatement;
+import studio.karllang.karl.parser.ast.statements.FunctionDeclarationStatement;
+import studio.karllang.karl.parser.ast.statements.ReturnStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Inlines the calls to the small functions whose body returns an expression not calling the function itself. A
+ * site in a function or a top-level block gets slots of its own at the end of the frame, for the arguments and the
+ * slots of the calls inlined in the function, and a copy of the expression reading them there. The functions are
+ * rewritten first, so the calls they inline are inlined with them. Top-level statements run in no frame and keep
+ * their calls, as do the calls whose value is dropped.
+ */
+public class Inlining extends TreeRewriter implements Pass {
+    // Nodes of the largest expression inlined, and slots a frame can grow to with the sites inlined in it
+    private static final int MAX_SIZE = 16;
+    private static final int MAX_FRAME_SIZE = 64;
+
+    private Statistics statistics;
+    // Functions declared in the unit by symbol
+    private HashMap<Integer, Function> functions;
+    // Function body or top-level block holding the frame of the node being rewritten, null for top-level statements
+    private BlockStatement frame;
+
+    @Override
+    public String getName() {
+        return "inlining";
+    }
+
+    @Override
+    public void run(CompilationUnit unit, Statistics statistics) {
+        this.statistics = statistics;
+        ArrayList<Statement> statements = unit.getStatements();
+        functions = new HashMap<>();
+        for (Statement statement : statements) {
+            if (statement instanceof FunctionDeclarationStatement declaration) {
+                functions.put(declaration.getSymbol(), declaration.getFunction());
+            }
+        }
+
+        frame = null;
+        for (Statement statement : statements) {
+            if (statement instanceof FunctionDeclarationStatement) rewrite(statement);
+        }
+        for (int i = 0; i < statements.size(); i++) {
+            if (!(statements.get(i) instanceof FunctionDeclarationStatement)) statements.set(i, rewrite(statements.get(i)));
+        }
+    }
+
+    // Expression the function returns when its body is a single return statement
+    private static Expression returned(Function function) {
+        ArrayList<Statement> statements = function.getBody().getStatements();
+        if (function.getType() == TokenType.VOID || statements.size() != 1) return null;
+        return statements.get(0) instanceof ReturnStatement statement ? statement.getExpression() : null;
+    }
+
+    // Nodes of the expression, above the maximum when it calls the function or holds nodes not inlined
+    private static int size(Expression expression, int symbol) {
+        if (expression == null) {
+            return 0;
+        } else if (expression instanceof BinaryExpression binary) {
+            return 1 + size(binary.getLeft(), symbol) + size(binary.getRight(), symbol);
+        } else if (expression instanceof LogicalExpression logical) {
+            return 1 + size(logical.getLeft(), symbol) + size(logical.getRight(), symbol);
+        } else if (expression instanceof UnaryExpression unary) {
+            return 1 + size(unary.getExpression(), symbol);
+        } else if (expression instanceof FuncCallExpression call) {
+            if (call.getSymbol() == symbol) return MAX_SIZE + 1;
+            int size = call instanceof InlinedCallExpression inlined ? size(inlined.getBody(), symbol) : 1;
+            for (Expression arg : call.getArgs()) {
+                size += size(arg, symbol);
+            }
+            return size;
+        } else if (expression instanceof ValueExpression || expression instanceof VariableCallExpression) {
+            return 1;
+        }
+        return MAX_SIZE + 1;
+    }
+
+    @Override
+    public Object visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        BlockStatement enclosing = frame;
+        frame = statement.getFunction().getBody();
+        super.visitFunctionDeclaration(statement);
+        frame = enclosing;
+        return statement;
+    }
+
+    @Override
+    public Object visitBlock(BlockStatement statement) {
+        if (frame != null || !statement.ownsFrame()) return super.visitBlock(statement);
+        frame = statement;
+        super.visitBlock(statement);
+        frame = null;
+        return statement;
+    }
+
+    @Override
+    public Object visitFuncCallStatement(FuncCallStatement statement) {
+        rewriteExpressions(statement.getExpression().getArgs());
+        return statement;
+    }
+
+    @Override
+    public Object visitFuncCall(FuncCallExpression expression) {
+        super.visitFuncCall(expression);
+        Function function = functions.get(expression.getSymbol());
+        if (function == null || frame == null || expression instanceof InlinedCallExpression) return expression;
+        Expression returned = returned(function);
+        int slots = function.getBody().getFrameSize();
+        int firstSlot = frame.getFrameSize();
+        if (returned == null || size(returned, expression.getSymbol()) > MAX_SIZE
+                || function.getArgTypes().length != expression.getArgs().size() || firstSlot + slots > MAX_FRAME_SIZE) {
+            return expression;
+        }
+
+        frame.setFrameSize(firstSlot + slots);
+        statistics.count("calls inlined");
+        return new InlinedCallExpression(expression, function, (Expression) returned.accept(new Copy(firstSlot)), firstSlot);
+    }
+
+    // Copy of a returned expression, reading the slots of the function from those of the site
+    private static final class Copy extends TreeRewriter {
+        private final int firstSlot;
+
+        private Copy(int firstSlot) {
+            this.firstSlot = firstSlot;
+        }
+
+        @Override
+        public Object visitBinary(BinaryExpression expression) {
+            return new BinaryExpression(rewrite(expression.getLeft()), rewrite(expression.getRight()), expression.getOperator(), expression.getFileName(), expression.getLine(), expression.getPos());
+        }
+
+        @Override
+        public Object visitLogical(LogicalExpression expression) {
+            return new LogicalExpression(expression.getOperator(), rewrite(expression.getLeft()), rewrite(expression.getRight()), expression.getFileName(), expression.getLine(), expression.getPos());
+        }
+
+        @Override
+        public Object visitUnary(UnaryExpression expression) {
+            return new UnaryExpression(expression.getOperator(), rewrite(expression.getExpression()), expression.getFileName(), expression.getLine(), expression.getPos());
+        }
+
+        @Override
+        public Object visitFuncCall(FuncCallExpression expression) {
+            ArrayList<Expression> args = new ArrayList<>(expression.getArgs());
+            rewriteExpressions(args);
+            FuncCallExpression call = new FuncCallExpression(expression.getName(), expression.getSymbol(), args, expression.getFileName(), expression.getLine(), expression.getPos());
+            if (!(expression instanceof InlinedCallExpression inlined)) return call;
+            return new InlinedCallExpression(call, inlined.getFunction(), rewrite(inlined.getBody()), firstSlot + inlined.getFirstSlot());
+        }
+
+        @Override
+        public Object visitVariableCall(VariableCallExpression expression) {
+            VariableCallExpression copy = new VariableCallExpression(expression.getName(), expression.getSymbol(), expression.getFileName(), expression.getLine(), expression.getPos());
+            if (expression.getDepth() != VariableManager.GLOBAL) {
+                copy.setSlot(expression.getDepth(), firstSlot + expression.getIndex());
+            }
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.CompilationUnit;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Pipeline of the passes run on the units between parsing and running, whatever the engine. The default one folds
+ * the constant expressions, propagates the final globals declared with a constant, evaluates the calls to pure
+ * functions on literals, inlines the small functions and prunes the branches of the conditions left constant, then
+ * checks the types of the program, reporting its type errors and sparing the checks that always pass at runtime.
+ */
+public final class Optimizer {
+    private final List<Pass> passes;
+
+    public Optimizer() {
+        this(List.of(new ConstantFolding(), new FinalPropagation(), new PartialEvaluation(), new Inlining(), new BranchPruning(), new TypeChecking()));
+    }
+
+    public Optimizer(List<Pass> passes) {
+        this.passes = passes;
+    }
+
+    // Statistics of each pass by name, printed with the time of the pass under --debug
+    public LinkedHashMap<String, Statistics> optimize(CompilationUnit unit, boolean debug) {
+        LinkedHashMap<String, Statistics> statistics = new LinkedHashMap<>();
+        for (Pass pass : passes) {
+            Statistics passStatistics = new Statistics();
+            long start = System.nanoTime();
+            pass.run(unit, passStatistics);
+            long end = System.nanoTime();
+            statistics.put(pass.getName(), passStatistics);
+
+            if (debug) {
+                System.out.printf("[%s] %s: %s (%.2f ms)%n", pass.getName(), unit.getFileName(), passStatistics, (end - start) / 1e6);
+            }
+        }
+        return statistics;
+    }
+}
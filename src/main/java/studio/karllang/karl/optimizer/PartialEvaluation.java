@@ -0,0 +1,159 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.expressions.Expression;
+import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.parser.ast.expressions.ValueExpression;
+import studio.karllang.karl.parser.ast.expressions.VariableCallExpression;
+import studio.karllang.karl.parser.ast.expressions.VariableExpression;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Replaces the calls to pure functions whose arguments are literals by the value they return, evaluated once at
+ * compile time. A function is pure when it shows nothing, touches no global and only calls pure functions; the
+ * calls running out of fuel, or that would report an error, are left to run.
+ */
+public class PartialEvaluation extends ConstantFolding {
+    private ConstantEvaluator evaluator;
+
+    @Override
+    public String getName() {
+        return "partial-evaluation";
+    }
+
+    @Override
+    public void run(CompilationUnit unit, Statistics statistics) {
+        this.statistics = statistics;
+        ArrayList<Statement> statements = unit.getStatements();
+
+        // Functions declared once, and the globals a local of the same name would be reported as declared against
+        HashMap<Integer, Function> functions = new HashMap<>();
+        HashSet<Integer> declaredTwice = new HashSet<>();
+        HashSet<Integer> globals = new HashSet<>();
+        for (Statement statement : statements) {
+            if (statement instanceof FunctionDeclarationStatement declaration) {
+                if (functions.put(declaration.getSymbol(), declaration.getFunction()) != null) {
+                    declaredTwice.add(declaration.getSymbol());
+                }
+            } else if (statement instanceof VariableDeclarationStatement declaration) {
+                globals.add(declaration.getSymbol());
+            }
+        }
+        functions.keySet().removeAll(declaredTwice);
+
+        // Functions calling an impure one are impure, until no function changes
+        HashMap<Integer, Function> pure = new HashMap<>();
+        HashMap<Integer, HashSet<Integer>> callees = new HashMap<>();
+        functions.forEach((symbol, function) -> {
+            Purity purity = new Purity(globals);
+            function.getBody().accept(purity);
+            if (purity.isPure) {
+                pure.put(symbol, function);
+                callees.put(symbol, purity.callees);
+            }
+        });
+        boolean changed = true;
+        while (changed) {
+            changed = pure.keySet().removeIf(symbol -> !pure.keySet().containsAll(callees.get(symbol)));
+        }
+
+        evaluator = new ConstantEvaluator(pure);
+        rewriteStatements(statements);
+    }
+
+    @Override
+    public Object visitFuncCall(FuncCallExpression expression) {
+        super.visitFuncCall(expression);
+        ArrayList<Value> args = new ArrayList<>(expression.getArgs().size());
+        for (Expression arg : expression.getArgs()) {
+            if (!(arg instanceof ValueExpression value)) return expression;
+            args.add(value.getValue());
+        }
+
+        Value value = evaluator.evaluate(expression.getSymbol(), args);
+        if (value == null || value.toString().equals("null_void")) return expression;
+        statistics.count("calls evaluated");
+        return new ValueExpression(value, value.getType());
+    }
+
+    // The calls whose value is dropped are removed once they ran without error
+    @Override
+    public Object visitFuncCallStatement(FuncCallStatement statement) {
+        rewriteExpressions(statement.getExpression().getArgs());
+        ArrayList<Value> args = new ArrayList<>(statement.getExpression().getArgs().size());
+        for (Expression arg : statement.getExpression().getArgs()) {
+            if (!(arg instanceof ValueExpression value)) return statement;
+            args.add(value.getValue());
+        }
+
+        if (evaluator.evaluate(statement.getExpression().getSymbol(), args) == null) return statement;
+        statistics.count("calls evaluated");
+        return null;
+    }
+
+    // Finds what makes a function body impure, and the functions it calls
+    private static final class Purity extends TreeRewriter {
+        private final HashSet<Integer> globals;
+        private final HashSet<Integer> callees = new HashSet<>();
+        private boolean isPure = true;
+
+        private Purity(HashSet<Integer> globals) {
+            this.globals = globals;
+        }
+
+        @Override
+        public Object visitFuncCall(FuncCallExpression expression) {
+            callees.add(expression.getSymbol());
+            return super.visitFuncCall(expression);
+        }
+
+        @Override
+        public Object visitVariableCall(VariableCallExpression expression) {
+            isPure &= expression.getDepth() != VariableManager.GLOBAL;
+            return expression;
+        }
+
+        @Override
+        public Object visitVariable(VariableExpression expression) {
+            isPure = false;
+            return expression;
+        }
+
+        @Override
+        public Object visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+            isPure = false;
+            return statement;
+        }
+
+        @Override
+        public Object visitShow(ShowStatement statement) {
+            isPure = false;
+            return statement;
+        }
+
+        @Override
+        public Object visitIncrementDecrement(IncrementDecrementStatement statement) {
+            isPure &= statement.getDepth() != VariableManager.GLOBAL;
+            return statement;
+        }
+
+        @Override
+        public Object visitVariableAssignment(VariableAssignmentStatement statement) {
+            isPure &= statement.getDepth() != VariableManager.GLOBAL;
+            return super.visitVariableAssignment(statement);
+        }
+
+        @Override
+        public Object visitVariableDeclaration(VariableDeclarationStatement statement) {
+            isPure &= statement.getDepth() != VariableManager.GLOBAL && !globals.contains(statement.getSymbol());
+            return super.visitVariableDeclaration(statement);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.CompilationUnit;
+
+/**
+ * Rewrite of the tree of a resolved unit, before it is linked and run. A pass keeps what the program prints and
+ * the errors it stops on.
+ */
+public interface Pass {
+    // Name of the pass in the statistics printed under --debug
+    String getName();
+
+    // Rewrites the statements of the unit in place, counting its changes in the statistics
+    void run(CompilationUnit unit, Statistics statistics);
+}
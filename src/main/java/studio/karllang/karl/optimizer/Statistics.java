@@ -0,0 +1,30 @@
+package studio.karllang.karl.optimizer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts of the changes a pass made to a unit, by kind, in the order they first happened.
+ */
+public final class Statistics {
+    private final LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+
+    public void count(String change) {
+        counts.merge(change, 1, Integer::sum);
+    }
+
+    public int get(String change) {
+        return counts.getOrDefault(change, 0);
+    }
+
+    @Override
+    public String toString() {
+        if (counts.isEmpty()) return "no changes";
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            if (!builder.isEmpty()) builder.append(", ");
+            builder.append(count.getValue()).append(' ').append(count.getKey());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Rewrite of a tree bottom up, each visit returning the node replacing the one visited: the node itself when
+ * nothing changed, and null for a statement removed. The lists of statements and arguments are rewritten in place,
+ * so the blocks and function bodies stay the ones the resolver and the function tables know. A node with a child
+ * replaced is rebuilt with the slots the resolver gave it.
+ */
+public abstract class TreeRewriter implements AstVisitor<Object> {
+    protected Expression rewrite(Expression expression) {
+        return expression == null ? null : (Expression) expression.accept(this);
+    }
+
+    protected Statement rewrite(Statement statement) {
+        return statement == null ? null : (Statement) statement.accept(this);
+    }
+
+    protected void rewriteStatements(List<Statement> statements) {
+        statements.replaceAll(this::rewrite);
+        statements.removeIf(Objects::isNull);
+    }
+
+    protected void rewriteExpressions(List<Expression> expressions) {
+        expressions.replaceAll(this::rewrite);
+    }
+
+    @Override
+    public Object visitBinary(BinaryExpression expression) {
+        Expression left = rewrite(expression.getLeft());
+        Expression right = rewrite(expression.getRight());
+        if (left == expression.getLeft() && right == expression.getRight()) return expression;
+        return new BinaryExpression(left, right, expression.getOperator(), expression.getFileName(), expression.getLine(), expression.getPos());
+    }
+
+    @Override
+    public Object visitFuncCall(FuncCallExpression expression) {
+        rewriteExpressions(expression.getArgs());
+        return expression;
+    }
+
+    @Override
+    public Object visitLogical(LogicalExpression expression) {
+        Expression left = rewrite(expression.getLeft());
+        Expression right = rewrite(expression.getRight());
+        if (left == expression.getLeft() && right == expression.getRight()) return expression;
+        return new LogicalExpression(expression.getOperator(), left, right, expression.getFileName(), expression.getLine(), expression.getPos());
+    }
+
+    @Override
+    public Object visitUnary(UnaryExpression expression) {
+        Expression operand = rewrite(expression.getExpression());
+        if (operand == expression.getExpression()) return expression;
+        return new UnaryExpression(expression.getOperator(), operand, expression.getFileName(), expression.getLine(), expression.getPos());
+    }
+
+    @Override
+    public Object visitValue(ValueExpression expression) {
+        return expression;
+    }
+
+    @Override
+    public Object visitVariableCall(VariableCallExpression expression) {
+        return expression;
+    }
+
+    @Override
+    public Object visitVariable(VariableExpression expression) {
+        return expression;
+    }
+
+    @Override
+    public Object visitBlock(BlockStatement statement) {
+        rewriteStatements(statement.getStatements());
+        return statement;
+    }
+
+    @Override
+    public Object visitFuncCallStatement(FuncCallStatement statement) {
+        rewrite(statement.getExpression());
+        return statement;
+    }
+
+    @Override
+    public Object visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        rewriteStatements(statement.getFunction().getBody().getStatements());
+        return statement;
+    }
+
+    @Override
+    public Object visitIfElse(IfElseStatement statement) {
+        Expression condition = rewrite(statement.getCondition());
+        rewrite(statement.getIfStatement());
+        Statement elseStatement = rewrite(statement.getElseStatement());
+        if (condition == statement.getCondition() && elseStatement == statement.getElseStatement()) return statement;
+        return new IfElseStatement(condition, (BlockStatement) statement.getIfStatement(), elseStatement);
+    }
+
+    @Override
+    public Object visitIncrementDecrement(IncrementDecrementStatement statement) {
+        return statement;
+    }
+
+    @Override
+    public Object visitReturn(ReturnStatement statement) {
+        Expression expression = rewrite(statement.getExpression());
+        if (expression == statement.getExpression()) return statement;
+        return new ReturnStatement(expression, statement.getFileName(), statement.getLine(), statement.getPos());
+    }
+
+    @Override
+    public Object visitShow(ShowStatement statement) {
+        rewriteExpressions(statement.getExpressions());
+        return statement;
+    }
+
+    @Override
+    public Object visitVariableAssignment(VariableAssignmentStatement statement) {
+        Expression expression = rewrite(statement.getExpression());
+        if (expression == statement.getExpression()) return statement;
+        VariableAssignmentStatement rewritten = new VariableAssignmentStatement(statement.getName(), statement.getSymbol(), expression, statement.getFileName(), statement.getLine(), statement.getPos());
+        rewritten.setSlot(statement.getDepth(), statement.getIndex(), statement.isFinal());
+        return rewritten;
+    }
+
+    @Override
+    public Object visitVariableDeclaration(VariableDeclarationStatement statement) {
+        Expression expression = rewrite(statement.getExpression());
+        if (expression == statement.getExpression()) return statement;
+        VariableDeclarationStatement rewritten = new VariableDeclarationStatement(expression, statement.getName(), statement.getSymbol(), statement.getType(), statement.getFileName(), statement.getLine(), statement.getPos(), statement.isFinal());
+        rewritten.setSlot(statement.getDepth(), statement.getIndex(), statement.getShadowedDepth(), statement.getShadowedIndex());
+        return rewritten;
+    }
+}
@@ -0,0 +1,381 @@
+package studio.karllang.karl.optimizer;
+
+import studio.karllang.karl.errors.RuntimeError.TypeError;
+import studio.karllang.karl.errors.SyntaxError.SyntaxError;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.std.ForbiddenNames;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.Types;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Infers the types of values each expression can have, as a set of bits, to report the errors the nodes would be
+ * sure to stop the program on before it runs, and to mark the nodes whose checks always pass: declarations of an
+ * allowed name and a value of the type of the variable, assignments of a value of its type, calls whose arguments
+ * have the types of the parameters and functions always returning a value of their type. Those nodes skip the
+ * checks at runtime. Types the pass cannot tell, like the result of an operation on ints, which gives a float when
+ * a division is inexact, are left checked.
+ * <p>
+ * The errors are reported before the first statement runs, including those of branches never taken and functions
+ * never called: a program that used to print its output and then stop, or never reach the ill-typed code, now
+ * stops on a type error without printing anything.
+ */
+public class TypeChecking implements Pass, AstVisitor<Integer> {
+    private static final int INT = 1;
+    private static final int FLOAT = 2;
+    private static final int STRING = 4;
+    private static final int CHAR = 8;
+    private static final int BOOL = 16;
+    private static final int NULL = 32;
+    private static final int VOID = 64;
+    private static final int ANY = 127;
+
+    private Statistics statistics;
+    // Functions declared once in the unit and types of the globals, by symbol
+    private HashMap<Integer, Function> functions;
+    private HashMap<Integer, Integer> globals;
+    // Types of the locals of the frame being checked by slot, and the function whose body it is
+    private int[] locals = new int[0];
+    private Function function;
+    private boolean returnsChecked;
+    private int returnedTypes;
+    // Types the functions checked to return values of their type return
+    private HashMap<Function, Integer> results;
+
+    @Override
+    public String getName() {
+        return "type-checking";
+    }
+
+    @Override
+    public void run(CompilationUnit unit, Statistics statistics) {
+        this.statistics = statistics;
+        functions = new HashMap<>();
+        globals = new HashMap<>();
+        HashSet<Integer> declaredTwice = new HashSet<>();
+        for (Statement statement : unit.getStatements()) {
+            if (statement instanceof FunctionDeclarationStatement declaration) {
+                if (functions.put(declaration.getSymbol(), declaration.getFunction()) != null) {
+                    declaredTwice.add(declaration.getSymbol());
+                }
+            } else if (statement instanceof VariableDeclarationStatement declaration && declaration.getDepth() == VariableManager.GLOBAL) {
+                globals.merge(declaration.getSymbol(), variable(declaration.getType()), (a, b) -> a | b);
+            }
+        }
+        functions.keySet().removeAll(declaredTwice);
+
+        // The functions first, the calls to those checked knowing the types they return
+        locals = new int[0];
+        function = null;
+        results = new HashMap<>();
+        for (Statement statement : unit.getStatements()) {
+            if (statement instanceof FunctionDeclarationStatement) check(statement);
+        }
+        for (Statement statement : unit.getStatements()) {
+            if (!(statement instanceof FunctionDeclarationStatement)) check(statement);
+        }
+    }
+
+    // Types a variable of the type holds, strings and chars being null until set
+    private static int variable(TokenType type) {
+        return switch (type) {
+            case INT -> INT;
+            case FLOAT -> FLOAT;
+            case STRING -> STRING | NULL;
+            case CHAR -> CHAR | NULL;
+            case BOOL -> BOOL;
+            default -> ANY;
+        };
+    }
+
+    // Types a parameter of the type takes, checked by Types.checkValueType
+    private static int parameter(TokenType type) {
+        return switch (type) {
+            case INT -> INT;
+            case FLOAT -> FLOAT;
+            case STRING -> STRING;
+            case CHAR -> CHAR;
+            case BOOL -> BOOL;
+            default -> 0;
+        };
+    }
+
+    // Types a function of the type returns, checked by Function.checkReturnType
+    private static int returned(TokenType type) {
+        return switch (type) {
+            case VOID -> VOID;
+            case STRING -> STRING | NULL;
+            default -> parameter(type);
+        };
+    }
+
+    private static int of(TokenType valueType) {
+        return switch (valueType) {
+            case INT_VALUE -> INT;
+            case FLOAT_VALUE -> FLOAT;
+            case STR_VALUE -> STRING;
+            case CHAR_VALUE -> CHAR;
+            case BOOL_VALUE -> BOOL;
+            case NULL -> NULL;
+            default -> ANY;
+        };
+    }
+
+    // Value type of a single type, as the nodes name it in their errors
+    private static TokenType valueType(int type) {
+        return switch (type) {
+            case INT -> TokenType.INT_VALUE;
+            case FLOAT -> TokenType.FLOAT_VALUE;
+            case STRING -> TokenType.STR_VALUE;
+            case CHAR -> TokenType.CHAR_VALUE;
+            case BOOL -> TokenType.BOOL_VALUE;
+            default -> TokenType.NULL;
+        };
+    }
+
+    private static boolean isSingle(int type) {
+        return type != 0 && (type & (type - 1)) == 0;
+    }
+
+    // The types are known and all accepted
+    private static boolean isWithin(int type, int accepted) {
+        return type != 0 && (type & ~accepted) == 0;
+    }
+
+    private void check(Statement statement) {
+        if (statement != null) statement.accept(this);
+    }
+
+    private int check(Expression expression) {
+        return expression == null ? 0 : expression.accept(this);
+    }
+
+    // A function body falling through its end returns nothing
+    private static boolean returns(Statement statement) {
+        if (statement instanceof ReturnStatement) {
+            return true;
+        } else if (statement instanceof BlockStatement block) {
+            return block.getStatements().stream().anyMatch(TypeChecking::returns);
+        } else if (statement instanceof IfElseStatement ifElse) {
+            return returns(ifElse.getIfStatement()) && returns(ifElse.getElseStatement());
+        }
+        return false;
+    }
+
+    @Override
+    public Integer visitBinary(BinaryExpression expression) {
+        int left = check(expression.getLeft());
+        int right = check(expression.getRight());
+        if (isWithin(left, INT | FLOAT) && isWithin(right, INT | FLOAT)) {
+            return INT | FLOAT;
+        } else if (expression.getOperator() == TokenType.PLUS && (left == STRING || right == STRING)) {
+            return STRING;
+        }
+        return ANY;
+    }
+
+    @Override
+    public Integer visitFuncCall(FuncCallExpression expression) {
+        int[] args = new int[expression.getArgs().size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = check(expression.getArgs().get(i));
+        }
+        Function called = functions.get(expression.getSymbol());
+        if (called == null || called.getArgTypes().length != args.length) return ANY;
+
+        boolean checked = true;
+        for (int i = 0; i < args.length; i++) {
+            TokenType type = called.getArgTypes()[i];
+            if (isSingle(args[i]) && (args[i] & parameter(type)) == 0) {
+                new TypeError("Type mismatch for argument " + called.getArgNames()[i] + " of function " + expression.getName() + ": Excepted type " + Types.getTypeName(type) + ", but got type " + Types.getTypeName(valueType(args[i])), expression.getFileName(), expression.getLine(), expression.getPos());
+            }
+            checked &= isWithin(args[i], parameter(type));
+        }
+        if (checked) {
+            expression.setChecked(called);
+            statistics.count("calls checked");
+        }
+        return results.getOrDefault(called, returned(called.getType()));
+    }
+
+    @Override
+    public Integer visitLogical(LogicalExpression expression) {
+        check(expression.getLeft());
+        check(expression.getRight());
+        return BOOL;
+    }
+
+    @Override
+    public Integer visitUnary(UnaryExpression expression) {
+        check(expression.getExpression());
+        return switch (expression.getOperator()) {
+            case EXCLAMATION -> BOOL;
+            case MINUS -> INT;
+            default -> ANY;
+        };
+    }
+
+    @Override
+    public Integer visitValue(ValueExpression expression) {
+        return expression.getValue().toString().equals("null_void") ? VOID : of(expression.getValue().getType());
+    }
+
+    @Override
+    public Integer visitVariableCall(VariableCallExpression expression) {
+        if (expression.getDepth() == VariableManager.GLOBAL) return globals.getOrDefault(expression.getSymbol(), ANY);
+        int index = expression.getIndex();
+        return index < locals.length && locals[index] != 0 ? locals[index] : ANY;
+    }
+
+    @Override
+    public Integer visitVariable(VariableExpression expression) {
+        return ANY;
+    }
+
+    // A top-level block holds a frame of its own, the blocks of a frame leave the slots of their locals
+    @Override
+    public Integer visitBlock(BlockStatement statement) {
+        int[] enclosing = locals;
+        if (statement.ownsFrame()) locals = new int[statement.getFrameSize()];
+        for (Statement nested : statement.getStatements()) {
+            check(nested);
+        }
+        if (statement.ownsFrame()) {
+            locals = enclosing;
+        } else {
+            for (int i = statement.getFirstSlot(); i < statement.getFirstSlot() + statement.getSlotCount() && i < locals.length; i++) {
+                locals[i] = 0;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public Integer visitFuncCallStatement(FuncCallStatement statement) {
+        check(statement.getExpression());
+        return 0;
+    }
+
+    @Override
+    public Integer visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        int[] enclosingLocals = locals;
+        Function enclosingFunction = function;
+        boolean enclosingReturnsChecked = returnsChecked;
+        int enclosingReturnedTypes = returnedTypes;
+
+        function = statement.getFunction();
+        returnsChecked = true;
+        returnedTypes = 0;
+        locals = new int[Math.max(function.getBody().getFrameSize(), function.getArgTypes().length)];
+        for (int i = 0; i < function.getArgTypes().length; i++) {
+            locals[i] = parameter(function.getArgTypes()[i]);
+        }
+        for (Statement nested : function.getBody().getStatements()) {
+            check(nested);
+        }
+        if (returnsChecked && (function.getType() == TokenType.VOID || returns(function.getBody()))) {
+            function.setReturnChecked(true);
+            statistics.count("returns checked");
+            if (returnedTypes != 0) results.put(function, returnedTypes);
+        }
+
+        locals = enclosingLocals;
+        function = enclosingFunction;
+        returnsChecked = enclosingReturnsChecked;
+        returnedTypes = enclosingReturnedTypes;
+        return 0;
+    }
+
+    @Override
+    public Integer visitIfElse(IfElseStatement statement) {
+        check(statement.getCondition());
+        check(statement.getIfStatement());
+        check(statement.getElseStatement());
+        return 0;
+    }
+
+    @Override
+    public Integer visitIncrementDecrement(IncrementDecrementStatement statement) {
+        return 0;
+    }
+
+    // The value of a single known type the function rejects is reported, the others are checked when returned
+    @Override
+    public Integer visitReturn(ReturnStatement statement) {
+        int type = check(statement.getExpression());
+        if (function != null) {
+            if (function.getType() == TokenType.VOID && type != 0 && type != VOID) {
+                new TypeError("Function " + function.getName() + " is void, but return a value", statement.getFileName(), statement.getLine(), statement.getPos());
+            } else if (function.getType() != TokenType.VOID && isSingle(type) && (type & returned(function.getType())) == 0) {
+                new TypeError("Incorrect return type for function " + function.getName() + ": except " + Types.getTypeName(function.getType()) + " but got type " + Types.getTypeName(valueType(type)), statement.getFileName(), statement.getLine(), statement.getPos());
+            }
+            if (function.getType() == TokenType.VOID || !isWithin(type, returned(function.getType()))) {
+                returnsChecked = false;
+            }
+        }
+        returnedTypes |= type;
+        return 0;
+    }
+
+    @Override
+    public Integer visitShow(ShowStatement statement) {
+        for (Expression expression : statement.getExpressions()) {
+            check(expression);
+        }
+        return 0;
+    }
+
+    @Override
+    public Integer visitVariableAssignment(VariableAssignmentStatement statement) {
+        int type = check(statement.getExpression());
+        int variable = statement.getDepth() == VariableManager.GLOBAL
+                ? globals.getOrDefault(statement.getSymbol(), ANY)
+                : statement.getIndex() < locals.length && locals[statement.getIndex()] != 0 ? locals[statement.getIndex()] : ANY;
+
+        // A variable keeps the type of its first value, the null of a string included
+        if (isSingle(variable) && isSingle(type) && variable != type) {
+            new TypeError("Incorrect type for variable " + statement.getName() + ": except " + Types.getTypeName(valueType(variable)) + " but got type " + Types.getTypeName(valueType(type)), statement.getFileName(), statement.getLine(), statement.getPos());
+        }
+        if (isSingle(variable) && type == variable) {
+            statement.setChecked(true);
+            statistics.count("assignments checked");
+        }
+        return 0;
+    }
+
+    @Override
+    public Integer visitVariableDeclaration(VariableDeclarationStatement statement) {
+        if (ForbiddenNames.isForbiddenName(statement.getName())) {
+            new SyntaxError("Variable name " + statement.getName() + " is forbidden", statement.getFileName(), statement.getLine(), statement.getPos());
+        }
+
+        int type = check(statement.getExpression());
+        int variable = variable(statement.getType());
+        int accepted = statement.getType() == TokenType.FLOAT ? FLOAT | INT : variable;
+        if (type == VOID) {
+            new TypeError("Cannot assign void function to a variable", statement.getFileName(), statement.getLine(), statement.getPos());
+        } else if (type == NULL && (accepted & NULL) == 0) {
+            new TypeError(Types.getTypeName(statement.getType()) + " variable cannot be null", statement.getFileName(), statement.getLine(), statement.getPos() - 1);
+        } else if (isSingle(type) && (type & accepted) == 0) {
+            new TypeError("Expected type " + Types.getTypeName(statement.getType()) + " but got " + Types.getTypeName(valueType(type)), statement.getFileName(), statement.getLine(), statement.getPos() - 1);
+        }
+        if (isWithin(type, accepted)) {
+            statement.setChecked(true);
+            statistics.count("declarations checked");
+        }
+
+        // Assignments keeping the type of the value, a local keeps that of the value it was declared with
+        int stored = type & variable | (statement.getType() == TokenType.FLOAT && (type & INT) != 0 ? FLOAT : 0);
+        if (statement.getDepth() != VariableManager.GLOBAL && statement.getIndex() < locals.length) {
+            locals[statement.getIndex()] = stored != 0 ? stored : variable;
+        }
+        return 0;
+    }
+}
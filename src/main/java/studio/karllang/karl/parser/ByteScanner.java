@@ -0,0 +1,33 @@
+package studio.karllang.karl.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the bytes that end the runs skipped by the lexer: blanks, comments and string bodies. Each method returns
+ * the offset of the first byte of [from, end) that stops the run, or end if there is none.
+ */
+public interface ByteScanner {
+    // Vector scanner when available, scalar one otherwise
+    ByteScanner DEFAULT = vector() != null ? vector() : scalar();
+
+    // First byte that is neither a space nor a tab
+    int skipBlanks(ByteBuffer input, int from, int end);
+
+    // First \n
+    int findLineEnd(ByteBuffer input, int from, int end);
+
+    // First *, \n or \r
+    int findCommentStop(ByteBuffer input, int from, int end);
+
+    // First ", \, \n or \r
+    int findStringStop(ByteBuffer input, int from, int end);
+
+    static ByteScanner scalar() {
+        return ByteScanners.SCALAR;
+    }
+
+    // Scanner on the Vector API, null when the jdk.incubator.vector module is not loaded
+    static ByteScanner vector() {
+        return ByteScanners.VECTOR;
+    }
+}
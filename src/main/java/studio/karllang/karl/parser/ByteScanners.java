@@ -0,0 +1,21 @@
+package studio.karllang.karl.parser;
+
+final class ByteScanners {
+    static final ByteScanner SCALAR = new ScalarScanner();
+    static final ByteScanner VECTOR = loadVector();
+
+    private ByteScanners() {
+    }
+
+    // Only loads the vector scanner when its module is there, its class would not link otherwise
+    private static ByteScanner loadVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (ByteScanner) Class.forName("studio.karllang.karl.parser.VectorScanner").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package studio.karllang.karl.parser;
+
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+
+/**
+ * A parsed file: its statements with the symbols and functions they refer to. Nothing global is touched until
+ * the unit is linked, so the files of a project can be parsed at the same time.
+ */
+public final class CompilationUnit {
+    private final String fileName;
+    private final Source source;
+    private final SymbolTable symbols;
+    private final ArrayList<Statement> statements;
+    private final FunctionTable functions;
+
+    public CompilationUnit(String fileName, Source source, SymbolTable symbols, ArrayList<Statement> statements, FunctionTable functions) {
+        this.fileName = fileName;
+        this.source = source;
+        this.symbols = symbols;
+        this.statements = statements;
+        this.functions = functions;
+    }
+
+    // Makes this unit the current file of the managers, before its statements are evaluated
+    public void link() {
+        VariableManager.addFile(fileName, symbols);
+        FunctionManager.addFile(fileName, symbols, functions);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public ArrayList<Statement> getStatements() {
+        return statements;
+    }
+
+    public FunctionTable getFunctions() {
+        return functions;
+    }
+}
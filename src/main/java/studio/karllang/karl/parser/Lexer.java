@@ -2,267 +2,549 @@ package studio.karllang.karl.parser;
 
 import studio.karllang.karl.errors.Error;
 import studio.karllang.karl.errors.SyntaxError.SyntaxError;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 public class Lexer {
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte NEWLINE = 2;
+    private static final byte DIGIT = 3;
+    private static final byte LETTER = 4;
+    private static final byte OPERATOR = 5;
+    private static final byte QUOTE = 6;
+    private static final byte APOSTROPHE = 7;
+
+    private static final byte MULTIBYTE = 8;
+
+    private static final String OPERATOR_CHARS = "()[]{}^*=<>,!~&:+|./%?;-";
+    private static final byte[] CHAR_CLASS = new byte[256];
+    private static final TokenType[] OPERATORS = new TokenType[128];
+    private static final char[] PAIR_CHARS = new char[128];
+    private static final TokenType[] PAIR_OPERATORS = new TokenType[128];
+
+    // Tokens after which a streamed segment is handed over at the next statement boundary
+    private static final int SEGMENT_TOKENS = 256;
+    // Sources from this size on are lexed in chunks of about CHUNK_SIZE bytes in parallel
+    private static final int PARALLEL_THRESHOLD = 4 << 20;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int KEYWORD_TABLE_SIZE = 64;
+    private static final String[] KEYWORD_NAMES = new String[KEYWORD_TABLE_SIZE];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[KEYWORD_TABLE_SIZE];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            if (c >= '0' && c <= '9') CHAR_CLASS[c] = DIGIT;
+            else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$') CHAR_CLASS[c] = LETTER;
+            else if (c == '\n' || c == '\r') CHAR_CLASS[c] = NEWLINE;
+            else if (c == '"') CHAR_CLASS[c] = QUOTE;
+            else if (c == '\'') CHAR_CLASS[c] = APOSTROPHE;
+            else if (OPERATOR_CHARS.indexOf(c) != -1) CHAR_CLASS[c] = OPERATOR;
+            else if (Character.isWhitespace(c)) CHAR_CLASS[c] = WHITESPACE;
+        }
+        for (int c = 128; c < 256; c++) {
+            CHAR_CLASS[c] = MULTIBYTE;
+        }
+
+        for (TokenType type : new TokenType[]{
+                TokenType.PLUS, TokenType.MINUS, TokenType.MULTIPLY, TokenType.DIVIDE, TokenType.MODULO, TokenType.EQUAL,
+                TokenType.GREATER, TokenType.LESS, TokenType.EXCLAMATION, TokenType.LEFT_PARENTHESIS, TokenType.RIGHT_PARENTHESIS,
+                TokenType.LEFT_BRACKET, TokenType.RIGHT_BRACKET, TokenType.LEFT_BRACE, TokenType.RIGHT_BRACE, TokenType.COMMA,
+                TokenType.COLON, TokenType.AMP, TokenType.BAR, TokenType.POINT, TokenType.POW, TokenType.TILDE,
+                TokenType.QUESTION, TokenType.SEMICOLON}) {
+            OPERATORS[type.getName().charAt(0)] = type;
+        }
+
+        for (TokenType type : new TokenType[]{
+                TokenType.PLUSPLUS, TokenType.MINUSMINUS, TokenType.AND, TokenType.OR, TokenType.EQUALEQUAL,
+                TokenType.NOT_EQUAL, TokenType.GREATER_EQUAL, TokenType.LESS_EQUAL, TokenType.COMMENTARY}) {
+            PAIR_CHARS[type.getName().charAt(0)] = type.getName().charAt(1);
+            PAIR_OPERATORS[type.getName().charAt(0)] = type;
+        }
+
+        for (TokenType type : new TokenType[]{
+                TokenType.FUNC, TokenType.RETURN, TokenType.IF, TokenType.ELSE, TokenType.WHILE, TokenType.FOR,
+                TokenType.BOOL, TokenType.FINAL, TokenType.INT, TokenType.FLOAT, TokenType.STRING, TokenType.CHAR,
+                TokenType.VOID, TokenType.NULL}) {
+            addKeyword(type.getName(), type);
+        }
+        addKeyword("true", TokenType.BOOL_VALUE);
+        addKeyword("false", TokenType.BOOL_VALUE);
+        addKeyword("show", TokenType.SHOW);
+    }
 
-    public final ArrayList<Token> tokens = new ArrayList<>();
-    private final StringBuilder buffer;
-    private final String OPERATOR_CHARS = "()[]{}^*=<>,!~&:+|./%?;-";
-    private final Map<String, TokenType> OPERATORS = new HashMap<>();
-    private final Map<String, TokenType> KEYWORDS = new HashMap<>();
+    public final TokenBuffer tokens;
+    private final Source source;
+    private final SymbolTable symbols;
     private final String fileName;
-    public String input;
+    private final ByteBuffer input;
+    private final int length;
+    private final Consumer<TokenBuffer> segments;
+    private final boolean deferErrors;
+    private final ByteScanner scanner;
+    private TokenBuffer buffer;
     private int position;
     private int line;
 
     public Lexer(String input, String fileName) {
-        this.fileName = fileName;
-        buffer = new StringBuilder(input);
-        this.input = input;
+        this(Source.of(input, fileName), new SymbolTable());
+    }
+
+    public Lexer(Source source, SymbolTable symbols) {
+        this(source, symbols, null, ByteScanner.DEFAULT);
+    }
+
+    // With a segment consumer, the tokens are handed over in segments of whole top-level statements as they are lexed
+    public Lexer(Source source, SymbolTable symbols, Consumer<TokenBuffer> segments) {
+        this(source, symbols, segments, ByteScanner.DEFAULT);
+    }
+
+    public Lexer(Source source, SymbolTable symbols, ByteScanner scanner) {
+        this(source, symbols, null, scanner);
+    }
+
+    private Lexer(Source source, SymbolTable symbols, Consumer<TokenBuffer> segments, ByteScanner scanner) {
+        this.source = source;
+        this.symbols = symbols;
+        this.fileName = source.getPath();
+        this.input = source.getBytes();
+        this.length = source.length();
+        this.segments = segments;
+        this.deferErrors = segments != null;
+        this.scanner = scanner;
         position = 0;
         line = 1;
 
-        OPERATORS.put("+", TokenType.PLUS);
-        OPERATORS.put("++", TokenType.PLUSPLUS);
-        OPERATORS.put("--", TokenType.MINUSMINUS);
-        OPERATORS.put("&&", TokenType.AND);
-        OPERATORS.put("||", TokenType.OR);
-        OPERATORS.put("==", TokenType.EQUALEQUAL);
-        OPERATORS.put("!=", TokenType.NOT_EQUAL);
-        OPERATORS.put(">", TokenType.GREATER);
-        OPERATORS.put("<", TokenType.LESS);
-        OPERATORS.put(">=", TokenType.GREATER_EQUAL);
-        OPERATORS.put("<=", TokenType.LESS_EQUAL);
-        OPERATORS.put("-", TokenType.MINUS);
-        OPERATORS.put("*", TokenType.MULTIPLY);
-        OPERATORS.put("/", TokenType.DIVIDE);
-        OPERATORS.put("%", TokenType.MODULO);
-        OPERATORS.put("=", TokenType.EQUAL);
-        OPERATORS.put("(", TokenType.LEFT_PARENTHESIS);
-        OPERATORS.put(")", TokenType.RIGHT_PARENTHESIS);
-        OPERATORS.put("[", TokenType.LEFT_BRACKET);
-        OPERATORS.put("]", TokenType.RIGHT_BRACKET);
-        OPERATORS.put("{", TokenType.LEFT_BRACE);
-        OPERATORS.put("}", TokenType.RIGHT_BRACE);
-        OPERATORS.put(",", TokenType.COMMA);
-        OPERATORS.put(":", TokenType.COLON);
-        OPERATORS.put("&", TokenType.AMP);
-        OPERATORS.put("|", TokenType.BAR);
-        OPERATORS.put(".", TokenType.POINT);
-        OPERATORS.put("^", TokenType.POW);
-        OPERATORS.put("~", TokenType.TILDE);
-        OPERATORS.put("?", TokenType.QUESTION);
-        OPERATORS.put("!", TokenType.EXCLAMATION);
-        OPERATORS.put(";", TokenType.SEMICOLON);
-        OPERATORS.put("//", TokenType.COMMENTARY);
-
-
-        KEYWORDS.put("func", TokenType.FUNC);
-        KEYWORDS.put("return", TokenType.RETURN);
-        KEYWORDS.put("if", TokenType.IF);
-        KEYWORDS.put("else", TokenType.ELSE);
-        KEYWORDS.put("while", TokenType.WHILE);
-        KEYWORDS.put("for", TokenType.FOR);
-        KEYWORDS.put("bool", TokenType.BOOL);
-        KEYWORDS.put("final", TokenType.FINAL);
-        KEYWORDS.put("int", TokenType.INT);
-        KEYWORDS.put("float", TokenType.FLOAT);
-        KEYWORDS.put("string", TokenType.STRING);
-        KEYWORDS.put("char", TokenType.CHAR);
-        KEYWORDS.put("void", TokenType.VOID);
-        KEYWORDS.put("null", TokenType.NULL);
-
-        tokenize();
-    }
-
-    public void tokenize() {
-        if (input.length() == 0) {
+        if (length == 0) {
             new Error("RetardError :)", "Empty file", fileName, line, 0);
         }
 
-        while (position < input.length()) {
-            final char c = input.charAt(position);
-            if (c == '/' && position + 1 < input.length() && input.charAt(position + 1) == '/') tokenizeComment();
-            else if (c == '/' && position + 1 < input.length() && input.charAt(position + 1) == '*')
-                tokenizeMultiLineComment();
-            else if (c == '\n' || c == '\r') {
-                line++;
-                position++;
-            } else if (Character.isDigit(c) || (c == '-' && position + 1 < input.length() && Character.isDigit(input.charAt(position + 1))))
-                tokenizeNumber();
-            else if (String.valueOf(c).matches("^[a-zA-Z_$][a-zA-Z_$0-9]*$")) tokenizeIdentifier();
-            else if (c == '"') tokenizeString();
-            else if (c == '\'') tokenizeChar();
-            else if (OPERATOR_CHARS.indexOf(c) != -1) tokenizeOperator();
-            else if (Character.isWhitespace(c)) nextChar();
-            else new SyntaxError("Unexpected character: " + c, fileName, line, position);
+        if (segments == null) {
+            buffer = new TokenBuffer(source, symbols);
+            tokenize();
+        } else {
+            buffer = new TokenBuffer(source, symbols, SEGMENT_TOKENS * 2);
+            stream();
         }
-
-        tokens.add(new Token(TokenType.EOF, "EOF", input.length(), line));
+        tokens = buffer;
     }
 
-    private void tokenizeComment() {
-        while (position < input.length() && input.charAt(position) != '\n') {
-            position++;
+    // Lexes the bytes of [start, end) from the given line with a symbol table of its own, as one chunk of a file
+    private Lexer(Source source, int start, int end, int line) {
+        this.source = source;
+        this.symbols = new SymbolTable();
+        this.fileName = source.getPath();
+        this.input = source.getBytes();
+        this.length = end;
+        this.segments = null;
+        this.deferErrors = true;
+        this.scanner = ByteScanner.DEFAULT;
+        this.position = start;
+        this.line = line;
+
+        buffer = new TokenBuffer(source, symbols, Math.max(16, (end - start) / 8));
+        try {
+            while (position < length) {
+                scan();
+            }
+        } catch (DeferredError e) {
+            buffer.setError(e.error);
         }
+        tokens = buffer;
     }
 
-    private void tokenizeMultiLineComment() {
-        while (position + 1 < input.length() && !(input.charAt(position) == '*' && input.charAt(position + 1) == '/')) {
-            position++;
+    // Tokens of a source, lexed in parallel chunks from PARALLEL_THRESHOLD bytes on
+    public static TokenBuffer lex(Source source, SymbolTable symbols) {
+        if (source.length() < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return new Lexer(source, symbols).tokens;
         }
-        position += 2;
+        return lexParallel(source, symbols, ForkJoinPool.commonPool(), CHUNK_SIZE);
     }
 
-    private void tokenizeChar() {
-        nextChar();
-        final char c = input.charAt(position);
-        nextChar();
-        if (input.charAt(position) != '\'') {
-            if (input.charAt(position) != '\'') {
-                new SyntaxError("Character type can only contain one character", fileName, line, position);
+    /**
+     * Splits the source after line breaks found outside of strings, chars and comments about every {@code chunkSize}
+     * bytes, lexes the chunks on the pool and joins them into the same tokens, lines and symbol ids as one lexer
+     * would give. The first error in source order is raised.
+     */
+    public static TokenBuffer lexParallel(Source source, SymbolTable symbols, ForkJoinPool pool, int chunkSize) {
+        final ByteBuffer input = source.getBytes();
+        final int length = source.length();
+        if (length == 0) {
+            new Error("RetardError :)", "Empty file", source.getPath(), 1, 0);
+        }
+
+        // The scan only follows what the lexer would skip, so that a chunk never starts inside a string or a comment
+        final ArrayList<ForkJoinTask<Lexer>> chunks = new ArrayList<>();
+        int start = 0;
+        int startLine = 1;
+        int line = 1;
+        int position = 0;
+        while (position < length) {
+            final int c = input.get(position) & 0xFF;
+            if (c == '\n' || c == '\r') {
+                position++;
+                if (c == '\r' && position < length && input.get(position) == '\n') position++;
+                line++;
+                if (position - start >= chunkSize && position < length) {
+                    chunks.add(submitChunk(pool, source, start, position, startLine));
+                    start = position;
+                    startLine = line;
+                }
+            } else if (c == '"') {
+                position++;
+                while (position < length) {
+                    final int b = input.get(position) & 0xFF;
+                    if (b == '"') {
+                        position++;
+                        break;
+                    } else if (b == '\\') {
+                        position += 2;
+                    } else if (b == '\n' || b == '\r') {
+                        position++;
+                        if (b == '\r' && position < length && input.get(position) == '\n') position++;
+                        line++;
+                    } else {
+                        position++;
+                    }
+                }
+            } else if (c == '\'') {
+                position += 2 + (position + 1 < length ? sequenceLength(input.get(position + 1) & 0xFF) : 0);
+            } else if (c == '/' && position + 1 < length && input.get(position + 1) == '/') {
+                while (position < length && input.get(position) != '\n') {
+                    position++;
+                }
+            } else if (c == '/' && position + 1 < length && input.get(position + 1) == '*') {
+                position += 2;
+                while (position < length) {
+                    final int b = input.get(position) & 0xFF;
+                    if (b == '*' && position + 1 < length && input.get(position + 1) == '/') {
+                        position += 2;
+                        break;
+                    } else if (b == '\n' || b == '\r') {
+                        position++;
+                        if (b == '\r' && position < length && input.get(position) == '\n') position++;
+                        line++;
+                    } else {
+                        position++;
+                    }
+                }
             } else {
-                new SyntaxError("Expected ' at end of char value", fileName, line, position);
+                position++;
             }
         }
-        nextChar();
-        tokens.add(new Token(TokenType.CHAR_VALUE, String.valueOf(c), position - 2, line));
-    }
-
-    public void tokenizeNumber() {
-        buffer.setLength(0);
-        char c = input.charAt(position);
-        if (position + 1 < input.length() && Character.isLetter(input.charAt(position + 1))) {
-            new SyntaxError("Unexpected character: " + input.charAt(position), fileName, line, position);
+        chunks.add(submitChunk(pool, source, start, length, startLine));
+
+        // Joined in order, so that the symbol ids are given in the order of the first occurrences
+        int size = 1;
+        final Lexer[] lexers = new Lexer[chunks.size()];
+        for (int i = 0; i < lexers.length; i++) {
+            lexers[i] = chunks.get(i).join();
+            lexers[i].tokens.raiseError();
+            size += lexers[i].tokens.size();
         }
 
-        while (true) {
-            if (c == '\0') {
-                break;
+        final TokenBuffer tokens = new TokenBuffer(source, symbols, size);
+        for (Lexer lexer : lexers) {
+            final SymbolTable local = lexer.symbols;
+            final int[] symbolMap = new int[local.size()];
+            for (int id = 0; id < symbolMap.length; id++) {
+                symbolMap[id] = symbols.intern(local.getName(id));
             }
+            tokens.append(lexer.tokens, symbolMap);
+        }
+        tokens.add(TokenType.EOF, length, 0, lexers[lexers.length - 1].line);
+        return tokens;
+    }
 
-            if ((c == '.' && buffer.indexOf(".") != -1) || (c == '-' && buffer.indexOf("-") != -1)) {
-                new SyntaxError("Invalid number", fileName, line, position);
-            } else if (!Character.isDigit(c) && (c != '.' && c != '-')) {
-                break;
-            }
+    private static ForkJoinTask<Lexer> submitChunk(ForkJoinPool pool, Source source, int start, int end, int line) {
+        return pool.submit(() -> new Lexer(source, start, end, line));
+    }
 
-            buffer.append(c);
-            c = nextChar();
+    private static void addKeyword(String name, TokenType type) {
+        int slot = keywordHash(name.charAt(0), name.charAt(name.length() - 1), name.length());
+        while (KEYWORD_NAMES[slot] != null) {
+            slot = (slot + 1) & (KEYWORD_TABLE_SIZE - 1);
         }
+        KEYWORD_NAMES[slot] = name;
+        KEYWORD_TYPES[slot] = type;
+    }
 
-        if (buffer.indexOf(".") != -1) {
-            addToken(TokenType.FLOAT_VALUE, buffer.toString());
-        } else {
-            addToken(TokenType.INT_VALUE, buffer.toString());
+    private static int keywordHash(int first, int last, int length) {
+        return (first * 7 + last * 3 + length) & (KEYWORD_TABLE_SIZE - 1);
+    }
+
+    private void tokenize() {
+        while (position < length) {
+            scan();
         }
+
+        buffer.add(TokenType.EOF, length, 0, line);
+        buffer.trimToSize();
     }
 
-    public void tokenizeIdentifier() {
-        buffer.setLength(0);
-        char c = input.charAt(position);
-        while (true) {
-            if (c == '\0') {
-                break;
+    // A segment ends before the first token that follows a ';' or a '}' outside of braces, other than an else,
+    // once it holds SEGMENT_TOKENS tokens. A syntax error is deferred to the segment that starts with the
+    // statement it was found in, so that the statements before it can still run.
+    private void stream() {
+        int depth = 0;
+        int boundary = 0;
+        boolean ended = false;
+        try {
+            while (position < length) {
+                final int index = buffer.size();
+                scan();
+                if (buffer.size() == index) continue;
+
+                final TokenType type = buffer.getType(index);
+                if (ended && type != TokenType.ELSE) {
+                    boundary = index;
+                    if (index >= SEGMENT_TOKENS) {
+                        flush(index);
+                        boundary = 0;
+                    }
+                }
+                if (type == TokenType.LEFT_BRACE) depth++;
+                else if (type == TokenType.RIGHT_BRACE && depth > 0) depth--;
+                ended = depth == 0 && (type == TokenType.SEMICOLON || type == TokenType.RIGHT_BRACE);
             }
+        } catch (DeferredError e) {
+            if (ended) boundary = buffer.size();
+            if (boundary > 0) flush(boundary);
+            buffer.setError(e.error);
+        }
 
-            if (!Character.isLetterOrDigit(c) && c != '_') {
-                break;
-            }
+        buffer.add(TokenType.EOF, length, 0, line);
+        segments.accept(buffer);
+    }
+
+    // Hands over the tokens before an index as a segment and goes on with the others in a new one
+    private void flush(int end) {
+        final TokenBuffer next = new TokenBuffer(source, symbols, SEGMENT_TOKENS * 2);
+        buffer.moveTail(end, next);
+        buffer.add(TokenType.EOF, buffer.getStart(end - 1) + buffer.getLength(end - 1), 0, buffer.getLine(end - 1));
+        segments.accept(buffer);
+        buffer = next;
+    }
 
-            buffer.append(c);
-            c = nextChar();
+    private void scan() {
+        final int c = at(position);
+        switch (CHAR_CLASS[c]) {
+            case WHITESPACE -> position = scanner.skipBlanks(input, position + 1, length);
+            case NEWLINE -> newLine(c);
+            case DIGIT -> tokenizeNumber();
+            case LETTER -> tokenizeIdentifier();
+            case QUOTE -> tokenizeString();
+            case APOSTROPHE -> tokenizeChar();
+            case OPERATOR -> {
+                final int next = at(position + 1);
+                if (c == '/' && next == '/') tokenizeComment();
+                else if (c == '/' && next == '*') tokenizeMultiLineComment();
+                else if (c == '-' && next >= '0' && next <= '9') tokenizeNumber();
+                else tokenizeOperator(c, next);
+            }
+            case MULTIBYTE -> {
+                final int codePoint = codePointAt(position);
+                if (Character.isDigit(codePoint)) tokenizeNumber();
+                else if (Character.isWhitespace(codePoint)) position += sequenceLength(c);
+                else unexpected(codePoint);
+            }
+            default -> unexpected(c);
         }
-        if (buffer.toString().equals("true") || buffer.toString().equals("false")) {
-            addToken(TokenType.BOOL_VALUE, buffer.toString());
-        } else if (buffer.toString().equals("show")) {
-            addToken(TokenType.SHOW, buffer.toString());
+    }
+
+    private void syntaxError(String message, int at) {
+        if (!deferErrors) {
+            new SyntaxError(message, fileName, line, at);
         } else {
-            addToken(KEYWORDS.getOrDefault(buffer.toString(), TokenType.IDENTIFIER), buffer.toString());
+            final int errorLine = line;
+            throw new DeferredError(() -> new SyntaxError(message, fileName, errorLine, at));
         }
     }
 
-    public void tokenizeString() {
-        buffer.setLength(0);
-        char c = nextChar();
-        while (true) {
-            if (c == '\\') {
-                c = nextChar();
-                switch (c) {
-                    case 'n' -> buffer.append('\n');
-                    case 't' -> buffer.append('\t');
-                    case 'r' -> buffer.append('\r');
-                    case 'b' -> buffer.append('\b');
-                    case 'f' -> buffer.append('\f');
-                    case '\'' -> buffer.append('\'');
-                    case '"' -> buffer.append('\"');
-                    case '\\' -> buffer.append('\\');
-                    case '0' -> buffer.append('\0');
-                    default -> new SyntaxError("Invalid escape character: " + c, fileName, line, position);
-                }
-                c = nextChar();
-            }
+    // Unsigned byte at an offset, 0 past the end of the input
+    private int at(int offset) {
+        return offset < length ? input.get(offset) & 0xFF : 0;
+    }
 
-            if (c == '\0') {
-                new SyntaxError("Unterminated string", fileName, line, position);
-            }
+    private static int sequenceLength(int leading) {
+        if (leading >= 0xF0) return 4;
+        if (leading >= 0xE0) return 3;
+        if (leading >= 0xC0) return 2;
+        return 1;
+    }
 
-            if (c == '"') {
-                nextChar();
-                break;
-            }
+    private int codePointAt(int offset) {
+        final int leading = at(offset);
+        return switch (sequenceLength(leading)) {
+            case 2 -> (leading & 0x1F) << 6 | at(offset + 1) & 0x3F;
+            case 3 -> (leading & 0x0F) << 12 | (at(offset + 1) & 0x3F) << 6 | at(offset + 2) & 0x3F;
+            case 4 -> (leading & 0x07) << 18 | (at(offset + 1) & 0x3F) << 12 | (at(offset + 2) & 0x3F) << 6 | at(offset + 3) & 0x3F;
+            default -> leading < 0x80 ? leading : 0xFFFD;
+        };
+    }
+
+    private void unexpected(int codePoint) {
+        syntaxError("Unexpected character: " + Character.toString(codePoint), position);
+    }
+
+    // Line breaks are \n, \r\n or a lone \r, as for the lines of the Source
+    private void newLine(int c) {
+        position++;
+        if (c == '\r' && at(position) == '\n') position++;
+        line++;
+    }
 
-            buffer.append(c);
-            c = nextChar();
+    private boolean isIdentifierPart(int c) {
+        final byte charClass = CHAR_CLASS[c];
+        if (charClass == MULTIBYTE) {
+            return Character.isLetterOrDigit(codePointAt(position));
         }
+        return charClass == LETTER || charClass == DIGIT;
+    }
 
-        addToken(TokenType.STR_VALUE, buffer.toString());
+    private void tokenizeComment() {
+        position = scanner.findLineEnd(input, position, length);
     }
 
-    public void tokenizeOperator() {
-        buffer.setLength(0);
-        char c = input.charAt(position);
-        while (true) {
-            if (c == '\0') {
-                break;
+    private void tokenizeMultiLineComment() {
+        position += 2;
+        while ((position = scanner.findCommentStop(input, position, length)) < length) {
+            final int c = at(position);
+            if (c == '*' && at(position + 1) == '/') {
+                position += 2;
+                return;
             }
+            if (c == '\n' || c == '\r') newLine(c);
+            else position++;
+        }
+    }
 
-            if (OPERATOR_CHARS.indexOf(c) == -1) {
+    private void tokenizeChar() {
+        final int c = at(position + 1);
+        final int size = sequenceLength(c);
+        if (position + 1 + size >= length || at(position + 1 + size) != '\'' || size == 4 || c == '\'') {
+            syntaxError("Character type can only contain one character", Math.min(position + 2, length));
+        }
+        buffer.add(TokenType.CHAR_VALUE, position, size + 2, line);
+        position += size + 2;
+    }
+
+    private void tokenizeNumber() {
+        final int start = position;
+        final int afterFirst = position + sequenceLength(at(position));
+        if (afterFirst < length && Character.isLetter(codePointAt(afterFirst))) {
+            unexpected(codePointAt(position));
+        }
+
+        boolean dot = false;
+        boolean minus = false;
+        while (position < length) {
+            final int c = at(position);
+            if (c >= '0' && c <= '9') {
+                position++;
+            } else if (c == '.') {
+                if (dot) syntaxError("Invalid number", position);
+                dot = true;
+                position++;
+            } else if (c == '-') {
+                if (minus) syntaxError("Invalid number", position);
+                minus = true;
+                position++;
+            } else if (c >= 128 && Character.isDigit(codePointAt(position))) {
+                position += sequenceLength(c);
+            } else {
                 break;
             }
+        }
 
-            buffer.append(c);
-            c = nextChar();
-
-            if (OPERATORS.containsKey(buffer.toString())) {
-                if (Character.toString(c).equals(buffer.toString()) && Arrays.asList(new Character[]{'|', '&', '=', '+', '-', '/'}).contains(c)) {
-                    addToken(OPERATORS.get(buffer.toString() + c), buffer.toString() + c);
-                    nextChar();
-                } else if (Arrays.asList(new String[]{">", "<", "!"}).contains(buffer.toString()) && c == '=') {
-                    addToken(OPERATORS.get(buffer.toString() + c), buffer.toString() + c);
-                    nextChar();
-                } else {
-                    addToken(OPERATORS.get(buffer.toString()), buffer.toString());
-                }
+        addToken(dot ? TokenType.FLOAT_VALUE : TokenType.INT_VALUE, start);
+    }
+
+    private void tokenizeIdentifier() {
+        final int start = position;
+        position++;
+        while (position < length) {
+            final int c = at(position);
+            if (!isIdentifierPart(c)) break;
+            position += sequenceLength(c);
+        }
+
+        final int size = position - start;
+        int slot = keywordHash(at(start), at(position - 1), size);
+        while (KEYWORD_NAMES[slot] != null) {
+            final String keyword = KEYWORD_NAMES[slot];
+            if (keyword.length() == size && regionMatches(start, keyword)) {
+                addToken(KEYWORD_TYPES[slot], start);
                 return;
             }
+            slot = (slot + 1) & (KEYWORD_TABLE_SIZE - 1);
         }
+
+        buffer.addIdentifier(symbols.intern(input, start, size), start, size, line);
     }
 
-    public char nextChar() {
-        position++;
-        if (position >= input.length()) {
-            return '\0';
+    private boolean regionMatches(int start, String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (at(start + i) != keyword.charAt(i)) return false;
         }
-        return input.charAt(position);
+        return true;
     }
 
-    public void addToken(TokenType type, String value) {
-        tokens.add(new Token(type, value, position, line));
+    private void tokenizeString() {
+        final int start = position++;
+        final int startLine = line;
+        while ((position = scanner.findStringStop(input, position, length)) < length) {
+            final int c = at(position);
+            if (c == '"') {
+                position++;
+                buffer.add(TokenType.STR_VALUE, start, position - start, startLine);
+                return;
+            } else if (c == '\\') {
+                position++;
+                final int escaped = at(position);
+                switch (escaped) {
+                    case 'n', 't', 'r', 'b', 'f', '\'', '"', '\\', '0' -> {
+                    }
+                    default -> syntaxError("Invalid escape character: " + (char) escaped, position);
+                }
+                position++;
+            } else {
+                newLine(c);
+            }
+        }
+        syntaxError("Unterminated string", position);
+    }
+
+    private void tokenizeOperator(int c, int next) {
+        // Maximal munch: every two-character operator starts with a character that is an operator on its own.
+        if (next != 0 && PAIR_CHARS[c] == next) {
+            buffer.add(PAIR_OPERATORS[c], position, 2, line);
+            position += 2;
+        } else {
+            buffer.add(OPERATORS[c], position, 1, line);
+            position++;
+        }
+    }
+
+    private void addToken(TokenType type, int start) {
+        buffer.add(type, start, position - start, line);
+    }
+
+    private static final class DeferredError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Runnable error;
+
+        private DeferredError(Runnable error) {
+            super(null, null, false, false);
+            this.error = error;
+        }
     }
 }
@@ -12,15 +12,31 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 
 public final class Parser {
+    // Precedence of the arithmetic, comparison and logical operators by token type, 0 for the other tokens
+    private static final int[] PRECEDENCES = new int[TokenType.values().length];
+
+    static {
+        for (TokenType type : TokenType.values()) {
+            PRECEDENCES[type.ordinal()] = Math.max(Operators.getPrecedence(type), LogicalOperators.getPrecedence(type));
+        }
+    }
+
     public final String fileName;
     private final int size;
-    private final ArrayList<Token> tokens;
+    private final TokenBuffer tokens;
+    private final FunctionTable functions;
     private final ArrayList<Statement> statements = new ArrayList<>();
     private int pos;
 
-    public Parser(ArrayList<Token> tokens, String fileName) {
+    public Parser(TokenBuffer tokens, String fileName) {
+        this(tokens, fileName, new FunctionTable());
+    }
+
+    // Declared functions go to the given table, shared by the parsers of the segments of a streamed file
+    public Parser(TokenBuffer tokens, String fileName, FunctionTable functions) {
         this.tokens = tokens;
         this.fileName = fileName;
+        this.functions = functions;
         this.pos = 0;
         this.size = tokens.size();
     }
@@ -35,6 +51,10 @@ public final class Parser {
         return statements;
     }
 
+    public FunctionTable getFunctions() {
+        return functions;
+    }
+
     private Statement getStatement() {
         if (match(TokenType.SHOW)) {
             return show();
@@ -53,13 +73,14 @@ public final class Parser {
         } else if (match(TokenType.IDENTIFIER) && match(TokenType.LEFT_PARENTHESIS)) {
             return funcCall();
         } else {
-            new RuntimeError("Unexpected token: " + get(0).getValue(), fileName, get(0).getLine(), get(0).getPosition());
+            new RuntimeError("Unexpected token: " + getLexeme(0), fileName, getLine(0), getPosition(0));
             return null;
         }
     }
 
     private Statement funcCall() {
-        String name = get(-2).getValue();
+        String name = getLexeme(-2);
+        int symbol = getSymbol(-2);
         ArrayList<Expression> args = new ArrayList<>();
         while (!match(TokenType.RIGHT_PARENTHESIS) && pos < size - 1 && !checkType(0, TokenType.EOF)) {
             if (match(TokenType.COMMA)) continue;
@@ -68,63 +89,68 @@ public final class Parser {
         }
         skip(TokenType.SEMICOLON);
 
-        return new FuncCallStatement(new FuncCallExpression(name, args, fileName, get(-2).getLine(), get(-2).getPosition()));
+        return new FuncCallStatement(new FuncCallExpression(name, symbol, args, fileName, getLine(-2), getPosition(-2)));
     }
 
     private Statement funcDeclaration() {
-        String name = get(0).getValue();
+        String name = getLexeme(0);
+        int symbol = getSymbol(0);
         if (ForbiddenNames.isForbiddenName(name)) {
-            new RuntimeError("Function name " + name + " is forbidden", fileName, get(-1).getLine(), get(-1).getPosition());
+            new RuntimeError("Function name " + name + " is forbidden", fileName, getLine(-1), getPosition(-1));
         }
         skip(TokenType.IDENTIFIER);
-        if (FunctionManager.getCurrentFile().isFunction(name)) {
-            new RuntimeError("Function " + name + " already exists", fileName, get(-1).getLine(), get(-1).getPosition());
+        if (functions.contains(symbol)) {
+            new RuntimeError("Function " + name + " already exists", fileName, getLine(-1), getPosition(-1));
         }
 
         skip(TokenType.COLON);
         skip(TokenType.COLON);
         skip(TokenType.LEFT_PARENTHESIS);
         LinkedHashMap<String, TokenType> args = new LinkedHashMap<>();
+        ArrayList<Integer> argSymbols = new ArrayList<>();
         while (!match(TokenType.RIGHT_PARENTHESIS) && !checkType(0, TokenType.EOF)) {
             if (match(TokenType.STRING) || match(TokenType.INT) || match(TokenType.BOOL) || match(TokenType.FLOAT) || match(TokenType.CHAR)) {
-                TokenType type = get(-1).getType();
+                TokenType type = getType(-1);
                 skip(TokenType.COLON);
                 skip(TokenType.IDENTIFIER);
-                String paramName = get(-1).getValue();
+                String paramName = getLexeme(-1);
                 if (args.containsKey(paramName)) {
-                    new RuntimeError("Parameter " + paramName + " already exists", fileName, get(-1).getLine(), get(-1).getPosition());
+                    new RuntimeError("Parameter " + paramName + " already exists", fileName, getLine(-1), getPosition(-1));
                 }
                 args.put(paramName, type);
+                argSymbols.add(getSymbol(-1));
             } else {
-                new SyntaxError("Unexpected token " + get(0).getValue(), fileName, get(0).getLine(), get(0).getPosition());
+                new SyntaxError("Unexpected token " + getLexeme(0), fileName, getLine(0), getPosition(0));
             }
             match(TokenType.COMMA);
         }
         skip(TokenType.COLON);
         if (!Types.isType(getType()) && !checkType(0, TokenType.VOID)) {
-            new SyntaxError("Unexpected return type " + get(0).getValue(), fileName, get(0).getLine(), get(0).getPosition());
+            new SyntaxError("Unexpected return type " + getLexeme(0), fileName, getLine(0), getPosition(0));
         }
         TokenType returnType = getType();
         match(returnType);
         BlockStatement block = getBlock();
-        FunctionManager.getCurrentFile().addFunction(new Function(name, args, returnType, block));
+        Function function = new Function(name, args, argSymbols.stream().mapToInt(Integer::intValue).toArray(), returnType, block);
+        functions.add(symbol, function);
 
-        return new FunctionDeclarationStatement(name, args, returnType, block);
+        return new FunctionDeclarationStatement(symbol, function);
     }
 
     private Statement incrementDecrement() {
-        Token nameToken = get(0);
+        int nameToken = pos;
         match(TokenType.IDENTIFIER);
-        String name = nameToken.getValue();
+        String name = tokens.getValue(nameToken);
+        int symbol = tokens.getSymbol(nameToken);
 
-        Token operator = get(0);
-        match(getType());
-        if (operator.getType() == TokenType.PLUSPLUS) {
+        TokenType operator = getType();
+        match(operator);
+        if (operator == TokenType.PLUSPLUS) {
             skip(TokenType.SEMICOLON);
-            return new IncrementDecrementStatement(name, TokenType.PLUS, fileName, nameToken.getLine(), nameToken.getPosition());
+            return new IncrementDecrementStatement(name, symbol, TokenType.PLUS, fileName, tokens.getLine(nameToken), tokens.getPosition(nameToken));
         } else {
             skip(TokenType.SEMICOLON);
-            return new IncrementDecrementStatement(name, TokenType.MINUS, fileName, nameToken.getLine(), nameToken.getPosition());
+            return new IncrementDecrementStatement(name, symbol, TokenType.MINUS, fileName, tokens.getLine(nameToken), tokens.getPosition(nameToken));
         }
     }
 
@@ -135,9 +161,12 @@ public final class Parser {
         skip(TokenType.LEFT_BRACE);
         while (!checkType(0, TokenType.RIGHT_BRACE) && !checkType(0, TokenType.EOF) && pos < size - 1) {
             if (match(TokenType.RETURN)) {
+                // The position of the value returned
+                int line = getLine(0);
+                int position = getPosition(0);
                 Expression expr = getExpression();
                 skip(TokenType.SEMICOLON);
-                statements.add(new ReturnStatement(expr));
+                statements.add(new ReturnStatement(expr, fileName, line, position));
             } else {
                 Statement statement = getStatement();
                 if (statement != null) {
@@ -146,48 +175,37 @@ public final class Parser {
             }
         }
         if (!match(TokenType.RIGHT_BRACE))
-            new RuntimeError("Missing }", fileName, get(-1).getLine(), get(-1).getPosition());
+            new RuntimeError("Missing }", fileName, getLine(-1), getPosition(-1));
         return new BlockStatement(statements);
     }
 
     private Expression getExpression() {
-        Token token = get(0);
+        return getExpression(1);
+    }
+
+    // Precedence climbing: parses an operand, then every operator binding at least as tight as the given precedence,
+    // their right operand only taking the operators that bind tighter than them
+    private Expression getExpression(int minPrecedence) {
+        int line = getLine(0);
+        int position = getPosition(0);
         Expression expression = null;
-        if ((getType() == TokenType.IDENTIFIER && checkType(1, TokenType.LEFT_PARENTHESIS)) || (getType() == TokenType.IDENTIFIER) || (Types.isValueType(getType())) || (getType() == TokenType.EXCLAMATION)) {
+        if (getType() == TokenType.IDENTIFIER || Types.isValueType(getType()) || getType() == TokenType.EXCLAMATION) {
             expression = getValue();
         } else if (match(TokenType.LEFT_PARENTHESIS)) {
             expression = getExpression();
             skip(TokenType.RIGHT_PARENTHESIS);
         } else
-            new RuntimeError("Unknown expression : " + token.getValue(), fileName, token.getLine(), token.getPosition());
-
-        // Binary operations
-        if (Operators.isOperator(getType())) {
-            while (Operators.isOperator(getType())) {
-                TokenType operator = getType();
-                skip(operator);
-                int position = pos;
-                Expression right = getExpression();
-                if (!(right instanceof ValueExpression) && !(right instanceof BinaryExpression)) {
-                    pos = position;
-                    right = getValue();
-                }
-                expression = new BinaryExpression(expression, right, operator, fileName, token.getLine(), token.getPosition());
-            }
-        }
+            new RuntimeError("Unknown expression : " + getLexeme(0), fileName, line, position);
 
-        // Logical operations
-        if (LogicalOperators.isOperator(getType())) {
-            while (LogicalOperators.isOperator(getType())) {
-                TokenType operator = getType();
-                skip(operator);
-                Expression right;
-                if (operator == TokenType.AND || operator == TokenType.OR) {
-                    right = getExpression();
-                } else {
-                    right = getValue();
-                }
-                expression = new LogicalExpression(operator, expression, right, fileName, token.getLine(), token.getPosition());
+        int precedence;
+        while ((precedence = PRECEDENCES[getType().ordinal()]) >= minPrecedence) {
+            TokenType operator = getType();
+            pos++;
+            Expression right = getExpression(precedence + 1);
+            if (Operators.getPrecedence(operator) != 0) {
+                expression = new BinaryExpression(expression, right, operator, fileName, line, position);
+            } else {
+                expression = new LogicalExpression(operator, expression, right, fileName, line, position);
             }
         }
 
@@ -195,9 +213,10 @@ public final class Parser {
     }
 
     private Expression getValue() {
-        if (getType() == TokenType.IDENTIFIER && get(1).getType() == TokenType.LEFT_PARENTHESIS) {
-            Token nameToken = get(0);
-            String name = nameToken.getValue();
+        if (getType() == TokenType.IDENTIFIER && getType(1) == TokenType.LEFT_PARENTHESIS) {
+            int nameToken = pos;
+            String name = tokens.getValue(nameToken);
+            int symbol = tokens.getSymbol(nameToken);
             match(TokenType.IDENTIFIER);
             match(TokenType.LEFT_PARENTHESIS);
             ArrayList<Expression> args = new ArrayList<>();
@@ -206,10 +225,10 @@ public final class Parser {
                 match(TokenType.COMMA);
             }
 
-            return new FuncCallExpression(name, args, fileName, nameToken.getLine(), nameToken.getPosition());
+            return new FuncCallExpression(name, symbol, args, fileName, tokens.getLine(nameToken), tokens.getPosition(nameToken));
         } else if (match(TokenType.EXCLAMATION)) {
             if (getType() != TokenType.IDENTIFIER && getType() != TokenType.BOOL_VALUE && getType() != TokenType.LEFT_PARENTHESIS)
-                new RuntimeError("Unexpected token " + get(-1).getValue(), fileName, get(-1).getLine(), get(-1).getPosition());
+                new RuntimeError("Unexpected token " + getLexeme(-1), fileName, getLine(-1), getPosition(-1));
 
             Expression expr;
             if (match(TokenType.LEFT_PARENTHESIS)) {
@@ -217,36 +236,37 @@ public final class Parser {
                 skip(TokenType.RIGHT_PARENTHESIS);
             } else expr = getValue();
 
-            return new UnaryExpression(TokenType.EXCLAMATION, expr, fileName, get(-1).getLine(), get(-1).getPosition());
+            return new UnaryExpression(TokenType.EXCLAMATION, expr, fileName, getLine(-1), getPosition(-1));
         } else if (match(TokenType.STR_VALUE) || match(TokenType.INT_VALUE) || match(TokenType.BOOL_VALUE) || match(TokenType.FLOAT_VALUE) || match(TokenType.CHAR_VALUE) || match(TokenType.NULL)) {
-            Token token = get(-1);
-            return switch (token.getType()) {
-                case STR_VALUE -> new ValueExpression(token.getValue(), token.getType());
+            int token = pos - 1;
+            TokenType type = tokens.getType(token);
+            return switch (type) {
+                case STR_VALUE -> new ValueExpression(tokens.getValue(token), type);
                 case INT_VALUE -> {
                     try {
-                        yield new ValueExpression(Integer.parseInt(token.getValue()), token.getType());
+                        yield new ValueExpression(Integer.parseInt(tokens.getValue(token)), type);
                     } catch (NumberFormatException e) {
-                        new NumberError("Invalid number: " + token.getValue(), fileName, token.getLine(), token.getPosition());
+                        new NumberError("Invalid number: " + tokens.getValue(token), fileName, tokens.getLine(token), tokens.getPosition(token));
                         yield null;
                     }
                 }
-                case BOOL_VALUE -> new ValueExpression(Boolean.parseBoolean(token.getValue()), token.getType());
+                case BOOL_VALUE -> new ValueExpression(Boolean.parseBoolean(tokens.getValue(token)), type);
                 case FLOAT_VALUE -> {
                     try {
-                        yield new ValueExpression(Float.parseFloat(token.getValue()), token.getType());
+                        yield new ValueExpression(Float.parseFloat(tokens.getValue(token)), type);
                     } catch (NumberFormatException e) {
-                        new NumberError("Invalid number: " + token.getValue(), fileName, token.getLine(), token.getPosition());
+                        new NumberError("Invalid number: " + tokens.getValue(token), fileName, tokens.getLine(token), tokens.getPosition(token));
                         yield null;
                     }
                 }
-                case CHAR_VALUE -> new ValueExpression(token.getValue().charAt(0), token.getType());
-                case NULL -> new ValueExpression((String) null, token.getType());
+                case CHAR_VALUE -> new ValueExpression(tokens.getValue(token).charAt(0), type);
+                case NULL -> new ValueExpression((String) null, type);
                 default -> null;
             };
         } else if (match(TokenType.IDENTIFIER)) {
-            return new VariableCallExpression(get(-1).getValue(), fileName, get(0).getLine(), get(0).getPosition());
+            return new VariableCallExpression(getLexeme(-1), getSymbol(-1), fileName, getLine(0), getPosition(0));
         } else {
-            new RuntimeError("Unknown expression : " + get(-1).getValue(), fileName, get(-1).getLine(), get(-1).getPosition());
+            new RuntimeError("Unknown expression : " + getLexeme(-1), fileName, getLine(-1), getPosition(-1));
             return null;
         }
     }
@@ -268,27 +288,28 @@ public final class Parser {
     }
 
     private Statement variableAssignment() {
-        String name = get(0).getValue();
+        String name = getLexeme(0);
+        int symbol = getSymbol(0);
         match(TokenType.IDENTIFIER);
         skip(TokenType.EQUAL);
 
         Expression expr = getExpression();
 
         if (expr == null) {
-            new RuntimeError("Unknown expression : " + get(0).getValue(), fileName, get(0).getLine(), get(0).getPosition());
+            new RuntimeError("Unknown expression : " + getLexeme(0), fileName, getLine(0), getPosition(0));
         }
 
         skip(TokenType.SEMICOLON);
 
         assert expr != null;
-        return new VariableAssignmentStatement(name, expr, fileName, get(0).getLine(), get(0).getPosition());
+        return new VariableAssignmentStatement(name, symbol, expr, fileName, getLine(0), getPosition(0));
     }
 
     private Statement variableDeclaration(boolean isFinal) {
-        Token type = get(0);
-        match(type.getType());
+        TokenType type = getType();
+        match(type);
         skip(TokenType.COLON);
-        Token name = get(0);
+        int name = pos;
 
         skip(TokenType.IDENTIFIER);
         skip(TokenType.EQUAL);
@@ -296,10 +317,10 @@ public final class Parser {
         skip(TokenType.SEMICOLON);
 
         if (expression == null) {
-            new RuntimeError("Expected expression after " + name.getValue(), fileName, name.getLine(), get(0).getPosition());
+            new RuntimeError("Expected expression after " + tokens.getValue(name), fileName, tokens.getLine(name), getPosition(0));
         }
 
-        return new VariableDeclarationStatement(expression, name.getValue(), type, fileName, name.getLine(), name.getPosition(), isFinal);
+        return new VariableDeclarationStatement(expression, tokens.getValue(name), tokens.getSymbol(name), type, fileName, tokens.getLine(name), tokens.getPosition(name), isFinal);
     }
 
     private ShowStatement show() {
@@ -308,11 +329,11 @@ public final class Parser {
         while (!match(TokenType.RIGHT_PARENTHESIS)) {
             Expression expr = getExpression();
             if (expr == null) {
-                new RuntimeError("Unknown expression: " + get(0).getValue(), fileName, get(0).getLine(), get(0).getPosition());
+                new RuntimeError("Unknown expression: " + getLexeme(0), fileName, getLine(0), getPosition(0));
             }
             expressions.add(expr);
             if (!match(TokenType.COMMA) && !checkType(0, TokenType.RIGHT_PARENTHESIS) && !checkType(1, TokenType.RIGHT_PARENTHESIS)) {
-                new SyntaxError("Excepted ',' for separate parameters", fileName, get(0).getLine(), get(0).getPosition());
+                new SyntaxError("Excepted ',' for separate parameters", fileName, getLine(0), getPosition(0));
             }
         }
         skip(TokenType.SEMICOLON);
@@ -321,29 +342,46 @@ public final class Parser {
     }
 
     private void skip(TokenType type) {
-        if (get(0).getType() != type) {
+        if (getType(0) != type) {
             if (type == TokenType.SEMICOLON) {
-                new SemiColonError(fileName, get(-1).getLine(), get(-1).getPosition());
+                new SemiColonError(fileName, getLine(-1), getPosition(-1));
             } else
-                new SyntaxError("Excepted " + Types.getTypeName(type) + " but got " + Types.getTypeName(get(0).getType()), fileName, get(0).getLine(), get(0).getPosition());
+                new SyntaxError("Excepted " + Types.getTypeName(type) + " but got " + Types.getTypeName(getType(0)), fileName, getLine(0), getPosition(0));
         }
         pos++;
     }
 
-    private Token get(int relativePosition) {
+    private boolean isOutside(int relativePosition) {
         int newPos = pos + relativePosition;
-        if (newPos >= size || newPos < 0) {
-            return new Token(TokenType.EOF, "", -1, -1);
-        }
-        return tokens.get(pos + relativePosition);
+        return newPos >= size || newPos < 0;
+    }
+
+    private TokenType getType(int relativePosition) {
+        return isOutside(relativePosition) ? TokenType.EOF : tokens.getType(pos + relativePosition);
+    }
+
+    private String getLexeme(int relativePosition) {
+        return isOutside(relativePosition) ? "" : tokens.getValue(pos + relativePosition);
+    }
+
+    private int getSymbol(int relativePosition) {
+        return tokens.getSymbol(pos + relativePosition);
+    }
+
+    private int getLine(int relativePosition) {
+        return isOutside(relativePosition) ? -1 : tokens.getLine(pos + relativePosition);
+    }
+
+    private int getPosition(int relativePosition) {
+        return isOutside(relativePosition) ? -1 : tokens.getPosition(pos + relativePosition);
     }
 
     private TokenType getType() {
-        return get(0).getType();
+        return getType(0);
     }
 
     private boolean checkType(int pos, TokenType type) {
-        return get(pos).getType() == type;
+        return getType(pos) == type;
     }
 
     private boolean match(TokenType type) {
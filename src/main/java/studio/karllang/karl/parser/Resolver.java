@@ -0,0 +1,232 @@
+package studio.karllang.karl.parser;
+
+import studio.karllang.karl.errors.RuntimeError.TypeError;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Gives each variable node the (depth, index) slot it reads or writes at runtime. Parameters and locals get an
+ * index in one flat frame per function call or top-level block, the blocks nested in it taking the slots that
+ * follow those of the enclosing blocks, so entering a block allocates nothing. Names not declared in an enclosing
+ * block are globals, whose slot is their symbol id. Function bodies only see their own locals and the globals,
+ * as they can be called from anywhere. Calls to the functions of the file are checked to pass as many arguments as
+ * the function takes.
+ */
+public final class Resolver implements AstVisitor<Void> {
+    private record Local(int index, boolean isFinal) {
+    }
+
+    private record Slot(int depth, int index, boolean isFinal) {
+    }
+
+    // Slots of the frame being laid out, those of the blocks left being free for the next ones
+    private static final class Layout {
+        private int next;
+        private int size;
+    }
+
+    // Variables declared in a block, in the slots from its first one
+    private static final class Scope {
+        private final HashMap<Integer, Local> locals = new HashMap<>();
+        private final int first;
+
+        private Scope(int first) {
+            this.first = first;
+        }
+    }
+
+    // Blocks enclosing the node being resolved in the current frame, innermost last
+    private ArrayList<Scope> scopes = new ArrayList<>();
+    private Layout layout;
+    private final FunctionTable functions;
+
+    private Resolver(FunctionTable functions) {
+        this.functions = functions;
+    }
+
+    public static void resolve(List<Statement> statements) {
+        resolve(statements, new FunctionTable());
+    }
+
+    // Functions not in the table yet, declared further down a streamed file, are checked when first called
+    public static void resolve(List<Statement> statements, FunctionTable functions) {
+        Resolver resolver = new Resolver(functions);
+        for (Statement statement : statements) {
+            resolver.resolve(statement);
+        }
+    }
+
+    private void resolve(Statement statement) {
+        if (statement != null) statement.accept(this);
+    }
+
+    private void resolve(Expression expression) {
+        if (expression != null) expression.accept(this);
+    }
+
+    private Slot lookup(int symbol) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Local local = scopes.get(i).locals.get(symbol);
+            if (local != null) {
+                return new Slot(VariableManager.LOCAL, local.index(), local.isFinal());
+            }
+        }
+        return new Slot(VariableManager.GLOBAL, symbol, false);
+    }
+
+    private Local declare(int symbol, boolean isFinal) {
+        Local local = scopes.get(scopes.size() - 1).locals.computeIfAbsent(symbol, key -> new Local(layout.next++, isFinal));
+        layout.size = Math.max(layout.size, layout.next);
+        return local;
+    }
+
+    @Override
+    public Void visitBinary(BinaryExpression expression) {
+        resolve(expression.getLeft());
+        resolve(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitFuncCall(FuncCallExpression expression) {
+        expression.getArgs().forEach(this::resolve);
+        Function function = functions.get(expression.getSymbol());
+        if (function != null && function.getArgTypes().length != expression.getArgs().size()) {
+            new TypeError("Function " + expression.getName() + " takes " + function.getArgTypes().length + " arguments, " + expression.getArgs().size() + " given", expression.getFileName(), expression.getLine(), expression.getPos());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(LogicalExpression expression) {
+        resolve(expression.getLeft());
+        resolve(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(UnaryExpression expression) {
+        resolve(expression.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitValue(ValueExpression expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitVariableCall(VariableCallExpression expression) {
+        Slot slot = lookup(expression.getSymbol());
+        expression.setSlot(slot.depth(), slot.index());
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(VariableExpression expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(BlockStatement statement) {
+        // A top-level block holds the frame of the blocks nested in it
+        boolean ownsFrame = layout == null;
+        if (ownsFrame) layout = new Layout();
+
+        Scope scope = new Scope(layout.next);
+        scopes.add(scope);
+        statement.getStatements().forEach(this::resolve);
+        scopes.remove(scopes.size() - 1);
+        statement.setSlots(scope.first, layout.next - scope.first);
+        layout.next = scope.first;
+
+        if (ownsFrame) {
+            statement.setFrameSize(layout.size);
+            layout = null;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFuncCallStatement(FuncCallStatement statement) {
+        resolve(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        Function function = statement.getFunction();
+        BlockStatement body = function.getBody();
+        int[] argSymbols = function.getArgSymbols();
+
+        // The parameters take the first slots of the frame of the call
+        ArrayList<Scope> enclosingScopes = scopes;
+        Layout enclosingLayout = layout;
+        scopes = new ArrayList<>();
+        layout = new Layout();
+        scopes.add(new Scope(0));
+        for (int symbol : argSymbols) {
+            declare(symbol, false);
+        }
+        body.getStatements().forEach(this::resolve);
+        body.setFrameSize(layout.size);
+        scopes = enclosingScopes;
+        layout = enclosingLayout;
+        return null;
+    }
+
+    @Override
+    public Void visitIfElse(IfElseStatement statement) {
+        resolve(statement.getCondition());
+        resolve(statement.getIfStatement());
+        resolve(statement.getElseStatement());
+        return null;
+    }
+
+    @Override
+    public Void visitIncrementDecrement(IncrementDecrementStatement statement) {
+        Slot slot = lookup(statement.getSymbol());
+        statement.setSlot(slot.depth(), slot.index(), slot.isFinal());
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(ReturnStatement statement) {
+        resolve(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitShow(ShowStatement statement) {
+        statement.getExpressions().forEach(this::resolve);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableAssignment(VariableAssignmentStatement statement) {
+        resolve(statement.getExpression());
+        Slot slot = lookup(statement.getSymbol());
+        statement.setSlot(slot.depth(), slot.index(), slot.isFinal());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableDeclaration(VariableDeclarationStatement statement) {
+        // The initializer is resolved first, it still sees the variables the declaration shadows
+        resolve(statement.getExpression());
+        if (scopes.isEmpty()) return null;
+
+        Slot shadowed = lookup(statement.getSymbol());
+        Local local = declare(statement.getSymbol(), statement.isFinal());
+        statement.setSlot(VariableManager.LOCAL, local.index(), shadowed.depth(), shadowed.index());
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package studio.karllang.karl.parser;
+
+import java.nio.ByteBuffer;
+
+final class ScalarScanner implements ByteScanner {
+    @Override
+    public int skipBlanks(ByteBuffer input, int from, int end) {
+        while (from < end) {
+            final byte b = input.get(from);
+            if (b != ' ' && b != '\t') break;
+            from++;
+        }
+        return from;
+    }
+
+    @Override
+    public int findLineEnd(ByteBuffer input, int from, int end) {
+        while (from < end && input.get(from) != '\n') {
+            from++;
+        }
+        return from;
+    }
+
+    @Override
+    public int findCommentStop(ByteBuffer input, int from, int end) {
+        while (from < end) {
+            final byte b = input.get(from);
+            if (b == '*' || b == '\n' || b == '\r') break;
+            from++;
+        }
+        return from;
+    }
+
+    @Override
+    public int findStringStop(ByteBuffer input, int from, int end) {
+        while (from < end) {
+            final byte b = input.get(from);
+            if (b == '"' || b == '\\' || b == '\n' || b == '\r') break;
+            from++;
+        }
+        return from;
+    }
+}
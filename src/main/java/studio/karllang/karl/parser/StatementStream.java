@@ -0,0 +1,95 @@
+package studio.karllang.karl.parser;
+
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Top-level statements of a file, parsed as a lexer thread hands over segments of tokens. Only a few segments
+ * are lexed ahead, and the tokens and statements are dropped once they have been consumed.
+ */
+public final class StatementStream {
+    private static final int SEGMENTS_AHEAD = 4;
+
+    private final BlockingQueue<TokenBuffer> segments = new ArrayBlockingQueue<>(SEGMENTS_AHEAD);
+    private final ArrayDeque<Statement> statements = new ArrayDeque<>();
+    private final FunctionTable functions = new FunctionTable();
+    private final TokenBuffer end;
+    private final String fileName;
+    private boolean ended;
+
+    public StatementStream(Source source, SymbolTable symbols, String fileName) {
+        this.fileName = fileName;
+        this.end = new TokenBuffer(source, symbols, 1);
+
+        Thread lexer = new Thread(() -> {
+            try {
+                new Lexer(source, symbols, this::handOver);
+                handOver(end);
+            } catch (RuntimeException e) {
+                TokenBuffer failed = new TokenBuffer(source, symbols, 1);
+                failed.setError(() -> {
+                    throw e;
+                });
+                handOver(failed);
+            }
+        }, "karl-lexer");
+        lexer.setDaemon(true);
+        lexer.start();
+    }
+
+    // Next top-level statement, null at the end of the file
+    public Statement next() {
+        while (statements.isEmpty() && !ended) {
+            parseSegment();
+        }
+        return statements.poll();
+    }
+
+    // Parses the following segments until a function is declared, returns whether it was
+    public boolean parseUntilFunction(int symbol) {
+        while (!functions.contains(symbol) && !ended) {
+            parseSegment();
+        }
+        return functions.contains(symbol);
+    }
+
+    // Functions declared so far, filled as the segments are parsed
+    public FunctionTable getFunctions() {
+        return functions;
+    }
+
+    private void parseSegment() {
+        TokenBuffer segment;
+        try {
+            segment = segments.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the lexer", e);
+        }
+
+        segment.raiseError();
+        if (segment == end) {
+            ended = true;
+        } else {
+            ArrayList<Statement> parsed = new Parser(segment, fileName, functions).parse();
+            Resolver.resolve(parsed, functions);
+            statements.addAll(parsed);
+        }
+    }
+
+    private void handOver(TokenBuffer segment) {
+        try {
+            segments.put(segment);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing over tokens", e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package studio.karllang.karl.parser;
+
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * Token stream stored as parallel int arrays over the source bytes.
+ * Lexemes are only turned into strings when the parser asks for them.
+ */
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    // Symbol ids held above the low byte of the types
+    static final int MAX_SYMBOLS = 1 << 24;
+
+    private final Source source;
+    private final SymbolTable symbols;
+    // Type ordinal in the low byte, symbol id of identifiers above it
+    private int[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int size;
+    private Runnable error;
+
+    public TokenBuffer(Source source, SymbolTable symbols) {
+        this(source, symbols, Math.max(16, source.length() / 8));
+    }
+
+    public TokenBuffer(Source source, SymbolTable symbols, int capacity) {
+        this.source = source;
+        this.symbols = symbols;
+        types = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+    }
+
+    public void add(TokenType type, int start, int length, int line) {
+        add(type.ordinal(), start, length, line);
+    }
+
+    public void addIdentifier(int symbol, int start, int length, int line) {
+        add(identifier(symbol), start, length, line);
+    }
+
+    private static int identifier(int symbol) {
+        if (symbol >= MAX_SYMBOLS) throw new IllegalStateException("More than " + MAX_SYMBOLS + " distinct identifiers");
+        return TokenType.IDENTIFIER.ordinal() | symbol << 8;
+    }
+
+    private void add(int type, int start, int length, int line) {
+        if (size == types.length) {
+            int capacity = size + (size >> 1);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        types[size] = type;
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    // Moves the tokens from an index on to the end of another buffer
+    public void moveTail(int from, TokenBuffer target) {
+        for (int i = from; i < size; i++) {
+            target.add(types[i], starts[i], lengths[i], lines[i]);
+        }
+        size = from;
+    }
+
+    // Appends the tokens of another buffer but its end of file, mapping its symbol ids through a table
+    public void append(TokenBuffer other, int[] symbolMap) {
+        final int count = other.size > 0 && other.getType(other.size - 1) == TokenType.EOF ? other.size - 1 : other.size;
+        if (size + count > types.length) {
+            final int capacity = size + count;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        final int identifier = TokenType.IDENTIFIER.ordinal();
+        for (int i = 0; i < count; i++) {
+            final int type = other.types[i];
+            types[size + i] = (type & 0xFF) == identifier ? identifier(symbolMap[type >>> 8]) : type;
+        }
+        System.arraycopy(other.starts, 0, starts, size, count);
+        System.arraycopy(other.lengths, 0, lengths, size, count);
+        System.arraycopy(other.lines, 0, lines, size, count);
+        size += count;
+    }
+
+    public void trimToSize() {
+        types = Arrays.copyOf(types, size);
+        starts = Arrays.copyOf(starts, size);
+        lengths = Arrays.copyOf(lengths, size);
+        lines = Arrays.copyOf(lines, size);
+    }
+
+    // Error found by the lexer after the tokens of this buffer, raised once they are reached
+    public void setError(Runnable error) {
+        this.error = error;
+    }
+
+    public void raiseError() {
+        if (error != null) error.run();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public TokenType getType(int index) {
+        return TYPES[types[index] & 0xFF];
+    }
+
+    public int getSymbol(int index) {
+        return types[index] >>> 8;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public int getLine(int index) {
+        return lines[index];
+    }
+
+    // Position reported in diagnostics: the end of the lexeme, except for the content of a char literal
+    // and for two-character operators, which point at their second character.
+    public int getPosition(int index) {
+        return switch (getType(index)) {
+            case CHAR_VALUE -> starts[index] + 1;
+            case PLUSPLUS, MINUSMINUS, AND, OR, EQUALEQUAL, NOT_EQUAL, GREATER_EQUAL, LESS_EQUAL ->
+                    starts[index] + lengths[index] - 1;
+            default -> starts[index] + lengths[index];
+        };
+    }
+
+    public String getValue(int index) {
+        final TokenType type = getType(index);
+        return switch (type) {
+            case IDENTIFIER -> symbols.getName(getSymbol(index));
+            case INT_VALUE, FLOAT_VALUE, BOOL_VALUE -> source.slice(starts[index], lengths[index]);
+            case STR_VALUE -> decodeString(starts[index] + 1, starts[index] + lengths[index] - 1);
+            case CHAR_VALUE -> source.slice(starts[index] + 1, lengths[index] - 2);
+            case SHOW -> "show";
+            default -> type.getName();
+        };
+    }
+
+    public Token get(int index) {
+        return new Token(getType(index), getValue(index), getPosition(index), getLine(index));
+    }
+
+    private String decodeString(int start, int end) {
+        int escape = start;
+        while (escape < end && source.byteAt(escape) != '\\') {
+            escape++;
+        }
+        if (escape == end) {
+            return source.slice(start, end - start);
+        }
+
+        StringBuilder builder = new StringBuilder(end - start).append(source.slice(start, escape - start));
+        int chunk = escape;
+        for (int i = escape; i < end; i++) {
+            if (source.byteAt(i) == '\\') {
+                builder.append(source.slice(chunk, i - chunk));
+                builder.append(switch (source.byteAt(++i)) {
+                    case 'n' -> '\n';
+                    case 't' -> '\t';
+                    case 'r' -> '\r';
+                    case 'b' -> '\b';
+                    case 'f' -> '\f';
+                    case '0' -> '\0';
+                    default -> (char) source.byteAt(i);
+                });
+                chunk = i + 1;
+            }
+        }
+        return builder.append(source.slice(chunk, end - chunk)).toString();
+    }
+}
@@ -0,0 +1,41 @@
+package studio.karllang.karl.parser.ast;
+
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+
+/**
+ * Operation over the nodes of a parsed tree, one method per kind of node, called through their accept method.
+ */
+public interface AstVisitor<R> {
+    R visitBinary(BinaryExpression expression);
+
+    R visitFuncCall(FuncCallExpression expression);
+
+    R visitLogical(LogicalExpression expression);
+
+    R visitUnary(UnaryExpression expression);
+
+    R visitValue(ValueExpression expression);
+
+    R visitVariableCall(VariableCallExpression expression);
+
+    R visitVariable(VariableExpression expression);
+
+    R visitBlock(BlockStatement statement);
+
+    R visitFuncCallStatement(FuncCallStatement statement);
+
+    R visitFunctionDeclaration(FunctionDeclarationStatement statement);
+
+    R visitIfElse(IfElseStatement statement);
+
+    R visitIncrementDecrement(IncrementDecrementStatement statement);
+
+    R visitReturn(ReturnStatement statement);
+
+    R visitShow(ShowStatement statement);
+
+    R visitVariableAssignment(VariableAssignmentStatement statement);
+
+    R visitVariableDeclaration(VariableDeclarationStatement statement);
+}
@@ -1,20 +1,33 @@
 package studio.karllang.karl.parser.ast.expressions;
 
-import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.FloatValue;
 import studio.karllang.karl.parser.ast.values.IntValue;
 import studio.karllang.karl.parser.ast.values.StringValue;
 import studio.karllang.karl.parser.ast.values.Value;
-import studio.karllang.karl.std.Types;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Operators;
 
 public class BinaryExpression extends Expression {
+    // Variants the node specializes to from the types of the operands it first sees, each guarded by these types.
+    // A node whose operands change types falls back to the generic variant for good. The int and float variants
+    // evaluate their operands unboxed.
+    private static final byte UNINITIALIZED = 0;
+    private static final byte INT = 1;
+    private static final byte FLOAT = 2;
+    private static final byte NUMBER = 3;
+    private static final byte STRING = 4;
+    private static final byte GENERIC = 5;
+    private static final long NOT_INT = Operators.NOT_INT;
+
     private final Expression left;
     private final Expression right;
     private final TokenType operator;
     private final String fileName;
     private final int line;
     private final int pos;
+    private byte state = UNINITIALIZED;
 
     public BinaryExpression(Expression left, Expression right, TokenType operator, String fileName, int line, int pos) {
         this.left = left;
@@ -26,79 +39,204 @@ public class BinaryExpression extends Expression {
     }
 
     @Override
-    public Value eval() {
-
-        Value leftValue = left.eval();
-        Value rightValue = right.eval();
-
-        if ((leftValue.getType() == TokenType.INT_VALUE || leftValue.getType() == TokenType.FLOAT_VALUE) && (rightValue.getType() == TokenType.INT_VALUE || rightValue.getType() == TokenType.FLOAT_VALUE)) {
-            return switch (operator) {
-                case PLUS -> add(leftValue, rightValue);
-                case MINUS -> sub(leftValue, rightValue);
-                case MULTIPLY -> multiply(leftValue, rightValue);
-                case DIVIDE -> divide(leftValue, rightValue);
-                case MODULO -> modulo(leftValue, rightValue);
-                default -> {
-                    new RuntimeError("Bad operator: " + operator.getName(), fileName, line, pos);
-                    yield null;
+    public Value eval(Frame frame) {
+        switch (state) {
+            case INT -> {
+                try {
+                    return new IntValue(intResult(frame));
+                } catch (UnexpectedResultException e) {
+                    return e.getResult();
                 }
-            };
-        } else if (leftValue.getType() == TokenType.STR_VALUE || rightValue.getType() == TokenType.STR_VALUE) {
-            return switch (operator) {
-                case PLUS -> new StringValue(leftValue + rightValue.toString());
-                default -> {
-                    new RuntimeError("Bad operator: " + operator.getName(), fileName, line, pos);
-                    yield null;
+            }
+            case FLOAT -> {
+                try {
+                    return toNumber(floatResult(frame));
+                } catch (UnexpectedResultException e) {
+                    return e.getResult();
                 }
-            };
-        } else {
-            new RuntimeError("Unauthorized types for operation " + Types.getTypeName(leftValue.getType()) + " and " + Types.getTypeName(rightValue.getType()) , fileName, line, pos);
-            return null;
+            }
+            default -> {
+                return apply(left.eval(frame), right.eval(frame));
+            }
         }
     }
 
-    private Value divide(Value leftValue, Value rightValue) {
-        float result = leftValue.toFloat() / rightValue.toFloat();
-        if (result % 1 == 0) {
-            return new IntValue((int) result);
-        } else {
-            return new FloatValue(result);
+    @Override
+    public int evalInt(Frame frame) {
+        if (state != INT) return expectInt(eval(frame));
+        try {
+            return intResult(frame);
+        } catch (UnexpectedResultException e) {
+            return expectInt(e.getResult());
         }
     }
 
-    private Value multiply(Value leftValue, Value rightValue) {
-        float result = leftValue.toFloat() * rightValue.toFloat();
-        if (result % 1 == 0) {
-            return new IntValue((int) result);
-        } else {
-            return new FloatValue(result);
+    @Override
+    public float evalFloat(Frame frame) {
+        if (state != FLOAT) return expectFloat(eval(frame));
+        float result;
+        try {
+            result = floatResult(frame);
+        } catch (UnexpectedResultException e) {
+            return expectFloat(e.getResult());
         }
+        // A whole result is an int
+        if (result % 1 == 0) throw new UnexpectedResultException(new IntValue((int) result));
+        return result;
     }
 
-    private Value modulo(Value leftValue, Value rightValue) {
-        float result = leftValue.toFloat() % rightValue.toFloat();
-        if (result % 1 == 0) {
-            return new IntValue((int) result);
-        } else {
-            return new FloatValue(result);
+    // Result of the int variant, the operands evaluated unboxed. Throws an UnexpectedResultException with the value
+    // when it is not an int: an operand is not an int, or the result is out of range, inexact or a division by zero.
+    private int intResult(Frame frame) {
+        int a;
+        try {
+            a = left.evalInt(frame);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(despecialize(e.getResult(), right.eval(frame)));
         }
+        int b;
+        try {
+            b = right.evalInt(frame);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(despecialize(new IntValue(a), e.getResult()));
+        }
+
+        long result = applyInt(a, b);
+        if (result == NOT_INT) throw new UnexpectedResultException(toNumber(applyFloat(a, b)));
+        return (int) result;
+    }
+
+    private float floatResult(Frame frame) {
+        float a;
+        try {
+            a = left.evalFloat(frame);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(despecialize(e.getResult(), right.eval(frame)));
+        }
+        float b;
+        try {
+            b = right.evalFloat(frame);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(despecialize(new FloatValue(a), e.getResult()));
+        }
+        return applyFloat(a, b);
+    }
+
+    // The operands no longer have the types the node specialized to
+    private Value despecialize(Value leftValue, Value rightValue) {
+        state = GENERIC;
+        return evalGeneric(leftValue, rightValue);
     }
 
-    private Value sub(Value leftValue, Value rightValue) {
-        float result = leftValue.toFloat() - rightValue.toFloat();
-        if (result % 1 == 0) {
-            return new IntValue((int) result);
-        } else {
-            return new FloatValue(result);
+    // Variant of the first evaluation, on the boxed operands
+    private Value apply(Value leftValue, Value rightValue) {
+        switch (state) {
+            // Specialized by an evaluation of the operands reaching this node again, a recursive call
+            case INT -> {
+                if (leftValue instanceof IntValue && rightValue instanceof IntValue) {
+                    long result = applyInt(leftValue.toInt(), rightValue.toInt());
+                    return result == NOT_INT ? toNumber(applyFloat(leftValue.toInt(), rightValue.toInt())) : new IntValue((int) result);
+                }
+            }
+            case FLOAT -> {
+                if (leftValue instanceof FloatValue && rightValue instanceof FloatValue) {
+                    return toNumber(applyFloat(leftValue.toFloat(), rightValue.toFloat()));
+                }
+            }
+            case NUMBER -> {
+                if (isNumber(leftValue) && isNumber(rightValue)) {
+                    return toNumber(applyFloat(leftValue.toFloat(), rightValue.toFloat()));
+                }
+            }
+            case STRING -> {
+                if (leftValue instanceof StringValue || rightValue instanceof StringValue) {
+                    return new StringValue(leftValue + rightValue.toString());
+                }
+            }
+            case GENERIC -> {
+                return evalGeneric(leftValue, rightValue);
+            }
+            case UNINITIALIZED -> {
+                state = specialize(leftValue, rightValue);
+                return apply(leftValue, rightValue);
+            }
+            default -> {
+                return evalGeneric(leftValue, rightValue);
+            }
         }
+
+        return despecialize(leftValue, rightValue);
     }
 
-    private Value add(Value leftValue, Value rightValue) {
-        float result = leftValue.toFloat() + rightValue.toFloat();
-        if (result % 1 == 0) {
-            return new IntValue((int) result);
-        } else {
-            return new FloatValue(result);
+    private byte specialize(Value leftValue, Value rightValue) {
+        if (!isArithmetic(operator)) {
+            return GENERIC;
+        } else if (leftValue instanceof IntValue && rightValue instanceof IntValue) {
+            return INT;
+        } else if (leftValue instanceof FloatValue && rightValue instanceof FloatValue) {
+            return FLOAT;
+        } else if (isNumber(leftValue) && isNumber(rightValue)) {
+            return NUMBER;
+        } else if ((leftValue instanceof StringValue || rightValue instanceof StringValue) && operator == TokenType.PLUS) {
+            return STRING;
         }
+        return GENERIC;
+    }
+
+    private static boolean isArithmetic(TokenType operator) {
+        return switch (operator) {
+            case PLUS, MINUS, MULTIPLY, DIVIDE, MODULO -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isNumber(Value value) {
+        return value instanceof IntValue || value instanceof FloatValue;
+    }
+
+    private long applyInt(int a, int b) {
+        return Operators.applyInt(operator, a, b);
+    }
+
+    private float applyFloat(float a, float b) {
+        return Operators.applyFloat(operator, a, b, fileName, line, pos);
+    }
+
+    private static Value toNumber(float result) {
+        return Operators.toNumber(result);
+    }
+
+    // Operation on values of any types, also run by the engines that only handle the common types themselves
+    public Value evalGeneric(Value leftValue, Value rightValue) {
+        return Operators.apply(operator, leftValue, rightValue, fileName, line, pos);
+    }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    public TokenType getOperator() {
+        return operator;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitBinary(this);
     }
 }
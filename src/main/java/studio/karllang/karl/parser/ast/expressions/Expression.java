@@ -1,7 +1,43 @@
 package studio.karllang.karl.parser.ast.expressions;
 
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
 import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
 
 public abstract class Expression {
-    public abstract Value eval();
+    public abstract Value eval(Frame frame);
+
+    // Value of an expression expected to be an int, computed without boxing by the nodes that can. Throws an
+    // UnexpectedResultException holding the value when it is not an int.
+    public int evalInt(Frame frame) {
+        return expectInt(eval(frame));
+    }
+
+    public float evalFloat(Frame frame) {
+        return expectFloat(eval(frame));
+    }
+
+    public boolean evalBoolean(Frame frame) {
+        return expectBoolean(eval(frame));
+    }
+
+    protected static int expectInt(Value value) {
+        if (value instanceof IntValue) return value.toInt();
+        throw new UnexpectedResultException(value);
+    }
+
+    protected static float expectFloat(Value value) {
+        if (value instanceof FloatValue) return value.toFloat();
+        throw new UnexpectedResultException(value);
+    }
+
+    protected static boolean expectBoolean(Value value) {
+        if (value instanceof BooleanValue booleanValue) return booleanValue.toBoolean();
+        throw new UnexpectedResultException(value);
+    }
+
+    public abstract <R> R accept(AstVisitor<R> visitor);
 }
@@ -2,24 +2,37 @@ package studio.karllang.karl.parser.ast.expressions;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.NullValue;
 import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.Function;
 import studio.karllang.karl.std.FunctionManager;
 import studio.karllang.karl.std.Types;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 
 public class FuncCallExpression extends Expression {
+    private static final Value VOID = new NullValue("null_void");
+
     private final String name;
+    private final int symbol;
     private final ArrayList<Expression> args;
     private final String fileName;
     private final int line;
     private final int pos;
+    // Function called by this site, valid while the functions of its file are unchanged. The call sites of a tree
+    // run by several threads may be bound by each of them, a target is immutable and replaced as a whole.
+    private Target target;
+    // Function the type checker found the arguments to have the types of the parameters of
+    private Function checked;
+
+    private record Target(FunctionManager.File file, int version, Function function) {
+    }
 
-    public FuncCallExpression(String name, ArrayList<Expression> args, String fileName, int line, int pos) {
+    public FuncCallExpression(String name, int symbol, ArrayList<Expression> args, String fileName, int line, int pos) {
         this.name = name;
+        this.symbol = symbol;
         this.args = args;
         this.fileName = fileName;
         this.line = line;
@@ -27,28 +40,154 @@ public class FuncCallExpression extends Expression {
     }
 
     @Override
-    public Value eval() {
-        if (!FunctionManager.getCurrentFile().isFunction(name)) {
-            new RuntimeError("Unknown function: " + name, fileName, line, pos);
+    public Value eval(Frame frame) {
+        Function function = resolveFunction();
+        Frame callee = invoke(frame, function);
+        Value result = callee.getReturnValue();
+        callee.release();
+        return function.getType() == TokenType.VOID ? VOID : result;
+    }
+
+    // Results of the types of the slots are read unboxed from the frame of the call
+    @Override
+    public int evalInt(Frame frame) {
+        Function function = resolveFunction();
+        Frame callee = invoke(frame, function);
+        if (callee.getReturnTag() == Frame.INT) {
+            int result = callee.getReturnInt();
+            callee.release();
+            return result;
         }
+        throw unexpected(function, callee);
+    }
 
-        Function function = FunctionManager.getCurrentFile().getFunction(name);
-        LinkedHashMap<String, TokenType> parameters = function.getArgs();
-        if (args.size() != parameters.size()) {
-            new RuntimeError("Function " + name + " takes " + parameters.size() + " arguments, " + args.size() + " given", fileName, line, pos);
+    @Override
+    public float evalFloat(Frame frame) {
+        Function function = resolveFunction();
+        Frame callee = invoke(frame, function);
+        if (callee.getReturnTag() == Frame.FLOAT) {
+            float result = callee.getReturnFloat();
+            callee.release();
+            return result;
         }
+        throw unexpected(function, callee);
+    }
 
-        int i = 0;
-        for (String arg : parameters.keySet()) {
-            if (!Types.checkValueType(parameters.get(arg), args.get(i).eval().getType())) {
-                new RuntimeError("Type mismatch for argument " + arg + " of function " + name + ": Excepted type " + Types.getTypeName(parameters.get(arg)) + ", but got type " + Types.getTypeName(args.get(i).eval().getType()), fileName, line, pos);
+    @Override
+    public boolean evalBoolean(Frame frame) {
+        Function function = resolveFunction();
+        Frame callee = invoke(frame, function);
+        if (callee.getReturnTag() == Frame.BOOL) {
+            boolean result = callee.getReturnBoolean();
+            callee.release();
+            return result;
+        }
+        throw unexpected(function, callee);
+    }
+
+    private UnexpectedResultException unexpected(Function function, Frame callee) {
+        Value result = function.getType() == TokenType.VOID ? VOID : callee.getReturnValue();
+        callee.release();
+        return new UnexpectedResultException(result);
+    }
+
+    // Function called, looked up again once the functions of the file running the call changed
+    public Function resolveFunction() {
+        FunctionManager.File file = FunctionManager.getCurrentFile();
+        Target target = this.target;
+        if (target == null || target.file() != file || target.version() != file.getVersion()) {
+            target = bind(file);
+        }
+        return target.function();
+    }
+
+    // Runs the call in a frame pushed on the one of the caller, released by the caller once it read the result.
+    // The arguments are evaluated in the frame of the caller and stored in the first slots of the call, unboxed
+    // for the parameters of primitive types.
+    private Frame invoke(Frame frame, Function function) {
+        Frame callee = frame.push(function.getBody().getFrameSize());
+        bindArguments(frame, function, callee, 0);
+        function.call(callee, fileName, line, pos);
+        return callee;
+    }
+
+    // Stores the arguments in the slots of the parameters, from the first one
+    protected void bindArguments(Frame frame, Function function, Frame callee, int first) {
+        TokenType[] types = function.getArgTypes();
+        boolean isChecked = function == checked;
+        for (int i = 0; i < types.length; i++) {
+            Expression arg = args.get(i);
+            try {
+                switch (types[i]) {
+                    case INT -> callee.setInt(first + i, arg.evalInt(frame));
+                    case FLOAT -> callee.setFloat(first + i, arg.evalFloat(frame));
+                    case BOOL -> callee.setBoolean(first + i, arg.evalBoolean(frame));
+                    default -> callee.set(first + i, isChecked ? arg.eval(frame) : checkArgument(function, i, arg.eval(frame)));
+                }
+            } catch (UnexpectedResultException e) {
+                callee.set(first + i, checkArgument(function, i, e.getResult()));
             }
-            i++;
         }
+    }
+
+    public Value checkArgument(Function function, int i, Value value) {
+        TokenType type = function.getArgTypes()[i];
+        if (!Types.checkValueType(type, value.getType())) {
+            new RuntimeError("Type mismatch for argument " + function.getArgNames()[i] + " of function " + name + ": Excepted type " + Types.getTypeName(type) + ", but got type " + Types.getTypeName(value.getType()), fileName, line, pos);
+        }
+        return value;
+    }
 
-        if (function.getType() == TokenType.VOID) {
-            function.eval(args, fileName, line, pos);
-            return new NullValue("null_void");
-        } else return function.eval(args, fileName, line, pos);
+    // Looks the function up in the file running the call, the resolver checked the arity of those known then
+    private Target bind(FunctionManager.File file) {
+        Function function = file.resolveFunction(symbol);
+        if (function == null) {
+            new RuntimeError("Unknown function: " + name, fileName, line, pos);
+        }
+
+        if (args.size() != function.getArgTypes().length) {
+            new RuntimeError("Function " + name + " takes " + function.getArgTypes().length + " arguments, " + args.size() + " given", fileName, line, pos);
+        }
+
+        Target target = new Target(file, file.getVersion(), function);
+        this.target = target;
+        return target;
+    }
+
+    public void setChecked(Function checked) {
+        this.checked = checked;
+    }
+
+    public Function getChecked() {
+        return checked;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public ArrayList<Expression> getArgs() {
+        return args;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitFuncCall(this);
     }
 }
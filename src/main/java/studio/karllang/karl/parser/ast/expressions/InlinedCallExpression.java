@@ -0,0 +1,96 @@
+package studio.karllang.karl.parser.ast.expressions;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
+
+/**
+ * Call of a function returning an expression, evaluated in the frame of the caller: the arguments are stored in
+ * slots the optimizer added to that frame, which a copy of the returned expression reads in place of the
+ * parameters. The arguments and the result are checked as for a call. A site calling another function than the
+ * one inlined, the functions of its file having changed, makes the call. The engines compiling the tree see a
+ * call.
+ */
+public class InlinedCallExpression extends FuncCallExpression {
+    private final Function function;
+    private final Expression body;
+    private final int firstSlot;
+
+    public InlinedCallExpression(FuncCallExpression call, Function function, Expression body, int firstSlot) {
+        super(call.getName(), call.getSymbol(), call.getArgs(), call.getFileName(), call.getLine(), call.getPos());
+        this.function = function;
+        this.body = body;
+        this.firstSlot = firstSlot;
+    }
+
+    @Override
+    public Value eval(Frame frame) {
+        if (resolveFunction() != function) return super.eval(frame);
+        bindArguments(frame, function, frame, firstSlot);
+        Value result = body.eval(frame);
+        checkResult(result.getType());
+        return result;
+    }
+
+    @Override
+    public int evalInt(Frame frame) {
+        if (resolveFunction() != function) return super.evalInt(frame);
+        bindArguments(frame, function, frame, firstSlot);
+        int result;
+        try {
+            result = body.evalInt(frame);
+        } catch (UnexpectedResultException e) {
+            checkResult(e.getResult().getType());
+            throw e;
+        }
+        checkResult(TokenType.INT_VALUE);
+        return result;
+    }
+
+    @Override
+    public float evalFloat(Frame frame) {
+        if (resolveFunction() != function) return super.evalFloat(frame);
+        bindArguments(frame, function, frame, firstSlot);
+        float result;
+        try {
+            result = body.evalFloat(frame);
+        } catch (UnexpectedResultException e) {
+            checkResult(e.getResult().getType());
+            throw e;
+        }
+        checkResult(TokenType.FLOAT_VALUE);
+        return result;
+    }
+
+    @Override
+    public boolean evalBoolean(Frame frame) {
+        if (resolveFunction() != function) return super.evalBoolean(frame);
+        bindArguments(frame, function, frame, firstSlot);
+        boolean result;
+        try {
+            result = body.evalBoolean(frame);
+        } catch (UnexpectedResultException e) {
+            checkResult(e.getResult().getType());
+            throw e;
+        }
+        checkResult(TokenType.BOOL_VALUE);
+        return result;
+    }
+
+    private void checkResult(TokenType result) {
+        if (!function.isReturnChecked()) function.checkReturnType(result, getFileName(), getLine(), getPos());
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public Expression getBody() {
+        return body;
+    }
+
+    public int getFirstSlot() {
+        return firstSlot;
+    }
+}
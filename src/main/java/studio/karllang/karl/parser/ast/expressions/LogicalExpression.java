@@ -1,18 +1,30 @@
 package studio.karllang.karl.parser.ast.expressions;
 
-import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
 import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.LogicalOperators;
 
 public class LogicalExpression extends Expression {
+    // Variants the node specializes to from the types of the operands it first sees, each guarded by these types.
+    // A node whose operands change types falls back to the generic variant for good.
+    private static final byte UNINITIALIZED = 0;
+    private static final byte INT = 1;
+    private static final byte FLOAT = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte GENERIC = 4;
+
     private final Expression left;
     private final Expression right;
     private final TokenType operator;
     private final String fileName;
     private final int line;
     private final int pos;
+    private byte state = UNINITIALIZED;
 
     public LogicalExpression(TokenType operator, Expression left, Expression right, String fileName, int line, int pos) {
         this.left = left;
@@ -24,58 +36,161 @@ public class LogicalExpression extends Expression {
     }
 
     @Override
-    public Value eval() {
-        Value leftValue = left.eval();
-        if (operator != null) {
-            if (right != null) {
-                Value rightValue = right.eval();
-                if (leftValue.getType() == TokenType.NULL || rightValue.getType() == TokenType.NULL) {
-                    return switch (operator) {
-                        case NOT_EQUAL -> {
-                            if (leftValue.getType() == TokenType.NULL && rightValue.getType() == TokenType.NULL)
-                                yield new BooleanValue(false);
-                            else yield new BooleanValue(true);
-                        }
-                        case EQUALEQUAL -> {
-                            if (leftValue.getType() == TokenType.NULL && rightValue.getType() == TokenType.NULL)
-                                yield new BooleanValue(true);
-                            else yield new BooleanValue(false);
-                        }
-                        default -> {
-                            new RuntimeError("Bad operator: " + operator.getName(), fileName, line, pos);
-                            yield null;
-                        }
-                    };
-
-                } else if ((leftValue.getType() != TokenType.INT_VALUE && leftValue.getType() != TokenType.FLOAT_VALUE) || (rightValue.getType() != TokenType.INT_VALUE && rightValue.getType() != TokenType.FLOAT_VALUE)) {
-                    final boolean equals = leftValue.toString().equals(rightValue.toString());
-
-                    return switch (operator) {
-                        case AND ->
-                                new BooleanValue(LogicalOperators.and(Boolean.parseBoolean(leftValue.toString()), Boolean.parseBoolean(rightValue.toString())));
-                        case OR ->
-                                new BooleanValue(LogicalOperators.or(Boolean.parseBoolean(leftValue.toString()), Boolean.parseBoolean(rightValue.toString())));
-                        case EQUALEQUAL -> new BooleanValue(equals);
-                        case NOT_EQUAL -> new BooleanValue(!equals);
-                        default -> {
-                            new RuntimeError("Unknown operator: " + operator, fileName, line, pos);
-                            yield null;
-                        }
-                    };
-
-                } else {
+    public Value eval(Frame frame) {
+        if (state == INT || state == BOOLEAN) return new BooleanValue(evalBoolean(frame));
+        Value leftValue = left.eval(frame);
+        return apply(leftValue, right != null ? right.eval(frame) : null);
+    }
+
+    // The int and bool variants evaluate their operands unboxed
+    @Override
+    public boolean evalBoolean(Frame frame) {
+        switch (state) {
+            case INT -> {
+                int a;
+                try {
+                    a = left.evalInt(frame);
+                } catch (UnexpectedResultException e) {
+                    return despecialize(e.getResult(), right.eval(frame));
+                }
+                int b;
+                try {
+                    b = right.evalInt(frame);
+                } catch (UnexpectedResultException e) {
+                    return despecialize(new IntValue(a), e.getResult());
+                }
+                return compare(a, b);
+            }
+            case BOOLEAN -> {
+                boolean a;
+                try {
+                    a = left.evalBoolean(frame);
+                } catch (UnexpectedResultException e) {
+                    return despecialize(e.getResult(), right.eval(frame));
+                }
+                boolean b;
+                try {
+                    b = right.evalBoolean(frame);
+                } catch (UnexpectedResultException e) {
+                    return despecialize(new BooleanValue(a), e.getResult());
+                }
+                return compare(a, b);
+            }
+            default -> {
+                return expectBoolean(eval(frame));
+            }
+        }
+    }
+
+    // The operands no longer have the types the node specialized to
+    private boolean despecialize(Value leftValue, Value rightValue) {
+        state = GENERIC;
+        return expectBoolean(evalGeneric(leftValue, rightValue));
+    }
+
+    private Value apply(Value leftValue, Value rightValue) {
+        switch (state) {
+            case INT -> {
+                if (leftValue instanceof IntValue && rightValue instanceof IntValue) {
+                    return new BooleanValue(compare(leftValue.toInt(), rightValue.toInt()));
+                }
+            }
+            case FLOAT -> {
+                if (isNumber(leftValue) && isNumber(rightValue)) {
                     return new BooleanValue(LogicalOperators.compare(leftValue, rightValue, operator, fileName, line, pos));
                 }
-            } else {
-                if (operator == TokenType.EXCLAMATION) {
-                    return new BooleanValue(!Boolean.parseBoolean(leftValue.toString()));
-                } else {
-                    new RuntimeError("Unknown operator: " + operator, fileName, line, pos);
-                    return null;
+            }
+            case BOOLEAN -> {
+                if (leftValue instanceof BooleanValue a && rightValue instanceof BooleanValue b) {
+                    return new BooleanValue(compare(a.toBoolean(), b.toBoolean()));
                 }
             }
-        } else {
-            return new BooleanValue(Boolean.parseBoolean(leftValue.toString()));
+            case GENERIC -> {
+                return evalGeneric(leftValue, rightValue);
+            }
+            default -> {
+                state = specialize(leftValue, rightValue);
+                return apply(leftValue, rightValue);
+            }
+        }
+
+        // The operands no longer have the types the node specialized to
+        state = GENERIC;
+        return evalGeneric(leftValue, rightValue);
+    }
+
+    private byte specialize(Value leftValue, Value rightValue) {
+        if (operator == null || rightValue == null || operator == TokenType.EXCLAMATION) {
+            return GENERIC;
         }
+        boolean logical = operator == TokenType.AND || operator == TokenType.OR;
+        if (leftValue instanceof IntValue && rightValue instanceof IntValue && !logical) {
+            return INT;
+        } else if (isNumber(leftValue) && isNumber(rightValue) && !logical) {
+            return FLOAT;
+        } else if (leftValue instanceof BooleanValue && rightValue instanceof BooleanValue
+                && (logical || operator == TokenType.EQUALEQUAL || operator == TokenType.NOT_EQUAL)) {
+            return BOOLEAN;
+        }
+        return GENERIC;
+    }
+
+    private static boolean isNumber(Value value) {
+        return value instanceof IntValue || value instanceof FloatValue;
+    }
+
+    // Exact comparison of ints, which the float one is not beyond 2^24
+    private boolean compare(int a, int b) {
+        return switch (operator) {
+            case LESS -> a < b;
+            case LESS_EQUAL -> a <= b;
+            case GREATER_EQUAL -> a >= b;
+            case GREATER -> a > b;
+            case EQUALEQUAL -> a == b;
+            default -> a != b;
+        };
+    }
+
+    private boolean compare(boolean a, boolean b) {
+        return switch (operator) {
+            case AND -> a && b;
+            case OR -> a || b;
+            case EQUALEQUAL -> a == b;
+            default -> a != b;
+        };
+    }
+
+    // Operation on values of any types, also run by the engines that only handle the common types themselves
+    public Value evalGeneric(Value leftValue, Value rightValue) {
+        return LogicalOperators.apply(operator, leftValue, right != null ? rightValue : null, fileName, line, pos);
+    }
+
+    public TokenType getOperator() {
+        return operator;
+    }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitLogical(this);
     }
 }
@@ -2,9 +2,11 @@ package studio.karllang.karl.parser.ast.expressions;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.BooleanValue;
 import studio.karllang.karl.parser.ast.values.IntValue;
 import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
 
 public class UnaryExpression extends Expression {
     private final Expression expression;
@@ -22,8 +24,8 @@ public class UnaryExpression extends Expression {
     }
 
     @Override
-    public Value eval() {
-        Value value = expression.eval();
+    public Value eval(Frame frame) {
+        Value value = expression.eval(frame);
         return switch (operator) {
             case EXCLAMATION -> new BooleanValue(!Boolean.parseBoolean(value.toString()));
             case MINUS -> new IntValue(-value.toInt());
@@ -33,4 +35,49 @@ public class UnaryExpression extends Expression {
             }
         };
     }
+
+    @Override
+    public int evalInt(Frame frame) {
+        if (operator != TokenType.MINUS) return expectInt(eval(frame));
+        try {
+            return -expression.evalInt(frame);
+        } catch (UnexpectedResultException e) {
+            return -e.getResult().toInt();
+        }
+    }
+
+    @Override
+    public boolean evalBoolean(Frame frame) {
+        if (operator != TokenType.EXCLAMATION) return expectBoolean(eval(frame));
+        try {
+            return !expression.evalBoolean(frame);
+        } catch (UnexpectedResultException e) {
+            return !Boolean.parseBoolean(e.getResult().toString());
+        }
+    }
+
+    public TokenType getOperator() {
+        return operator;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitUnary(this);
+    }
 }
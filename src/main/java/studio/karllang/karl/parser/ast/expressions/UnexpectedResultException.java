@@ -0,0 +1,20 @@
+package studio.karllang.karl.parser.ast.expressions;
+
+import studio.karllang.karl.parser.ast.values.Value;
+
+// Thrown by the unboxed evaluations of an expression whose value does not have the expected type, the caller
+// takes its generic path with the value
+public class UnexpectedResultException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Value result;
+
+    public UnexpectedResultException(Value result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+
+    public Value getResult() {
+        return result;
+    }
+}
@@ -1,7 +1,9 @@
 package studio.karllang.karl.parser.ast.expressions;
 
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.*;
+import studio.karllang.karl.std.Frame;
 
 public class ValueExpression extends Expression {
     private final Value value;
@@ -42,7 +44,20 @@ public class ValueExpression extends Expression {
     }
 
     @Override
-    public Value eval() {
+    public Value eval(Frame frame) {
         return value;
     }
+
+    public Value getValue() {
+        return value;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitValue(this);
+    }
 }
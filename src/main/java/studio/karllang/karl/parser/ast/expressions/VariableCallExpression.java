@@ -1,20 +1,28 @@
 package studio.karllang.karl.parser.ast.expressions;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.VariableManager;
 
 public class VariableCallExpression extends Expression {
     private final String name;
+    private final int symbol;
     private final String fileName;
     private final int line;
     private final int pos;
+    // Slot given by the resolver, the global of the name until then
+    private int depth = VariableManager.GLOBAL;
+    private int index;
 
-    public VariableCallExpression(String name, String fileName, int line, int pos) {
+    public VariableCallExpression(String name, int symbol, String fileName, int line, int pos) {
         this.name = name;
+        this.symbol = symbol;
         this.fileName = fileName;
         this.line = line;
         this.pos = pos;
+        this.index = symbol;
     }
 
     @Override
@@ -23,11 +31,69 @@ public class VariableCallExpression extends Expression {
     }
 
     @Override
-    public Value eval() {
-        if (VariableManager.getCurrentFile().getVariable(name) == null) {
+    public Value eval(Frame frame) {
+        Value value = VariableManager.getCurrentFile().get(frame, depth, index);
+        if (value == null) {
             new RuntimeError("Variable " + name + " is not defined", fileName, line, pos);
         }
 
-        return VariableManager.getCurrentFile().getVariable(name).getValue();
+        return value;
+    }
+
+    // Locals holding a primitive of the expected type are read unboxed
+    @Override
+    public int evalInt(Frame frame) {
+        if (depth != VariableManager.GLOBAL && frame.getTag(index) == Frame.INT) return frame.getInt(index);
+        return expectInt(eval(frame));
+    }
+
+    @Override
+    public float evalFloat(Frame frame) {
+        if (depth != VariableManager.GLOBAL && frame.getTag(index) == Frame.FLOAT) return frame.getFloat(index);
+        return expectFloat(eval(frame));
+    }
+
+    @Override
+    public boolean evalBoolean(Frame frame) {
+        if (depth != VariableManager.GLOBAL && frame.getTag(index) == Frame.BOOL) return frame.getBoolean(index);
+        return expectBoolean(eval(frame));
+    }
+
+    public void setSlot(int depth, int index) {
+        this.depth = depth;
+        this.index = index;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitVariableCall(this);
     }
 }
@@ -1,30 +1,37 @@
 package studio.karllang.karl.parser.ast.expressions;
 
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.VariableManager;
 
 public class VariableExpression extends Expression {
     public final Value value;
-    private final String name;
+    private final int symbol;
     private final boolean isFinal;
 
-    public VariableExpression(String name, Value value, boolean isFinal) {
-        this.name = name;
+    public VariableExpression(int symbol, Value value, boolean isFinal) {
+        this.symbol = symbol;
         this.value = value;
         this.isFinal = isFinal;
     }
 
     @Override
-    public Value eval() {
+    public Value eval(Frame frame) {
         setValue(value);
         return getValue();
     }
 
     public synchronized Value getValue() {
-        return VariableManager.getCurrentFile().getVariable(name).getValue();
+        return VariableManager.getCurrentFile().get(null, VariableManager.GLOBAL, symbol);
     }
 
     public synchronized void setValue(Value value) {
-        VariableManager.getCurrentFile().setVariable(name, value, isFinal);
+        VariableManager.getCurrentFile().declareGlobal(symbol, value, isFinal);
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitVariable(this);
     }
 }
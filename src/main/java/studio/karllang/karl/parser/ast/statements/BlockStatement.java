@@ -1,22 +1,47 @@
 package studio.karllang.karl.parser.ast.statements;
 
-import studio.karllang.karl.parser.ast.values.Value;
-import studio.karllang.karl.std.VariableManager;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.std.Frame;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 
 public class BlockStatement extends Statement {
     private final ArrayList<Statement> statements;
-    private Value result;
-    private HashMap<String, Value> args;
+    // Size of the frame of a function body or top-level block, holding the locals of all its blocks. Nested
+    // blocks have none, their locals take the slots [firstSlot, firstSlot + slotCount) of the enclosing frame.
+    private int frameSize;
+    private boolean ownsFrame;
+    private int firstSlot;
+    private int slotCount;
 
     public BlockStatement(ArrayList<Statement> statements) {
         this.statements = statements;
     }
 
-    public void setArgs(HashMap<String, Value> args) {
-        this.args = args;
+    public void setFrameSize(int frameSize) {
+        this.frameSize = frameSize;
+        this.ownsFrame = true;
+    }
+
+    public boolean ownsFrame() {
+        return ownsFrame;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public void setSlots(int firstSlot, int slotCount) {
+        this.firstSlot = firstSlot;
+        this.slotCount = slotCount;
+    }
+
+    public int getFirstSlot() {
+        return firstSlot;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
     }
 
     public ArrayList<Statement> getStatements() {
@@ -24,37 +49,32 @@ public class BlockStatement extends Statement {
     }
 
     @Override
-    public void eval() {
-        VariableManager.Scope scope = VariableManager.getCurrentFile().getScope();
-        VariableManager.getCurrentFile().newScope();
-        if (args != null) {
-            for (String arg : args.keySet()) {
-                VariableManager.getCurrentFile().setVariable(arg, args.get(arg), false);
-            }
-        }
-        for (Statement statement : statements) {
-            statement.eval();
-
-            if (statement instanceof IfElseStatement) {
-                if (((IfElseStatement) statement).getResult() != null) {
-                    result = ((IfElseStatement) statement).getResult();
-                    break;
-                }
-            } else if (statement instanceof ReturnStatement) {
-                result = ((ReturnStatement) statement).getResult();
-                break;
-            }
+    public void eval(Frame frame) {
+        if (ownsFrame) {
+            Frame block = frame.push(frameSize);
+            run(block);
+            block.release();
+        } else {
+            run(frame);
+            if (slotCount > 0) frame.clear(firstSlot, slotCount);
         }
+    }
 
-        for (String var : scope.getVariables().keySet()) {
-            if (!VariableManager.getCurrentFile().getVariable(var).equals(scope.getVariables().get(var))) {
-                scope.getVariables().put(var, VariableManager.getCurrentFile().getVariable(var));
-            }
+    // Runs a function body in the frame of the call, holding the arguments
+    public void call(Frame frame) {
+        run(frame);
+    }
+
+    // A return statement ends the blocks it is in up to the function body
+    private void run(Frame frame) {
+        for (Statement statement : statements) {
+            statement.eval(frame);
+            if (frame.isReturning()) break;
         }
-        VariableManager.getCurrentFile().setScope(scope);
     }
 
-    public Value getResult() {
-        return result;
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitBlock(this);
     }
 }
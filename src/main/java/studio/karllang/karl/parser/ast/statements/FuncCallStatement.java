@@ -1,6 +1,8 @@
 package studio.karllang.karl.parser.ast.statements;
 
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.std.Frame;
 
 public class FuncCallStatement extends Statement {
     private final FuncCallExpression expression;
@@ -10,7 +12,16 @@ public class FuncCallStatement extends Statement {
     }
 
     @Override
-    public void eval() {
-        expression.eval();
+    public void eval(Frame frame) {
+        expression.eval(frame);
+    }
+
+    public FuncCallExpression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitFuncCallStatement(this);
     }
 }
@@ -1,23 +1,33 @@
 package studio.karllang.karl.parser.ast.statements;
 
-import studio.karllang.karl.parser.TokenType;
-
-import java.util.HashMap;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
 
+// Functions are registered while parsing, the declaration keeps the function for the passes over the tree
 public class FunctionDeclarationStatement extends Statement {
-    private final String name;
-    private final HashMap<String, TokenType> args;
-    private final BlockStatement body;
-    private final TokenType type;
+    private final int symbol;
+    private final Function function;
+
+    public FunctionDeclarationStatement(int symbol, Function function) {
+        this.symbol = symbol;
+        this.function = function;
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
 
-    public FunctionDeclarationStatement(String name, HashMap<String, TokenType> args, TokenType returnType, BlockStatement block) {
-        this.name = name;
-        this.args = args;
-        this.body = block;
-        this.type = returnType;
+    @Override
+    public void eval(Frame frame) {
     }
 
     @Override
-    public void eval() {
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitFunctionDeclaration(this);
     }
 }
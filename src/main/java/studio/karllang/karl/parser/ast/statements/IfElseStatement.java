@@ -1,13 +1,14 @@
 package studio.karllang.karl.parser.ast.statements;
 
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.expressions.Expression;
-import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.parser.ast.expressions.UnexpectedResultException;
+import studio.karllang.karl.std.Frame;
 
 public class IfElseStatement extends Statement {
     private final Expression condition;
     private final BlockStatement ifStatement;
     private final Statement elseStatement;
-    private Value returnValue = null;
 
     public IfElseStatement(Expression condition, BlockStatement ifStatement, Statement elseStatement) {
         this.condition = condition;
@@ -24,29 +25,27 @@ public class IfElseStatement extends Statement {
     }
 
     @Override
-    public void eval() {
-        if (Boolean.parseBoolean(condition.eval().toString())) {
-            ifStatement.eval();
-            if (ifStatement.getResult() != null) {
-                returnValue = ifStatement.getResult();
-            }
-        } else {
-            if (elseStatement != null) {
-                elseStatement.eval();
-                if (elseStatement instanceof BlockStatement) {
-                    if (((BlockStatement) elseStatement).getResult() != null) {
-                        returnValue = ((BlockStatement) elseStatement).getResult();
-                    }
-                } else if (elseStatement instanceof IfElseStatement) {
-                    if (((IfElseStatement) elseStatement).getResult() != null) {
-                        returnValue = ((IfElseStatement) elseStatement).getResult();
-                    }
-                }
-            }
+    public void eval(Frame frame) {
+        boolean isTrue;
+        try {
+            isTrue = condition.evalBoolean(frame);
+        } catch (UnexpectedResultException e) {
+            isTrue = Boolean.parseBoolean(e.getResult().toString());
+        }
+
+        if (isTrue) {
+            ifStatement.eval(frame);
+        } else if (elseStatement != null) {
+            elseStatement.eval(frame);
         }
     }
 
-    public Value getResult() {
-        return returnValue;
+    public Expression getCondition() {
+        return condition;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitIfElse(this);
     }
 }
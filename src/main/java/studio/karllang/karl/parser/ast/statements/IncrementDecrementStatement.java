@@ -2,39 +2,60 @@ package studio.karllang.karl.parser.ast.statements;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.values.FloatValue;
 import studio.karllang.karl.parser.ast.values.IntValue;
 import studio.karllang.karl.parser.ast.values.Value;
-import studio.karllang.karl.std.Variable;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.VariableManager;
 
 public class IncrementDecrementStatement extends Statement {
     private final String name;
+    private final int symbol;
     private final String fileName;
     private final int line;
     private final int pos;
     private final TokenType increment;
+    // Slot given by the resolver, the global of the name until then
+    private int depth = VariableManager.GLOBAL;
+    private int index;
+    private boolean isFinal;
 
-    public IncrementDecrementStatement(String name, TokenType increment, String fileName, int line, int pos) {
+    public IncrementDecrementStatement(String name, int symbol, TokenType increment, String fileName, int line, int pos) {
         this.name = name;
+        this.symbol = symbol;
         this.fileName = fileName;
         this.line = line;
         this.pos = pos;
         this.increment = increment;
+        this.index = symbol;
     }
 
     @Override
-    public void eval() {
-        Variable variable = VariableManager.getCurrentFile().getVariable(name);
+    public void eval(Frame frame) {
+        if (depth != VariableManager.GLOBAL && !isFinal) {
+            int delta = increment == TokenType.PLUS ? 1 : -1;
+            switch (frame.getTag(index)) {
+                case Frame.INT -> {
+                    frame.setInt(index, frame.getInt(index) + delta);
+                    return;
+                }
+                case Frame.FLOAT -> {
+                    frame.setFloat(index, frame.getFloat(index) + delta);
+                    return;
+                }
+            }
+        }
+
+        VariableManager.File file = VariableManager.getCurrentFile();
+        Value value = file.get(frame, depth, index);
 
-        if (variable == null) {
+        if (value == null) {
             new RuntimeError("Variable " + name + " is not defined", fileName, line, pos);
         }
 
-        assert variable != null;
-        Value value = variable.getValue();
-
-        if (VariableManager.getCurrentFile().isFinal(name)) {
+        assert value != null;
+        if (depth == VariableManager.GLOBAL ? file.isFinalGlobal(index) : isFinal) {
             new RuntimeError("Variable " + name + " is final", fileName, line, pos);
         }
 
@@ -45,9 +66,52 @@ public class IncrementDecrementStatement extends Statement {
         boolean isFloat = value.getType() == TokenType.FLOAT_VALUE;
 
         if (increment == TokenType.PLUS) {
-            VariableManager.getCurrentFile().setVariable(name, isFloat ? new FloatValue(value.toFloat() + 1) : new IntValue(value.toInt() + 1), false);
+            file.set(frame, depth, index, isFloat ? new FloatValue(value.toFloat() + 1) : new IntValue(value.toInt() + 1));
         } else {
-            VariableManager.getCurrentFile().setVariable(name, isFloat ? new FloatValue(value.toFloat() - 1) : new IntValue(value.toInt() - 1), false);
+            file.set(frame, depth, index, isFloat ? new FloatValue(value.toFloat() - 1) : new IntValue(value.toInt() - 1));
         }
     }
+
+    public void setSlot(int depth, int index, boolean isFinal) {
+        this.depth = depth;
+        this.index = index;
+        this.isFinal = isFinal;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isFinal() {
+        return isFinal;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public TokenType getIncrement() {
+        return increment;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitIncrementDecrement(this);
+    }
 }
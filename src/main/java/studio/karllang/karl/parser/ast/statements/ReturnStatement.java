@@ -1,22 +1,62 @@
 package studio.karllang.karl.parser.ast.statements;
 
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.expressions.Expression;
-import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.parser.ast.expressions.UnexpectedResultException;
+import studio.karllang.karl.std.Frame;
 
 public class ReturnStatement extends Statement {
     private final Expression expr;
-    private Value result;
+    private final String fileName;
+    private final int line;
+    private final int pos;
+    // Tag of the first value returned, the value being returned unboxed while it keeps the type
+    private byte tag = Frame.EMPTY;
 
-    public ReturnStatement(Expression expr) {
+    public ReturnStatement(Expression expr, String fileName, int line, int pos) {
         this.expr = expr;
+        this.fileName = fileName;
+        this.line = line;
+        this.pos = pos;
     }
 
     @Override
-    public void eval() {
-        result = expr.eval();
+    public void eval(Frame frame) {
+        try {
+            switch (tag) {
+                case Frame.INT -> frame.returnInt(expr.evalInt(frame));
+                case Frame.FLOAT -> frame.returnFloat(expr.evalFloat(frame));
+                case Frame.BOOL -> frame.returnBoolean(expr.evalBoolean(frame));
+                case Frame.VALUE -> frame.returnWith(expr.eval(frame));
+                default -> {
+                    frame.returnWith(expr.eval(frame));
+                    tag = frame.getReturnTag();
+                }
+            }
+        } catch (UnexpectedResultException e) {
+            tag = Frame.VALUE;
+            frame.returnWith(e.getResult());
+        }
     }
 
-    public Value getResult() {
-        return result;
+    public Expression getExpression() {
+        return expr;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitReturn(this);
     }
 }
@@ -1,6 +1,8 @@
 package studio.karllang.karl.parser.ast.statements;
 
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.expressions.Expression;
+import studio.karllang.karl.std.Frame;
 
 import java.util.ArrayList;
 
@@ -12,12 +14,21 @@ public class ShowStatement extends Statement {
     }
 
     @Override
-    public void eval() {
+    public void eval(Frame frame) {
         StringBuilder str = new StringBuilder();
         for (Expression e : expr) {
-            String string = e.eval().toString();
+            String string = e.eval(frame).toString();
             str.append(string);
         }
         System.out.println(str);
     }
+
+    public ArrayList<Expression> getExpressions() {
+        return expr;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitShow(this);
+    }
 }
@@ -1,5 +1,10 @@
 package studio.karllang.karl.parser.ast.statements;
 
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.std.Frame;
+
 public abstract class Statement {
-    public abstract void eval();
+    public abstract void eval(Frame frame);
+
+    public abstract <R> R accept(AstVisitor<R> visitor);
 }
@@ -2,47 +2,138 @@ package studio.karllang.karl.parser.ast.statements;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.expressions.Expression;
+import studio.karllang.karl.parser.ast.expressions.UnexpectedResultException;
 import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.Types;
-import studio.karllang.karl.std.Variable;
 import studio.karllang.karl.std.VariableManager;
 
 public class VariableAssignmentStatement extends Statement {
     private final Expression expression;
     private final String name;
+    private final int symbol;
     private final String fileName;
     private final int line;
     private final int pos;
+    // Slot given by the resolver, the global of the name until then
+    private int depth = VariableManager.GLOBAL;
+    private int index;
+    private boolean isFinal;
+    // Set by the type checker when the value is sure to have the type of the variable
+    private boolean checked;
 
-    public VariableAssignmentStatement(String name, Expression expression, String fileName, int line, int pos) {
+    public VariableAssignmentStatement(String name, int symbol, Expression expression, String fileName, int line, int pos) {
         this.expression = expression;
         this.name = name;
+        this.symbol = symbol;
         this.fileName = fileName;
         this.line = line;
         this.pos = pos;
+        this.index = symbol;
     }
 
     @Override
-    public void eval() {
-        Value value = expression.eval();
-        Variable var = VariableManager.getCurrentFile().getVariable(name);
+    public void eval(Frame frame) {
+        // Locals holding a primitive are assigned unboxed, a value of another type being a type error
+        if (depth != VariableManager.GLOBAL && !isFinal) {
+            try {
+                switch (frame.getTag(index)) {
+                    case Frame.INT -> {
+                        frame.setInt(index, expression.evalInt(frame));
+                        return;
+                    }
+                    case Frame.FLOAT -> {
+                        frame.setFloat(index, expression.evalFloat(frame));
+                        return;
+                    }
+                    case Frame.BOOL -> {
+                        frame.setBoolean(index, expression.evalBoolean(frame));
+                        return;
+                    }
+                }
+            } catch (UnexpectedResultException e) {
+                assign(frame, e.getResult());
+                return;
+            }
+        }
+        assign(frame, expression.eval(frame));
+    }
 
-        if (var == null) {
+    public void assign(Frame frame, Value value) {
+        VariableManager.File file = VariableManager.getCurrentFile();
+        Value val = file.get(frame, depth, index);
+
+        if (val == null) {
             new RuntimeError("Variable " + name + " is not declared", fileName, line, pos);
         }
 
-        assert var != null;
-        Value val = var.getValue();
-
-        if (VariableManager.getCurrentFile().isFinal(name)) {
+        assert val != null;
+        if (depth == VariableManager.GLOBAL ? file.isFinalGlobal(index) : isFinal) {
             new RuntimeError("Variable " + name + " is final", fileName, line, pos);
         }
 
-        if (val.getType() == value.getType() || (val.getType() == TokenType.STRING && value.getType() == TokenType.NULL)) {
-            VariableManager.getCurrentFile().setVariable(name, value, false);
+        if (checked || val.getType() == value.getType() || (val.getType() == TokenType.STRING && value.getType() == TokenType.NULL)) {
+            file.set(frame, depth, index, value);
         } else {
             new RuntimeError("Incorrect type for variable " + name + ": except " + Types.getTypeName(val.getType()) + " but got type " + Types.getTypeName(value.getType()), fileName, line, pos);
         }
     }
+
+    // Locals that are final are known when resolving, globals are checked when assigned
+    public void setSlot(int depth, int index, boolean isFinal) {
+        this.depth = depth;
+        this.index = index;
+        this.isFinal = isFinal;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isFinal() {
+        return isFinal;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setChecked(boolean checked) {
+        this.checked = checked;
+    }
+
+    public boolean isChecked() {
+        return checked;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitVariableAssignment(this);
+    }
 }
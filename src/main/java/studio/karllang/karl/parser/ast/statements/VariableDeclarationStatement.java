@@ -1,65 +1,189 @@
 package studio.karllang.karl.parser.ast.statements;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
-import studio.karllang.karl.parser.Token;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
 import studio.karllang.karl.parser.ast.expressions.Expression;
-import studio.karllang.karl.parser.ast.expressions.ValueExpression;
-import studio.karllang.karl.parser.ast.expressions.VariableExpression;
+import studio.karllang.karl.parser.ast.expressions.UnexpectedResultException;
+import studio.karllang.karl.parser.ast.values.FloatValue;
 import studio.karllang.karl.parser.ast.values.Value;
 import studio.karllang.karl.std.ForbiddenNames;
+import studio.karllang.karl.std.Frame;
 import studio.karllang.karl.std.Types;
 import studio.karllang.karl.std.VariableManager;
 
 public class VariableDeclarationStatement extends Statement {
     private final String name;
-    private final Token type;
+    private final int symbol;
+    private final TokenType type;
     private final String fileName;
     private final int line;
     private final int pos;
-    private Expression expression;
+    private final Expression expression;
     private final boolean isFinal;
+    // Slot given by the resolver, the global of the name until then, and the slot of the enclosing variable of
+    // the same name if there is one, a name being declared once in the blocks it is visible in
+    private int depth = VariableManager.GLOBAL;
+    private int index;
+    private int shadowedDepth = VariableManager.GLOBAL;
+    private int shadowedIndex;
+    private boolean unboxed = true;
+    // Set by the type checker when the name is allowed and the value sure to have the type of the variable
+    private boolean checked;
 
-    public VariableDeclarationStatement(Expression expression, String name, Token type, String fileName, int line, int pos, boolean isFinal) {
+    public VariableDeclarationStatement(Expression expression, String name, int symbol, TokenType type, String fileName, int line, int pos, boolean isFinal) {
         this.expression = expression;
         this.name = name;
+        this.symbol = symbol;
         this.type = type;
         this.fileName = fileName;
         this.line = line;
         this.pos = pos;
         this.isFinal = isFinal;
+        this.index = symbol;
+        this.shadowedIndex = symbol;
     }
 
     @Override
-    public void eval() {
-        if (ForbiddenNames.isForbiddenName(name)) {
+    public void eval(Frame frame) {
+        checkDeclarable(frame);
+
+        // Locals of a primitive type are stored unboxed, until a value of another type shows up
+        if (unboxed && depth != VariableManager.GLOBAL) {
+            try {
+                switch (type) {
+                    case INT -> {
+                        frame.setInt(index, expression.evalInt(frame));
+                        return;
+                    }
+                    case FLOAT -> {
+                        frame.setFloat(index, expression.evalFloat(frame));
+                        return;
+                    }
+                    case BOOL -> {
+                        frame.setBoolean(index, expression.evalBoolean(frame));
+                        return;
+                    }
+                }
+            } catch (UnexpectedResultException e) {
+                unboxed = false;
+                declare(frame, e.getResult());
+                return;
+            }
+        }
+        declare(frame, expression.eval(frame));
+    }
+
+    // Checks run before the value is evaluated
+    public void checkDeclarable(Frame frame) {
+        if (!checked && ForbiddenNames.isForbiddenName(name)) {
             new RuntimeError("Variable name " + name + " is forbidden", fileName, line, pos);
         }
+        checkNotDeclared(frame);
+    }
 
-        if (VariableManager.getCurrentFile().getVariable(name) != null) {
+    // Check depending on the variables declared when run, the engines compiling the node checking the name once
+    public void checkNotDeclared(Frame frame) {
+        VariableManager.File file = VariableManager.getCurrentFile();
+        if (file.isDeclared(frame, depth, index) || file.isDeclared(frame, shadowedDepth, shadowedIndex) || file.isDeclared(frame, VariableManager.GLOBAL, symbol)) {
             new RuntimeError("Variable " + name + " is already declared", fileName, line, pos);
         }
+    }
 
-        Value value = expression.eval();
-        if (type.getType() == TokenType.FLOAT && value.getType() == TokenType.INT_VALUE) {
-            expression = new ValueExpression(value.toFloat(), TokenType.FLOAT_VALUE);
-            value = expression.eval();
+    public void declare(Frame frame, Value value) {
+        if (type == TokenType.FLOAT && value.getType() == TokenType.INT_VALUE) {
+            value = new FloatValue(value.toFloat());
         }
 
+        if (!checked) checkValue(value);
+
+        VariableManager.File file = VariableManager.getCurrentFile();
+        if (depth == VariableManager.GLOBAL) {
+            file.declareGlobal(index, value, isFinal);
+        } else {
+            file.set(frame, depth, index, value);
+        }
+    }
+
+    private void checkValue(Value value) {
         if (value.toString().equals("null_void")) {
             new RuntimeError("Cannot assign void function to a variable", fileName, line, pos);
         }
 
-        if (!Types.checkValueType(type.getType(), value.getType()) && value.getType() != TokenType.NULL) {
-            new RuntimeError("Expected type " + Types.getTypeName(type.getType()) + " but got " + Types.getTypeName(value.getType()), fileName, line, pos - 1);
+        if (!Types.checkValueType(type, value.getType()) && value.getType() != TokenType.NULL) {
+            new RuntimeError("Expected type " + Types.getTypeName(type) + " but got " + Types.getTypeName(value.getType()), fileName, line, pos - 1);
         }
 
-        if (value.getType() == TokenType.NULL && type.getType() != TokenType.STRING && type.getType() != TokenType.CHAR) {
-            new RuntimeError(Types.getTypeName(type.getType()) + " variable cannot be null", fileName, line, pos - 1);
+        if (value.getType() == TokenType.NULL && type != TokenType.STRING && type != TokenType.CHAR) {
+            new RuntimeError(Types.getTypeName(type) + " variable cannot be null", fileName, line, pos - 1);
         }
+    }
+
+    public void setChecked(boolean checked) {
+        this.checked = checked;
+    }
+
+    public boolean isChecked() {
+        return checked;
+    }
+
+    public void setSlot(int depth, int index, int shadowedDepth, int shadowedIndex) {
+        this.depth = depth;
+        this.index = index;
+        this.shadowedDepth = shadowedDepth;
+        this.shadowedIndex = shadowedIndex;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getIndex() {
+        return index;
+    }
 
-        VariableExpression expr = new VariableExpression(name, value, isFinal);
-        expr.setValue(value);
-        expr.eval();
+    public int getShadowedDepth() {
+        return shadowedDepth;
+    }
+
+    public int getShadowedIndex() {
+        return shadowedIndex;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public boolean isFinal() {
+        return isFinal;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) {
+        return visitor.visitVariableDeclaration(this);
     }
 }
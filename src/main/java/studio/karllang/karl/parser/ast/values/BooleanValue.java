@@ -14,6 +14,10 @@ public class BooleanValue extends Value {
         return value.toString();
     }
 
+    public boolean toBoolean() {
+        return value;
+    }
+
     @Override
     public int toInt() {
         return 0;
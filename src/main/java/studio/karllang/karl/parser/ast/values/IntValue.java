@@ -21,7 +21,7 @@ public class IntValue extends Value {
 
     @Override
     public float toFloat() {
-        return Float.parseFloat(toString());
+        return value;
     }
 
     @Override
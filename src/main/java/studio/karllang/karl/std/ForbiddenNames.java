@@ -1,6 +1,7 @@
 package studio.karllang.karl.std;
 
 import java.util.Arrays;
+import java.util.HashSet;
 
 public final class ForbiddenNames {
     private static final String[] FORBIDDEN_VARIABLE_NAMES = {
@@ -70,8 +71,14 @@ public final class ForbiddenNames {
             "eval"
     };
 
+    private static final HashSet<String> FORBIDDEN_NAMES = new HashSet<>();
+
+    static {
+        FORBIDDEN_NAMES.addAll(Arrays.asList(FORBIDDEN_VARIABLE_NAMES));
+        FORBIDDEN_NAMES.addAll(Arrays.asList(FORBIDDEN_FUNCTION_NAMES));
+    }
+
     public static boolean isForbiddenName(String name) {
-        if (Arrays.asList(FORBIDDEN_VARIABLE_NAMES).contains(name)) return true;
-        return Arrays.asList(FORBIDDEN_FUNCTION_NAMES).contains(name);
+        return FORBIDDEN_NAMES.contains(name);
     }
 }
@@ -0,0 +1,258 @@
+package studio.karllang.karl.std;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.Value;
+
+import java.util.Arrays;
+
+/**
+ * Activation record of a function call or top-level block: the arguments and locals in the slots given by the
+ * resolver, and the value of the return statement ending the call. A frame keeps the frame of the calls made from
+ * it for the next ones, so a thread allocates one frame per depth its calls reach. Frames belong to the thread
+ * running them, the tree and the functions hold no state of a call and can be run by several threads at once.
+ * <p>
+ * Ints, floats and bools are held unboxed, as a tag and the bits of the value, and only boxed when read as a
+ * {@link Value}. Other values are held as objects.
+ */
+public final class Frame {
+    public static final byte EMPTY = 0;
+    public static final byte VALUE = 1;
+    public static final byte INT = 2;
+    public static final byte FLOAT = 3;
+    public static final byte BOOL = 4;
+
+    private byte[] tags;
+    private long[] bits;
+    private Value[] values;
+    // Value of the return statement that ended the call, tagged like the slots
+    private byte returnTag;
+    private long returnBits;
+    private Value returnValue;
+    // Frames reused by the calls made from this one, chained by sibling, and whether a call is running in this frame
+    private Frame callee;
+    private Frame sibling;
+    private boolean active;
+
+    public Frame(int size) {
+        allocate(size);
+        this.active = true;
+    }
+
+    private void allocate(int size) {
+        tags = new byte[size];
+        bits = new long[size];
+        values = new Value[size];
+    }
+
+    // Empty frame for a call made from this one, to give back with release once the call returned. The calls made
+    // while evaluating the arguments of another one find its frame active and take the next frame of the chain.
+    public Frame push(int size) {
+        Frame frame = callee;
+        Frame last = null;
+        while (frame != null && frame.active) {
+            last = frame;
+            frame = frame.sibling;
+        }
+        if (frame == null) {
+            frame = new Frame(size);
+            if (last == null) {
+                callee = frame;
+            } else {
+                last.sibling = frame;
+            }
+            return frame;
+        }
+
+        if (frame.tags.length < size) {
+            frame.allocate(size);
+        } else {
+            Arrays.fill(frame.tags, 0, size, EMPTY);
+            Arrays.fill(frame.values, 0, size, null);
+        }
+        frame.returnTag = EMPTY;
+        frame.returnValue = null;
+        frame.active = true;
+        return frame;
+    }
+
+    public void release() {
+        active = false;
+    }
+
+    public static byte tagOf(Value value) {
+        if (value instanceof IntValue) return INT;
+        if (value instanceof FloatValue) return FLOAT;
+        if (value instanceof BooleanValue) return BOOL;
+        return VALUE;
+    }
+
+    public static long bitsOf(byte tag, Value value) {
+        return switch (tag) {
+            case INT -> value.toInt();
+            case FLOAT -> Float.floatToRawIntBits(value.toFloat());
+            case BOOL -> ((BooleanValue) value).toBoolean() ? 1 : 0;
+            default -> 0;
+        };
+    }
+
+    public static Value box(byte tag, long bits, Value value) {
+        return switch (tag) {
+            case INT -> new IntValue((int) bits);
+            case FLOAT -> new FloatValue(Float.intBitsToFloat((int) bits));
+            case BOOL -> new BooleanValue(bits != 0);
+            default -> value;
+        };
+    }
+
+    private static TokenType typeOf(byte tag, Value value) {
+        return switch (tag) {
+            case INT -> TokenType.INT_VALUE;
+            case FLOAT -> TokenType.FLOAT_VALUE;
+            case BOOL -> TokenType.BOOL_VALUE;
+            case VALUE -> value.getType();
+            default -> null;
+        };
+    }
+
+    public byte getTag(int index) {
+        return tags[index];
+    }
+
+    public boolean isEmpty(int index) {
+        return tags[index] == EMPTY;
+    }
+
+    // Value in a slot, boxed if it is a primitive, null when the slot is empty
+    public Value get(int index) {
+        return box(tags[index], bits[index], values[index]);
+    }
+
+    public void set(int index, Value value) {
+        byte tag = tagOf(value);
+        tags[index] = tag;
+        if (tag == VALUE) {
+            values[index] = value;
+        } else {
+            bits[index] = bitsOf(tag, value);
+        }
+    }
+
+    // Raw content of a slot, for the engines holding values tagged the same way
+    public long getBits(int index) {
+        return bits[index];
+    }
+
+    public Value getObject(int index) {
+        return values[index];
+    }
+
+    public void setSlot(int index, byte tag, long bits, Value value) {
+        tags[index] = tag;
+        this.bits[index] = bits;
+        values[index] = value;
+    }
+
+    public int getInt(int index) {
+        return (int) bits[index];
+    }
+
+    public void setInt(int index, int value) {
+        tags[index] = INT;
+        bits[index] = value;
+    }
+
+    public float getFloat(int index) {
+        return Float.intBitsToFloat((int) bits[index]);
+    }
+
+    public void setFloat(int index, float value) {
+        tags[index] = FLOAT;
+        bits[index] = Float.floatToRawIntBits(value);
+    }
+
+    public boolean getBoolean(int index) {
+        return bits[index] != 0;
+    }
+
+    public void setBoolean(int index, boolean value) {
+        tags[index] = BOOL;
+        bits[index] = value ? 1 : 0;
+    }
+
+    // Forgets the locals of a block being left, its slots are reused by the blocks that follow it
+    public void clear(int from, int count) {
+        Arrays.fill(tags, from, from + count, EMPTY);
+        Arrays.fill(values, from, from + count, null);
+    }
+
+    // Ends the call, the blocks being run stop after the return statement
+    public void returnWith(Value value) {
+        returnTag = tagOf(value);
+        if (returnTag == VALUE) {
+            returnValue = value;
+        } else {
+            returnBits = bitsOf(returnTag, value);
+        }
+    }
+
+    public void returnSlot(byte tag, long bits, Value value) {
+        returnTag = tag;
+        returnBits = bits;
+        returnValue = value;
+    }
+
+    public void returnInt(int value) {
+        returnTag = INT;
+        returnBits = value;
+    }
+
+    public void returnFloat(float value) {
+        returnTag = FLOAT;
+        returnBits = Float.floatToRawIntBits(value);
+    }
+
+    public void returnBoolean(boolean value) {
+        returnTag = BOOL;
+        returnBits = value ? 1 : 0;
+    }
+
+    public boolean isReturning() {
+        return returnTag != EMPTY;
+    }
+
+    public byte getReturnTag() {
+        return returnTag;
+    }
+
+    // Type of the returned value, null when the call ended without a return statement
+    public TokenType getReturnType() {
+        return typeOf(returnTag, returnValue);
+    }
+
+    public Value getReturnValue() {
+        return box(returnTag, returnBits, returnValue);
+    }
+
+    public long getReturnBits() {
+        return returnBits;
+    }
+
+    public Value getReturnObject() {
+        return returnValue;
+    }
+
+    public int getReturnInt() {
+        return (int) returnBits;
+    }
+
+    public float getReturnFloat() {
+        return Float.intBitsToFloat((int) returnBits);
+    }
+
+    public boolean getReturnBoolean() {
+        return returnBits != 0;
+    }
+}
@@ -1,52 +1,61 @@
 package studio.karllang.karl.std;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
+import studio.karllang.karl.jit.CompiledFunction;
+import studio.karllang.karl.jit.Jit;
 import studio.karllang.karl.parser.TokenType;
-import studio.karllang.karl.parser.ast.expressions.Expression;
 import studio.karllang.karl.parser.ast.statements.BlockStatement;
-import studio.karllang.karl.parser.ast.statements.Statement;
-import studio.karllang.karl.parser.ast.values.Value;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 
 public class Function {
     private final String name;
     private final LinkedHashMap<String, TokenType> args;
+    private final int[] argSymbols;
+    private final String[] argNames;
+    private final TokenType[] argTypes;
     private final BlockStatement body;
     private final TokenType type;
+    // Calls counted while the function runs interpreted, and the code it was compiled to once they made it hot
+    private int invocations;
+    private CompiledFunction compiled;
+    // Set by the type checker when the body is sure to return a value of the type of the function
+    private boolean returnChecked;
 
-    public Function(String name, LinkedHashMap<String, TokenType> args, TokenType returnType, BlockStatement body) {
+    public Function(String name, LinkedHashMap<String, TokenType> args, int[] argSymbols, TokenType returnType, BlockStatement body) {
         this.name = name;
         this.args = args;
+        this.argSymbols = argSymbols;
+        this.argNames = args.keySet().toArray(new String[0]);
+        this.argTypes = args.values().toArray(new TokenType[0]);
         this.body = body;
         this.type = returnType;
     }
 
-    public Value eval(ArrayList<Expression> values, String fileName, int line, int pos) {
-        HashMap<String, Value> arguments = new HashMap<>();
-        int i = 0;
-        for (String arg : args.keySet()) {
-            arguments.put(arg, values.get(i).eval());
-            i++;
-        }
-        body.setArgs(arguments);
-        body.eval();
-        if (body.getResult() != null) {
+    // Runs the body in the frame of a call, whose first slots hold the arguments, and checks the returned value
+    // left in the frame. Functions compiled by the JIT check their types when compiled.
+    public void call(Frame frame, String fileName, int line, int pos) {
+        if (Jit.isEnabled() && Jit.call(this, frame)) return;
+        body.call(frame);
+        if (!returnChecked) checkReturn(frame, fileName, line, pos);
+    }
+
+    public void checkReturn(Frame frame, String fileName, int line, int pos) {
+        checkReturnType(frame.getReturnType(), fileName, line, pos);
+    }
+
+    // Check of the type of the value returned, null when the body ended without a return statement
+    public void checkReturnType(TokenType result, String fileName, int line, int pos) {
+        if (result != null) {
             if (type == TokenType.VOID) {
                 new RuntimeError("Function " + name + " is void, but return a value", fileName, line, pos);
             }
-            if (Types.checkValueType(type, body.getResult().getType()) || (type == TokenType.STRING && body.getResult().getType() == TokenType.NULL)) {
-                return body.getResult();
-            } else {
-                new RuntimeError("Incorrect return type for function " + name + ": except " + type.getName() + " but got type " + body.getResult().getType().getName(), fileName, line, pos);
+            if (!Types.checkValueType(type, result) && !(type == TokenType.STRING && result == TokenType.NULL)) {
+                new RuntimeError("Incorrect return type for function " + name + ": except " + type.getName() + " but got type " + result.getName(), fileName, line, pos);
             }
-        } else if (body.getResult() == null && type != TokenType.VOID) {
+        } else if (type != TokenType.VOID) {
             new RuntimeError("Missing return statement in function: " + name, fileName, line, pos);
         }
-
-        return null;
     }
 
     public String getName() {
@@ -57,11 +66,43 @@ public class Function {
         return args;
     }
 
-    public Statement getBody() {
+    public int[] getArgSymbols() {
+        return argSymbols;
+    }
+
+    public String[] getArgNames() {
+        return argNames;
+    }
+
+    public TokenType[] getArgTypes() {
+        return argTypes;
+    }
+
+    public BlockStatement getBody() {
         return body;
     }
 
     public TokenType getType() {
         return type;
     }
+
+    public boolean isReturnChecked() {
+        return returnChecked;
+    }
+
+    public void setReturnChecked(boolean returnChecked) {
+        this.returnChecked = returnChecked;
+    }
+
+    public int countInvocation() {
+        return ++invocations;
+    }
+
+    public CompiledFunction getCompiled() {
+        return compiled;
+    }
+
+    public void setCompiled(CompiledFunction compiled) {
+        this.compiled = compiled;
+    }
 }
@@ -4,13 +4,23 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.IntPredicate;
 
 public final class FunctionManager {
     private static File currentFile;
     private final static ArrayList<File> files = new ArrayList<>();
 
     public static void addFile(String name) {
-        currentFile = new File(name);
+        addFile(name, new SymbolTable());
+    }
+
+    public static void addFile(String name, SymbolTable symbols) {
+        addFile(name, symbols, new FunctionTable());
+    }
+
+    // Links a parsed file, its functions being looked up in the table filled by the parser
+    public static void addFile(String name, SymbolTable symbols, FunctionTable functions) {
+        currentFile = new File(name, symbols, functions);
         files.add(currentFile);
     }
 
@@ -27,31 +37,79 @@ public final class FunctionManager {
     }
 
     public static class File {
-        private final HashMap<String, Function> functions = new HashMap<>();
+        private final FunctionTable functions;
         private final String name;
+        private final SymbolTable symbols;
+        private IntPredicate parseAhead;
+
+        public File(String name, SymbolTable symbols) {
+            this(name, symbols, new FunctionTable());
+        }
 
-        public File(String name) {
+        public File(String name, SymbolTable symbols, FunctionTable functions) {
             this.name = name;
+            this.symbols = symbols;
+            this.functions = functions;
         }
 
         public String getName() {
             return name;
         }
 
+        public SymbolTable getSymbols() {
+            return symbols;
+        }
+
         public void addFunction(Function function) {
-            functions.put(function.getName(), function);
+            addFunction(symbols.intern(function.getName()), function);
+        }
+
+        public void addFunction(int symbol, Function function) {
+            functions.add(symbol, function);
+        }
+
+        public Function getFunction(int symbol) {
+            return functions.get(symbol);
         }
 
         public Function getFunction(String name) {
-            return functions.get(name);
+            int symbol = symbols.lookup(name);
+            return symbol == -1 ? null : getFunction(symbol);
+        }
+
+        // Function called at runtime. When the file is streamed, a function declared further down may not be
+        // parsed yet, so the rest of the file is parsed ahead until it is.
+        public Function resolveFunction(int symbol) {
+            Function function = getFunction(symbol);
+            if (function == null && parseAhead != null && parseAhead.test(symbol)) {
+                function = getFunction(symbol);
+            }
+            return function;
+        }
+
+        public int getVersion() {
+            return functions.getVersion();
+        }
+
+        public void setParseAhead(IntPredicate parseAhead) {
+            this.parseAhead = parseAhead;
+        }
+
+        public boolean isFunction(int symbol) {
+            return getFunction(symbol) != null;
         }
 
         public boolean isFunction(String name) {
-            return functions.containsKey(name);
+            return getFunction(name) != null;
         }
 
         public HashMap<String, Function> getFunctions() {
-            return functions;
+            HashMap<String, Function> map = new HashMap<>();
+            for (int symbol = 0; symbol < functions.capacity(); symbol++) {
+                Function function = functions.get(symbol);
+                if (function != null) map.put(function.getName(), function);
+            }
+            return map;
         }
 
         public void clear() {
@@ -59,7 +117,8 @@ public final class FunctionManager {
         }
 
         public void removeFunction(String name) {
-            functions.remove(name);
+            int symbol = symbols.lookup(name);
+            if (symbol != -1) functions.remove(symbol);
         }
     }
 }
@@ -0,0 +1,44 @@
+package studio.karllang.karl.std;
+
+import java.util.Arrays;
+
+// Functions declared in a file, indexed by the symbol id of their name
+public final class FunctionTable {
+    private Function[] functions = new Function[16];
+    // Bumped by every change, the call sites caching a function check it is the one they saw
+    private int version;
+
+    public void add(int symbol, Function function) {
+        if (symbol >= functions.length) {
+            functions = Arrays.copyOf(functions, Math.max(symbol + 1, functions.length * 2));
+        }
+        functions[symbol] = function;
+        version++;
+    }
+
+    public Function get(int symbol) {
+        return symbol < functions.length ? functions[symbol] : null;
+    }
+
+    public boolean contains(int symbol) {
+        return get(symbol) != null;
+    }
+
+    public void remove(int symbol) {
+        if (symbol < functions.length) functions[symbol] = null;
+        version++;
+    }
+
+    public int capacity() {
+        return functions.length;
+    }
+
+    public void clear() {
+        Arrays.fill(functions, null);
+        version++;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
@@ -2,12 +2,14 @@ package studio.karllang.karl.std;
 
 import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
 import studio.karllang.karl.parser.ast.values.Value;
 
 import java.util.HashMap;
 
 public class LogicalOperators {
     public static final HashMap<String, TokenType> operators = new HashMap<>();
+    private static final HashMap<TokenType, Integer> precedences = new HashMap<>();
 
     static {
         operators.put("&&", TokenType.AND);
@@ -18,6 +20,21 @@ public class LogicalOperators {
         operators.put("<", TokenType.LESS);
         operators.put(">=", TokenType.GREATER_EQUAL);
         operators.put("<=", TokenType.LESS_EQUAL);
+
+        // Below the arithmetic operators
+        precedences.put(TokenType.OR, 1);
+        precedences.put(TokenType.AND, 2);
+        precedences.put(TokenType.EQUALEQUAL, 3);
+        precedences.put(TokenType.NOT_EQUAL, 3);
+        precedences.put(TokenType.GREATER, 4);
+        precedences.put(TokenType.LESS, 4);
+        precedences.put(TokenType.GREATER_EQUAL, 4);
+        precedences.put(TokenType.LESS_EQUAL, 4);
+    }
+
+    // Binding power of a left-associative operator, the higher the tighter, 0 when the token is not an operator
+    public static int getPrecedence(TokenType type) {
+        return precedences.getOrDefault(type, 0);
     }
 
     public static boolean and(boolean a, boolean b) {
@@ -48,4 +65,58 @@ public class LogicalOperators {
             default -> throw new RuntimeException("Unknown operator: " + operator);
         };
     }
+
+    // Operation of a logical expression on values of any types, rightValue being null for the unary ones
+    public static Value apply(TokenType operator, Value leftValue, Value rightValue, String fileName, int line, int pos) {
+        if (operator != null) {
+            if (rightValue != null) {
+                if (leftValue.getType() == TokenType.NULL || rightValue.getType() == TokenType.NULL) {
+                    return switch (operator) {
+                        case NOT_EQUAL -> {
+                            if (leftValue.getType() == TokenType.NULL && rightValue.getType() == TokenType.NULL)
+                                yield new BooleanValue(false);
+                            else yield new BooleanValue(true);
+                        }
+                        case EQUALEQUAL -> {
+                            if (leftValue.getType() == TokenType.NULL && rightValue.getType() == TokenType.NULL)
+                                yield new BooleanValue(true);
+                            else yield new BooleanValue(false);
+                        }
+                        default -> {
+                            new RuntimeError("Bad operator: " + operator.getName(), fileName, line, pos);
+                            yield null;
+                        }
+                    };
+
+                } else if ((leftValue.getType() != TokenType.INT_VALUE && leftValue.getType() != TokenType.FLOAT_VALUE) || (rightValue.getType() != TokenType.INT_VALUE && rightValue.getType() != TokenType.FLOAT_VALUE)) {
+                    final boolean equals = leftValue.toString().equals(rightValue.toString());
+
+                    return switch (operator) {
+                        case AND ->
+                                new BooleanValue(and(Boolean.parseBoolean(leftValue.toString()), Boolean.parseBoolean(rightValue.toString())));
+                        case OR ->
+                                new BooleanValue(or(Boolean.parseBoolean(leftValue.toString()), Boolean.parseBoolean(rightValue.toString())));
+                        case EQUALEQUAL -> new BooleanValue(equals);
+                        case NOT_EQUAL -> new BooleanValue(!equals);
+                        default -> {
+                            new RuntimeError("Unknown operator: " + operator, fileName, line, pos);
+                            yield null;
+                        }
+                    };
+
+                } else {
+                    return new BooleanValue(compare(leftValue, rightValue, operator, fileName, line, pos));
+                }
+            } else {
+                if (operator == TokenType.EXCLAMATION) {
+                    return new BooleanValue(!Boolean.parseBoolean(leftValue.toString()));
+                } else {
+                    new RuntimeError("Unknown operator: " + operator, fileName, line, pos);
+                    return null;
+                }
+            }
+        } else {
+            return new BooleanValue(Boolean.parseBoolean(leftValue.toString()));
+        }
+    }
 }
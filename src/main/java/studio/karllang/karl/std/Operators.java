@@ -1,11 +1,20 @@
 package studio.karllang.karl.std;
 
+import studio.karllang.karl.errors.RuntimeError.RuntimeError;
 import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.StringValue;
+import studio.karllang.karl.parser.ast.values.Value;
 
 import java.util.HashMap;
 
 public class Operators {
+    // Result of applyInt out of the ints
+    public static final long NOT_INT = Long.MIN_VALUE;
+
     private static final HashMap<String, TokenType> operators = new HashMap<>();
+    private static final HashMap<TokenType, Integer> precedences = new HashMap<>();
 
     static {
         operators.put("+", TokenType.PLUS);
@@ -13,6 +22,18 @@ public class Operators {
         operators.put("*", TokenType.MULTIPLY);
         operators.put("/", TokenType.DIVIDE);
         operators.put("%", TokenType.MODULO);
+
+        // Above the comparison and logical operators
+        precedences.put(TokenType.PLUS, 5);
+        precedences.put(TokenType.MINUS, 5);
+        precedences.put(TokenType.MULTIPLY, 6);
+        precedences.put(TokenType.DIVIDE, 6);
+        precedences.put(TokenType.MODULO, 6);
+    }
+
+    // Binding power of a left-associative operator, the higher the tighter, 0 when the token is not an operator
+    public static int getPrecedence(TokenType type) {
+        return precedences.getOrDefault(type, 0);
     }
 
     public static TokenType getOperator(String name) {
@@ -22,4 +43,67 @@ public class Operators {
     public static boolean isOperator(TokenType type) {
         return operators.containsValue(type);
     }
+
+    // Exact int arithmetic, NOT_INT for the results out of the range of int, inexact or divided by zero, which take
+    // the float path
+    public static long applyInt(TokenType operator, long a, long b) {
+        return switch (operator) {
+            case PLUS -> fit(a + b);
+            case MINUS -> fit(a - b);
+            case MULTIPLY -> fit(a * b);
+            case DIVIDE -> b == 0 || a % b != 0 ? NOT_INT : fit(a / b);
+            case MODULO -> b == 0 ? NOT_INT : a % b;
+            default -> NOT_INT;
+        };
+    }
+
+    private static long fit(long result) {
+        return result == (int) result ? result : NOT_INT;
+    }
+
+    public static float applyFloat(TokenType operator, float a, float b, String fileName, int line, int pos) {
+        return switch (operator) {
+            case PLUS -> a + b;
+            case MINUS -> a - b;
+            case MULTIPLY -> a * b;
+            case DIVIDE -> a / b;
+            case MODULO -> a % b;
+            default -> {
+                new RuntimeError("Bad operator: " + operator.getName(), fileName, line, pos);
+                yield 0;
+            }
+        };
+    }
+
+    // Numbers computed as floats are ints when whole
+    public static Value toNumber(float result) {
+        if (result % 1 == 0) {
+            return new IntValue((int) result);
+        } else {
+            return new FloatValue(result);
+        }
+    }
+
+    // Operation of a binary expression on values of any types
+    public static Value apply(TokenType operator, Value leftValue, Value rightValue, String fileName, int line, int pos) {
+        // Ints exact, whatever their magnitude, a float only holding those up to 2^24
+        if (leftValue.getType() == TokenType.INT_VALUE && rightValue.getType() == TokenType.INT_VALUE) {
+            long result = applyInt(operator, leftValue.toInt(), rightValue.toInt());
+            if (result != NOT_INT) return new IntValue((int) result);
+        }
+        if ((leftValue.getType() == TokenType.INT_VALUE || leftValue.getType() == TokenType.FLOAT_VALUE) && (rightValue.getType() == TokenType.INT_VALUE || rightValue.getType() == TokenType.FLOAT_VALUE)) {
+            return toNumber(applyFloat(operator, leftValue.toFloat(), rightValue.toFloat(), fileName, line, pos));
+        } else if (leftValue.getType() == TokenType.STR_VALUE || rightValue.getType() == TokenType.STR_VALUE) {
+            return switch (operator) {
+                case PLUS -> new StringValue(leftValue + rightValue.toString());
+                default -> {
+                    new RuntimeError("Bad operator: " + operator.getName(), fileName, line, pos);
+                    yield null;
+                }
+            };
+        } else {
+            new RuntimeError("Unauthorized types for operation " + Types.getTypeName(leftValue.getType()) + " and " + Types.getTypeName(rightValue.getType()) , fileName, line, pos);
+            return null;
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package studio.karllang.karl.std;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * UTF-8 bytes of a Karl file, memory-mapped when read from disk. The lexer scans the bytes directly and
+ * the error reporting reads its lines from here instead of reading the file again.
+ */
+public final class Source {
+    private final String path;
+    private final ByteBuffer bytes;
+    private final int length;
+    private int[] lineStarts;
+
+    private Source(String path, ByteBuffer bytes) {
+        this.path = path;
+        this.bytes = bytes;
+        this.length = bytes.limit();
+    }
+
+    public static Source map(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            return new Source(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Source of(String text, String path) {
+        return new Source(path, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public ByteBuffer getBytes() {
+        return bytes;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte byteAt(int offset) {
+        return bytes.get(offset);
+    }
+
+    public String slice(int start, int length) {
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] slice = new byte[length];
+        bytes.get(start, slice);
+        return new String(slice, StandardCharsets.UTF_8);
+    }
+
+    public int getLineCount() {
+        return getLineStarts().length;
+    }
+
+    // Text of a line numbered from 1, without its line break
+    public String getLine(int line) {
+        int[] starts = getLineStarts();
+        if (line < 1 || line > starts.length) return null;
+
+        int start = starts[line - 1];
+        int end = line < starts.length ? starts[line] : length;
+        while (end > start && (bytes.get(end - 1) == '\n' || bytes.get(end - 1) == '\r')) {
+            end--;
+        }
+        return slice(start, end - start);
+    }
+
+    // Column in characters of an offset on a line numbered from 1
+    public int getColumn(int line, int offset) {
+        int[] starts = getLineStarts();
+        if (line < 1 || line > starts.length || offset < starts[line - 1]) return offset;
+
+        int start = starts[line - 1];
+        return slice(start, Math.min(offset, length) - start).length();
+    }
+
+    private int[] getLineStarts() {
+        if (lineStarts == null) {
+            int[] starts = new int[16];
+            int count = 1;
+            for (int i = 0; i < length; i++) {
+                byte b = bytes.get(i);
+                if (b == '\n' || (b == '\r' && (i + 1 == length || bytes.get(i + 1) != '\n'))) {
+                    if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+                    starts[count++] = i + 1;
+                }
+            }
+            lineStarts = Arrays.copyOf(starts, count);
+        }
+        return lineStarts;
+    }
+}
@@ -0,0 +1,19 @@
+package studio.karllang.karl.std;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class SourceManager {
+    private final static ConcurrentHashMap<String, Source> sources = new ConcurrentHashMap<>();
+
+    public static void addSource(Source source) {
+        sources.put(source.getPath(), source);
+    }
+
+    public static Source getSource(String path) {
+        return sources.get(path);
+    }
+
+    public static void clear() {
+        sources.clear();
+    }
+}
@@ -0,0 +1,116 @@
+package studio.karllang.karl.std;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns the identifiers of a compilation into dense integer ids, so that the lexer allocates one string
+ * per distinct name and the runtime can index its tables by id instead of hashing names.
+ */
+public final class SymbolTable {
+    // Volatile so that a name interned by a lexer thread can be read by the thread the token was handed to
+    private volatile String[] names = new String[64];
+    private byte[][] spellings = new byte[64][];
+    private int[] hashes = new int[64];
+    private int[] slots = new int[128];
+    private int size;
+
+    // Interns the UTF-8 spelling found at [start, start + length) of the buffer
+    public int intern(ByteBuffer source, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source.get(i);
+        }
+
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && matches(spellings[id], source, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        byte[] spelling = new byte[length];
+        source.get(start, spelling);
+        return add(new String(spelling, StandardCharsets.UTF_8), spelling, hash, slot);
+    }
+
+    public int intern(String name) {
+        byte[] spelling = name.getBytes(StandardCharsets.UTF_8);
+        return intern(ByteBuffer.wrap(spelling), 0, spelling.length);
+    }
+
+    public int lookup(String name) {
+        byte[] spelling = name.getBytes(StandardCharsets.UTF_8);
+        int hash = 0;
+        for (byte b : spelling) {
+            hash = 31 * hash + b;
+        }
+
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && Arrays.equals(spellings[id], spelling)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, byte[] spelling, int hash, int slot) {
+        String[] names = this.names;
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            spellings = Arrays.copyOf(spellings, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        this.names = names;
+        spellings[id] = spelling;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] spelling, ByteBuffer source, int start, int length) {
+        if (spelling.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (spelling[i] != source.get(start + i)) return false;
+        }
+        return true;
+    }
+}
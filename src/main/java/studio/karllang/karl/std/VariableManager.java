@@ -3,17 +3,25 @@ package studio.karllang.karl.std;
 import studio.karllang.karl.parser.ast.values.Value;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
 
 public final class VariableManager {
+    // Depth of the slots of global variables, whose index is the symbol id of their name
+    public static final int GLOBAL = -1;
+    // Depth of the slots of locals, whose index is in the frame of the current call or top-level block
+    public static final int LOCAL = 0;
+
     private static File currentFile;
     private final static ArrayList<File> files = new ArrayList<>();
 
     public static void addFile(String name) {
-        currentFile = new File(name);
+        addFile(name, new SymbolTable());
+    }
+
+    public static void addFile(String name, SymbolTable symbols) {
+        currentFile = new File(name, symbols);
         files.add(currentFile);
     }
 
@@ -29,79 +37,76 @@ public final class VariableManager {
         files.clear();
     }
 
+    /**
+     * Global variables of a file, by symbol id. The (depth, index) slots given by the resolver address either
+     * these or the locals in the frame of the running call.
+     */
     public static class File {
-        private Scope currentScope = new Scope(null);
+        private Value[] globals = new Value[64];
+        private boolean[] finals = new boolean[64];
         private final String name;
+        private final SymbolTable symbols;
 
-        public File(String name) {
+        public File(String name, SymbolTable symbols) {
             this.name = name;
+            this.symbols = symbols;
         }
 
-        public Variable getVariable(String name) {
-            return currentScope.getVariables().get(name);
-        }
-
-        public boolean isFinal(String name) {
-            return currentScope.getVariables().containsKey(name) && currentScope.getVariables().get(name).isFinal();
-        }
-
-        public void setVariable(String name, Value value, boolean isFinal) {
-            currentScope.getVariables().put(name, new Variable(value.getType(), name, value, isFinal));
-        }
-
-        public void removeVariable(String name) {
-            currentScope.getVariables().remove(name);
-        }
-
-        public boolean containsVariable(String name) {
-            return currentScope.getVariables().containsKey(name);
+        public SymbolTable getSymbols() {
+            return symbols;
         }
 
-        public void clearVariables() {
-            currentScope.getVariables().clear();
+        // Value in a slot, null when the variable is not declared yet
+        public Value get(Frame frame, int depth, int index) {
+            if (depth == GLOBAL) {
+                return index < globals.length ? globals[index] : null;
+            }
+            return frame.get(index);
         }
 
-        public void newScope() {
-            Scope newScope = new Scope(currentScope);
-            for (String key : currentScope.getVariables().keySet()) {
-                newScope.getVariables().put(key, currentScope.getVariables().get(key));
+        public boolean isDeclared(Frame frame, int depth, int index) {
+            if (depth == GLOBAL) {
+                return index < globals.length && globals[index] != null;
             }
-            currentScope = newScope;
+            return !frame.isEmpty(index);
         }
 
-        public void exitScope() {
-            if (currentScope.getParent() != null) {
-                currentScope = currentScope.getParent();
+        public void set(Frame frame, int depth, int index, Value value) {
+            if (depth == GLOBAL) {
+                if (index >= globals.length) {
+                    globals = Arrays.copyOf(globals, Math.max(index + 1, globals.length * 2));
+                    finals = Arrays.copyOf(finals, globals.length);
+                }
+                globals[index] = value;
+                return;
             }
+            frame.set(index, value);
         }
 
-        public Scope getScope() {
-            return currentScope;
+        // Whether a local is final is known when resolving, globals may be declared after the functions using them
+        public void declareGlobal(int symbol, Value value, boolean isFinal) {
+            set(null, GLOBAL, symbol, value);
+            finals[symbol] = isFinal;
         }
 
-        public void setScope(Scope scope) {
-            currentScope = scope;
+        public boolean isFinalGlobal(int symbol) {
+            return symbol < finals.length && finals[symbol];
         }
 
-        public void clear() {
-            currentScope = new Scope(null);
-        }
-    }
-
-    public static class Scope {
-        private final Scope parent;
-        private final HashMap<String, Variable> variables = new HashMap<>();
-
-        public Scope(Scope parent) {
-            this.parent = parent;
+        // Global variable by name, for diagnostics
+        public Variable getVariable(String name) {
+            int symbol = symbols.lookup(name);
+            Value value = symbol == -1 ? null : get(null, GLOBAL, symbol);
+            return value == null ? null : new Variable(value.getType(), name, value, isFinalGlobal(symbol));
         }
 
-        public Scope getParent() {
-            return parent;
+        public boolean containsVariable(String name) {
+            return getVariable(name) != null;
         }
 
-        public HashMap<String, Variable> getVariables() {
-            return variables;
+        public void clear() {
+            Arrays.fill(globals, null);
+            Arrays.fill(finals, false);
         }
     }
-}
\ No newline at end of file
+}
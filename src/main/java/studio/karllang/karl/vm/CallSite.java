@@ -0,0 +1,18 @@
+package studio.karllang.karl.vm;
+
+import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.std.Function;
+
+// Function a call instruction last called, with its code, the tags its arguments are stored unboxed with and the
+// tag of the results that need no check
+final class CallSite {
+    final FuncCallExpression expression;
+    Function function;
+    Chunk chunk;
+    byte[] argTags;
+    byte returnTag;
+
+    CallSite(FuncCallExpression expression) {
+        this.expression = expression;
+    }
+}
@@ -0,0 +1,17 @@
+package studio.karllang.karl.vm;
+
+// Compiled code of a function body, a top-level block or the top-level statements of a file, with the size of
+// the frame it runs in and the stack it needs
+final class Chunk {
+    final int[] code;
+    final Object[] constants;
+    final int frameSize;
+    final int maxStack;
+
+    Chunk(int[] code, Object[] constants, int frameSize, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.frameSize = frameSize;
+        this.maxStack = maxStack;
+    }
+}
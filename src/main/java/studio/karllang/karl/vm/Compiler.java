@@ -0,0 +1,328 @@
+package studio.karllang.karl.vm;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.expressions.*;
+import studio.karllang.karl.parser.ast.statements.*;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static studio.karllang.karl.vm.Opcodes.*;
+
+// Compiles statements resolved to their slots into a chunk, keeping track of the depth of the stack
+final class Compiler implements AstVisitor<Void> {
+    private final boolean topLevel;
+    private final ArrayList<Object> constants = new ArrayList<>();
+    private int[] code = new int[64];
+    private int length;
+    private int depth;
+    private int maxDepth;
+
+    private Compiler(boolean topLevel) {
+        this.topLevel = topLevel;
+    }
+
+    // Top-level statements of a file, whose return statements end nothing
+    static Chunk compileFile(List<Statement> statements) {
+        return new Compiler(true).compile(statements, 0);
+    }
+
+    // Function body or top-level block, run in a frame of its own
+    static Chunk compileBlock(BlockStatement block) {
+        return new Compiler(false).compile(block.getStatements(), block.getFrameSize());
+    }
+
+    private Chunk compile(List<Statement> statements, int frameSize) {
+        statements.forEach(statement -> statement.accept(this));
+        emit(END, 0);
+        return new Chunk(Arrays.copyOf(code, length), constants.toArray(), frameSize, maxDepth);
+    }
+
+    private void emit(int opcode, int stackEffect, int... operands) {
+        if (length + operands.length + 1 > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + operands.length + 1));
+        }
+        code[length++] = opcode;
+        for (int operand : operands) {
+            code[length++] = operand;
+        }
+        depth += stackEffect;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private int constant(Object constant) {
+        constants.add(constant);
+        return constants.size() - 1;
+    }
+
+    // Local of the expression if it reads one
+    private static int localSlot(Expression expression) {
+        if (expression instanceof VariableCallExpression variable && variable.getDepth() == VariableManager.LOCAL) {
+            return variable.getIndex();
+        }
+        return -1;
+    }
+
+    private static boolean isIntLiteral(Expression expression) {
+        return expression instanceof ValueExpression value && value.getValue() instanceof IntValue;
+    }
+
+    private static int intLiteral(Expression expression) {
+        return ((ValueExpression) expression).getValue().toInt();
+    }
+
+    // Amount local + amount computes for the additions and subtractions of an int literal to a local, null for
+    // the other expressions
+    private static Integer addedAmount(BinaryExpression expression) {
+        if (localSlot(expression.getLeft()) < 0 || !isIntLiteral(expression.getRight())) return null;
+        int value = intLiteral(expression.getRight());
+        return switch (expression.getOperator()) {
+            case PLUS -> value;
+            case MINUS -> value == Integer.MIN_VALUE ? null : -value;
+            default -> null;
+        };
+    }
+
+    private static int comparison(TokenType operator) {
+        return switch (operator) {
+            case LESS -> Opcodes.LESS;
+            case LESS_EQUAL -> Opcodes.LESS_EQUAL;
+            case GREATER -> Opcodes.GREATER;
+            case GREATER_EQUAL -> Opcodes.GREATER_EQUAL;
+            case EQUALEQUAL -> Opcodes.EQUAL;
+            case NOT_EQUAL -> Opcodes.NOT_EQUAL;
+            default -> -1;
+        };
+    }
+
+    // Whether the expression compares a local to an int literal
+    private static boolean comparesLocal(Expression expression) {
+        return expression instanceof LogicalExpression logical && logical.getOperator() != null && logical.getRight() != null
+                && comparison(logical.getOperator()) >= 0 && localSlot(logical.getLeft()) >= 0 && isIntLiteral(logical.getRight());
+    }
+
+    @Override
+    public Void visitBinary(BinaryExpression expression) {
+        Integer amount = addedAmount(expression);
+        if (amount != null) {
+            emit(LOAD_ADD, 1, localSlot(expression.getLeft()), amount, constant(expression));
+            return null;
+        }
+
+        expression.getLeft().accept(this);
+        expression.getRight().accept(this);
+        int opcode = switch (expression.getOperator()) {
+            case PLUS -> ADD;
+            case MINUS -> SUB;
+            case MULTIPLY -> MUL;
+            case DIVIDE -> DIV;
+            case MODULO -> MOD;
+            default -> BINARY;
+        };
+        emit(opcode, -1, constant(expression));
+        return null;
+    }
+
+    @Override
+    public Void visitFuncCall(FuncCallExpression expression) {
+        expression.getArgs().forEach(arg -> arg.accept(this));
+        emit(CALL, 1 - expression.getArgs().size(), constant(new CallSite(expression)));
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(LogicalExpression expression) {
+        TokenType operator = expression.getOperator();
+        if (operator == null) {
+            expression.getLeft().accept(this);
+            emit(TRUTH, 0);
+        } else if (expression.getRight() == null) {
+            if (operator == TokenType.EXCLAMATION) {
+                expression.getLeft().accept(this);
+                emit(NOT, 0);
+            } else {
+                emit(EVAL, 1, constant(expression));
+            }
+        } else if (comparesLocal(expression)) {
+            emit(LOAD_COMPARE, 1, localSlot(expression.getLeft()), intLiteral(expression.getRight()), comparison(operator), constant(expression));
+        } else {
+            expression.getLeft().accept(this);
+            expression.getRight().accept(this);
+            switch (operator) {
+                case AND -> emit(Opcodes.AND, -1, constant(expression));
+                case OR -> emit(Opcodes.OR, -1, constant(expression));
+                default -> {
+                    int comparison = comparison(operator);
+                    if (comparison >= 0) {
+                        emit(COMPARE, -1, comparison, constant(expression));
+                    } else {
+                        emit(LOGICAL, -1, constant(expression));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(UnaryExpression expression) {
+        switch (expression.getOperator()) {
+            case MINUS -> {
+                expression.getExpression().accept(this);
+                emit(NEG, 0);
+            }
+            case EXCLAMATION -> {
+                expression.getExpression().accept(this);
+                emit(NOT, 0);
+            }
+            default -> emit(EVAL, 1, constant(expression));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitValue(ValueExpression expression) {
+        if (expression.getValue() instanceof IntValue value) {
+            emit(ICONST, 1, value.toInt());
+        } else {
+            emit(CONST, 1, constant(expression.getValue()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableCall(VariableCallExpression expression) {
+        int slot = localSlot(expression);
+        if (slot >= 0) {
+            emit(LOAD, 1, slot, constant(expression));
+        } else {
+            emit(EVAL, 1, constant(expression));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(VariableExpression expression) {
+        emit(EVAL, 1, constant(expression));
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(BlockStatement statement) {
+        if (statement.ownsFrame()) {
+            emit(BLOCK, 0, constant(compileBlock(statement)));
+            return null;
+        }
+
+        statement.getStatements().forEach(nested -> nested.accept(this));
+        if (statement.getSlotCount() > 0) {
+            emit(CLEAR, 0, statement.getFirstSlot(), statement.getSlotCount());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFuncCallStatement(FuncCallStatement statement) {
+        statement.getExpression().accept(this);
+        emit(POP, -1);
+        return null;
+    }
+
+    // Functions are compiled when first called
+    @Override
+    public Void visitFunctionDeclaration(FunctionDeclarationStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitIfElse(IfElseStatement statement) {
+        Expression condition = statement.getCondition();
+        int jump;
+        if (comparesLocal(condition)) {
+            LogicalExpression comparison = (LogicalExpression) condition;
+            emit(LOAD_COMPARE_JUMP_IF_FALSE, 0, localSlot(comparison.getLeft()), intLiteral(comparison.getRight()),
+                    comparison(comparison.getOperator()), constant(comparison), 0);
+        } else {
+            condition.accept(this);
+            emit(JUMP_IF_FALSE, -1, 0);
+        }
+        jump = length - 1;
+
+        statement.getIfStatement().accept(this);
+        if (statement.getElseStatement() != null) {
+            emit(JUMP, 0, 0);
+            int end = length - 1;
+            code[jump] = length;
+            statement.getElseStatement().accept(this);
+            code[end] = length;
+        } else {
+            code[jump] = length;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIncrementDecrement(IncrementDecrementStatement statement) {
+        emit(INCREMENT, 0, constant(statement));
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(ReturnStatement statement) {
+        int slot = localSlot(statement.getExpression());
+        if (!topLevel && slot >= 0) {
+            emit(RETURN_LOCAL, 0, slot, constant(statement.getExpression()));
+            return null;
+        }
+        statement.getExpression().accept(this);
+        emit(topLevel ? POP : RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitShow(ShowStatement statement) {
+        statement.getExpressions().forEach(expression -> expression.accept(this));
+        emit(SHOW, -statement.getExpressions().size(), statement.getExpressions().size());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableAssignment(VariableAssignmentStatement statement) {
+        boolean local = statement.getDepth() == VariableManager.LOCAL && !statement.isFinal();
+        if (local && statement.getExpression() instanceof BinaryExpression binary
+                && localSlot(binary.getLeft()) == statement.getIndex()) {
+            Integer amount = addedAmount(binary);
+            if (amount != null) {
+                emit(ADD_STORE, 0, statement.getIndex(), amount, constant(binary), constant(statement));
+                return null;
+            }
+        }
+
+        statement.getExpression().accept(this);
+        emit(ASSIGN, -1, local ? statement.getIndex() : -1, constant(statement));
+        return null;
+    }
+
+    @Override
+    public Void visitVariableDeclaration(VariableDeclarationStatement statement) {
+        int node = constant(statement);
+        emit(DECLARE_CHECK, 0, node);
+        statement.getExpression().accept(this);
+        byte tag = Frame.EMPTY;
+        if (statement.getDepth() == VariableManager.LOCAL) {
+            tag = switch (statement.getType()) {
+                case INT -> Frame.INT;
+                case FLOAT -> Frame.FLOAT;
+                case BOOL -> Frame.BOOL;
+                default -> Frame.EMPTY;
+            };
+        }
+        emit(DECLARE, -1, statement.getIndex(), tag, node);
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+package studio.karllang.karl.vm;
+
+/**
+ * Instructions of the bytecode, each an opcode followed by its operands in the code array. The operands named node,
+ * site and chunk are indices in the constant pool, slot is a slot of the frame and target a position in the code.
+ * The instructions handling values of other types than they expect run the node they were compiled from on the
+ * boxed values, for the same results and errors as the tree.
+ */
+final class Opcodes {
+    // Stack
+    static final int CONST = 0;          // index: pushes a constant value
+    static final int ICONST = 1;         // value: pushes an int
+    static final int LOAD = 2;           // slot node: pushes a local
+    static final int EVAL = 3;           // node: pushes the value of an expression run by the tree, globals among others
+    static final int POP = 4;
+
+    // Operations on the values on top of the stack
+    static final int ADD = 5;            // node
+    static final int SUB = 6;            // node
+    static final int MUL = 7;            // node
+    static final int DIV = 8;            // node
+    static final int MOD = 9;            // node
+    static final int BINARY = 10;        // node: other binary operators
+    static final int COMPARE = 11;       // comparison node
+    static final int AND = 12;           // node
+    static final int OR = 13;            // node
+    static final int LOGICAL = 14;       // node: other logical operators
+    static final int TRUTH = 15;
+    static final int NOT = 16;
+    static final int NEG = 17;
+
+    // Statements
+    static final int DECLARE_CHECK = 18; // node
+    static final int DECLARE = 19;       // slot tag node: tag is the one of a local of primitive type, EMPTY otherwise
+    static final int ASSIGN = 20;        // slot node: slot is -1 for globals and final locals
+    static final int INCREMENT = 21;     // node
+    static final int SHOW = 22;          // count
+    static final int CALL = 23;          // site
+    static final int BLOCK = 24;         // chunk: runs a top-level block in a frame of its own
+    static final int CLEAR = 25;         // slot count
+    static final int JUMP = 26;          // target
+    static final int JUMP_IF_FALSE = 27; // target
+    static final int RETURN = 28;
+    static final int END = 29;
+
+    // Superinstructions of the common patterns on a local and an int literal
+    static final int LOAD_ADD = 30;      // slot value node: local + value, value negated for a subtraction
+    static final int LOAD_COMPARE = 31;  // slot value comparison node
+    static final int LOAD_COMPARE_JUMP_IF_FALSE = 32; // slot value comparison node target
+    static final int ADD_STORE = 33;     // slot value node assignment: local = local + value
+    static final int RETURN_LOCAL = 34;  // slot node
+
+    // Comparisons of COMPARE and LOAD_COMPARE
+    static final int LESS = 0;
+    static final int LESS_EQUAL = 1;
+    static final int GREATER = 2;
+    static final int GREATER_EQUAL = 3;
+    static final int EQUAL = 4;
+    static final int NOT_EQUAL = 5;
+
+    private Opcodes() {
+    }
+}
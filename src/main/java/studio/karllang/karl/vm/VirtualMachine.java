@@ -0,0 +1,519 @@
+package studio.karllang.karl.vm;
+
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.BinaryExpression;
+import studio.karllang.karl.parser.ast.expressions.Expression;
+import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.parser.ast.expressions.LogicalExpression;
+import studio.karllang.karl.parser.ast.statements.IncrementDecrementStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.parser.ast.statements.VariableAssignmentStatement;
+import studio.karllang.karl.parser.ast.statements.VariableDeclarationStatement;
+import studio.karllang.karl.parser.ast.values.NullValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static studio.karllang.karl.std.Frame.BOOL;
+import static studio.karllang.karl.std.Frame.EMPTY;
+import static studio.karllang.karl.std.Frame.FLOAT;
+import static studio.karllang.karl.std.Frame.INT;
+import static studio.karllang.karl.std.Frame.VALUE;
+import static studio.karllang.karl.vm.Opcodes.*;
+
+/**
+ * Runs the trees of a file compiled to bytecode, as an alternative to evaluating them. The operands are held on a
+ * stack tagged like the slots of a frame, ints, floats and bools unboxed, and the locals in the frames of the tree.
+ * Functions are compiled when first called. A machine belongs to the thread running it.
+ */
+public final class VirtualMachine {
+    private static final Value VOID = new NullValue("null_void");
+    private static final long NOT_INT = Long.MIN_VALUE;
+    // Never the tag of a value
+    private static final byte UNCHECKED = -1;
+
+    private final IdentityHashMap<Function, Chunk> functions = new IdentityHashMap<>();
+    private byte[] tags = new byte[256];
+    private long[] bits = new long[256];
+    private Value[] values = new Value[256];
+    // Calls being run, each with where its caller resumes, reused by the calls to the same depth
+    private Activation[] calls = new Activation[64];
+    private int callDepth;
+
+    private static final class Activation {
+        Chunk chunk;
+        int pc;
+        Frame frame;
+        CallSite site;
+        Function function;
+    }
+
+    public void run(List<Statement> statements) {
+        execute(Compiler.compileFile(statements), new Frame(0), 0);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > tags.length) {
+            int capacity = Math.max(size, tags.length * 2);
+            tags = Arrays.copyOf(tags, capacity);
+            bits = Arrays.copyOf(bits, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    // Runs a chunk in a frame, its operands on the stack from sp. The calls it makes run in the same loop, their
+    // callers saved as activations, the operands of a call starting where its arguments were.
+    private void execute(Chunk chunk, Frame frame, int sp) {
+        final int base = callDepth;
+        ensureCapacity(sp + chunk.maxStack);
+        int[] code = chunk.code;
+        Object[] constants = chunk.constants;
+        byte[] tags = this.tags;
+        long[] bits = this.bits;
+        Value[] values = this.values;
+        int pc = 0;
+
+        while (true) {
+            switch (code[pc]) {
+                case CONST -> {
+                    set(sp++, (Value) constants[code[pc + 1]]);
+                    pc += 2;
+                }
+                case ICONST -> {
+                    tags[sp] = INT;
+                    bits[sp++] = code[pc + 1];
+                    pc += 2;
+                }
+                case LOAD -> {
+                    int slot = code[pc + 1];
+                    byte tag = frame.getTag(slot);
+                    if (tag == EMPTY) {
+                        set(sp, ((Expression) constants[code[pc + 2]]).eval(frame));
+                    } else {
+                        tags[sp] = tag;
+                        bits[sp] = frame.getBits(slot);
+                        values[sp] = frame.getObject(slot);
+                    }
+                    sp++;
+                    pc += 3;
+                }
+                case EVAL -> {
+                    set(sp++, ((Expression) constants[code[pc + 1]]).eval(frame));
+                    pc += 2;
+                }
+                case POP -> {
+                    values[--sp] = null;
+                    pc++;
+                }
+                // Exact int arithmetic, the results out of the range of int, inexact or divided by zero taking the
+                // path of the other types
+                case ADD -> {
+                    int left = --sp - 1;
+                    long result = tags[left] == INT && tags[sp] == INT ? fit(bits[left] + bits[sp]) : NOT_INT;
+                    if (result != NOT_INT) {
+                        bits[left] = result;
+                    } else {
+                        arithmetic(ADD, left, (BinaryExpression) constants[code[pc + 1]]);
+                    }
+                    pc += 2;
+                }
+                case SUB -> {
+                    int left = --sp - 1;
+                    long result = tags[left] == INT && tags[sp] == INT ? fit(bits[left] - bits[sp]) : NOT_INT;
+                    if (result != NOT_INT) {
+                        bits[left] = result;
+                    } else {
+                        arithmetic(SUB, left, (BinaryExpression) constants[code[pc + 1]]);
+                    }
+                    pc += 2;
+                }
+                case MUL -> {
+                    int left = --sp - 1;
+                    long result = tags[left] == INT && tags[sp] == INT ? fit(bits[left] * bits[sp]) : NOT_INT;
+                    if (result != NOT_INT) {
+                        bits[left] = result;
+                    } else {
+                        arithmetic(MUL, left, (BinaryExpression) constants[code[pc + 1]]);
+                    }
+                    pc += 2;
+                }
+                // Divisions are done on ints, much faster than on longs, MIN_VALUE / -1 being the only one out of range
+                case DIV -> {
+                    int left = --sp - 1;
+                    int a = (int) bits[left];
+                    int b = (int) bits[sp];
+                    if (tags[left] == INT && tags[sp] == INT && b != 0 && a % b == 0 && (a != Integer.MIN_VALUE || b != -1)) {
+                        bits[left] = a / b;
+                    } else {
+                        arithmetic(DIV, left, (BinaryExpression) constants[code[pc + 1]]);
+                    }
+                    pc += 2;
+                }
+                case MOD -> {
+                    int left = --sp - 1;
+                    int b = (int) bits[sp];
+                    if (tags[left] == INT && tags[sp] == INT && b != 0) {
+                        bits[left] = (int) bits[left] % b;
+                    } else {
+                        arithmetic(MOD, left, (BinaryExpression) constants[code[pc + 1]]);
+                    }
+                    pc += 2;
+                }
+                case BINARY -> {
+                    int left = --sp - 1;
+                    set(left, ((BinaryExpression) constants[code[pc + 1]]).evalGeneric(box(left), box(sp)));
+                    pc += 2;
+                }
+                case COMPARE -> {
+                    int left = --sp - 1;
+                    if (tags[left] == INT && tags[sp] == INT) {
+                        setBoolean(left, compare(code[pc + 1], (int) bits[left], (int) bits[sp]));
+                    } else if (tags[left] == BOOL && tags[sp] == BOOL && (code[pc + 1] == EQUAL || code[pc + 1] == NOT_EQUAL)) {
+                        setBoolean(left, (bits[left] == bits[sp]) == (code[pc + 1] == EQUAL));
+                    } else {
+                        set(left, ((LogicalExpression) constants[code[pc + 2]]).evalGeneric(box(left), box(sp)));
+                    }
+                    pc += 3;
+                }
+                case AND, OR -> {
+                    int left = --sp - 1;
+                    if (tags[left] == BOOL && tags[sp] == BOOL) {
+                        setBoolean(left, code[pc] == AND ? (bits[left] & bits[sp]) != 0 : (bits[left] | bits[sp]) != 0);
+                    } else {
+                        set(left, ((LogicalExpression) constants[code[pc + 1]]).evalGeneric(box(left), box(sp)));
+                    }
+                    pc += 2;
+                }
+                case LOGICAL -> {
+                    int left = --sp - 1;
+                    set(left, ((LogicalExpression) constants[code[pc + 1]]).evalGeneric(box(left), box(sp)));
+                    pc += 2;
+                }
+                case TRUTH -> {
+                    if (tags[sp - 1] != BOOL) setBoolean(sp - 1, isTrue(sp - 1));
+                    pc++;
+                }
+                case NOT -> {
+                    setBoolean(sp - 1, !isTrue(sp - 1));
+                    pc++;
+                }
+                case NEG -> {
+                    int top = sp - 1;
+                    bits[top] = tags[top] == INT ? -(int) bits[top] : -box(top).toInt();
+                    tags[top] = INT;
+                    values[top] = null;
+                    pc++;
+                }
+                case DECLARE_CHECK -> {
+                    ((VariableDeclarationStatement) constants[code[pc + 1]]).checkDeclarable(frame);
+                    pc += 2;
+                }
+                case DECLARE -> {
+                    sp--;
+                    byte tag = (byte) code[pc + 2];
+                    if (tag != EMPTY && tags[sp] == tag) {
+                        frame.setSlot(code[pc + 1], tag, bits[sp], null);
+                    } else {
+                        ((VariableDeclarationStatement) constants[code[pc + 3]]).declare(frame, box(sp));
+                    }
+                    values[sp] = null;
+                    pc += 4;
+                }
+                case ASSIGN -> {
+                    sp--;
+                    int slot = code[pc + 1];
+                    byte tag = slot >= 0 ? frame.getTag(slot) : EMPTY;
+                    if (tag >= INT && tags[sp] == tag) {
+                        frame.setSlot(slot, tag, bits[sp], null);
+                    } else {
+                        ((VariableAssignmentStatement) constants[code[pc + 2]]).assign(frame, box(sp));
+                    }
+                    values[sp] = null;
+                    pc += 3;
+                }
+                case INCREMENT -> {
+                    ((IncrementDecrementStatement) constants[code[pc + 1]]).eval(frame);
+                    pc += 2;
+                }
+                case SHOW -> {
+                    int count = code[pc + 1];
+                    sp -= count;
+                    StringBuilder str = new StringBuilder();
+                    for (int i = sp; i < sp + count; i++) {
+                        str.append(box(i));
+                        values[i] = null;
+                    }
+                    System.out.println(str);
+                    pc += 2;
+                }
+                case CALL -> {
+                    CallSite site = (CallSite) constants[code[pc + 1]];
+                    Function function = site.expression.resolveFunction();
+                    if (site.function != function) bind(site, function);
+                    sp -= site.argTags.length;
+                    Frame callee = frame.push(site.chunk.frameSize);
+                    storeArguments(site, function, callee, sp);
+
+                    Activation caller = enter();
+                    caller.chunk = chunk;
+                    caller.pc = pc + 2;
+                    caller.frame = frame;
+                    caller.site = site;
+                    caller.function = function;
+                    chunk = site.chunk;
+                    code = chunk.code;
+                    constants = chunk.constants;
+                    frame = callee;
+                    pc = 0;
+                    ensureCapacity(sp + chunk.maxStack);
+                    tags = this.tags;
+                    bits = this.bits;
+                    values = this.values;
+                }
+                case BLOCK -> {
+                    Chunk block = (Chunk) constants[code[pc + 1]];
+                    Frame blockFrame = frame.push(block.frameSize);
+                    execute(block, blockFrame, sp);
+                    blockFrame.release();
+                    tags = this.tags;
+                    bits = this.bits;
+                    values = this.values;
+                    pc += 2;
+                }
+                case CLEAR -> {
+                    frame.clear(code[pc + 1], code[pc + 2]);
+                    pc += 3;
+                }
+                case JUMP -> pc = code[pc + 1];
+                case JUMP_IF_FALSE -> {
+                    sp--;
+                    boolean condition = tags[sp] == BOOL ? bits[sp] != 0 : isTrue(sp);
+                    values[sp] = null;
+                    pc = condition ? pc + 2 : code[pc + 1];
+                }
+                case RETURN, RETURN_LOCAL, END -> {
+                    if (code[pc] == RETURN) {
+                        sp--;
+                        frame.returnSlot(tags[sp], bits[sp], values[sp]);
+                        values[sp] = null;
+                    } else if (code[pc] == RETURN_LOCAL) {
+                        int slot = code[pc + 1];
+                        if (frame.isEmpty(slot)) {
+                            frame.returnWith(((Expression) constants[code[pc + 2]]).eval(frame));
+                        } else {
+                            frame.returnSlot(frame.getTag(slot), frame.getBits(slot), frame.getObject(slot));
+                        }
+                    }
+                    if (callDepth == base) return;
+
+                    // The result replaces the arguments of the call
+                    Activation caller = calls[--callDepth];
+                    finishCall(caller.site, caller.function, frame, sp);
+                    sp++;
+                    chunk = caller.chunk;
+                    code = chunk.code;
+                    constants = chunk.constants;
+                    frame = caller.frame;
+                    pc = caller.pc;
+                    caller.frame = null;
+                }
+                case LOAD_ADD -> {
+                    int slot = code[pc + 1];
+                    long result = frame.getTag(slot) == INT ? fit((long) frame.getInt(slot) + code[pc + 2]) : NOT_INT;
+                    if (result != NOT_INT) {
+                        tags[sp] = INT;
+                        bits[sp] = result;
+                    } else {
+                        BinaryExpression expression = (BinaryExpression) constants[code[pc + 3]];
+                        set(sp, expression.evalGeneric(local(frame, slot, expression.getLeft()), expression.getRight().eval(frame)));
+                    }
+                    sp++;
+                    pc += 4;
+                }
+                case LOAD_COMPARE -> {
+                    int slot = code[pc + 1];
+                    if (frame.getTag(slot) == INT) {
+                        setBoolean(sp, compare(code[pc + 3], frame.getInt(slot), code[pc + 2]));
+                    } else {
+                        LogicalExpression expression = (LogicalExpression) constants[code[pc + 4]];
+                        set(sp, expression.evalGeneric(local(frame, slot, expression.getLeft()), expression.getRight().eval(frame)));
+                    }
+                    sp++;
+                    pc += 5;
+                }
+                case LOAD_COMPARE_JUMP_IF_FALSE -> {
+                    int slot = code[pc + 1];
+                    boolean condition;
+                    if (frame.getTag(slot) == INT) {
+                        condition = compare(code[pc + 3], frame.getInt(slot), code[pc + 2]);
+                    } else {
+                        LogicalExpression expression = (LogicalExpression) constants[code[pc + 4]];
+                        Value result = expression.evalGeneric(local(frame, slot, expression.getLeft()), expression.getRight().eval(frame));
+                        condition = Boolean.parseBoolean(result.toString());
+                    }
+                    pc = condition ? pc + 6 : code[pc + 5];
+                }
+                case ADD_STORE -> {
+                    int slot = code[pc + 1];
+                    long result = frame.getTag(slot) == INT ? fit((long) frame.getInt(slot) + code[pc + 2]) : NOT_INT;
+                    if (result != NOT_INT) {
+                        frame.setInt(slot, (int) result);
+                    } else {
+                        BinaryExpression expression = (BinaryExpression) constants[code[pc + 3]];
+                        Value value = expression.evalGeneric(local(frame, slot, expression.getLeft()), expression.getRight().eval(frame));
+                        ((VariableAssignmentStatement) constants[code[pc + 4]]).assign(frame, value);
+                    }
+                    pc += 5;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    private Activation enter() {
+        if (callDepth == calls.length) calls = Arrays.copyOf(calls, callDepth * 2);
+        Activation activation = calls[callDepth];
+        if (activation == null) {
+            activation = new Activation();
+            calls[callDepth] = activation;
+        }
+        callDepth++;
+        return activation;
+    }
+
+    // Moves the arguments of a call from the top of the stack to the frame of the call. The ones of the types of the
+    // parameters are moved as they are, the others checked by the tree.
+    private void storeArguments(CallSite site, Function function, Frame callee, int sp) {
+        byte[] argTags = site.argTags;
+        for (int i = 0; i < argTags.length; i++) {
+            int arg = sp + i;
+            if (tags[arg] == argTags[i]) {
+                callee.setSlot(i, tags[arg], bits[arg], values[arg]);
+            } else {
+                callee.set(i, site.expression.checkArgument(function, i, box(arg)));
+            }
+            values[arg] = null;
+        }
+    }
+
+    // Checks the value a call returned and pushes it at sp, in place of its arguments
+    private void finishCall(CallSite site, Function function, Frame callee, int sp) {
+        if (callee.getReturnTag() != site.returnTag) {
+            FuncCallExpression expression = site.expression;
+            function.checkReturn(callee, expression.getFileName(), expression.getLine(), expression.getPos());
+        }
+        if (function.getType() == TokenType.VOID) {
+            set(sp, VOID);
+        } else {
+            tags[sp] = callee.getReturnTag();
+            bits[sp] = callee.getReturnBits();
+            values[sp] = callee.getReturnObject();
+        }
+        callee.release();
+    }
+
+    private void bind(CallSite site, Function function) {
+        Chunk chunk = functions.get(function);
+        if (chunk == null) {
+            chunk = Compiler.compileBlock(function.getBody());
+            functions.put(function, chunk);
+        }
+
+        TokenType[] types = function.getArgTypes();
+        byte[] argTags = new byte[types.length];
+        for (int i = 0; i < types.length; i++) {
+            argTags[i] = tagOf(types[i]);
+        }
+        site.argTags = argTags;
+        // A void function returns nothing
+        site.returnTag = function.getType() == TokenType.VOID ? EMPTY : tagOf(function.getType());
+        site.chunk = chunk;
+        site.function = function;
+    }
+
+    // Tag of the values of a primitive type, stored as they are. The values of the other types are checked.
+    private static byte tagOf(TokenType type) {
+        return switch (type) {
+            case INT -> INT;
+            case FLOAT -> FLOAT;
+            case BOOL -> BOOL;
+            default -> UNCHECKED;
+        };
+    }
+
+    private Value box(int index) {
+        return Frame.box(tags[index], bits[index], values[index]);
+    }
+
+    private void set(int index, Value value) {
+        byte tag = Frame.tagOf(value);
+        tags[index] = tag;
+        if (tag == VALUE) {
+            values[index] = value;
+        } else {
+            bits[index] = Frame.bitsOf(tag, value);
+            values[index] = null;
+        }
+    }
+
+    private void setBoolean(int index, boolean value) {
+        tags[index] = BOOL;
+        bits[index] = value ? 1 : 0;
+        values[index] = null;
+    }
+
+    // Truth of a condition, the text of the value being true
+    private boolean isTrue(int index) {
+        return tags[index] == BOOL ? bits[index] != 0 : Boolean.parseBoolean(box(index).toString());
+    }
+
+    private static Value local(Frame frame, int slot, Expression variable) {
+        return frame.isEmpty(slot) ? variable.eval(frame) : frame.get(slot);
+    }
+
+    // Arithmetic of the tree on the two values on top of the stack, floats computed here and the rest by the node
+    private void arithmetic(int opcode, int left, BinaryExpression expression) {
+        int right = left + 1;
+        if (tags[left] == FLOAT && tags[right] == FLOAT) {
+            float a = Float.intBitsToFloat((int) bits[left]);
+            float b = Float.intBitsToFloat((int) bits[right]);
+            float result = switch (opcode) {
+                case ADD -> a + b;
+                case SUB -> a - b;
+                case MUL -> a * b;
+                case DIV -> a / b;
+                default -> a % b;
+            };
+            // Numbers computed as floats are ints when whole
+            if (result % 1 == 0) {
+                tags[left] = INT;
+                bits[left] = (int) result;
+            } else {
+                bits[left] = Float.floatToRawIntBits(result);
+            }
+        } else {
+            set(left, expression.evalGeneric(box(left), box(right)));
+        }
+        values[right] = null;
+    }
+
+    // NOT_INT for the results out of the range of int
+    private static long fit(long result) {
+        return result == (int) result ? result : NOT_INT;
+    }
+
+    private static boolean compare(int comparison, int a, int b) {
+        return switch (comparison) {
+            case LESS -> a < b;
+            case LESS_EQUAL -> a <= b;
+            case GREATER -> a > b;
+            case GREATER_EQUAL -> a >= b;
+            case EQUAL -> a == b;
+            default -> a != b;
+        };
+    }
+}
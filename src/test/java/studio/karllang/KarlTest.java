@@ -2,11 +2,16 @@ package studio.karllang;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import studio.karllang.cli.Option;
 import studio.karllang.karl.Karl;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -58,10 +63,56 @@ class KarlTest {
     @DisplayName("Mathematical operations")
     void mathTest() {
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
-        String[] expected = {"17", "14", "22", "14", "36", "36", "36", "7.3333335", "6", "7.3333335"};
+        String[] expected = {"17", "14", "22", "14", "36", "36", "36", "7.333333", "6", "7.3333335"};
         System.setOut(new PrintStream(outContent, false, StandardCharsets.UTF_8));
         new Karl().run("src/test/resources/tests/Math.karl", null);
         String[] output = outContent.toString().trim().strip().replaceAll("\r\n", "\n").split("\n");
         assertArrayEquals(expected, output);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Operator precedence")
+    void precedenceTest() {
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        String[] expected = {"14", "13", "2", "26", "6", "true", "false", "true", "true", "true"};
+        System.setOut(new PrintStream(outContent, false, StandardCharsets.UTF_8));
+        new Karl().run("src/test/resources/tests/Precedence.karl", null);
+        String[] output = outContent.toString().trim().strip().replaceAll("\r\n", "\n").split("\n");
+        assertArrayEquals(expected, output);
+    }
+
+    @Test
+    @DisplayName("Lexical scopes and recursion")
+    void scopesTest() {
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        String[] expected = {"55", "610", "8", "17", "17", "5050", "55"};
+        System.setOut(new PrintStream(outContent, false, StandardCharsets.UTF_8));
+        new Karl().run("src/test/resources/tests/Scopes.karl", null);
+        String[] output = outContent.toString().trim().strip().replaceAll("\r\n", "\n").split("\n");
+        assertArrayEquals(expected, output);
+    }
+
+    @Test
+    @DisplayName("Streamed execution of a long script calling functions declared further down")
+    void testStreamForwardCalls() throws Exception {
+        StringBuilder script = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            script.append("show(twice").append(i).append("(").append(i).append("));\n");
+            expected.append(i * 2).append("\n");
+        }
+        for (int i = 0; i < 500; i++) {
+            script.append("func twice").append(i).append("::(int: n): int -> {\n    return n * 2;\n}\n");
+        }
+        Path file = Files.createTempFile("Stream", ".karl");
+        try {
+            Files.writeString(file, script);
+            ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outContent, false, StandardCharsets.UTF_8));
+            new Karl().run(file.toString(), new ArrayList<>(List.of(new Option(null, "--stream"))));
+            assertEquals(expected.toString(), outContent.toString().replaceAll("\r\n", "\n"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
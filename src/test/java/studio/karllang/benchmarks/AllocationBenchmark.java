@@ -0,0 +1,81 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.Karl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class AllocationBenchmark extends Benchmark {
+    private static final int DEPTH = 500;
+    // Arithmetic, comparison and logical operations of an iteration, the call to work and a step of loop
+    private static final int OPERATIONS = 21;
+
+    public AllocationBenchmark() {
+        super("allocation", "Bytes allocated and time per operation of int arithmetic on locals, parameters and results");
+    }
+
+    private static String program(int runs) {
+        StringBuilder builder = new StringBuilder("""
+                int: total = 0;
+                func work::(int: n): int -> {
+                    int: a = n * 3 + 1;
+                    int: b = a % 7 - (n * 4) / 2;
+                    int: c = a * b + (a - b) * 2;
+                    a++;
+                    bool: odd = c % 2 == 1;
+                    if (odd && a >= 0) -> {
+                        c = c - 1;
+                    }
+                    return c + a;
+                }
+                func loop::(int: i, int: acc): int -> {
+                    if (i == 0) -> {
+                        return acc;
+                    }
+                    return loop(i - 1, acc + work(i) % 1000);
+                }
+                """);
+        for (int i = 0; i < runs; i++) {
+            builder.append("total = total + loop(").append(DEPTH).append(", 0);\n");
+        }
+        return builder.append("show(total);\n").toString();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    @Override
+    public void run() throws Exception {
+        for (int runs : new int[]{100, 1000}) {
+            Path file = Files.createTempFile("bench", ".karl");
+            try {
+                Files.writeString(file, program(runs));
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long time;
+                long bytes;
+                try {
+                    time = measure(2, 3, () -> {
+                        new Karl().run(file.toString(), null);
+                        return file;
+                    });
+                    long before = allocatedBytes();
+                    new Karl().run(file.toString(), null);
+                    bytes = allocatedBytes() - before;
+                } finally {
+                    System.setOut(out);
+                }
+                // Includes reading and parsing the script, which weighs less as the runs grow
+                long operations = (long) runs * DEPTH * OPERATIONS;
+                System.out.printf("%5d runs  %9d operations  %8.1f ms  %5.1f ns per operation  %6.2f bytes per operation%n",
+                        runs, operations, time / 1e6, (double) time / operations, (double) bytes / operations);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.Karl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ArithmeticBenchmark extends Benchmark {
+    public ArithmeticBenchmark() {
+        super("arithmetic", "Time per step of Collatz sequences, a recursion doing int arithmetic and comparisons only");
+    }
+
+    // Each step runs 2 comparisons, a modulo and 2 or 3 arithmetic operations
+    private static String program(int starts) {
+        StringBuilder builder = new StringBuilder("""
+                int: total = 0;
+                func collatz::(int: n, int: steps): int -> {
+                    if (n == 1) -> {
+                        return steps;
+                    }
+                    if (n % 2 == 0) -> {
+                        return collatz(n / 2, steps + 1);
+                    }
+                    return collatz(3 * n + 1, steps + 1);
+                }
+                """);
+        for (int i = 1; i <= starts; i++) {
+            builder.append("total = total + collatz(").append(i).append(", 0);\n");
+        }
+        return builder.append("show(total);\n").toString();
+    }
+
+    private static long steps(int starts) {
+        long steps = 0;
+        for (long i = 1; i <= starts; i++) {
+            for (long n = i; n != 1; steps++) {
+                n = n % 2 == 0 ? n / 2 : 3 * n + 1;
+            }
+        }
+        return steps;
+    }
+
+    @Override
+    public void run() throws Exception {
+        for (int starts : new int[]{1_000, 10_000}) {
+            Path file = Files.createTempFile("bench", ".karl");
+            try {
+                Files.writeString(file, program(starts));
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long time;
+                try {
+                    time = measure(2, 3, () -> {
+                        new Karl().run(file.toString(), null);
+                        return file;
+                    });
+                } finally {
+                    System.setOut(out);
+                }
+                long steps = steps(starts);
+                System.out.printf("%6d starts  %9d steps  %8.1f ms  %6.1f ns per step%n", starts, steps, time / 1e6, (double) time / steps);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
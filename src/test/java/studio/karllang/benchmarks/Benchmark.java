@@ -0,0 +1,45 @@
+package studio.karllang.benchmarks;
+
+import java.util.function.Supplier;
+
+public abstract class Benchmark {
+    private final String name;
+    private final String description;
+
+    public Benchmark(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+
+    public abstract void run() throws Exception;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Runs the task {@code warmup} times, then returns the best wall time in nanoseconds of {@code runs} runs.
+     */
+    protected static long measure(int warmup, int runs, Supplier<?> task) {
+        Object sink = null;
+        for (int i = 0; i < warmup; i++) {
+            sink = task.get();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            sink = task.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == null) System.out.print("");
+        return best;
+    }
+
+    protected static double megabytesPerSecond(long bytes, long nanos) {
+        return (bytes / (1024.0 * 1024.0)) / (nanos / 1_000_000_000.0);
+    }
+}
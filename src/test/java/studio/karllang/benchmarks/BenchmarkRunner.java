@@ -0,0 +1,25 @@
+package studio.karllang.benchmarks;
+
+import org.reflections.Reflections;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        Reflections reflections = new Reflections("studio.karllang.benchmarks");
+        Set<Class<? extends Benchmark>> classes = reflections.getSubTypesOf(Benchmark.class);
+        List<String> selected = Arrays.asList(args);
+
+        for (Class<? extends Benchmark> c : classes.stream().sorted(Comparator.comparing(Class::getSimpleName)).toList()) {
+            Benchmark benchmark = c.getConstructor().newInstance();
+            if (!selected.isEmpty() && !selected.contains(benchmark.getName())) continue;
+
+            System.out.println("== " + benchmark.getName() + " - " + benchmark.getDescription());
+            benchmark.run();
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.cache.AstCache;
+import studio.karllang.karl.parser.Lexer;
+import studio.karllang.karl.parser.Parser;
+import studio.karllang.karl.std.FunctionTable;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class CacheBenchmark extends Benchmark {
+    public CacheBenchmark() {
+        super("cache", "Front end time of a run, lexing and parsing the source against loading its .karlc file");
+    }
+
+    @Override
+    public void run() throws Exception {
+        Path directory = Files.createTempDirectory("karlc");
+        try {
+            for (int size : new int[]{1 << 20, 16 << 20}) {
+                Source source = Source.of(GeneratedSources.program(size), "bench.karl");
+                AstCache cache = new AstCache(source, directory.toString());
+                SymbolTable stored = new SymbolTable();
+                cache.store(stored, new Parser(Lexer.lex(source, stored), "bench.karl").parse());
+                if (cache.load(new SymbolTable(), new FunctionTable(), "bench.karl") == null) {
+                    throw new IllegalStateException("Cache not loaded");
+                }
+
+                long parse = measure(3, 5, () -> {
+                    SymbolTable symbols = new SymbolTable();
+                    return new Parser(Lexer.lex(source, symbols), "bench.karl").parse();
+                });
+                long load = measure(3, 5, () -> cache.load(new SymbolTable(), new FunctionTable(), "bench.karl"));
+                System.out.printf("%6d KB  lex + parse %8.1f ms   load %8.1f ms (%6d KB)   (x%.2f)%n", size / 1024, parse / 1e6,
+                        load / 1e6, Files.size(cache.getFile()) / 1024, (double) parse / load);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
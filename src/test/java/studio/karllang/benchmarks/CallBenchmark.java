@@ -0,0 +1,67 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.Karl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CallBenchmark extends Benchmark {
+    public CallBenchmark() {
+        super("calls", "Time and bytes allocated per call of a recursive fib(n)");
+    }
+
+    private static final String PROGRAM = """
+            func fib::(int: n): int -> {
+                if (n < 2) -> {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+            show(fib(%d));
+            """;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    @Override
+    public void run() throws Exception {
+        for (int n : new int[]{20, 25, 30}) {
+            Path file = Files.createTempFile("bench", ".karl");
+            try {
+                Files.writeString(file, PROGRAM.formatted(n));
+                // fib(n) makes 2 * fib(n + 1) - 1 calls
+                long a = 0, b = 1;
+                for (int i = 0; i < n + 1; i++) {
+                    long next = a + b;
+                    a = b;
+                    b = next;
+                }
+                long calls = 2 * a - 1;
+
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long time;
+                long bytes;
+                try {
+                    time = measure(2, 3, () -> {
+                        new Karl().run(file.toString(), null);
+                        return file;
+                    });
+                    long before = allocatedBytes();
+                    new Karl().run(file.toString(), null);
+                    bytes = allocatedBytes() - before;
+                } finally {
+                    System.setOut(out);
+                }
+                System.out.printf("fib(%d)  %9d calls  %8.1f ms  %6.1f ns per call  %6.1f bytes per call%n",
+                        n, calls, time / 1e6, (double) time / calls, (double) bytes / calls);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.cli.Option;
+import studio.karllang.karl.Karl;
+import studio.karllang.karl.aot.ScriptCompiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EngineBenchmark extends Benchmark {
+    public EngineBenchmark() {
+        super("engines", "Time of the same programs evaluated as trees and run by the other engines or built to a jar, with their speedups");
+    }
+
+    private static final String FIB = """
+            func fib::(int: n): int -> {
+                if (n < 2) -> {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+            show(fib(27));
+            """;
+
+    private static final String LOCALS = """
+            func work::(int: n): int -> {
+                int: a = n * 3 + 1;
+                int: b = a % 7 - (n * 4) / 2;
+                int: c = a * b + (a - b) * 2;
+                a = a + 1;
+                bool: odd = c % 2 == 1;
+                if (odd && a >= 0) -> {
+                    c = c - 1;
+                }
+                return c + a;
+            }
+            func loop::(int: i, int: acc): int -> {
+                if (i == 0) -> {
+                    return acc;
+                }
+                return loop(i - 1, acc + work(i) % 1000);
+            }
+            int: total = 0;
+            """ + "total = total + loop(500, 0);\n".repeat(1000) + "show(total);\n";
+
+    // The same steps as collatz, run from a recursion over the starts rather than from top-level statements
+    private static final String DEEP = """
+            func collatz::(int: n, int: steps): int -> {
+                if (n == 1) -> {
+                    return steps;
+                }
+                if (n % 2 == 0) -> {
+                    return collatz(n / 2, steps + 1);
+                }
+                return collatz(3 * n + 1, steps + 1);
+            }
+            func all::(int: i, int: total): int -> {
+                if (i == 0) -> {
+                    return total;
+                }
+                return all(i - 1, total + collatz(i, 0));
+            }
+            show(all(10000, 0));
+            """;
+
+    private static String collatz() {
+        StringBuilder builder = new StringBuilder("""
+                int: total = 0;
+                func collatz::(int: n, int: steps): int -> {
+                    if (n == 1) -> {
+                        return steps;
+                    }
+                    if (n % 2 == 0) -> {
+                        return collatz(n / 2, steps + 1);
+                    }
+                    return collatz(3 * n + 1, steps + 1);
+                }
+                """);
+        for (int i = 1; i <= 10_000; i++) {
+            builder.append("total = total + collatz(").append(i).append(", 0);\n");
+        }
+        return builder.append("show(total);\n").toString();
+    }
+
+    private static long time(Path file, String engine) throws Exception {
+        ArrayList<Option> options = new ArrayList<>(List.of(new Option(engine, "--engine")));
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return measure(3, 5, () -> {
+                new Karl().run(file.toString(), new ArrayList<>(options));
+                return file;
+            });
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    // Main of the jar built from the script, built and loaded once outside of the measure
+    private static long timeBuilt(Path file) throws Exception {
+        Path jar = Files.createTempFile("bench", ".jar");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, ClassLoader.getPlatformClassLoader())) {
+            new Karl().build(file.toString(), new ArrayList<>(List.of(new Option(jar.toString(), "--output"))));
+            Method main = loader.loadClass(ScriptCompiler.className(file.toString())).getMethod("main", String[].class);
+            return measure(3, 5, () -> {
+                try {
+                    main.invoke(null, (Object) new String[0]);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+                return file;
+            });
+        } finally {
+            System.setOut(out);
+            Files.delete(jar);
+        }
+    }
+
+    @Override
+    public void run() throws Exception {
+        String[][] programs = {{"fib(27)", FIB}, {"locals", LOCALS}, {"collatz", collatz()}, {"deep", DEEP}};
+        for (String[] program : programs) {
+            Path file = Files.createTempFile("bench", ".karl");
+            try {
+                Files.writeString(file, program[1]);
+                long tree = time(file, "tree");
+                StringBuilder line = new StringBuilder(String.format("%-8s  tree %8.1f ms", program[0], tree / 1e6));
+                for (String engine : new String[]{"vm", "jit", "closure"}) {
+                    long time = time(file, engine);
+                    line.append(String.format("  %s %8.1f ms %5.2fx", engine, time / 1e6, (double) tree / time));
+                }
+                long built = timeBuilt(file);
+                line.append(String.format("  aot %8.1f ms %5.2fx", built / 1e6, (double) tree / built));
+                System.out.println(line);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
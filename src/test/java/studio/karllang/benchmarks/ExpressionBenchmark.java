@@ -0,0 +1,34 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.parser.Lexer;
+import studio.karllang.karl.parser.Parser;
+import studio.karllang.karl.parser.TokenBuffer;
+
+public class ExpressionBenchmark extends Benchmark {
+    public ExpressionBenchmark() {
+        super("expressions", "Parse time of one long expression, per operand, which stays flat when parsing is linear");
+    }
+
+    // Declaration of a chain of arithmetic, comparison and logical operators over the given number of operands
+    private static String expression(int operands) {
+        String[] operators = {" + ", " * ", " - ", " / ", " % ", " == ", " && ", " || ", " < "};
+        StringBuilder builder = new StringBuilder("bool: result = 1");
+        for (int i = 1; i < operands; i++) {
+            builder.append(operators[i % operators.length]).append(i % 97 + 1);
+        }
+        return builder.append(";\n").toString();
+    }
+
+    @Override
+    public void run() {
+        // Compiles the parser before the first size is timed
+        TokenBuffer warmup = new Lexer(expression(100_000), "bench.karl").tokens;
+        measure(20, 0, () -> new Parser(warmup, "bench.karl").parse());
+
+        for (int operands : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            TokenBuffer tokens = new Lexer(expression(operands), "bench.karl").tokens;
+            long time = measure(5, 5, () -> new Parser(tokens, "bench.karl").parse());
+            System.out.printf("%9d operands  %10.2f ms  %7.1f ns per operand%n", operands, time / 1e6, (double) time / operands);
+        }
+    }
+}
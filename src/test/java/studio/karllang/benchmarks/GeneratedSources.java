@@ -0,0 +1,84 @@
+package studio.karllang.benchmarks;
+
+public final class GeneratedSources {
+    private GeneratedSources() {
+    }
+
+    /**
+     * Builds a syntactically valid Karl script of roughly {@code targetSize} characters out of numbered copies
+     * of a block mixing declarations, functions, comments, strings and conditions.
+     */
+    public static String script(int targetSize) {
+        StringBuilder builder = new StringBuilder(targetSize + 1024);
+        int i = 0;
+        while (builder.length() < targetSize) {
+            builder.append("// block ").append(i).append(": generated for the benchmarks\n")
+                    .append("int: count").append(i).append(" = ").append(i).append(";\n")
+                    .append("float: ratio").append(i).append(" = ").append(i).append(".25;\n")
+                    .append("string: label").append(i).append(" = \"label number ").append(i).append(" with \\\"quotes\\\"\";\n")
+                    .append("char: letter").append(i).append(" = 'k';\n")
+                    .append("/* a block comment\n   spanning two lines */\n")
+                    .append("func compute").append(i).append("::(int: value, string: text): int -> {\n")
+                    .append("    if (value >= 10 && text != \"skip\" || !false) -> {\n")
+                    .append("        return value * 2 + (value - 1) / 3;\n")
+                    .append("    } else -> {\n")
+                    .append("        return value % 7;\n")
+                    .append("    }\n")
+                    .append("}\n")
+                    .append("count").append(i).append("++;\n")
+                    .append("show(compute").append(i).append("(count").append(i).append(", label").append(i).append("));\n\n");
+            i++;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Builds a Karl script of roughly {@code targetSize} characters made mostly of comments, indentation and long
+     * strings, where the lexer spends its time skipping bytes.
+     */
+    public static String commented(int targetSize) {
+        StringBuilder builder = new StringBuilder(targetSize + 1024);
+        int i = 0;
+        while (builder.length() < targetSize) {
+            builder.append("/*\n * Block ").append(i).append(" documents the declarations that follow it, at a length that\n")
+                    .append(" * is usual for the generated batch scripts, with a second line of explanation and a\n")
+                    .append(" * third one listing the inputs: count, message and the flags used by the checks.\n */\n")
+                    .append("// The message is shown once the count has been checked against the threshold below\n")
+                    .append("string: message").append(i).append(" = \"Processing the record number ").append(i)
+                    .append(" of the batch, please wait while the \\\"checks\\\" are running on every field\";\n")
+                    .append("func check").append(i).append("::(int: count): bool -> {\n")
+                    .append("        // Records under the threshold are skipped without any output\n")
+                    .append("        if (count >= 10) -> {\n")
+                    .append("                return true;\n")
+                    .append("        }\n")
+                    .append("        return false;\n")
+                    .append("}\n\n");
+            i++;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Builds a Karl script of roughly {@code targetSize} characters that runs to the end, each block declaring
+     * variables and a function and showing the result of a call.
+     */
+    public static String program(int targetSize) {
+        StringBuilder builder = new StringBuilder(targetSize + 1024);
+        int i = 0;
+        while (builder.length() < targetSize) {
+            builder.append("int: count").append(i).append(" = ").append(i).append(";\n")
+                    .append("string: label").append(i).append(" = \"label ").append(i).append("\";\n")
+                    .append("func compute").append(i).append("::(int: value, string: text): int -> {\n")
+                    .append("    if (value >= 10) -> {\n")
+                    .append("        return value * 2;\n")
+                    .append("    } else -> {\n")
+                    .append("        return value + 1;\n")
+                    .append("    }\n")
+                    .append("}\n")
+                    .append("count").append(i).append("++;\n")
+                    .append("show(label").append(i).append(", compute").append(i).append("(count").append(i).append(", label").append(i).append("));\n\n");
+            i++;
+        }
+        return builder.toString();
+    }
+}
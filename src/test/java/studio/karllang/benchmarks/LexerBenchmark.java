@@ -0,0 +1,23 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.parser.Lexer;
+
+public class LexerBenchmark extends Benchmark {
+    public LexerBenchmark() {
+        super("lexer", "Lexer throughput in MB/s, legacy regex lexer against the table-driven lexer");
+    }
+
+    @Override
+    public void run() {
+        for (int size : new int[]{1 << 20, 8 << 20}) {
+            String source = GeneratedSources.script(size);
+            long bytes = source.length();
+
+            long legacy = measure(3, 5, () -> new LegacyLexer(source, "bench.karl").tokens);
+            long current = measure(3, 5, () -> new Lexer(source, "bench.karl").tokens);
+
+            System.out.printf("%5d KB  legacy %8.1f MB/s  table-driven %8.1f MB/s  (x%.1f)%n", bytes / 1024,
+                    megabytesPerSecond(bytes, legacy), megabytesPerSecond(bytes, current), (double) legacy / current);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.optimizer.BranchPruning;
+import studio.karllang.karl.optimizer.ConstantFolding;
+import studio.karllang.karl.optimizer.FinalPropagation;
+import studio.karllang.karl.optimizer.Inlining;
+import studio.karllang.karl.optimizer.Optimizer;
+import studio.karllang.karl.optimizer.PartialEvaluation;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+public class OptimizerBenchmark extends Benchmark {
+    public OptimizerBenchmark() {
+        super("optimizer", "Time of programs reading final globals, calling small helpers or pure functions on literals, or passing strings in a hot function, evaluated as trees with and without the optimizer, and the last one with and without type checking");
+    }
+
+    private static final String CONSTANTS = """
+            final int: minutes = 60 * 24;
+            final int: week = 7;
+            final bool: trace = false;
+            func step::(int: i, int: acc): int -> {
+                if (i == 0) -> {
+                    return acc;
+                }
+                if (trace) -> {
+                    show(i);
+                }
+                return step(i - 1, acc + i % (minutes / 60) * (week * 2) + minutes - 1000);
+            }
+            int: total = 0;
+            """ + "total = total + step(500, 0) % 1000;\n".repeat(1000) + "show(total);\n";
+
+    private static final String HELPERS = """
+            func square::(int: x): int -> {
+                return x * x;
+            }
+            func clamp::(int: x, int: limit): int -> {
+                return x % limit;
+            }
+            func isEven::(int: x): bool -> {
+                return x % 2 == 0;
+            }
+            func weight::(int: x): int -> {
+                return square(x) % 7 + 1;
+            }
+            func step::(int: i, int: acc): int -> {
+                if (i == 0) -> {
+                    return acc;
+                }
+                if (isEven(i)) -> {
+                    return step(i - 1, clamp(acc + weight(i), 100000));
+                }
+                return step(i - 1, clamp(acc + square(i % 100), 100000));
+            }
+            int: total = 0;
+            """ + "total = total + step(500, 0) % 1000;\n".repeat(1000) + "show(total);\n";
+
+    private static final String PURE = """
+            func fib::(int: n): int -> {
+                if (n < 2) -> {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+            func step::(int: i, int: acc): int -> {
+                if (i == 0) -> {
+                    return acc;
+                }
+                return step(i - 1, (acc + fib(12) * i) % 100000);
+            }
+            int: total = 0;
+            """ + "total = total + step(500, 0) % 1000;\n".repeat(100) + "show(total);\n";
+
+    private static final String CHECKS = """
+            func tag::(string: name, string: suffix): string -> {
+                string: text = name + suffix;
+                return text;
+            }
+            func step::(int: i, string: acc): string -> {
+                if (i == 0) -> {
+                    return acc;
+                }
+                string: next = tag(acc, "");
+                return step(i - 1, next);
+            }
+            string: last = "";
+            """ + "last = step(500, \"karl\");\n".repeat(1000) + "show(last);\n";
+
+    // Time of the program optimized by the pipeline given, not optimized when null
+    private static long time(String program, Supplier<Optimizer> optimizer) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return measure(3, 5, () -> {
+                CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(program, "bench.karl"));
+                if (optimizer != null) optimizer.get().optimize(unit, false);
+                unit.link();
+                Frame frame = new Frame(0);
+                for (Statement statement : unit.getStatements()) {
+                    statement.eval(frame);
+                }
+                VariableManager.clear();
+                FunctionManager.clear();
+                SourceManager.clear();
+                return unit;
+            });
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @Override
+    public void run() {
+        String[][] programs = {{"constants", CONSTANTS}, {"helpers", HELPERS}, {"pure", PURE}, {"checks", CHECKS}};
+        for (String[] program : programs) {
+            long plain = time(program[1], null);
+            long optimized = time(program[1], Optimizer::new);
+            System.out.printf("%-9s  plain %8.1f ms  optimized %8.1f ms  %5.2fx%n", program[0], plain / 1e6, optimized / 1e6, (double) plain / optimized);
+            new Optimizer().optimize(new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(program[1], "bench.karl")), true);
+            VariableManager.clear();
+            FunctionManager.clear();
+            SourceManager.clear();
+        }
+
+        // The checks spared by type checking alone, the other passes running on both sides
+        long unchecked = time(CHECKS, () -> new Optimizer(List.of(new ConstantFolding(), new FinalPropagation(), new PartialEvaluation(), new Inlining(), new BranchPruning())));
+        long checked = time(CHECKS, Optimizer::new);
+        System.out.printf("%-9s  unchecked %6.1f ms  checked %10.1f ms  %5.2fx%n", "types", unchecked / 1e6, checked / 1e6, (double) unchecked / checked);
+    }
+}
@@ -0,0 +1,33 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.parser.Lexer;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelLexerBenchmark extends Benchmark {
+    public ParallelLexerBenchmark() {
+        super("parallel", "Lexer throughput in MB/s on large sources, sequential against chunks lexed on 1 to N threads");
+    }
+
+    @Override
+    public void run() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int size : new int[]{16 << 20, 64 << 20}) {
+            Source source = Source.of(GeneratedSources.script(size), "bench.karl");
+            long bytes = source.length();
+
+            long sequential = measure(2, 3, () -> new Lexer(source, new SymbolTable()).tokens);
+            System.out.printf("%6d KB  sequential %8.1f MB/s%n", bytes / 1024, megabytesPerSecond(bytes, sequential));
+
+            for (int threads = 1; threads <= processors; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long parallel = measure(2, 3, () -> Lexer.lexParallel(source, new SymbolTable(), pool, 1 << 20));
+                pool.shutdown();
+                System.out.printf("%6d KB  %2d threads %8.1f MB/s  (x%.2f)%n", bytes / 1024, threads,
+                        megabytesPerSecond(bytes, parallel), (double) sequential / parallel);
+            }
+        }
+    }
+}
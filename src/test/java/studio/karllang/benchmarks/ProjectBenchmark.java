@@ -0,0 +1,57 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.std.Source;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class ProjectBenchmark extends Benchmark {
+    public ProjectBenchmark() {
+        super("project", "Front end time of a project of 8 files, on 1 to N threads, against its largest file alone");
+    }
+
+    @Override
+    public void run() throws Exception {
+        int processors = Runtime.getRuntime().availableProcessors();
+        Path directory = Files.createTempDirectory("project");
+        try {
+            List<String> paths = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Path file = directory.resolve("File" + i + ".karl");
+                Files.writeString(file, GeneratedSources.program((i + 1) << 18));
+                paths.add(file.toString());
+            }
+
+            ForkJoinPool single = new ForkJoinPool(1);
+            String largest = paths.get(paths.size() - 1);
+            long alone = measure(3, 5, () -> {
+                try {
+                    return new FrontEnd(single).compile(Source.map(largest));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            single.shutdown();
+            System.out.printf("largest file alone %8.1f ms%n", alone / 1e6);
+
+            for (int threads = 1; threads <= processors; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long project = measure(3, 5, () -> new FrontEnd(pool).compile(paths));
+                pool.shutdown();
+                System.out.printf("%2d threads         %8.1f ms  (x%.2f the largest file)%n", threads, project / 1e6, (double) project / alone);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
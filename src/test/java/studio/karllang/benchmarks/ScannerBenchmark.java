@@ -0,0 +1,33 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.parser.ByteScanner;
+import studio.karllang.karl.parser.Lexer;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+public class ScannerBenchmark extends Benchmark {
+    public ScannerBenchmark() {
+        super("scanner", "Lexer throughput in MB/s with the scalar and the Vector API scanners of blanks, comments and strings");
+    }
+
+    @Override
+    public void run() {
+        ByteScanner vector = ByteScanner.vector();
+        if (vector == null) {
+            System.out.println("jdk.incubator.vector is not loaded, run with --add-modules jdk.incubator.vector");
+            return;
+        }
+
+        for (String kind : new String[]{"generated", "commented"}) {
+            String text = kind.equals("generated") ? GeneratedSources.script(8 << 20) : GeneratedSources.commented(8 << 20);
+            Source source = Source.of(text, "bench.karl");
+            long bytes = source.length();
+
+            long scalar = measure(3, 5, () -> new Lexer(source, new SymbolTable(), ByteScanner.scalar()).tokens);
+            long vectorized = measure(3, 5, () -> new Lexer(source, new SymbolTable(), vector).tokens);
+
+            System.out.printf("%-9s %5d KB  scalar %8.1f MB/s  vector %8.1f MB/s  (x%.2f)%n", kind, bytes / 1024,
+                    megabytesPerSecond(bytes, scalar), megabytesPerSecond(bytes, vectorized), (double) scalar / vectorized);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.Karl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ScopeBenchmark extends Benchmark {
+    private static final int CALLS = 200;
+    private static final int DEPTH = 300;
+
+    public ScopeBenchmark() {
+        super("scopes", "Cost of entering the blocks of a hot if, which stays flat as the number of globals grows");
+    }
+
+    // Every level of the recursion enters two nested blocks, each declaring a local once the recursive call returned
+    private static String program(int globals) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < globals; i++) {
+            builder.append("int: global").append(i).append(" = ").append(i).append(";\n");
+        }
+        builder.append("int: total = 0;\n")
+                .append("func hot::(int: n): int -> {\n")
+                .append("    if (n > 0) -> {\n")
+                .append("        int: rest = hot(n - 1);\n")
+                .append("        if (rest >= 0) -> {\n")
+                .append("            int: next = rest + 1;\n")
+                .append("            return next;\n")
+                .append("        }\n")
+                .append("    }\n")
+                .append("    return 0;\n")
+                .append("}\n");
+        for (int i = 0; i < CALLS; i++) {
+            builder.append("total = total + hot(").append(DEPTH).append(");\n");
+        }
+        return builder.append("show(total);\n").toString();
+    }
+
+    @Override
+    public void run() throws Exception {
+        for (int globals : new int[]{0, 1000, 10000}) {
+            Path file = Files.createTempFile("bench", ".karl");
+            try {
+                Files.writeString(file, program(globals));
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long time;
+                try {
+                    time = measure(3, 5, () -> {
+                        new Karl().run(file.toString(), null);
+                        return file;
+                    });
+                } finally {
+                    System.setOut(out);
+                }
+                System.out.printf("%5d globals  %8.1f ms  %7.1f ns per block entered%n", globals, time / 1e6, (double) time / (2L * CALLS * DEPTH));
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.cli.Option;
+import studio.karllang.karl.Karl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StreamBenchmark extends Benchmark {
+    public StreamBenchmark() {
+        super("stream", "Time to first output, total time and peak heap of a run, whole file against --stream");
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    // Returns the time to first output, the total time in nanoseconds and the peak heap in bytes
+    private static long[] run(Path file, boolean stream) throws Exception {
+        long[] firstOutput = {0};
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (firstOutput[0] == 0) firstOutput[0] = System.nanoTime();
+            }
+        }));
+
+        ArrayList<Option> options = stream ? new ArrayList<>(List.of(new Option(null, "--stream"))) : new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        long start = System.nanoTime();
+        try {
+            new Karl().run(file.toString(), options);
+        } finally {
+            System.setOut(out);
+        }
+        return new long[]{firstOutput[0] - start, System.nanoTime() - start, peakHeap()};
+    }
+
+    @Override
+    public void run() throws Exception {
+        // Kept small, every block adds variables to the scope that each call copies
+        for (int size : new int[]{256 << 10, 1 << 20}) {
+            Path file = Files.createTempFile("bench", ".karl");
+            try {
+                Files.writeString(file, GeneratedSources.program(size));
+                for (int i = 0; i < 2; i++) {
+                    run(file, false);
+                    run(file, true);
+                }
+
+                long[] whole = run(file, false);
+                long[] stream = run(file, true);
+                System.out.printf("%6d KB  whole file: first output %6.1f ms, total %7.1f ms, peak heap %6.1f MB%n", size / 1024,
+                        whole[0] / 1e6, whole[1] / 1e6, whole[2] / (1024.0 * 1024.0));
+                System.out.printf("%6d KB  --stream:   first output %6.1f ms, total %7.1f ms, peak heap %6.1f MB%n", size / 1024,
+                        stream[0] / 1e6, stream[1] / 1e6, stream[2] / (1024.0 * 1024.0));
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.parser.Lexer;
+
+import java.lang.ref.Reference;
+import java.util.function.Supplier;
+
+public class TokenMemoryBenchmark extends Benchmark {
+    public TokenMemoryBenchmark() {
+        super("tokens", "Heap retained by the token stream, Token list against the token buffer");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long retained(Supplier<Object> build) {
+        long before = usedHeap();
+        Object tokens = build.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(tokens);
+        return after - before;
+    }
+
+    @Override
+    public void run() {
+        for (int size : new int[]{4 << 20, 16 << 20}) {
+            String source = GeneratedSources.script(size);
+
+            long legacy = retained(() -> new LegacyLexer(source, "bench.karl").tokens);
+            long buffer = retained(() -> new Lexer(source, "bench.karl").tokens);
+
+            System.out.printf("%6d KB source  token list %7.1f MB  token buffer %7.1f MB  (x%.1f less)%n", source.length() / 1024,
+                    legacy / (1024.0 * 1024.0), buffer / (1024.0 * 1024.0), (double) legacy / buffer);
+        }
+    }
+}
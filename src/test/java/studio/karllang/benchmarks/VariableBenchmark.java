@@ -0,0 +1,60 @@
+package studio.karllang.benchmarks;
+
+import studio.karllang.karl.Karl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class VariableBenchmark extends Benchmark {
+    private static final int FUNCTIONS = 100;
+    private static final int DEPTH = 300;
+
+    public VariableBenchmark() {
+        super("variables", "Run time of recursive functions reading their parameters and globals, as the number of globals grows");
+    }
+
+    // Each function recurses once down to 0, reading its parameters and a global at every level
+    private static String program(int globals) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < globals; i++) {
+            builder.append("int: global").append(i).append(" = ").append(i).append(";\n");
+        }
+        builder.append("int: step = 1;\n");
+        for (int i = 0; i < FUNCTIONS; i++) {
+            builder.append("func walk").append(i).append("::(int: n, int: acc, int: scale): int -> {\n")
+                    .append("    if (n == 0) -> {\n")
+                    .append("        return acc;\n")
+                    .append("    }\n")
+                    .append("    return walk").append(i).append("(n - step, acc + scale, scale);\n")
+                    .append("}\n")
+                    .append("step = step + walk").append(i).append("(").append(DEPTH).append(", 0, 1) - ").append(DEPTH).append(";\n");
+        }
+        return builder.append("show(step);\n").toString();
+    }
+
+    @Override
+    public void run() throws Exception {
+        for (int globals : new int[]{0, 100, 1000, 10000}) {
+            Path file = Files.createTempFile("bench", ".karl");
+            try {
+                Files.writeString(file, program(globals));
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long time;
+                try {
+                    time = measure(3, 5, () -> {
+                        new Karl().run(file.toString(), null);
+                        return file;
+                    });
+                } finally {
+                    System.setOut(out);
+                }
+                System.out.printf("%5d globals  %8.1f ms  %7.1f ns per call%n", globals, time / 1e6, (double) time / (FUNCTIONS * (DEPTH + 1)));
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
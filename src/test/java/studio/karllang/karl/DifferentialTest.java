@@ -0,0 +1,57 @@
+package studio.karllang.karl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.cli.Option;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DifferentialTest {
+    private interface Mode {
+        String run(String path) throws Exception;
+    }
+
+    @Test
+    @DisplayName("Scripts print the same on every engine and in every mode as interpreted without the optimizer")
+    void testScripts() throws Exception {
+        Path directory = Files.createTempDirectory("karlc");
+        try {
+            Option cache = new Option(directory.toString(), "--cache");
+            LinkedHashMap<String, Mode> modes = new LinkedHashMap<>();
+            modes.put("optimized", path -> Scripts.run(path));
+            modes.put("tree", path -> Scripts.run(path, "tree"));
+            modes.put("vm", path -> Scripts.run(path, "vm"));
+            modes.put("jit", path -> Scripts.run(path, "jit"));
+            modes.put("closure", path -> Scripts.run(path, "closure"));
+            modes.put("stream", path -> Scripts.run(path, new Option(null, "--stream")));
+            // The first run parses and stores, the second one loads
+            modes.put("stored in the cache", path -> Scripts.run(path, cache));
+            modes.put("loaded from the cache", path -> Scripts.run(path, cache));
+            modes.put("built", Scripts::build);
+
+            for (String path : Scripts.PATHS) {
+                String expected = Scripts.interpret(path);
+                for (Map.Entry<String, Mode> mode : modes.entrySet()) {
+                    assertEquals(expected, mode.getValue().run(path), path + " " + mode.getKey());
+                }
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(Scripts.PATHS.size(), files.filter(file -> file.toString().endsWith(".karlc")).count());
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package studio.karllang.karl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.std.FunctionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FrontEndTest {
+    private static Path project() throws Exception {
+        Path directory = Files.createTempDirectory("project");
+        Files.createDirectories(directory.resolve("lib"));
+        // Each file declares its own name() and greet(), the parsers must not see the functions of the others
+        for (String file : new String[]{"Main", "B", "lib/A"}) {
+            String name = file.substring(file.lastIndexOf('/') + 1);
+            Files.writeString(directory.resolve(file + ".karl"), "func name::(): string -> {\n    return \"" + name + "\";\n}\n"
+                    + "greet();\nfunc greet::(): void -> {\n    show(\"Hello from \" + name());\n}\n");
+        }
+        return directory;
+    }
+
+    private static void deleteRecursively(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Files compiled in parallel keep their own functions")
+    void testCompile() throws Exception {
+        Path directory = project();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FunctionManager.File current = FunctionManager.getCurrentFile();
+            List<String> paths = List.of(directory.resolve("Main.karl").toString(), directory.resolve("B.karl").toString(),
+                    directory.resolve("lib/A.karl").toString());
+            List<CompilationUnit> units = new FrontEnd(pool).compile(paths);
+
+            assertSame(current, FunctionManager.getCurrentFile());
+            for (int i = 0; i < paths.size(); i++) {
+                CompilationUnit unit = units.get(i);
+                assertEquals(paths.get(i), unit.getFileName());
+                assertEquals(3, unit.getStatements().size());
+                assertNotNull(unit.getFunctions().get(unit.getSymbols().lookup("name")));
+                assertNotNull(unit.getFunctions().get(unit.getSymbols().lookup("greet")));
+            }
+            assertNotSame(units.get(0).getFunctions(), units.get(1).getFunctions());
+        } finally {
+            pool.shutdown();
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Running a project directory")
+    void testProject() throws Exception {
+        Path directory = project();
+        try {
+            ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+            PrintStream out = System.out;
+            System.setOut(new PrintStream(outContent, false, StandardCharsets.UTF_8));
+            try {
+                new Karl().run(directory.toString(), new ArrayList<>());
+            } finally {
+                System.setOut(out);
+            }
+            assertEquals("Hello from B\nHello from A\nHello from Main\n", outContent.toString().replaceAll("\r\n", "\n"));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package studio.karllang.karl;
+
+import studio.karllang.cli.Option;
+import studio.karllang.karl.aot.ScriptCompiler;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public final class Scripts {
+    /**
+     * Scripts of the test resources, printing the same on every engine and in every mode.
+     */
+    public static final List<String> PATHS = List.of(
+            "src/test/resources/tests/Show.karl",
+            "src/test/resources/tests/If.karl",
+            "src/test/resources/tests/Functions.karl",
+            "src/test/resources/tests/Else.karl",
+            "src/test/resources/tests/Math.karl",
+            "src/test/resources/tests/Precedence.karl",
+            "src/test/resources/tests/Scopes.karl");
+
+    private Scripts() {
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static String capture(Task task) throws Exception {
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(outContent, false, StandardCharsets.UTF_8));
+        try {
+            task.run();
+        } finally {
+            System.setOut(out);
+        }
+        return outContent.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs the script with the options given and returns what it printed.
+     */
+    public static String run(String path, Option... options) throws Exception {
+        return capture(() -> new Karl().run(path, new ArrayList<>(List.of(options))));
+    }
+
+    /**
+     * Runs the script on the engine given, as {@code --engine} selects it, and returns what it printed.
+     */
+    public static String run(String path, String engine) throws Exception {
+        return run(path, new Option(engine, "--engine"));
+    }
+
+    /**
+     * Evaluates the statements of the script on the tree as parsed, without the optimizer, and returns what it
+     * printed.
+     */
+    public static String interpret(String path) throws Exception {
+        return capture(() -> {
+            try {
+                CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.map(path));
+                unit.link();
+                Frame frame = new Frame(0);
+                for (Statement statement : unit.getStatements()) {
+                    statement.eval(frame);
+                }
+            } finally {
+                VariableManager.clear();
+                FunctionManager.clear();
+                SourceManager.clear();
+            }
+        });
+    }
+
+    /**
+     * Builds the script into a jar and returns what its main class printed, loaded apart from the classes of the
+     * tests.
+     */
+    public static String build(String path) throws Exception {
+        Path jar = Files.createTempFile("Script", ".jar");
+        try {
+            new Karl().build(path, new ArrayList<>(List.of(new Option(jar.toString(), "--output"))));
+            try (URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, ClassLoader.getPlatformClassLoader())) {
+                Class<?> script = loader.loadClass(ScriptCompiler.className(path));
+                return capture(() -> script.getMethod("main", String[].class).invoke(null, (Object) new String[0]));
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+}
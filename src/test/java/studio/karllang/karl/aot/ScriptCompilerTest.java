@@ -0,0 +1,117 @@
+package studio.karllang.karl.aot;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.Scripts;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptCompilerTest {
+    @Test
+    @DisplayName("Boxed values, globals, blocks, and functions on ints leaving the ints")
+    void testGenericPaths() throws Exception {
+        String script = """
+                int: big = 2147483647;
+                final int: limit = 3;
+                func next::(int: x): int -> {
+                    int: y = x + 1;
+                    y = y * 2;
+                    return y / 2 - 1;
+                }
+                func half::(int: x): float -> {
+                    return x / 2;
+                }
+                func odd::(int: x): bool -> {
+                    return x % 2 == 1;
+                }
+                func greet::(string: name): void -> {
+                    show("Hello ", name, " ", big, " ", limit);
+                }
+                func sum::(int: i, int: acc): int -> {
+                    if (i == 0) -> {
+                        return acc;
+                    }
+                    return sum(i - 1, acc + i * 1000000);
+                }
+                show(next(5), " ", next(big), " ", big + 1, " ", half(7));
+                float: f = 3;
+                f++;
+                show(f / 2, " ", 7 / 2, " ", 8 / 2, " ", 7 % 3, " ", -7, " ", 1 < 2.5, " ", big * 2 > big);
+                show("a" + 1, " ", 1 + "b", " ", 1 == 1.0, " ", "x" == "x", " ", odd(3), !odd(3), " ", 'c', " ", 2.5);
+                bool: t = true;
+                show(t && false, t || false, !t, t == true, t != odd(4));
+                greet("Karl");
+                show(sum(10, 0), " ", sum(100, 0), " ", sum(10, 0));
+                big = big - 1;
+                big--;
+                show(big);
+                if (t) -> {
+                    int: a = 1;
+                    a++;
+                    a = a + 10;
+                    if (a >= 12 && odd(a + 1)) -> {
+                        show(a);
+                        int: inner = a * 2;
+                        show(inner);
+                    } else -> {
+                        show("no");
+                    }
+                    int: b = 0;
+                    b--;
+                    show(b, " ", a - 1, " ", a * a);
+                    return 0;
+                    show("unreachable");
+                } else -> {
+                    show("else");
+                }
+                show("after");
+                """;
+        Path file = Files.createTempFile("Script", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.run(file.toString()), Scripts.build(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("The runtime packaged with a script leaves the front end out")
+    void testRuntime() throws Exception {
+        CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of("""
+                func fib::(int: n): int -> {
+                    if (n < 2) -> {
+                        return n;
+                    }
+                    return fib(n - 1) + fib(n - 2);
+                }
+                show(fib(20), " ", "done");
+                """, "fib.karl"));
+        unit.link();
+        Set<String> classes = ScriptJar.runtime(ScriptCompiler.compile(unit, "Fib")).keySet();
+        assertTrue(classes.contains("studio/karllang/karl/aot/ScriptRuntime"));
+        assertTrue(classes.contains("studio/karllang/karl/jit/Deoptimization"));
+        for (String name : classes) {
+            assertFalse(name.startsWith("studio/karllang/karl/parser/ast/expressions/"), name);
+            assertFalse(name.startsWith("studio/karllang/karl/parser/ast/statements/"), name);
+            assertFalse(name.equals("studio/karllang/karl/parser/Lexer") || name.equals("studio/karllang/karl/parser/Parser"), name);
+        }
+
+        VariableManager.clear();
+        FunctionManager.clear();
+        SourceManager.clear();
+    }
+}
@@ -0,0 +1,63 @@
+package studio.karllang.karl.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.cli.Option;
+import studio.karllang.karl.Scripts;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AstCacheTest {
+    private static void deleteRecursively(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Editing a script invalidates its cache")
+    void testInvalidation() throws Exception {
+        Path directory = Files.createTempDirectory("karlc");
+        try {
+            Path file = directory.resolve("Edited.karl");
+            Files.writeString(file, "func greet::(): void -> {\n    show(\"first\");\n}\ngreet();\n");
+            assertEquals("first", Scripts.run(file.toString(), new Option(null, "--cache")).trim());
+            assertTrue(Files.exists(directory.resolve("Edited.karlc")));
+            assertEquals("first", Scripts.run(file.toString(), new Option(null, "--cache")).trim());
+
+            Files.writeString(file, "func greet::(): void -> {\n    show(\"second\");\n}\ngreet();\n");
+            assertEquals("second", Scripts.run(file.toString(), new Option(null, "--cache")).trim());
+            assertEquals("second", Scripts.run(file.toString(), new Option(null, "--cache")).trim());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Cache files created with the permissions of the other files, and nothing else left behind")
+    void testPermissions() throws Exception {
+        Path directory = Files.createTempDirectory("karlc");
+        try {
+            Path file = directory.resolve("Shown.karl");
+            Files.writeString(file, "show(\"shown\");\n");
+            assertEquals("shown", Scripts.run(file.toString(), new Option(null, "--cache")).trim());
+            if (Files.getFileStore(directory).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                assertEquals(Files.getPosixFilePermissions(file), Files.getPosixFilePermissions(directory.resolve("Shown.karlc")));
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(2, files.count());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package studio.karllang.karl.closure;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.Scripts;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClosureEngineTest {
+    @Test
+    @DisplayName("Values leaving the types the closures were specialized to")
+    void testGenericPaths() throws Exception {
+        String script = """
+                int: big = 2147483647;
+                func next::(int: x): int -> {
+                    int: y = x + 1;
+                    y = y * 2;
+                    return y / 2 - 1;
+                }
+                func half::(int: x): float -> {
+                    return x / 2;
+                }
+                func odd::(int: x): bool -> {
+                    return x % 2 == 1;
+                }
+                func greet::(string: name): void -> {
+                    show("Hello ", name);
+                }
+                show(next(5), " ", next(big), " ", big + 1, " ", half(7));
+                float: f = 3;
+                show(f / 2, " ", 7 / 2, " ", 8 / 2, " ", 7 % 3, " ", -7, " ", 1 < 2.5, " ", big * 2 > big);
+                show("a" + 1, " ", 1 + "b", " ", 1 == 1.0, " ", "x" == "x", " ", odd(3), !odd(3));
+                bool: t = true;
+                show(t && false, t || false, !t, t == true, t != odd(4));
+                greet("Karl");
+                if (t) -> {
+                    int: a = 1;
+                    a++;
+                    a = a + 10;
+                    if (a >= 12 && odd(a + 1)) -> {
+                        show(a);
+                    } else -> {
+                        show("no");
+                    }
+                    int: b = 0;
+                    b--;
+                    show(b, " ", a - 1, " ", a * a);
+                }
+                """;
+        Path file = Files.createTempFile("Closure", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.run(file.toString(), "tree"), Scripts.run(file.toString(), "closure"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package studio.karllang.karl.ir;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.Scripts;
+import studio.karllang.karl.optimizer.Statistics;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.statements.FunctionDeclarationStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IrTest {
+    // IR of each function of the script lowered, by name
+    private static HashMap<String, IrFunction> lower(String script) {
+        CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(script, "ir.karl"));
+        HashMap<Integer, Function> functions = new HashMap<>();
+        for (Statement statement : unit.getStatements()) {
+            if (statement instanceof FunctionDeclarationStatement declaration) {
+                functions.put(declaration.getSymbol(), declaration.getFunction());
+            }
+        }
+        HashMap<String, IrFunction> lowered = new HashMap<>();
+        for (Function function : functions.values()) {
+            lowered.put(function.getName(), Lowering.lower(function, functions::get, symbol -> false));
+        }
+        VariableManager.clear();
+        FunctionManager.clear();
+        SourceManager.clear();
+        return lowered;
+    }
+
+    private static int count(IrFunction ir, Opcode opcode) {
+        int count = 0;
+        for (BasicBlock block : ir.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == opcode) count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    @DisplayName("Bodies lowered to blocks, the values of the locals assigned in branches merged by phis")
+    void testLowering() {
+        HashMap<String, IrFunction> functions = lower("""
+                func pick::(int: a, bool: flag): int -> {
+                    int: r = a;
+                    if (flag) -> {
+                        r = a + 1;
+                    } else -> {
+                        int: t = a - 1;
+                        r = t;
+                    }
+                    r++;
+                    return r;
+                }
+                func sign::(int: a): int -> {
+                    if (a < 0) -> {
+                        return -1;
+                    }
+                    if (a > 0) -> {
+                        return 1;
+                    }
+                }
+                func shown::(int: a): int -> {
+                    show(a);
+                    return a;
+                }
+                func name::(string: s): int -> {
+                    return 1;
+                }
+                """);
+
+        IrFunction pick = functions.get("pick");
+        assertEquals(4, pick.getBlocks().size());
+        assertEquals(1, count(pick, Opcode.PHI));
+        BasicBlock join = pick.getBlocks().get(3);
+        assertEquals(2, join.getPredecessors().size());
+        assertEquals(BasicBlock.Exit.RETURN, join.getExit());
+        assertTrue(pick.toString().contains("phi"));
+
+        // The end of the function reached without a return statement gives up on the call
+        IrFunction sign = functions.get("sign");
+        assertEquals(BasicBlock.Exit.GIVE_UP, sign.getBlocks().get(sign.getBlocks().size() - 1).getExit());
+
+        // Effects and types other than ints and bools stay interpreted
+        assertNull(functions.get("shown"));
+        assertNull(functions.get("name"));
+    }
+
+    @Test
+    @DisplayName("Values computed twice numbered once, and values unused removed unless they may give up")
+    void testValueNumbering() {
+        IrFunction ir = lower("""
+                func area::(int: a, int: b, bool: flag): int -> {
+                    int: x = a * b;
+                    int: y = b * a;
+                    int: z = x - y;
+                    bool: unused = a < b;
+                    int: overflows = x + 1;
+                    if (flag) -> {
+                        return x * b + z;
+                    }
+                    return a * b + y;
+                }
+                """).get("area");
+        Statistics statistics = IrOptimizer.optimize(ir);
+
+        // b * a and the a * b returned are the product of the entry, x - y is 0 and adding it folds away, leaving
+        // the comparison and the constant 0 unused, while x + 1 may leave the ints
+        assertEquals(2, count(ir, Opcode.MUL));
+        assertEquals(2, statistics.get("values numbered"));
+        assertEquals(2, statistics.get("values folded"));
+        assertEquals(2, statistics.get("values removed"));
+        assertEquals(0, count(ir, Opcode.LT));
+        assertEquals(2, count(ir, Opcode.ADD));
+    }
+
+    @Test
+    @DisplayName("Checks removed and operations reduced on the ranges of the values, comparisons decided by them")
+    void testStrengthReduction() {
+        IrFunction ir = lower("""
+                func bucket::(int: i): int -> {
+                    if (i >= 0) -> {
+                        if (i < 1000) -> {
+                            int: k = i * 4 + i % 8;
+                            if (k < 0) -> {
+                                return -1;
+                            }
+                            return k;
+                        }
+                    }
+                    return i % 3;
+                }
+                """).get("bucket");
+        Statistics statistics = IrOptimizer.optimize(ir);
+
+        assertEquals(1, count(ir, Opcode.SHL));
+        assertEquals(1, count(ir, Opcode.AND));
+        assertEquals(0, count(ir, Opcode.MUL));
+        assertEquals(1, statistics.get("comparisons decided"));
+        assertEquals(1, statistics.get("branches folded"));
+        assertEquals(2, statistics.get("operations reduced"));
+        for (BasicBlock block : ir.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                assertFalse(instruction.isChecked());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Functions compiled from their optimized IR print what the other engines print")
+    void testEngines() throws Exception {
+        String script = """
+                func bucket::(int: i): int -> {
+                    if (i >= 0) -> {
+                        if (i < 1000) -> {
+                            return i * 4 + i % 8;
+                        }
+                    }
+                    return i % 3;
+                }
+                func mix::(int: a, int: b, bool: flag): int -> {
+                    int: x = a * b;
+                    int: r = 0;
+                    if (flag) -> {
+                        r = x + a * b;
+                    } else -> {
+                        r = x - a;
+                    }
+                    r++;
+                    return r;
+                }
+                func big::(int: i): int -> {
+                    return i * 1000000;
+                }
+                func loop::(int: i, int: acc): int -> {
+                    if (i == 0) -> {
+                        return acc;
+                    }
+                    return loop(i - 1, (acc + bucket(i - 500) + mix(i, 7, i % 2 == 0)) % 100000);
+                }
+                int: total = 0;
+                """ + "total = (total + loop(1000, 0)) % 1000003;\n".repeat(1200) + """
+                show(total);
+                show(big(1000));
+                show(big(5000));
+                show(bucket(-7));
+                show(mix(65536, 65536, true));
+                """;
+        Path file = Files.createTempFile("ir", ".karl");
+        try {
+            Files.writeString(file, script);
+            String interpreted = Scripts.run(file.toString(), "tree");
+            assertEquals(interpreted, Scripts.run(file.toString(), "jit"));
+            assertEquals(interpreted, Scripts.run(file.toString(), "vm"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
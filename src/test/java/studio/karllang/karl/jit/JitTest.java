@@ -0,0 +1,104 @@
+package studio.karllang.karl.jit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.Scripts;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.Function;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JitTest {
+    @Test
+    @DisplayName("Hot functions compiled, and run again by the interpreter once their values leave the ints")
+    void testHotFunctions() throws Exception {
+        String script = """
+                func sq::(int: x): int -> {
+                    return x * x;
+                }
+                func half::(int: x): int -> {
+                    return x / 2;
+                }
+                func odd::(int: x): bool -> {
+                    return x % 2 == 1;
+                }
+                func loop::(int: i, int: acc): int -> {
+                    if (i == 0) -> {
+                        return acc;
+                    }
+                    int: s = sq(i) % 7;
+                    bool: even = !odd(i);
+                    if (even && !(s == 3)) -> {
+                        s++;
+                    } else -> {
+                        s--;
+                    }
+                    return loop(i - 1, acc + s + half(i * 2) - -1);
+                }
+                func shown::(int: x): int -> {
+                    show(x);
+                    return x;
+                }
+                show(loop(1200, 0), " ", loop(1200, 1));
+                show(sq(3000), " ", half(8), " ", odd(3));
+                show(sq(50000), " ", half(-8));
+                show(loop(1, 0));
+                """;
+        Path file = Files.createTempFile("Jit", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.run(file.toString(), "tree"), Scripts.run(file.toString(), "jit"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Functions computing on ints and bools only are compiled")
+    void testCompile() {
+        String script = """
+                func fib::(int: n): int -> {
+                    if (n < 2) -> {
+                        return n;
+                    }
+                    return fib(n - 1) + fib(n - 2);
+                }
+                func shown::(int: n): int -> {
+                    show(n);
+                    return n;
+                }
+                func ratio::(float: f): float -> {
+                    return f;
+                }
+                """;
+        CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(script, "fib.karl"));
+        unit.link();
+        Function fib = FunctionManager.getCurrentFile().getFunction("fib");
+
+        CompiledFunction compiled = FunctionCompiler.compile(fib);
+        assertNotSame(CompiledFunction.INTERPRETED, compiled);
+        Frame frame = new Frame(1);
+        frame.setInt(0, 20);
+        compiled.getCode().call(frame);
+        assertEquals(6765, frame.getReturnInt());
+
+        assertSame(CompiledFunction.INTERPRETED, FunctionCompiler.compile(FunctionManager.getCurrentFile().getFunction("shown")));
+        assertSame(CompiledFunction.INTERPRETED, FunctionCompiler.compile(FunctionManager.getCurrentFile().getFunction("ratio")));
+
+        VariableManager.clear();
+        FunctionManager.clear();
+        SourceManager.clear();
+    }
+}
@@ -0,0 +1,369 @@
+package studio.karllang.karl.optimizer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.Scripts;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.expressions.BinaryExpression;
+import studio.karllang.karl.parser.ast.expressions.Expression;
+import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.parser.ast.expressions.ValueExpression;
+import studio.karllang.karl.parser.ast.expressions.VariableCallExpression;
+import studio.karllang.karl.parser.ast.statements.FunctionDeclarationStatement;
+import studio.karllang.karl.parser.ast.statements.ReturnStatement;
+import studio.karllang.karl.parser.ast.statements.ShowStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.parser.ast.statements.VariableAssignmentStatement;
+import studio.karllang.karl.parser.ast.statements.VariableDeclarationStatement;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptimizerTest {
+    private static CompilationUnit compile(String script) {
+        return new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(script, "optimizer.karl"));
+    }
+
+    private static void clear() {
+        VariableManager.clear();
+        FunctionManager.clear();
+        SourceManager.clear();
+    }
+
+    private static Expression shown(CompilationUnit unit, int statement, int expression) {
+        return ((ShowStatement) unit.getStatements().get(statement)).getExpressions().get(expression);
+    }
+
+    @Test
+    @DisplayName("Operations on literals folded to the values the nodes compute")
+    void testConstantFolding() {
+        CompilationUnit unit = compile("""
+                show(2 + 3 * 4, 7 / 2, 8 / 2, 2147483647 + 1, "a" + 1 + 2, 1 < 2.5, !true, -5, 3 == 3 && 2 > 1);
+                show("a" - 1, true + 1);
+                """);
+        Statistics statistics = new Optimizer().optimize(unit, false).get("constant-folding");
+        assertEquals(12, statistics.get("expressions folded"));
+
+        String[] values = {"14", "3.5", "4", "2147483647", "a12", "true", "false", "-5", "true"};
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], ((ValueExpression) shown(unit, 0, i)).getValue().toString());
+        }
+        // Left for the nodes to report
+        assertInstanceOf(BinaryExpression.class, shown(unit, 1, 0));
+        assertInstanceOf(BinaryExpression.class, shown(unit, 1, 1));
+        clear();
+    }
+
+    @Test
+    @DisplayName("Final globals read as constants once sure to be declared")
+    void testFinalPropagation() {
+        CompilationUnit unit = compile("""
+                func early::(): int -> {
+                    return limit;
+                }
+                show(limit);
+                final int: limit = 10;
+                final float: ratio = 2;
+                int: count = 3;
+                final int: twice = limit * 2;
+                show(limit + 1, ratio, count, twice);
+                show(early());
+                final int: late = 1;
+                func late::(): int -> {
+                    return late + twice;
+                }
+                """);
+        LinkedHashMap<String, Statistics> statistics = new Optimizer().optimize(unit, false);
+        assertEquals(6, statistics.get("final-propagation").get("reads propagated"));
+
+        assertInstanceOf(VariableCallExpression.class, shown(unit, 1, 0));
+        assertEquals("11", ((ValueExpression) shown(unit, 6, 0)).getValue().toString());
+        assertEquals("2.0", ((ValueExpression) shown(unit, 6, 1)).getValue().toString());
+        assertInstanceOf(VariableCallExpression.class, shown(unit, 6, 2));
+        assertEquals("20", ((ValueExpression) shown(unit, 6, 3)).getValue().toString());
+
+        // The functions see the globals declared before the first call
+        ReturnStatement early = (ReturnStatement) ((FunctionDeclarationStatement) unit.getStatements().get(0)).getFunction().getBody().getStatements().get(0);
+        assertEquals("10", ((ValueExpression) early.getExpression()).getValue().toString());
+        ReturnStatement late = (ReturnStatement) ((FunctionDeclarationStatement) unit.getStatements().get(9)).getFunction().getBody().getStatements().get(0);
+        assertInstanceOf(VariableCallExpression.class, ((BinaryExpression) late.getExpression()).getLeft());
+        assertInstanceOf(ValueExpression.class, ((BinaryExpression) late.getExpression()).getRight());
+        clear();
+    }
+
+    @Test
+    @DisplayName("Branches of literal conditions pruned")
+    void testBranchPruning() {
+        CompilationUnit unit = compile("""
+                final bool: debug = false;
+                if (debug) -> {
+                    show("debug");
+                }
+                if (1 < 2) -> {
+                    show("taken");
+                } else -> {
+                    show("not taken");
+                }
+                if (debug || 1 > 2) -> {
+                    show("if");
+                } else if (true) -> {
+                    show("else if");
+                } else -> {
+                    show("else");
+                }
+                """);
+        assertEquals(4, new Optimizer().optimize(unit, false).get("branch-pruning").get("branches pruned"));
+        assertEquals(3, unit.getStatements().size());
+        clear();
+    }
+
+    @Test
+    @DisplayName("Small functions inlined with the checks of their calls")
+    void testInlining() throws Exception {
+        String script = """
+                func square::(int: x): int -> {
+                    return x * x;
+                }
+                func half::(int: x): float -> {
+                    return x / 2;
+                }
+                func greet::(string: name, char: mark): string -> {
+                    return "Hello " + name + mark;
+                }
+                func sumOfSquares::(int: a, int: b): int -> {
+                    return square(a) + square(b);
+                }
+                func odd::(int: x): bool -> {
+                    return x % 2 == 1;
+                }
+                func count::(int: n): int -> {
+                    if (n == 0) -> {
+                        return 0;
+                    }
+                    return count(n - 1) + 1;
+                }
+                func run::(int: n): int -> {
+                    int: total = sumOfSquares(n, n + 1) + square(square(2));
+                    if (odd(n) && !odd(square(n) + 1)) -> {
+                        total = total + count(3);
+                    }
+                    show(half(n * 2 + 1), " ", greet("Karl", '!'), " ", square(46341));
+                    return total;
+                }
+                show(run(3), " ", run(4), " ", square(5));
+                if (true) -> {
+                    show(square(7) + sumOfSquares(1, 2));
+                }
+                """;
+        CompilationUnit unit = compile(script);
+        // All the sites in functions and in the top-level block but those of count, whose body is not a return
+        Optimizer optimizer = new Optimizer(List.of(new ConstantFolding(), new FinalPropagation(), new Inlining()));
+        assertEquals(13, optimizer.optimize(unit, false).get("inlining").get("calls inlined"));
+        clear();
+
+        Path file = Files.createTempFile("Inlining", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.interpret(file.toString()), Scripts.run(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Calls to pure functions on literals evaluated at compile time")
+    void testPartialEvaluation() throws Exception {
+        CompilationUnit unit = compile("""
+                func fib::(int: n): int -> {
+                    if (n < 2) -> {
+                        return n;
+                    }
+                    return fib(n - 1) + fib(n - 2);
+                }
+                func loop::(int: n): int -> {
+                    return loop(n + 1);
+                }
+                func spread::(int: n, int: k): int -> {
+                    if (n == 0) -> {
+                        return k;
+                    }
+                    return spread(n - 1, k * 2) + spread(n - 1, k * 2 + 1);
+                }
+                func noisy::(int: n): int -> {
+                    show(n);
+                    return n;
+                }
+                int: counter = 0;
+                func bump::(): int -> {
+                    counter++;
+                    return counter;
+                }
+                func viaNoisy::(int: n): int -> {
+                    return noisy(n) + 1;
+                }
+                func twice::(int: n): int -> {
+                    int: total = n;
+                    total++;
+                    total = total * 2;
+                    return total;
+                }
+                func divide::(int: a, int: b): int -> {
+                    return a / b;
+                }
+                show(fib(20), fib(5) + 1, twice(3), loop(0), spread(24, 0), noisy(1), bump(), viaNoisy(2), divide(7, 2), divide(8, 2), fib(counter));
+                """);
+        assertEquals(4, new Optimizer().optimize(unit, false).get("partial-evaluation").get("calls evaluated"));
+
+        String[] values = {"6765", "6", "8", null, null, null, null, null, null, "4", null};
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                // Unbounded, out of fuel, impure, failing or not on literals
+                assertInstanceOf(FuncCallExpression.class, shown(unit, 9, i));
+            } else {
+                assertEquals(values[i], ((ValueExpression) shown(unit, 9, i)).getValue().toString());
+            }
+        }
+        clear();
+
+        String script = """
+                func fib::(int: n): int -> {
+                    if (n < 2) -> {
+                        return n;
+                    }
+                    return fib(n - 1) + fib(n - 2);
+                }
+                func label::(string: name, float: ratio): string -> {
+                    string: text = name + " ";
+                    if (ratio > 0.5) -> {
+                        return text + "high";
+                    }
+                    return text + "low";
+                }
+                func check::(int: n): void -> {
+                    int: square = n * n;
+                }
+                func noisy::(int: n): int -> {
+                    show(n, " ");
+                    return fib(n);
+                }
+                check(3);
+                show(fib(15), " ", label("ratio", 0.75), " ", label("ratio", 0.25), " ", noisy(10), " ", fib(noisy(6)));
+                """;
+        Path file = Files.createTempFile("PartialEvaluation", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.interpret(file.toString()), Scripts.run(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Checks sure to pass spared at runtime")
+    void testTypeChecking() throws Exception {
+        String script = """
+                func greet::(string: name, int: times): string -> {
+                    string: text = "Hello " + name;
+                    int: count = times;
+                    count = times * 2;
+                    text = text + "!";
+                    if (count > 2) -> {
+                        return text + " x" + count;
+                    }
+                    return text;
+                }
+                func half::(int: x): float -> {
+                    float: ratio = 2;
+                    return x / ratio;
+                }
+                func sign::(int: x): int -> {
+                    if (x < 0) -> {
+                        return -1;
+                    } else if (x > 0) -> {
+                        return 1;
+                    }
+                }
+                func log::(string: message): void -> {
+                    show(message);
+                }
+                string: name = "Karl";
+                bool: flag = 1 < 2;
+                int: total = 2147483647 + 0;
+                log(greet(name, 1));
+                log(greet(name + "!", 2));
+                show(half(3), " ", sign(4), " ", flag, " ", total);
+                """;
+        CompilationUnit unit = compile(script);
+        Statistics statistics = new Optimizer(List.of(new TypeChecking())).optimize(unit, false).get("type-checking");
+        assertEquals(5, statistics.get("declarations checked"));
+        assertEquals(1, statistics.get("assignments checked"));
+        assertEquals(5, statistics.get("calls checked"));
+        // half returns an int for even values, and sign may end without returning
+        assertEquals(2, statistics.get("returns checked"));
+
+        FunctionDeclarationStatement greet = (FunctionDeclarationStatement) unit.getStatements().get(0);
+        ArrayList<Statement> body = greet.getFunction().getBody().getStatements();
+        assertTrue(((VariableDeclarationStatement) body.get(0)).isChecked());
+        // The pass does not tell the type of times * 2, operations on ints giving a float when a division is inexact
+        assertFalse(((VariableAssignmentStatement) body.get(2)).isChecked());
+        assertTrue(((VariableAssignmentStatement) body.get(3)).isChecked());
+        assertTrue(greet.getFunction().isReturnChecked());
+        assertFalse(((FunctionDeclarationStatement) unit.getStatements().get(2)).getFunction().isReturnChecked());
+        assertFalse(((VariableDeclarationStatement) unit.getStatements().get(6)).isChecked());
+        clear();
+
+        Path file = Files.createTempFile("TypeChecking", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.interpret(file.toString()), Scripts.run(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Script mixing the optimizations prints the same optimized")
+    void testScript() throws Exception {
+        String script = """
+                final int: size = 4 * 8;
+                final float: ratio = 3;
+                final string: name = "Karl";
+                func area::(int: n): int -> {
+                    if (size > 16 && true) -> {
+                        int: local = n * size + 2 * 3;
+                        return local;
+                    } else -> {
+                        return 0;
+                    }
+                }
+                show(area(2), " ", ratio / 2, " ", name + "!", " ", !false, " ", 7 / 2, " ", -5 + 1);
+                if (size == 32) -> {
+                    int: block = size - 1;
+                    show(block, 1 == 1.0, "x" == "x");
+                } else -> {
+                    show("never");
+                }
+                """;
+        Path file = Files.createTempFile("Optimizer", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.interpret(file.toString()), Scripts.run(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
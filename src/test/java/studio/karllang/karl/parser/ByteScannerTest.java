@@ -0,0 +1,58 @@
+package studio.karllang.karl.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.benchmarks.GeneratedSources;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ByteScannerTest {
+    private static final byte[] ALPHABET = {' ', '\t', '\n', '\r', '*', '"', '\\', 'a', '/', (byte) 0xC3};
+
+    @Test
+    @DisplayName("Vector scanner stops at the same bytes as the scalar one")
+    void testSameStops() {
+        ByteScanner vector = ByteScanner.vector();
+        if (vector == null) return;
+        ByteScanner scalar = ByteScanner.scalar();
+
+        Random random = new Random(7);
+        for (int run = 0; run < 200; run++) {
+            byte[] bytes = new byte[random.nextInt(300)];
+            for (int i = 0; i < bytes.length; i++) {
+                // Mostly one filler byte so that runs span several vectors
+                bytes[i] = random.nextInt(8) == 0 ? ALPHABET[random.nextInt(ALPHABET.length)] : (run % 2 == 0 ? (byte) ' ' : (byte) 'x');
+            }
+            ByteBuffer input = run % 3 == 0 ? ByteBuffer.allocateDirect(bytes.length).put(bytes).flip() : ByteBuffer.wrap(bytes);
+            for (int from = 0; from <= bytes.length; from += 1 + random.nextInt(16)) {
+                assertEquals(scalar.skipBlanks(input, from, bytes.length), vector.skipBlanks(input, from, bytes.length));
+                assertEquals(scalar.findLineEnd(input, from, bytes.length), vector.findLineEnd(input, from, bytes.length));
+                assertEquals(scalar.findCommentStop(input, from, bytes.length), vector.findCommentStop(input, from, bytes.length));
+                assertEquals(scalar.findStringStop(input, from, bytes.length), vector.findStringStop(input, from, bytes.length));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Lexer gives the same tokens with both scanners")
+    void testSameTokens() {
+        ByteScanner vector = ByteScanner.vector();
+        if (vector == null) return;
+
+        Source source = Source.of(GeneratedSources.commented(64 * 1024), "test.karl");
+        TokenBuffer expected = new Lexer(source, new SymbolTable(), ByteScanner.scalar()).tokens;
+        TokenBuffer actual = new Lexer(source, new SymbolTable(), vector).tokens;
+        assertEquals(expected.size(), actual.size(), "token count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getType(i), actual.getType(i), "token " + i);
+            assertEquals(expected.getStart(i), actual.getStart(i), "token " + i);
+            assertEquals(expected.getLength(i), actual.getLength(i), "token " + i);
+            assertEquals(expected.getLine(i), actual.getLine(i), "token " + i);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package studio.karllang.karl.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.benchmarks.GeneratedSources;
+import studio.karllang.benchmarks.LegacyLexer;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SymbolTable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LexerTest {
+    // Types, values and positions match the legacy lexer, positions being byte offsets converted to chars
+    private static void assertSameTokens(String source) {
+        ArrayList<Token> expected = new LegacyLexer(source, "test.karl").tokens;
+        TokenBuffer actual = new Lexer(source, "test.karl").tokens;
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(expected.size(), actual.size(), "token count");
+        for (int i = 0; i < expected.size(); i++) {
+            Token e = expected.get(i);
+            Token a = actual.get(i);
+            String at = "token " + i + " (" + e.getValue() + ")";
+            assertEquals(e.getType(), a.getType(), at);
+            assertEquals(e.getValue(), a.getValue(), at);
+            assertEquals(e.getPosition(), new String(bytes, 0, a.getPosition(), StandardCharsets.UTF_8).length(), at);
+        }
+        assertLines(source, actual);
+    }
+
+    // Every token is on the line of the Source that contains its first byte
+    private static void assertLines(String source, TokenBuffer tokens) {
+        Source lines = Source.of(source, "test.karl");
+        int line = 1;
+        int lineEnd = lineEnd(lines, line);
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            while (tokens.getStart(i) >= lineEnd) {
+                lineEnd = lineEnd(lines, ++line);
+            }
+            assertEquals(line, tokens.getLine(i), "line of token " + i + " (" + tokens.getValue(i) + ")");
+        }
+    }
+
+    private static int lineEnd(Source source, int line) {
+        int offset = 0;
+        for (int i = 1; i <= line; i++) {
+            offset += source.getLine(i).getBytes(StandardCharsets.UTF_8).length;
+            if (offset < source.length() && source.byteAt(offset) == '\r') offset++;
+            if (offset < source.length() && source.byteAt(offset) == '\n') offset++;
+        }
+        return offset;
+    }
+
+    @Test
+    @DisplayName("Same tokens as the legacy lexer on the test scripts")
+    void testScripts() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of("src/test/resources/tests"))) {
+            for (Path file : files.toList()) {
+                assertSameTokens(Files.readString(file));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Same tokens as the legacy lexer on operators, literals and comments")
+    void testEdgeCases() {
+        assertSameTokens("a++; b--; c = d == e != f >= g <= h > i < j && k || !l;");
+        assertSameTokens("func f::(int: a): int -> { return -1 + 2.5 - -3 * 4 / 5 % 6; }");
+        assertSameTokens("char: c = 'x'; string: s = \"with \\\"escape\\\" and \\t tab\";\r\nshow(s, c);");
+        assertSameTokens("// trailing comment without newline");
+        assertSameTokens("/* unterminated block comment");
+        assertSameTokens("int: a = 1;\r\n/* two\r\n lines */ int: b = 2;\rstring: c = \"multi\nline\"; show(c);");
+        assertSameTokens("int: showing = 1; bool: iffy = true; final float: truest = 1.0;");
+        assertSameTokens("string: accent = \"réussit\"; int: naïve = 1; [ ] ^ ~ ? . & |");
+    }
+
+    @Test
+    @DisplayName("Same tokens as the legacy lexer on a generated script")
+    void testGenerated() {
+        assertSameTokens(GeneratedSources.script(64 * 1024));
+    }
+
+    private static void assertSameChunkedTokens(String script, int chunkSize) {
+        TokenBuffer expected = new Lexer(script, "test.karl").tokens;
+        TokenBuffer actual = Lexer.lexParallel(Source.of(script, "test.karl"), new SymbolTable(), ForkJoinPool.commonPool(), chunkSize);
+
+        assertEquals(expected.size(), actual.size(), "token count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getType(i), actual.getType(i), "token " + i);
+            assertEquals(expected.getSymbol(i), actual.getSymbol(i), "token " + i);
+            assertEquals(expected.getStart(i), actual.getStart(i), "token " + i);
+            assertEquals(expected.getLength(i), actual.getLength(i), "token " + i);
+            assertEquals(expected.getLine(i), actual.getLine(i), "token " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Chunks lexed in parallel give the same tokens, lines and symbols")
+    void testParallel() {
+        assertSameChunkedTokens(GeneratedSources.script(256 * 1024), 4096);
+        assertSameChunkedTokens(GeneratedSources.script(256 * 1024), 1);
+        assertSameChunkedTokens("int: a = 1;\r\n/* two\r\n lines */ int: b = 2;\rstring: c = \"multi\nline\";\n// comment \" with a quote\n"
+                .repeat(2000) + "char: d = '\"'; show(\"/* not a comment\", d);\r\nshow(c);", 64);
+    }
+
+    @Test
+    @DisplayName("Streamed segments hold the same tokens, cut between top-level statements")
+    void testSegments() {
+        String script = GeneratedSources.script(64 * 1024);
+        TokenBuffer expected = new Lexer(script, "test.karl").tokens;
+        ArrayList<TokenBuffer> segments = new ArrayList<>();
+        new Lexer(Source.of(script, "test.karl"), expected.getSymbols(), segments::add);
+
+        int index = 0;
+        for (TokenBuffer segment : segments) {
+            assertEquals(TokenType.EOF, segment.getType(segment.size() - 1));
+            if (index > 0) {
+                assertTrue(expected.getType(index - 1) == TokenType.SEMICOLON || expected.getType(index - 1) == TokenType.RIGHT_BRACE);
+                assertNotEquals(TokenType.ELSE, segment.getType(0));
+            }
+            for (int i = 0; i < segment.size() - 1; i++, index++) {
+                assertEquals(expected.getType(index), segment.getType(i), "token " + index);
+                assertEquals(expected.getSymbol(index), segment.getSymbol(i), "token " + index);
+                assertEquals(expected.getStart(index), segment.getStart(i), "token " + index);
+                assertEquals(expected.getLine(index), segment.getLine(i), "token " + index);
+            }
+        }
+        assertTrue(segments.size() > 1);
+        assertEquals(expected.size() - 1, index);
+    }
+
+    @Test
+    @DisplayName("Symbol ids beyond what a token holds refused rather than aliased")
+    void testSymbolLimit() {
+        TokenBuffer tokens = new TokenBuffer(Source.of("", "test.karl"), new SymbolTable());
+        tokens.addIdentifier(TokenBuffer.MAX_SYMBOLS - 1, 0, 0, 1);
+        assertEquals(TokenBuffer.MAX_SYMBOLS - 1, tokens.getSymbol(0));
+        assertThrows(IllegalStateException.class, () -> tokens.addIdentifier(TokenBuffer.MAX_SYMBOLS, 0, 0, 1));
+    }
+}
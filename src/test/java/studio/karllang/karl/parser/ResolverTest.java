@@ -0,0 +1,116 @@
+package studio.karllang.karl.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.parser.ast.expressions.BinaryExpression;
+import studio.karllang.karl.parser.ast.expressions.LogicalExpression;
+import studio.karllang.karl.parser.ast.expressions.VariableCallExpression;
+import studio.karllang.karl.parser.ast.statements.BlockStatement;
+import studio.karllang.karl.parser.ast.statements.FunctionDeclarationStatement;
+import studio.karllang.karl.parser.ast.statements.IfElseStatement;
+import studio.karllang.karl.parser.ast.statements.ReturnStatement;
+import studio.karllang.karl.parser.ast.statements.Statement;
+import studio.karllang.karl.parser.ast.statements.VariableAssignmentStatement;
+import studio.karllang.karl.parser.ast.statements.VariableDeclarationStatement;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResolverTest {
+    private static void assertSlot(int depth, int index, VariableCallExpression expression) {
+        assertEquals(depth, expression.getDepth(), expression.getName());
+        assertEquals(index, expression.getIndex(), expression.getName());
+    }
+
+    @Test
+    @DisplayName("Slots of parameters, locals and globals")
+    void testSlots() {
+        String script = """
+                int: global = 1;
+                func f::(int: a, int: b): int -> {
+                    int: c = a;
+                    if (c > 0) -> {
+                        int: d = c;
+                        d = global + b;
+                        return d;
+                    }
+                    return a;
+                }
+                """;
+        ArrayList<Statement> statements = new Parser(new Lexer(script, "test.karl").tokens, "test.karl").parse();
+        Resolver.resolve(statements);
+
+        VariableDeclarationStatement global = (VariableDeclarationStatement) statements.get(0);
+        assertEquals(VariableManager.GLOBAL, global.getDepth());
+        assertEquals(global.getSymbol(), global.getIndex());
+
+        BlockStatement body = ((FunctionDeclarationStatement) statements.get(1)).getFunction().getBody();
+        assertEquals(4, body.getFrameSize());
+        VariableDeclarationStatement c = (VariableDeclarationStatement) body.getStatements().get(0);
+        assertEquals(VariableManager.LOCAL, c.getDepth());
+        assertEquals(2, c.getIndex());
+        assertSlot(VariableManager.LOCAL, 0, (VariableCallExpression) c.getExpression());
+
+        IfElseStatement ifElse = (IfElseStatement) body.getStatements().get(1);
+        assertSlot(VariableManager.LOCAL, 2, (VariableCallExpression) ((LogicalExpression) ifElse.getCondition()).getLeft());
+        BlockStatement block = (BlockStatement) ifElse.getIfStatement();
+        assertEquals(0, block.getFrameSize());
+        assertEquals(3, block.getFirstSlot());
+        assertEquals(1, block.getSlotCount());
+        assertSlot(VariableManager.LOCAL, 2, (VariableCallExpression) ((VariableDeclarationStatement) block.getStatements().get(0)).getExpression());
+
+        VariableAssignmentStatement assignment = (VariableAssignmentStatement) block.getStatements().get(1);
+        assertEquals(VariableManager.LOCAL, assignment.getDepth());
+        assertEquals(3, assignment.getIndex());
+        BinaryExpression sum = (BinaryExpression) assignment.getExpression();
+        assertSlot(VariableManager.GLOBAL, global.getSymbol(), (VariableCallExpression) sum.getLeft());
+        assertSlot(VariableManager.LOCAL, 1, (VariableCallExpression) sum.getRight());
+        assertSlot(VariableManager.LOCAL, 3, (VariableCallExpression) ((ReturnStatement) block.getStatements().get(2)).getExpression());
+    }
+
+    @Test
+    @DisplayName("Nested blocks share the frame of their function and reuse the slots of the blocks before them")
+    void testFlatFrames() {
+        String script = """
+                func f::(int: a): int -> {
+                    if (a > 0) -> {
+                        int: b = a;
+                        if (b > 1) -> {
+                            int: c = b;
+                            return c;
+                        }
+                    }
+                    if (a < 0) -> {
+                        int: d = a;
+                        return d;
+                    }
+                    return a;
+                }
+                if (true) -> {
+                    int: e = 1;
+                    show(e);
+                }
+                """;
+        ArrayList<Statement> statements = new Parser(new Lexer(script, "test.karl").tokens, "test.karl").parse();
+        Resolver.resolve(statements);
+
+        BlockStatement body = ((FunctionDeclarationStatement) statements.get(0)).getFunction().getBody();
+        BlockStatement first = (BlockStatement) ((IfElseStatement) body.getStatements().get(0)).getIfStatement();
+        BlockStatement nested = (BlockStatement) ((IfElseStatement) first.getStatements().get(1)).getIfStatement();
+        BlockStatement second = (BlockStatement) ((IfElseStatement) body.getStatements().get(1)).getIfStatement();
+        assertEquals(3, body.getFrameSize());
+        assertEquals(0, first.getFrameSize());
+        assertEquals(1, first.getFirstSlot());
+        assertEquals(2, nested.getFirstSlot());
+        assertEquals(1, second.getFirstSlot());
+        assertSlot(VariableManager.LOCAL, 1, (VariableCallExpression) ((VariableDeclarationStatement) nested.getStatements().get(0)).getExpression());
+        assertSlot(VariableManager.LOCAL, 1, (VariableCallExpression) ((ReturnStatement) second.getStatements().get(1)).getExpression());
+
+        // A top-level block has a frame of its own
+        BlockStatement topLevel = (BlockStatement) ((IfElseStatement) statements.get(1)).getIfStatement();
+        assertEquals(1, topLevel.getFrameSize());
+        assertEquals(0, topLevel.getFirstSlot());
+    }
+}
@@ -0,0 +1,125 @@
+package studio.karllang.karl.parser.ast.expressions;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.cli.Option;
+import studio.karllang.karl.Scripts;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.AstVisitor;
+import studio.karllang.karl.parser.ast.values.BooleanValue;
+import studio.karllang.karl.parser.ast.values.FloatValue;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.StringValue;
+import studio.karllang.karl.parser.ast.values.Value;
+import studio.karllang.karl.std.Frame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BinaryExpressionTest {
+    // Operand giving the values one after the other, the types seen by a node changing from one evaluation to the next
+    private static final class Operand extends Expression {
+        private final ArrayDeque<Value> values;
+
+        private Operand(Value... values) {
+            this.values = new ArrayDeque<>(List.of(values));
+        }
+
+        @Override
+        public Value eval(Frame frame) {
+            return values.poll();
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return null;
+        }
+    }
+
+    private static String eval(Expression expression) {
+        return expression.eval(new Frame(0)).toString();
+    }
+
+    @Test
+    @DisplayName("Arithmetic on the types seen by a node")
+    void testArithmetic() {
+        Operand left = new Operand(new IntValue(16777217), new IntValue(7), new FloatValue(1.5f), new StringValue("a"), new IntValue(3), new IntValue(16777217));
+        Operand right = new Operand(new IntValue(2), new IntValue(2), new IntValue(1), new IntValue(1), new IntValue(4), new IntValue(2));
+        BinaryExpression plus = new BinaryExpression(left, right, TokenType.PLUS, "test.karl", 0, 0);
+        // Exact on ints, which a float is not beyond 2^24
+        assertEquals("16777219", eval(plus));
+        assertEquals("9", eval(plus));
+        assertEquals("2.5", eval(plus));
+        assertEquals("a1", eval(plus));
+        assertEquals("7", eval(plus));
+        // Still exact on ints once generic
+        assertEquals("16777219", eval(plus));
+
+        BinaryExpression divide = new BinaryExpression(new Operand(new IntValue(7), new IntValue(6), new IntValue(1)),
+                new Operand(new IntValue(2), new IntValue(3), new IntValue(0)), TokenType.DIVIDE, "test.karl", 0, 0);
+        assertEquals("3.5", eval(divide));
+        assertEquals("2", eval(divide));
+        assertEquals("Infinity", eval(divide));
+
+        // An int result out of range takes the float path as before
+        BinaryExpression overflow = new BinaryExpression(new Operand(new IntValue(Integer.MAX_VALUE)), new Operand(new IntValue(1)),
+                TokenType.PLUS, "test.karl", 0, 0);
+        assertEquals(Integer.toString(Integer.MAX_VALUE), eval(overflow));
+
+        // Floats whose result is whole give an int
+        BinaryExpression floats = new BinaryExpression(new Operand(new FloatValue(1.5f), new FloatValue(0.25f)),
+                new Operand(new FloatValue(1.5f), new FloatValue(0.5f)), TokenType.PLUS, "test.karl", 0, 0);
+        assertEquals("3", eval(floats));
+        assertEquals("0.75", eval(floats));
+    }
+
+    @Test
+    @DisplayName("Comparisons on the types seen by a node")
+    void testComparison() {
+        LogicalExpression equals = new LogicalExpression(TokenType.EQUALEQUAL,
+                new Operand(new IntValue(16777217), new IntValue(2), new BooleanValue(true), new StringValue("a")),
+                new Operand(new IntValue(16777216), new FloatValue(2.0f), new BooleanValue(true), new StringValue("a")), "test.karl", 0, 0);
+        assertEquals("false", eval(equals));
+        assertEquals("true", eval(equals));
+        assertEquals("true", eval(equals));
+        assertEquals("true", eval(equals));
+
+        LogicalExpression and = new LogicalExpression(TokenType.AND,
+                new Operand(new BooleanValue(true), new BooleanValue(true), new StringValue("true")),
+                new Operand(new BooleanValue(false), new BooleanValue(true), new BooleanValue(true)), "test.karl", 0, 0);
+        assertEquals("false", eval(and));
+        assertEquals("true", eval(and));
+        assertEquals("true", eval(and));
+    }
+
+    @Test
+    @DisplayName("Recursive calls through a node not yet specialized")
+    void testReentrant() throws Exception {
+        // The first sum evaluates the node again before it is done with it, the inner evaluation specializing it
+        String script = """
+                func sum::(int: n): int -> {
+                    if (n == 0) -> {
+                        return 16777215;
+                    }
+                    return 1 + sum(n - 1);
+                }
+                int: k = 2;
+                show(sum(k));
+                show(sum(k));
+                """;
+        Path file = Files.createTempFile("Reentrant", ".karl");
+        try {
+            Files.writeString(file, script);
+            for (String engine : new String[]{"tree", "jit", "vm", "closure"}) {
+                assertEquals("16777217\n16777217\n", Scripts.run(file.toString(), engine).replaceAll("\r\n", "\n"), engine);
+            }
+            assertEquals("16777217\n16777217\n", Scripts.run(file.toString(), new Option(null, "--stream")).replaceAll("\r\n", "\n"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
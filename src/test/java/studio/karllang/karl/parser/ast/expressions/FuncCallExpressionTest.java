@@ -0,0 +1,52 @@
+package studio.karllang.karl.parser.ast.expressions;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.std.Frame;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FuncCallExpressionTest {
+    private static CompilationUnit compile(int result) {
+        String script = "func f::(): int -> {\n    return " + result + ";\n}\n";
+        return new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(script, "f" + result + ".karl"));
+    }
+
+    @Test
+    @DisplayName("Call sites follow the changes of the functions they cached")
+    void testInvalidation() {
+        CompilationUnit first = compile(1);
+        CompilationUnit second = compile(2);
+        CompilationUnit third = compile(3);
+        int symbol = first.getSymbols().lookup("f");
+        assertEquals(symbol, second.getSymbols().lookup("f"));
+        assertEquals(symbol, third.getSymbols().lookup("f"));
+
+        FuncCallExpression call = new FuncCallExpression("f", symbol, new ArrayList<>(), "test.karl", 0, 0);
+        Frame frame = new Frame(0);
+        first.link();
+        assertEquals("1", call.eval(frame).toString());
+        assertEquals("1", call.eval(frame).toString());
+
+        // Declaring the function again changes the version of the table
+        FunctionManager.getCurrentFile().addFunction(symbol, second.getFunctions().get(symbol));
+        assertEquals("2", call.eval(frame).toString());
+
+        // Another file runs the call
+        third.link();
+        assertEquals("3", call.eval(frame).toString());
+
+        VariableManager.clear();
+        FunctionManager.clear();
+        SourceManager.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package studio.karllang.karl.std;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.TokenType;
+import studio.karllang.karl.parser.ast.expressions.Expression;
+import studio.karllang.karl.parser.ast.expressions.FuncCallExpression;
+import studio.karllang.karl.parser.ast.expressions.ValueExpression;
+import studio.karllang.karl.parser.ast.values.IntValue;
+import studio.karllang.karl.parser.ast.values.StringValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameTest {
+    private static final String SCRIPT = """
+            func fib::(int: n): int -> {
+                if (n < 2) -> {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+            func sum::(int: n): int -> {
+                int: total = 0;
+                if (n > 0) -> {
+                    int: rest = sum(n - 1);
+                    total = n + rest;
+                }
+                return total;
+            }
+            """;
+
+    private static FuncCallExpression call(CompilationUnit unit, String name, int argument) {
+        ArrayList<Expression> args = new ArrayList<>(List.of(new ValueExpression(argument, TokenType.INT_VALUE)));
+        return new FuncCallExpression(name, unit.getSymbols().lookup(name), args, "frames.karl", 0, 0);
+    }
+
+    private static CompilationUnit link() {
+        CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(SCRIPT, "frames.karl"));
+        unit.link();
+        return unit;
+    }
+
+    private static void clear() {
+        VariableManager.clear();
+        FunctionManager.clear();
+        SourceManager.clear();
+    }
+
+    @Test
+    @DisplayName("Frames of returned calls are reused")
+    void testPush() {
+        Frame root = new Frame(0);
+        Frame callee = root.push(2);
+        callee.set(1, new ValueExpression(1, TokenType.INT_VALUE).eval(root));
+        callee.returnWith(null);
+
+        // A call made while the frame is in use, from the arguments of another call, takes the next frame of the chain
+        Frame nested = root.push(1);
+        assertNotSame(callee, nested);
+        nested.release();
+        assertSame(nested, root.push(1));
+        nested.release();
+        callee.release();
+
+        Frame next = root.push(3);
+        assertSame(callee, next);
+        assertNull(next.get(1));
+        assertFalse(next.isReturning());
+    }
+
+    @Test
+    @DisplayName("Primitives are held unboxed and boxed when read as values")
+    void testTaggedSlots() {
+        Frame frame = new Frame(4);
+        frame.set(0, new IntValue(42));
+        assertEquals(Frame.INT, frame.getTag(0));
+        assertEquals(42, frame.getInt(0));
+        frame.setFloat(1, 1.5f);
+        assertEquals("1.5", frame.get(1).toString());
+        frame.setBoolean(2, true);
+        assertEquals(TokenType.BOOL_VALUE, frame.get(2).getType());
+        frame.set(3, new StringValue("a"));
+        assertEquals(Frame.VALUE, frame.getTag(3));
+
+        frame.clear(1, 3);
+        assertTrue(frame.isEmpty(1));
+        assertNull(frame.get(3));
+
+        frame.returnInt(7);
+        assertTrue(frame.isReturning());
+        assertEquals(TokenType.INT_VALUE, frame.getReturnType());
+        assertEquals("7", frame.getReturnValue().toString());
+    }
+
+    @Test
+    @DisplayName("Recursive calls")
+    void testRecursion() {
+        CompilationUnit unit = link();
+        Frame frame = new Frame(0);
+        assertEquals("832040", call(unit, "fib", 30).eval(frame).toString());
+        assertEquals("5050", call(unit, "sum", 100).eval(frame).toString());
+        assertEquals("5050", call(unit, "sum", 100).eval(frame).toString());
+        clear();
+    }
+
+    @Test
+    @DisplayName("Functions called from several threads")
+    void testThreads() throws Exception {
+        CompilationUnit unit = link();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            String name = i % 2 == 0 ? "fib" : "sum";
+            int argument = i % 2 == 0 ? 20 : 200;
+            results.add(executor.submit(() -> {
+                Frame frame = new Frame(0);
+                String result = null;
+                for (int j = 0; j < 20; j++) {
+                    result = call(unit, name, argument).eval(frame).toString();
+                }
+                return result;
+            }));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i % 2 == 0 ? "6765" : "20100", results.get(i).get());
+        }
+        executor.shutdown();
+        clear();
+    }
+}
@@ -0,0 +1,42 @@
+package studio.karllang.karl.std;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SymbolTableTest {
+    @Test
+    @DisplayName("Interning gives one dense id and one string per name")
+    void testIntern() {
+        SymbolTable symbols = new SymbolTable();
+        ByteBuffer source = ByteBuffer.wrap("count + count2 * count".getBytes(StandardCharsets.UTF_8));
+
+        int count = symbols.intern(source, 0, 5);
+        int count2 = symbols.intern(source, 8, 6);
+        assertEquals(0, count);
+        assertEquals(1, count2);
+        assertEquals(count, symbols.intern(source, 17, 5));
+        assertEquals(count2, symbols.intern("count2"));
+        assertSame(symbols.getName(count), symbols.getName(symbols.intern(source, 17, 5)));
+        assertEquals(-1, symbols.lookup("missing"));
+        assertEquals(2, symbols.size());
+    }
+
+    @Test
+    @DisplayName("Ids stay stable while the table grows")
+    void testGrowth() {
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, symbols.intern("name" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, symbols.lookup("name" + i));
+            assertEquals("name" + i, symbols.getName(i));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package studio.karllang.karl.vm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import studio.karllang.karl.FrontEnd;
+import studio.karllang.karl.Scripts;
+import studio.karllang.karl.parser.CompilationUnit;
+import studio.karllang.karl.parser.ast.statements.FunctionDeclarationStatement;
+import studio.karllang.karl.std.FunctionManager;
+import studio.karllang.karl.std.Source;
+import studio.karllang.karl.std.SourceManager;
+import studio.karllang.karl.std.VariableManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VirtualMachineTest {
+    @Test
+    @DisplayName("Values leaving the types the instructions handle themselves")
+    void testSlowPaths() throws Exception {
+        String script = """
+                int: big = 2147483647;
+                func next::(int: x): int -> {
+                    int: y = x + 1;
+                    y = y + 1;
+                    return y - 2;
+                }
+                func half::(float: f): float -> {
+                    return f / 2.0;
+                }
+                func greet::(string: name): void -> {
+                    show("Hello ", name);
+                }
+                show(next(5), " ", next(big), " ", big + 1);
+                float: f = 3;
+                show(f / 2, " ", half(3.0), " ", 7 / 2, " ", 8 / 2, " ", 7 % 3, " ", -7);
+                show("a" + 1, " ", 1 + "b", " ", 1 < 2, " ", 2.5 > 1, " ", 1 == 1.0, " ", "x" == "x");
+                bool: t = true;
+                show(t && false, t || false, !t, t == true, t != false);
+                greet("Karl");
+                if (t) -> {
+                    int: a = 1;
+                    a++;
+                    a = a + 10;
+                    if (a >= 12) -> {
+                        show(a);
+                    } else -> {
+                        show("no");
+                    }
+                    int: b = 0;
+                    b--;
+                    show(b, " ", a - 1, " ", a * a);
+                }
+                """;
+        Path file = Files.createTempFile("Engine", ".karl");
+        try {
+            Files.writeString(file, script);
+            assertEquals(Scripts.run(file.toString(), "tree"), Scripts.run(file.toString(), "vm"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Superinstructions for a local and an int literal")
+    void testSuperinstructions() {
+        String script = "func count::(int: n): int -> {\n    if (n < 2) -> {\n        return n;\n    }\n    n = n - 1;\n    return n + 1;\n}\n";
+        CompilationUnit unit = new FrontEnd(ForkJoinPool.commonPool()).compile(Source.of(script, "count.karl"));
+        FunctionDeclarationStatement declaration = (FunctionDeclarationStatement) unit.getStatements().get(0);
+        int[] code = Compiler.compileBlock(declaration.getFunction().getBody()).code;
+
+        assertEquals(Opcodes.LOAD_COMPARE_JUMP_IF_FALSE, code[0]);
+        assertEquals(Opcodes.RETURN_LOCAL, code[6]);
+        assertEquals(Opcodes.ADD_STORE, code[9]);
+        assertEquals(-1, code[11]);
+        assertEquals(Opcodes.LOAD_ADD, code[14]);
+        assertEquals(Opcodes.RETURN, code[18]);
+
+        VariableManager.clear();
+        FunctionManager.clear();
+        SourceManager.clear();
+    }
+}
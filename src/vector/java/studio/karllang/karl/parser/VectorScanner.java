@@ -0,0 +1,63 @@
+package studio.karllang.karl.parser;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compares a whole vector of bytes at a time, the remaining tail going through the scalar scanner.
+ * Needs the jdk.incubator.vector module, only loaded through {@link ByteScanner#vector()}.
+ */
+final class VectorScanner implements ByteScanner {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private final ScalarScanner scalar = new ScalarScanner();
+
+    private static ByteVector load(ByteBuffer input, int offset) {
+        return ByteVector.fromByteBuffer(SPECIES, input, offset, ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int skipBlanks(ByteBuffer input, int from, int end) {
+        for (; from + LANES <= end; from += LANES) {
+            final ByteVector bytes = load(input, from);
+            final VectorMask<Byte> stop = bytes.eq((byte) ' ').or(bytes.eq((byte) '\t')).not();
+            if (stop.anyTrue()) return from + stop.firstTrue();
+        }
+        return scalar.skipBlanks(input, from, end);
+    }
+
+    @Override
+    public int findLineEnd(ByteBuffer input, int from, int end) {
+        for (; from + LANES <= end; from += LANES) {
+            final VectorMask<Byte> stop = load(input, from).eq((byte) '\n');
+            if (stop.anyTrue()) return from + stop.firstTrue();
+        }
+        return scalar.findLineEnd(input, from, end);
+    }
+
+    @Override
+    public int findCommentStop(ByteBuffer input, int from, int end) {
+        for (; from + LANES <= end; from += LANES) {
+            final ByteVector bytes = load(input, from);
+            final VectorMask<Byte> stop = bytes.eq((byte) '*').or(bytes.eq((byte) '\n')).or(bytes.eq((byte) '\r'));
+            if (stop.anyTrue()) return from + stop.firstTrue();
+        }
+        return scalar.findCommentStop(input, from, end);
+    }
+
+    @Override
+    public int findStringStop(ByteBuffer input, int from, int end) {
+        for (; from + LANES <= end; from += LANES) {
+            final ByteVector bytes = load(input, from);
+            final VectorMask<Byte> stop = bytes.eq((byte) '"').or(bytes.eq((byte) '\\'))
+                    .or(bytes.eq((byte) '\n')).or(bytes.eq((byte) '\r'));
+            if (stop.anyTrue()) return from + stop.firstTrue();
+        }
+        return scalar.findStringStop(input, from, end);
+    }
+}